@@ -2,19 +2,28 @@ package com.test.sensitive;
 
 
 import com.test.sensitive.annotation.*;
-import org.apache.commons.lang3.reflect.FieldUtils;
 
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 对实体类进行脱敏，返回原来的实体类对象
+ * <p>
+ * {@link #acquire(Object, Class)}原地修改实体，同一个实体被多个线程同时脱敏时会重复脱敏，
+ * 被多个线程共享的实体使用{@link #acquireOnce(Object, Class)}
  *
  * @author Emily
  * @since :  Created in 2023/4/21 1:50 PM
  */
 public class DeSensitiveUtils {
 
+    /**
+     * {@link #acquireOnce(Object, Class)}脱敏过程中原地修改的撤销记录，脱敏失败时按相反顺序撤销
+     */
+    private static final ThreadLocal<Deque<Runnable>> UNDO_LOG = new ThreadLocal<>();
+
     /**
      * 对指定实体类中标记类脱敏注解的字段进行脱敏；
      *
@@ -43,33 +52,199 @@ public class DeSensitiveUtils {
     }
 
     /**
+     * 对共享实体只脱敏一次，脱敏过程中如果发生异常则源对象返回
+     *
+     * @param entity 实体类|普通对象
+     * @param <T>    实体类类型
+     * @return 对实体类进行脱敏，返回原来的实体类对象
+     * @see #acquireOnce(Object, Class)
+     */
+    public static <T> T acquireOnceElseGet(final T entity) {
+        return acquireOnceElseGet(entity, null);
+    }
+
+    /**
+     * 对共享实体只脱敏一次，脱敏过程中如果发生异常则源对象返回
+     *
+     * @param entity    实体类|普通对象
+     * @param packClass 需脱敏的实体类对象外层包装类
+     * @param <T>       实体类类型
+     * @return 对实体类进行脱敏，返回原来的实体类对象
+     * @see #acquireOnce(Object, Class)
+     */
+    public static <T> T acquireOnceElseGet(final T entity, final Class<?> packClass) {
+        try {
+            return acquireOnce(entity, packClass);
+        } catch (Exception exception) {
+            return entity;
+        }
+    }
+
+    /**
+     * 对被多个线程共享的实体（如缓存中的DTO）只脱敏一次
+     * -------------------------------------------
+     * 1.按对象引用为实体添加脱敏标记，标记成功的线程负责脱敏；
+     * 2.其它线程发现已有标记时不再脱敏，等待负责脱敏的线程完成后返回，不会读到脱敏一半的实体；
+     * 3.已脱敏的实体再次调用直接返回，不会重复脱敏；
+     * 4.标记以弱引用保存，实体被回收后自动清除，实体内容被重新赋值后可通过{@link #reset(Object)}清除标记；
+     * 5.record类型不可修改，脱敏返回新对象，不需要标记；
+     * 6.脱敏失败时撤销已原地修改的字段、集合元素，移除标记后抛出异常，重试时不会重复脱敏，等待的线程抛出同一个异常；
+     * -------------------------------------------
+     * 只对传入的实体本身加标记，同一个嵌套对象被多个不同的外层实体引用时仍可能被重复脱敏
+     *
      * @param entity    实体类|普通对象
      * @param packClass 需脱敏的实体类对象外层包装类
      * @param <T>       实体类类型
      * @return 对实体类进行脱敏，返回原来的实体类对象
      * @throws IllegalAccessException 非法访问异常
      */
+    public static <T> T acquireOnce(final T entity, final Class<?> packClass) throws IllegalAccessException {
+        if (JavaBeanUtils.isFinal(entity) || entity.getClass().isRecord()) {
+            return acquire(entity, packClass);
+        }
+        CompletableFuture<Void> mark = new CompletableFuture<>();
+        CompletableFuture<Void> existing = SensitiveMarks.putIfAbsent(entity, mark);
+        if (existing != null) {
+            awaitMark(existing);
+            return entity;
+        }
+        Deque<Runnable> undoLog = new ArrayDeque<>();
+        UNDO_LOG.set(undoLog);
+        try {
+            T masked = acquire(entity, packClass);
+            mark.complete(null);
+            return masked;
+        } catch (IllegalAccessException | RuntimeException | Error exception) {
+            // 脱敏失败时撤销已脱敏的部分并移除标记，允许重新脱敏
+            undo(undoLog);
+            SensitiveMarks.remove(entity, mark);
+            mark.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            UNDO_LOG.remove();
+        }
+    }
+
+    /**
+     * 等待其它线程完成脱敏，脱敏失败时抛出负责脱敏的线程的异常
+     */
+    private static void awaitMark(final CompletableFuture<Void> mark) throws IllegalAccessException {
+        try {
+            mark.join();
+        } catch (CompletionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IllegalAccessException illegalAccessException) {
+                throw illegalAccessException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw exception;
+        }
+    }
+
+    private static void undo(final Deque<Runnable> undoLog) {
+        Runnable action;
+        while ((action = undoLog.poll()) != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * 记录原地修改的撤销操作，只在{@link #acquireOnce(Object, Class)}脱敏过程中记录
+     */
+    private static void logUndo(final Runnable action) {
+        Deque<Runnable> undoLog = UNDO_LOG.get();
+        if (undoLog != null) {
+            undoLog.push(action);
+        }
+    }
+
+    /**
+     * 设置字段值，在{@link #acquireOnce(Object, Class)}脱敏过程中记录原值用于撤销
+     *
+     * @param field  实体类属性对象
+     * @param entity 实体类对象
+     * @param value  新的属性值
+     * @throws IllegalAccessException 非法访问异常
+     */
+    protected static void setField(final Field field, final Object entity, final Object value) throws IllegalAccessException {
+        if (UNDO_LOG.get() != null) {
+            Object previous = field.get(entity);
+            logUndo(() -> {
+                try {
+                    field.set(entity, previous);
+                } catch (IllegalAccessException exception) {
+                    throw new IllegalStateException(exception);
+                }
+            });
+        }
+        field.set(entity, value);
+    }
+
+    /**
+     * 设置数组元素，在{@link #acquireOnce(Object, Class)}脱敏过程中记录原值用于撤销
+     */
+    private static void setElement(final Object[] arrays, final int index, final Object value) {
+        Object previous = arrays[index];
+        if (previous != value) {
+            logUndo(() -> arrays[index] = previous);
+            arrays[index] = value;
+        }
+    }
+
+    /**
+     * 清除实体的脱敏标记，实体内容被重新赋值后需要再次脱敏时调用
+     *
+     * @param entity 实体对象
+     */
+    public static void reset(final Object entity) {
+        if (entity != null) {
+            SensitiveMarks.remove(entity, null);
+        }
+    }
+
+    /**
+     * @param entity 实体对象
+     * @return 实体是否已通过{@link #acquireOnce(Object, Class)}脱敏或正在脱敏
+     */
+    public static boolean isMarked(final Object entity) {
+        return entity != null && SensitiveMarks.contains(entity);
+    }
+
+    /**
+     * record类型字段不可修改，脱敏后通过规范构造器返回新的record对象；
+     * 集合、Map、数组中的record元素会被替换为脱敏后的新对象：可修改的List、Map及数组原地替换，
+     * Set及不可修改的List、Map返回包含脱敏后元素的新集合
+     *
+     * @param entity    实体类|普通对象
+     * @param packClass 需脱敏的实体类对象外层包装类
+     * @param <T>       实体类类型
+     * @return 对实体类进行脱敏，返回原来的实体类对象，record类型返回脱敏后的新对象
+     * @throws IllegalAccessException 非法访问异常
+     */
+    @SuppressWarnings("unchecked")
     public static <T> T acquire(final T entity, final Class<?> packClass) throws IllegalAccessException {
         if (JavaBeanUtils.isFinal(entity)) {
             return entity;
         }
         if (entity instanceof Collection) {
-            for (Object o : (Collection<?>) entity) {
-                acquire(o, packClass);
-            }
+            return (T) doGetCollection((Collection<?>) entity, packClass, null, true);
         } else if (entity instanceof Map) {
-            for (Map.Entry<?, ?> entry : ((Map<?, ?>) entity).entrySet()) {
-                acquire(entry.getValue(), packClass);
-            }
+            return (T) doGetMap(null, (Map<?, ?>) entity, packClass, true);
         } else if (entity.getClass().isArray()) {
             if (!entity.getClass().getComponentType().isPrimitive()) {
-                for (Object v : (Object[]) entity) {
-                    acquire(v, packClass);
+                Object[] arrays = (Object[]) entity;
+                for (int i = 0; i < arrays.length; i++) {
+                    setElement(arrays, i, acquire(arrays[i], packClass));
                 }
             }
-        } else if (entity.getClass().isAnnotationPresent(JsonSensitive.class)) {
-            doSetField(entity);
-        } else if (Objects.nonNull(packClass) && entity.getClass().isAssignableFrom(packClass)) {
+        } else if (entity.getClass().isAnnotationPresent(JsonSensitive.class)
+                || (Objects.nonNull(packClass) && entity.getClass().isAssignableFrom(packClass))) {
+            if (entity.getClass().isRecord()) {
+                return doSetRecord(entity);
+            }
             doSetField(entity);
         }
         return entity;
@@ -83,12 +258,8 @@ public class DeSensitiveUtils {
      * @throws IllegalAccessException 非法访问异常
      */
     protected static <T> void doSetField(final T entity) throws IllegalAccessException {
-        Field[] fields = FieldUtils.getAllFields(entity.getClass());
+        Field[] fields = SensitivePlan.of(entity.getClass()).getFields();
         for (Field field : fields) {
-            if (JavaBeanUtils.isModifierFinal(field)) {
-                continue;
-            }
-            field.setAccessible(true);
             Object value = field.get(entity);
             if (checkNullValue(field, value)) {
                 doGetEntityNull(field, entity, value);
@@ -103,12 +274,105 @@ public class DeSensitiveUtils {
             } else if (value.getClass().isArray()) {
                 doGetEntityArray(field, entity, value);
             } else {
-                acquire(value, null);
+                Object masked = acquire(value, null);
+                if (masked != value) {
+                    setField(field, entity, masked);
+                }
             }
         }
         doGetEntityFlex(entity);
     }
 
+    /**
+     * 对record对象的组件进行脱敏，组件值通过缓存的访问器读取，如有组件值变化则通过规范构造器创建新的record对象
+     *
+     * @param entity record对象
+     * @param <T>    record类型
+     * @return 脱敏后的record对象，没有组件值变化则返回原对象
+     * @throws IllegalAccessException 非法访问异常
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T> T doSetRecord(final T entity) throws IllegalAccessException {
+        SensitivePlan plan = SensitivePlan.of(entity.getClass());
+        Field[] fields = plan.getComponentFields();
+        Object[] values = plan.getComponentValues(entity);
+        boolean changed = false;
+        for (int i = 0; i < fields.length; i++) {
+            Object masked = doGetRecordValue(fields[i], values[i]);
+            if (masked != values[i]) {
+                values[i] = masked;
+                changed = true;
+            }
+        }
+        changed |= doGetRecordFlex(plan, values);
+        return changed ? (T) plan.newRecord(values) : entity;
+    }
+
+    /**
+     * 获取record单个组件脱敏后的值，record不可修改，集合、Map、数组中有元素变化时返回新的集合、Map、数组，不修改原组件值
+     *
+     * @param field 组件对应的属性对象
+     * @param value 组件值
+     * @return 脱敏后的组件值
+     * @throws IllegalAccessException 非法访问异常
+     */
+    protected static Object doGetRecordValue(final Field field, final Object value) throws IllegalAccessException {
+        if (checkNullValue(field, value)) {
+            return null;
+        }
+        if (value instanceof String) {
+            if (field.isAnnotationPresent(JsonSimField.class)) {
+                return DataMaskUtils.doGetProperty((String) value, field.getAnnotation(JsonSimField.class).value());
+            }
+            return value;
+        } else if (value instanceof Collection<?> collection) {
+            return doGetCollection(collection, null, simType(field), false);
+        } else if (value instanceof Map<?, ?> map) {
+            return doGetMap(field, map, null, false);
+        } else if (value.getClass().isArray()) {
+            if (value.getClass().getComponentType().isPrimitive()) {
+                return value;
+            }
+            Object[] copy = ((Object[]) value).clone();
+            doGetEntityArray(field, null, copy);
+            return Arrays.equals(copy, (Object[]) value) ? value : copy;
+        }
+        return acquire(value, null);
+    }
+
+    /**
+     * 对record对象的灵活复杂类型组件脱敏
+     *
+     * @param plan   record脱敏计划
+     * @param values 按组件顺序排列的组件值，脱敏后的值直接写回
+     * @return true-有组件值变化，false-无变化
+     */
+    protected static boolean doGetRecordFlex(final SensitivePlan plan, final Object[] values) {
+        boolean changed = false;
+        Field[] fields = plan.getComponentFields();
+        for (int i = 0; i < fields.length; i++) {
+            JsonFlexField jsonFlexField = fields[i].getAnnotation(JsonFlexField.class);
+            if (Objects.isNull(jsonFlexField) || Objects.isNull(values[i])) {
+                continue;
+            }
+            int flexIndex = plan.indexOfComponent(jsonFlexField.value());
+            if (flexIndex < 0 || !(values[flexIndex] instanceof String flexValue)) {
+                continue;
+            }
+            int index = Arrays.asList(jsonFlexField.keys()).indexOf(values[i]);
+            if (index < 0) {
+                continue;
+            }
+            SensitiveType type = SensitiveType.DEFAULT;
+            if (index <= jsonFlexField.types().length - 1) {
+                type = jsonFlexField.types()[index];
+            }
+            values[flexIndex] = DataMaskUtils.doGetProperty(flexValue, type);
+            changed = true;
+        }
+        return changed;
+    }
+
     /**
      * 判定Field字段值是否置为null
      * -------------------------------------------
@@ -141,7 +405,7 @@ public class DeSensitiveUtils {
      */
     @SuppressWarnings("unused")
     protected static <T> void doGetEntityNull(final Field field, final T entity, final Object value) throws IllegalAccessException {
-        field.set(entity, null);
+        setField(field, entity, null);
     }
 
     /**
@@ -155,7 +419,7 @@ public class DeSensitiveUtils {
      */
     protected static <T> void doGetEntityStr(final Field field, final T entity, final Object value) throws IllegalAccessException {
         if (field.isAnnotationPresent(JsonSimField.class)) {
-            field.set(entity, DataMaskUtils.doGetProperty((String) value, field.getAnnotation(JsonSimField.class).value()));
+            setField(field, entity, DataMaskUtils.doGetProperty((String) value, field.getAnnotation(JsonSimField.class).value()));
         } else {
             acquire(value, null);
         }
@@ -171,22 +435,63 @@ public class DeSensitiveUtils {
      * @throws IllegalAccessException 抛出非法访问异常
      */
     protected static <T> void doGetEntityColl(final Field field, final T entity, final Object value) throws IllegalAccessException {
-        Collection<Object> list = null;
-        Collection<?> collection = ((Collection<?>) value);
-        for (Object v : collection) {
+        Collection<?> masked = doGetCollection((Collection<?>) value, null, simType(field), false);
+        if (masked != value) {
+            setField(field, entity, masked);
+        }
+    }
+
+    /**
+     * 对集合中的元素脱敏，元素都没有变化时返回原集合
+     * -------------------------------------------
+     * 1.字符串元素按指定的脱敏类型脱敏，未指定类型时不脱敏；
+     * 2.其它元素递归脱敏，record元素被替换为脱敏后的新对象；
+     * 3.原地修改时可修改的List逐个替换元素，Set及不可修改的List返回新集合（Set为LinkedHashSet，其它为ArrayList），
+     * Set中的元素脱敏后hash值改变，不能原地替换
+     * -------------------------------------------
+     *
+     * @param collection 集合
+     * @param packClass  需脱敏的实体类对象外层包装类
+     * @param type       字符串元素的脱敏类型，为null时字符串元素不脱敏
+     * @param inPlace    是否原地修改可修改的List
+     * @return 脱敏后的集合
+     * @throws IllegalAccessException 非法访问异常
+     */
+    @SuppressWarnings("unchecked")
+    protected static Collection<?> doGetCollection(final Collection<?> collection, final Class<?> packClass, final SensitiveType type,
+                                                   final boolean inPlace) throws IllegalAccessException {
+        Object[] elements = collection.toArray();
+        boolean changed = false;
+        for (int i = 0; i < elements.length; i++) {
+            Object v = elements[i];
             if (Objects.isNull(v)) {
                 continue;
             }
-            if ((v instanceof String) && field.isAnnotationPresent(JsonSimField.class)) {
-                list = (list == null) ? new ArrayList<>() : list;
-                list.add(DataMaskUtils.doGetProperty((String) v, field.getAnnotation(JsonSimField.class).value()));
-            } else {
-                acquire(v, null);
+            Object masked = (v instanceof String) ? ((type == null) ? v : DataMaskUtils.doGetProperty((String) v, type)) : acquire(v, packClass);
+            if (masked != v) {
+                elements[i] = masked;
+                changed = true;
             }
         }
-        if (Objects.nonNull(list)) {
-            field.set(entity, list);
+        if (!changed) {
+            return collection;
         }
+        if (inPlace && collection instanceof List) {
+            List<Object> list = (List<Object>) collection;
+            try {
+                for (int i = 0; i < elements.length; i++) {
+                    if (list.get(i) != elements[i]) {
+                        Object previous = list.set(i, elements[i]);
+                        int index = i;
+                        logUndo(() -> list.set(index, previous));
+                    }
+                }
+                return list;
+            } catch (UnsupportedOperationException exception) {
+                // 不可修改的List（如List.of），第一次替换即失败，没有修改任何元素
+            }
+        }
+        return (collection instanceof Set) ? new LinkedHashSet<>(Arrays.asList(elements)) : new ArrayList<>(Arrays.asList(elements));
     }
 
     /**
@@ -198,36 +503,97 @@ public class DeSensitiveUtils {
      * @param <T>    实体类类型
      * @throws IllegalAccessException 抛出非法访问异常
      */
-    @SuppressWarnings("unused")
     protected static <T> void doGetEntityMap(final Field field, final T entity, final Object value) throws IllegalAccessException {
-        @SuppressWarnings("unchecked")
-        Map<Object, Object> dMap = (Map<Object, Object>) value;
-        for (Map.Entry<Object, Object> entry : dMap.entrySet()) {
+        Map<?, ?> masked = doGetMap(field, (Map<?, ?>) value, null, true);
+        if (masked != value) {
+            setField(field, entity, masked);
+        }
+    }
+
+    /**
+     * 对Map中的值脱敏，值都没有变化时返回原Map
+     * -------------------------------------------
+     * 1.字符串值按字段的{@link JsonSimField}或{@link JsonMapField}注解脱敏，field为null时不脱敏；
+     * 2.其它值递归脱敏，record值被替换为脱敏后的新对象；
+     * 3.原地修改时可修改的Map直接替换值，不可修改的Map（如Map.of）返回新的LinkedHashMap
+     * -------------------------------------------
+     *
+     * @param field     Map对应的属性对象
+     * @param map       Map对象
+     * @param packClass 需脱敏的实体类对象外层包装类
+     * @param inPlace   是否原地修改可修改的Map
+     * @return 脱敏后的Map
+     * @throws IllegalAccessException 非法访问异常
+     */
+    @SuppressWarnings("unchecked")
+    protected static Map<?, ?> doGetMap(final Field field, final Map<?, ?> map, final Class<?> packClass, final boolean inPlace)
+            throws IllegalAccessException {
+        Map<Object, Object> changes = null;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
             Object key = entry.getKey();
             Object v = entry.getValue();
             if (Objects.isNull(v)) {
                 continue;
             }
-            if (v instanceof String) {
-                if (field.isAnnotationPresent(JsonSimField.class)) {
-                    dMap.put(key, DataMaskUtils.doGetProperty((String) v, field.getAnnotation(JsonSimField.class).value()));
-                    continue;
-                } else if (field.isAnnotationPresent(JsonMapField.class)) {
-                    JsonMapField jsonMapField = field.getAnnotation(JsonMapField.class);
-                    int index = (key instanceof String) ? Arrays.asList(jsonMapField.value()).indexOf(key) : -1;
-                    if (index < 0) {
-                        continue;
-                    }
-                    SensitiveType type = SensitiveType.DEFAULT;
-                    if (index <= jsonMapField.types().length - 1) {
-                        type = jsonMapField.types()[index];
-                    }
-                    dMap.put(key, DataMaskUtils.doGetProperty((String) v, type));
-                    continue;
+            Object masked = (v instanceof String) ? doGetMapStr(field, key, (String) v) : acquire(v, packClass);
+            if (masked != v) {
+                changes = (changes == null) ? new LinkedHashMap<>() : changes;
+                changes.put(key, masked);
+            }
+        }
+        if (changes == null) {
+            return map;
+        }
+        if (inPlace) {
+            try {
+                Map<Object, Object> target = (Map<Object, Object>) map;
+                Map<Object, Object> previous = new LinkedHashMap<>();
+                for (Object key : changes.keySet()) {
+                    previous.put(key, target.get(key));
                 }
+                target.putAll(changes);
+                logUndo(() -> target.putAll(previous));
+                return map;
+            } catch (UnsupportedOperationException exception) {
+                // 不可修改的Map，返回新Map
             }
-            acquire(value, null);
         }
+        Map<Object, Object> copy = new LinkedHashMap<>(map);
+        copy.putAll(changes);
+        return copy;
+    }
+
+    /**
+     * @return Map中字符串值按字段注解脱敏后的值，没有对应注解时返回原值
+     */
+    private static String doGetMapStr(final Field field, final Object key, final String value) {
+        if (field == null) {
+            return value;
+        }
+        if (field.isAnnotationPresent(JsonSimField.class)) {
+            return DataMaskUtils.doGetProperty(value, field.getAnnotation(JsonSimField.class).value());
+        }
+        JsonMapField jsonMapField = field.getAnnotation(JsonMapField.class);
+        if (jsonMapField == null) {
+            return value;
+        }
+        int index = (key instanceof String) ? Arrays.asList(jsonMapField.value()).indexOf(key) : -1;
+        if (index < 0) {
+            return value;
+        }
+        SensitiveType type = SensitiveType.DEFAULT;
+        if (index <= jsonMapField.types().length - 1) {
+            type = jsonMapField.types()[index];
+        }
+        return DataMaskUtils.doGetProperty(value, type);
+    }
+
+    /**
+     * @return 字段{@link JsonSimField}注解的脱敏类型，没有注解时返回null
+     */
+    private static SensitiveType simType(final Field field) {
+        JsonSimField jsonSimField = field.getAnnotation(JsonSimField.class);
+        return (jsonSimField == null) ? null : jsonSimField.value();
     }
 
     /**
@@ -251,9 +617,9 @@ public class DeSensitiveUtils {
                 continue;
             }
             if ((v instanceof String) && field.isAnnotationPresent(JsonSimField.class)) {
-                arrays[i] = DataMaskUtils.doGetProperty((String) v, field.getAnnotation(JsonSimField.class).value());
+                setElement(arrays, i, DataMaskUtils.doGetProperty((String) v, field.getAnnotation(JsonSimField.class).value()));
             } else {
-                acquire(value, null);
+                setElement(arrays, i, acquire(v, null));
             }
         }
     }
@@ -264,9 +630,10 @@ public class DeSensitiveUtils {
      * @throws IllegalAccessException 抛出非法访问异常
      */
     protected static <T> void doGetEntityFlex(final T entity) throws IllegalAccessException {
-        Field[] fields = FieldUtils.getFieldsWithAnnotation(entity.getClass(), JsonFlexField.class);
-        for (Field field : fields) {
-            field.setAccessible(true);
+        SensitivePlan plan = SensitivePlan.of(entity.getClass());
+        Field[] fields = plan.getFlexFields();
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
             Object value = field.get(entity);
             if (Objects.isNull(value)) {
                 continue;
@@ -275,7 +642,7 @@ public class DeSensitiveUtils {
             if (Objects.isNull(jsonFlexField.value())) {
                 return;
             }
-            Field flexField = FieldUtils.getField(entity.getClass(), jsonFlexField.value(), true);
+            Field flexField = plan.getFlexValueFields()[i];
             if (Objects.isNull(flexField)) {
                 return;
             }
@@ -291,7 +658,7 @@ public class DeSensitiveUtils {
             if (index <= jsonFlexField.types().length - 1) {
                 type = jsonFlexField.types()[index];
             }
-            flexField.set(entity, DataMaskUtils.doGetProperty((String) flexValue, type));
+            setField(flexField, entity, DataMaskUtils.doGetProperty((String) flexValue, type));
         }
     }
 }
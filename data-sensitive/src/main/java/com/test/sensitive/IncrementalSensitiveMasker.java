@@ -0,0 +1,277 @@
+package com.test.sensitive;
+
+
+import com.test.sensitive.annotation.JsonSensitive;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 增量镜像脱敏，适用于同一个实体被反复推送、每次只有少量字段变化的场景
+ * <p>
+ * 按实体标识key保存上一次的源字段值及脱敏结果，再次脱敏时只对值发生变化的字段重新脱敏，
+ * 未变化的字段及嵌套实体直接复用上一次的脱敏结果；如果所有字段都未发生变化，则返回上一次的镜像对象。
+ * 返回结果与{@link SensitiveUtils}结构相同，返回的镜像对象可能在多次调用间共享，因此是不可修改的Map。
+ * -------------------------------------------
+ * 增量规则：
+ * 1.字符串、数值、枚举等值对象字段，按equals比较；
+ * 2.标记{@link JsonSensitive}的嵌套实体字段，递归按字段增量比较；
+ * 3.元素都是值对象的集合、Map、数组字段，按浅拷贝内容比较，否则每次都重新脱敏；
+ * 4.其它类型字段每次都重新脱敏；
+ * -------------------------------------------
+ *
+ * @param <K> 实体标识类型
+ * @author Emily
+ * @since :  Created in 2026/10/19 2:20 PM
+ */
+public class IncrementalSensitiveMasker<K> {
+
+    /**
+     * 实体标识与上一次脱敏快照的映射
+     */
+    private final ConcurrentMap<K, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 增量脱敏，脱敏过程中如果发生异常，则原样返回
+     *
+     * @param key    实体标识，如实体ID
+     * @param entity 脱敏实体类对象
+     * @return 脱敏后的数据
+     */
+    public Object acquireElseGet(final K key, final Object entity) {
+        return acquireElseGet(key, entity, null);
+    }
+
+    /**
+     * 增量脱敏，支持指定外层包装类，脱敏过程中如果发生异常，则原样返回
+     *
+     * @param key       实体标识，如实体ID
+     * @param entity    脱敏实体类对象
+     * @param packClass 需脱敏的实体类对象外层包装类
+     * @return 脱敏后的数据
+     */
+    public Object acquireElseGet(final K key, final Object entity, final Class<?> packClass) {
+        try {
+            return acquire(key, entity, packClass);
+        } catch (Exception exception) {
+            return entity;
+        }
+    }
+
+    /**
+     * 增量脱敏，实体类对象以外的数据（集合、Map、数组等）不保存快照，按{@link SensitiveUtils}全量脱敏
+     *
+     * @param key       实体标识，如实体ID
+     * @param entity    脱敏实体类对象
+     * @param packClass 需脱敏的实体类对象外层包装类
+     * @return 脱敏后的数据
+     * @throws IllegalAccessException 抛出非法访问异常
+     */
+    public Object acquire(final K key, final Object entity, final Class<?> packClass) throws IllegalAccessException {
+        if (!isSensitiveEntity(entity, packClass)) {
+            snapshots.remove(key);
+            return SensitiveUtils.acquire(entity, packClass);
+        }
+        // 快照不可变，同一个key并发推送时以最后写入的快照为准，不影响脱敏结果的正确性
+        Snapshot snapshot = doGetSnapshot(snapshots.get(key), entity);
+        snapshots.put(key, snapshot);
+        return snapshot.mirror;
+    }
+
+    /**
+     * 移除指定实体的脱敏快照，下次脱敏时全量脱敏
+     *
+     * @param key 实体标识
+     */
+    public void remove(final K key) {
+        snapshots.remove(key);
+    }
+
+    /**
+     * 清空所有实体的脱敏快照
+     */
+    public void clear() {
+        snapshots.clear();
+    }
+
+    /**
+     * @return 当前保存的快照数量
+     */
+    public int size() {
+        return snapshots.size();
+    }
+
+    /**
+     * 与上一次快照逐字段比较，生成新的脱敏快照
+     *
+     * @param previous 上一次的快照，可以为null
+     * @param entity   实体类对象
+     * @return 脱敏快照
+     * @throws IllegalAccessException 抛出非法访问异常
+     */
+    protected Snapshot doGetSnapshot(Snapshot previous, final Object entity) throws IllegalAccessException {
+        SensitivePlan plan = SensitivePlan.of(entity.getClass());
+        if (previous != null && previous.type != plan.getType()) {
+            previous = null;
+        }
+        // record类型通过缓存的组件访问器读取组件值
+        Field[] fields = plan.isRecord() ? plan.getComponentFields() : plan.getFields();
+        Object[] values = plan.isRecord() ? plan.getComponentValues(entity) : null;
+        Object[] sources = new Object[fields.length];
+        Object[] masked = new Object[fields.length];
+        Snapshot[] children = null;
+        boolean changed = (previous == null);
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            Object value = (values != null) ? values[i] : field.get(entity);
+            if (SensitiveUtils.checkNullValue(field, value)) {
+                masked[i] = null;
+            } else if (JavaBeanUtils.isFinal(value)) {
+                sources[i] = value;
+                if (previous != null && Objects.equals(value, previous.sources[i])) {
+                    masked[i] = previous.masked[i];
+                } else if (value instanceof String) {
+                    masked[i] = SensitiveUtils.doGetEntityStr(field, value);
+                } else {
+                    masked[i] = value;
+                }
+            } else if (isSensitiveEntity(value, null)) {
+                Snapshot child = doGetSnapshot(previous == null ? null : previous.getChild(i), value);
+                children = (children == null) ? new Snapshot[fields.length] : children;
+                children[i] = child;
+                masked[i] = child.mirror;
+            } else if (value instanceof Collection || value instanceof Map || value.getClass().isArray()) {
+                // 只有元素都是值对象时才保存浅拷贝，嵌套实体可能被原地修改，无法通过比较得出是否变化
+                Object copy = doGetFlatCopy(value);
+                if (copy != null && previous != null && Objects.deepEquals(copy, previous.sources[i])) {
+                    masked[i] = previous.masked[i];
+                } else if (value instanceof Collection) {
+                    masked[i] = SensitiveUtils.doGetEntityColl(field, value);
+                } else if (value instanceof Map) {
+                    masked[i] = SensitiveUtils.doGetEntityMap(field, value);
+                } else {
+                    masked[i] = SensitiveUtils.doGetEntityArray(field, value);
+                }
+                sources[i] = copy;
+            } else {
+                masked[i] = SensitiveUtils.acquire(value, null);
+            }
+            if (!changed && masked[i] != previous.masked[i]) {
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return previous;
+        }
+        Map<String, Object> mirror = new HashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            mirror.put(fields[i].getName(), masked[i]);
+        }
+        mirror.putAll(SensitiveUtils.doGetEntityFlex(entity));
+        // 镜像在多次推送间共享，包装为不可修改，避免调用方修改后污染之后的脱敏结果
+        return new Snapshot(plan.getType(), sources, masked, children, Collections.unmodifiableMap(mirror));
+    }
+
+    /**
+     * 判定是否按实体类对象逐字段脱敏，与{@link SensitiveUtils#acquire(Object, Class)}的判定规则保持一致
+     *
+     * @param entity    实体类对象
+     * @param packClass 需脱敏的实体类对象外层包装类
+     * @return true-实体类对象，false-其它
+     */
+    protected static boolean isSensitiveEntity(final Object entity, final Class<?> packClass) {
+        if (JavaBeanUtils.isFinal(entity)
+                || entity instanceof Collection
+                || entity instanceof Map
+                || entity.getClass().isArray()) {
+            return false;
+        }
+        return entity.getClass().isAnnotationPresent(JsonSensitive.class)
+                || (Objects.nonNull(packClass) && entity.getClass().isAssignableFrom(packClass));
+    }
+
+    /**
+     * 对元素都是值对象的集合、Map、数组做浅拷贝，用于下次比较
+     *
+     * @param value 集合、Map、数组对象
+     * @return 浅拷贝对象，如果包含非值对象元素则返回null
+     */
+    protected static Object doGetFlatCopy(final Object value) {
+        if (value instanceof Collection<?> collection) {
+            List<Object> copy = new ArrayList<>(collection);
+            for (Object v : copy) {
+                if (!JavaBeanUtils.isFinal(v)) {
+                    return null;
+                }
+            }
+            return copy;
+        } else if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new HashMap<>(map);
+            for (Object v : copy.values()) {
+                if (!JavaBeanUtils.isFinal(v)) {
+                    return null;
+                }
+            }
+            return copy;
+        } else if (value.getClass().getComponentType().isPrimitive()) {
+            // 原始类型数组不脱敏，镜像中直接引用原数组
+            return null;
+        }
+        Object[] copy = ((Object[]) value).clone();
+        for (Object v : copy) {
+            if (!JavaBeanUtils.isFinal(v)) {
+                return null;
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * 单个实体的脱敏快照，创建后不可变
+     */
+    protected static final class Snapshot {
+
+        /**
+         * 实体类类型，类型变化时全量脱敏
+         */
+        private final Class<?> type;
+
+        /**
+         * 按字段顺序保存的源字段值，集合类型保存浅拷贝，无法比较的字段为null
+         */
+        private final Object[] sources;
+
+        /**
+         * 按字段顺序保存的脱敏后字段值
+         */
+        private final Object[] masked;
+
+        /**
+         * 按字段顺序保存的嵌套实体快照，没有嵌套实体时为null
+         */
+        private final Snapshot[] children;
+
+        /**
+         * 脱敏后的镜像对象
+         */
+        private final Map<String, Object> mirror;
+
+        private Snapshot(Class<?> type, Object[] sources, Object[] masked, Snapshot[] children, Map<String, Object> mirror) {
+            this.type = type;
+            this.sources = sources;
+            this.masked = masked;
+            this.children = children;
+            this.mirror = mirror;
+        }
+
+        private Snapshot getChild(int index) {
+            return (children == null) ? null : children[index];
+        }
+
+        public Map<String, Object> getMirror() {
+            return mirror;
+        }
+    }
+}
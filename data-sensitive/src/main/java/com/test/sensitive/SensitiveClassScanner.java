@@ -0,0 +1,103 @@
+package com.test.sensitive;
+
+
+import com.test.sensitive.annotation.JsonSensitive;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 扫描指定包下标记{@link JsonSensitive}注解的类，支持目录及jar包两种类路径
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 6:05 PM
+ */
+final class SensitiveClassScanner {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private SensitiveClassScanner() {
+    }
+
+    /**
+     * 扫描指定包（包含子包）下标记{@link JsonSensitive}注解的类，加载类时不执行静态初始化
+     *
+     * @param basePackage 包名，如com.test.model
+     * @param classLoader 类加载器
+     * @return 标记脱敏注解的类
+     * @throws IOException 读取类路径异常
+     */
+    static List<Class<?>> scan(String basePackage, ClassLoader classLoader) throws IOException {
+        String path = basePackage.replace('.', '/');
+        Set<String> classNames = new TreeSet<>();
+        Enumeration<URL> resources = classLoader.getResources(path);
+        while (resources.hasMoreElements()) {
+            URL url = resources.nextElement();
+            URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection jarConnection) {
+                jarConnection.setUseCaches(false);
+                try (JarFile jarFile = jarConnection.getJarFile()) {
+                    scanJar(jarFile, path, classNames);
+                }
+            } else if ("file".equals(url.getProtocol())) {
+                scanDirectory(toFile(url), basePackage, classNames);
+            }
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        for (String className : classNames) {
+            try {
+                Class<?> type = Class.forName(className, false, classLoader);
+                if (type.isAnnotationPresent(JsonSensitive.class)) {
+                    classes.add(type);
+                }
+            } catch (ClassNotFoundException | LinkageError ignored) {
+                // 依赖缺失的类无法加载，跳过
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * 按URI解码文件路径，URLDecoder按表单解码会把目录名中的+解码为空格
+     */
+    private static File toFile(URL url) throws IOException {
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Invalid class path " + url, e);
+        }
+    }
+
+    private static void scanDirectory(File directory, String packageName, Set<String> classNames) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                scanDirectory(file, packageName + "." + name, classNames);
+            } else if (name.endsWith(CLASS_SUFFIX) && !name.equals("module-info.class") && !name.equals("package-info.class")) {
+                classNames.add(packageName + "." + name.substring(0, name.length() - CLASS_SUFFIX.length()));
+            }
+        }
+    }
+
+    private static void scanJar(JarFile jarFile, String path, Set<String> classNames) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith(path + "/") && name.endsWith(CLASS_SUFFIX)
+                    && !name.endsWith("module-info.class") && !name.endsWith("package-info.class")) {
+                classNames.add(name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'));
+            }
+        }
+    }
+}
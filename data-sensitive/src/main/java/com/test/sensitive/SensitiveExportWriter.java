@@ -0,0 +1,411 @@
+package com.test.sensitive;
+
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大批量导出脱敏写入器，脱敏结果按UTF-8编码直接写入堆外缓冲区，缓冲区写满后整块刷出到{@link WritableByteChannel}
+ * <p>
+ * 脱敏规则与{@link DataMaskUtils#doGetProperty(String, SensitiveType)}保持一致，但不创建脱敏后的中间字符串，
+ * 每行数据的堆内存分配接近于零，适用于千万级数据导出场景；默认大小的堆外缓冲区在关闭后归还缓冲池复用。
+ * <pre>{@code
+ * try (FileChannel channel = FileChannel.open(path, CREATE, WRITE);
+ *      SensitiveExportWriter writer = new SensitiveExportWriter(channel)) {
+ *     for (People people : rows) {
+ *         writer.write(people.getId()).write(',')
+ *               .write(people.getPhone(), SensitiveType.PHONE).newLine();
+ *     }
+ * }
+ * }</pre>
+ * 非线程安全，每个导出任务使用独立的写入器；关闭写入器不会关闭底层通道。
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 4:40 PM
+ */
+public class SensitiveExportWriter implements Flushable, Closeable {
+
+    /**
+     * 默认缓冲区大小1MB
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * 缓冲池最多保留的缓冲区个数
+     */
+    private static final int MAXIMUM_POOLED_BUFFERS = 16;
+
+    /**
+     * 单个字符UTF-8编码后的最大字节数（代理对）
+     */
+    private static final int MAXIMUM_CHAR_BYTES = 4;
+
+    private static final Queue<ByteBuffer> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger POOLED_BUFFERS = new AtomicInteger();
+
+    private final WritableByteChannel channel;
+
+    private ByteBuffer buffer;
+
+    public SensitiveExportWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel    输出通道
+     * @param bufferSize 缓冲区大小，只有默认大小的缓冲区才会被缓冲池复用
+     */
+    public SensitiveExportWriter(WritableByteChannel channel, int bufferSize) {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel must not be null");
+        }
+        if (bufferSize < MAXIMUM_CHAR_BYTES) {
+            throw new IllegalArgumentException("Buffer size must not be less than " + MAXIMUM_CHAR_BYTES);
+        }
+        this.channel = channel;
+        this.buffer = acquireBuffer(bufferSize);
+    }
+
+    /**
+     * 按脱敏类型写入脱敏后的值，值为null时不写入任何内容
+     *
+     * @param value 字段值
+     * @param type  脱敏类型
+     * @return 写入器
+     * @throws IOException 写入通道异常
+     */
+    public SensitiveExportWriter write(CharSequence value, SensitiveType type) throws IOException {
+        if (value == null || value.length() == 0) {
+            return this;
+        }
+        if (type == null) {
+            type = SensitiveType.DEFAULT;
+        }
+        switch (type) {
+            case PHONE -> writePhoneNumber(value, 0);
+            case ID_CARD -> writeIdCard(value);
+            case BANK_CARD -> writeBankCard(value);
+            case EMAIL -> writeEmail(value);
+            case USERNAME -> writeChineseName(value);
+            case ADDRESS -> writeAddress(value);
+            default -> write(DataMaskUtils.PLACE_HOLDER);
+        }
+        return this;
+    }
+
+    /**
+     * 原样写入字符串，值为null时不写入任何内容
+     *
+     * @param value 字段值
+     * @return 写入器
+     * @throws IOException 写入通道异常
+     */
+    public SensitiveExportWriter write(CharSequence value) throws IOException {
+        if (value != null) {
+            writeRange(value, 0, value.length());
+        }
+        return this;
+    }
+
+    /**
+     * 写入单个字符，如分隔符
+     *
+     * @param c 字符
+     * @return 写入器
+     * @throws IOException 写入通道异常
+     */
+    public SensitiveExportWriter write(char c) throws IOException {
+        ensureRemaining(MAXIMUM_CHAR_BYTES);
+        encode(c);
+        return this;
+    }
+
+    /**
+     * 按十进制写入数值，不创建中间字符串
+     *
+     * @param value 数值
+     * @return 写入器
+     * @throws IOException 写入通道异常
+     */
+    public SensitiveExportWriter write(long value) throws IOException {
+        // long最多19位数字加负号
+        ensureRemaining(20);
+        if (value == Long.MIN_VALUE) {
+            // 取反溢出，单独处理
+            buffer.put((byte) '-').put((byte) '9');
+            value = 223372036854775808L;
+        } else if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + (value / divisor) % 10));
+        }
+        return this;
+    }
+
+    /**
+     * 写入换行符
+     *
+     * @return 写入器
+     * @throws IOException 写入通道异常
+     */
+    public SensitiveExportWriter newLine() throws IOException {
+        return write('\n');
+    }
+
+    /**
+     * 将缓冲区中的数据全部写出到通道
+     *
+     * @throws IOException 写入通道异常
+     */
+    @Override
+    public void flush() throws IOException {
+        ByteBuffer buf = requireOpen();
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * 刷出剩余数据并归还缓冲区，不关闭底层通道
+     *
+     * @throws IOException 写入通道异常
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            releaseBuffer(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * 中文姓名，见{@link DataMaskUtils#maskChineseName(String)}
+     */
+    private void writeChineseName(CharSequence value) throws IOException {
+        int len = value.length();
+        if (len == 1) {
+            writeRange(value, 0, len);
+            return;
+        }
+        writeRange(value, 0, 1);
+        writeStars(len - 1);
+    }
+
+    /**
+     * 身份证号，见{@link DataMaskUtils#maskIdCard(String)}
+     */
+    private void writeIdCard(CharSequence value) throws IOException {
+        int len = value.length();
+        if (len == 15) {
+            writeMasked(value, 3, 8, 11);
+        } else if (len == 18) {
+            writeMasked(value, 3, 11, 14);
+        } else {
+            writeMiddleTwoPortions(value, 0);
+        }
+    }
+
+    /**
+     * 手机号，见{@link DataMaskUtils#maskPhoneNumber(String)}
+     *
+     * @param offset 手机号在value中的起始位置，用于跳过区号
+     */
+    private void writePhoneNumber(CharSequence value, int offset) throws IOException {
+        int len = value.length() - offset;
+        if (len == 11) {
+            writeRange(value, offset, offset + 3);
+            writeStars(5);
+            writeRange(value, offset + 7, value.length());
+        } else if (len == 14) {
+            writeRange(value, offset, offset + 3);
+            writePhoneNumber(value, offset + 3);
+        } else if (len == 15) {
+            writeRange(value, offset, offset + 4);
+            writePhoneNumber(value, offset + 4);
+        } else if (len >= 4) {
+            writeMiddleTwoPortions(value, offset);
+        } else {
+            writeRange(value, offset, value.length());
+        }
+    }
+
+    /**
+     * 四等分中间两份隐藏，见{@link DataMaskUtils#maskMiddleTwoPortions(String)}
+     *
+     * @param offset 待脱敏部分在value中的起始位置
+     */
+    private void writeMiddleTwoPortions(CharSequence value, int offset) throws IOException {
+        int quarter = (value.length() - offset) / 4;
+        writeRange(value, offset, offset + quarter);
+        writeStars(quarter * 2);
+        writeRange(value, offset + quarter * 3, value.length());
+    }
+
+    /**
+     * 地址，见{@link DataMaskUtils#maskAddress(String, int)}
+     */
+    private void writeAddress(CharSequence value) throws IOException {
+        int len = value.length();
+        if (len < 3) {
+            writeRange(value, 0, len);
+            return;
+        }
+        writeRange(value, 0, len / 3);
+        writeStars(len - len / 3);
+    }
+
+    /**
+     * 邮箱，见{@link DataMaskUtils#maskEmail(String)}
+     */
+    private void writeEmail(CharSequence value) throws IOException {
+        int index = -1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '@') {
+                index = i;
+                break;
+            }
+        }
+        if (index < 1) {
+            writeRange(value, 0, value.length());
+        } else if (index < 2) {
+            writeMasked(value, index, 3, index);
+        } else {
+            writeRange(value, 0, 1);
+            writeStars(3);
+            writeRange(value, index - 1, value.length());
+        }
+    }
+
+    /**
+     * 银行卡号，见{@link DataMaskUtils#maskBankCard(String)}
+     */
+    private void writeBankCard(CharSequence value) throws IOException {
+        int len = value.length();
+        if (len <= 10) {
+            writeMiddleTwoPortions(value, 0);
+        } else {
+            writeMasked(value, 6, len - 10, len - 4);
+        }
+    }
+
+    /**
+     * 写入前缀、星号及后缀
+     *
+     * @param head  前缀结束位置
+     * @param stars 星号个数
+     * @param tail  后缀起始位置
+     */
+    private void writeMasked(CharSequence value, int head, int stars, int tail) throws IOException {
+        writeRange(value, 0, head);
+        writeStars(stars);
+        writeRange(value, tail, value.length());
+    }
+
+    private void writeStars(int count) throws IOException {
+        ByteBuffer buf = requireOpen();
+        while (count > 0) {
+            if (!buf.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(count, buf.remaining());
+            for (int i = 0; i < n; i++) {
+                buf.put((byte) '*');
+            }
+            count -= n;
+        }
+    }
+
+    /**
+     * 按UTF-8编码写入[from, to)区间的字符，与{@link String#getBytes(java.nio.charset.Charset)}一致，
+     * 不成对的代理字符写为'?'
+     */
+    private void writeRange(CharSequence value, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            ensureRemaining(MAXIMUM_CHAR_BYTES);
+            char c = value.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)))
+                        .put((byte) (0x80 | ((codePoint >> 12) & 0x3F)))
+                        .put((byte) (0x80 | ((codePoint >> 6) & 0x3F)))
+                        .put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    /**
+     * 编码单个非代理对字符，调用前需保证缓冲区剩余空间足够
+     */
+    private void encode(char c) {
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | (c >> 6)))
+                    .put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isSurrogate(c)) {
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xE0 | (c >> 12)))
+                    .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                    .put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (requireOpen().remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private ByteBuffer requireOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Writer closed");
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer acquireBuffer(int bufferSize) {
+        if (bufferSize == DEFAULT_BUFFER_SIZE) {
+            ByteBuffer pooled = BUFFER_POOL.poll();
+            if (pooled != null) {
+                POOLED_BUFFERS.decrementAndGet();
+                return pooled;
+            }
+        }
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        if (buffer.capacity() != DEFAULT_BUFFER_SIZE) {
+            return;
+        }
+        if (POOLED_BUFFERS.incrementAndGet() > MAXIMUM_POOLED_BUFFERS) {
+            POOLED_BUFFERS.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        BUFFER_POOL.offer(buffer);
+    }
+}
@@ -0,0 +1,102 @@
+package com.test.sensitive;
+
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 已脱敏实体标记，按对象引用（非equals）记录已经脱敏或正在脱敏的实体，防止多个线程重复脱敏同一个实体
+ * <p>
+ * 标记以弱引用保存，实体被回收后标记自动清除；标记值为脱敏完成信号，不持有实体本身
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 7:10 PM
+ */
+final class SensitiveMarks {
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+    private static final ConcurrentMap<IdentityKey, CompletableFuture<Void>> MARKS = new ConcurrentHashMap<>();
+
+    private SensitiveMarks() {
+    }
+
+    /**
+     * 为实体添加脱敏标记
+     *
+     * @param entity 实体对象
+     * @param mark   当前线程的脱敏完成信号
+     * @return null-标记成功，当前线程负责脱敏；否则返回其它线程已添加的脱敏完成信号
+     */
+    static CompletableFuture<Void> putIfAbsent(Object entity, CompletableFuture<Void> mark) {
+        purge();
+        return MARKS.putIfAbsent(new IdentityKey(entity, QUEUE), mark);
+    }
+
+    /**
+     * 移除实体的脱敏标记
+     *
+     * @param entity 实体对象
+     * @param mark   脱敏完成信号，为null时无条件移除
+     */
+    static void remove(Object entity, CompletableFuture<Void> mark) {
+        IdentityKey key = new IdentityKey(entity, null);
+        if (mark == null) {
+            MARKS.remove(key);
+        } else {
+            MARKS.remove(key, mark);
+        }
+    }
+
+    /**
+     * @param entity 实体对象
+     * @return 实体是否已有脱敏标记
+     */
+    static boolean contains(Object entity) {
+        return MARKS.containsKey(new IdentityKey(entity, null));
+    }
+
+    /**
+     * 清除已被回收实体的标记
+     */
+    private static void purge() {
+        Reference<?> reference;
+        while ((reference = QUEUE.poll()) != null) {
+            MARKS.remove(reference);
+        }
+    }
+
+    /**
+     * 按对象引用比较的弱引用key
+     */
+    private static final class IdentityKey extends WeakReference<Object> {
+
+        private final int hash;
+
+        private IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof IdentityKey that)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == that.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
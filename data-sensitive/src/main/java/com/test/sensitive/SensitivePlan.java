@@ -0,0 +1,262 @@
+package com.test.sensitive;
+
+
+import com.test.sensitive.annotation.JsonFlexField;
+import com.test.sensitive.annotation.JsonSensitive;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体类脱敏计划，按类型缓存需要参与脱敏的字段，避免每次脱敏都重新扫描类结构
+ * <p>
+ * record类型的字段都是final的，无法通过反射修改，因此额外缓存组件访问器及规范构造器的{@link MethodHandle}，
+ * 读取组件值、重建脱敏后的record对象时不再走反射
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 2:15 PM
+ */
+final class SensitivePlan {
+
+    private static final ClassValue<SensitivePlan> PLANS = new ClassValue<>() {
+        @Override
+        protected SensitivePlan computeValue(Class<?> type) {
+            SensitivePlan plan = new SensitivePlan(type);
+            SEEN_CLASSES.add(type.getName());
+            return plan;
+        }
+    };
+
+    /**
+     * 已经解析过脱敏计划的类名，用于导出后在下次启动时预热
+     */
+    private static final Set<String> SEEN_CLASSES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 实体类类型
+     */
+    private final Class<?> type;
+
+    /**
+     * 参与脱敏的字段（包含父类字段），已过滤final、static、transient等修饰的字段并设置为可访问
+     */
+    private final Field[] fields;
+
+    /**
+     * record类型组件对应的字段，用于读取组件上的脱敏注解，非record类型为空数组
+     */
+    private final Field[] componentFields;
+
+    /**
+     * record类型组件访问器，类型统一为(Object)Object
+     */
+    private final MethodHandle[] accessors;
+
+    /**
+     * record类型规范构造器，类型统一为(Object[])Object，非record类型为null
+     */
+    private final MethodHandle constructor;
+
+    /**
+     * 标记{@link JsonFlexField}注解的字段，已设置为可访问
+     */
+    private final Field[] flexFields;
+
+    /**
+     * 与{@code flexFields}一一对应的值字段，值字段不存在时为null
+     */
+    private final Field[] flexValueFields;
+
+    private SensitivePlan(Class<?> type) {
+        this.type = type;
+        List<Field> list = new ArrayList<>();
+        for (Field field : FieldUtils.getAllFields(type)) {
+            if (JavaBeanUtils.isModifierFinal(field)) {
+                continue;
+            }
+            field.setAccessible(true);
+            list.add(field);
+        }
+        this.fields = list.toArray(new Field[0]);
+        this.flexFields = FieldUtils.getFieldsWithAnnotation(type, JsonFlexField.class);
+        this.flexValueFields = new Field[flexFields.length];
+        for (int i = 0; i < flexFields.length; i++) {
+            flexFields[i].setAccessible(true);
+            flexValueFields[i] = FieldUtils.getField(type, flexFields[i].getAnnotation(JsonFlexField.class).value(), true);
+        }
+        if (type.isRecord()) {
+            RecordComponent[] components = type.getRecordComponents();
+            this.componentFields = new Field[components.length];
+            this.accessors = new MethodHandle[components.length];
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                for (int i = 0; i < components.length; i++) {
+                    this.componentFields[i] = type.getDeclaredField(components[i].getName());
+                    Method accessor = components[i].getAccessor();
+                    accessor.setAccessible(true);
+                    this.accessors[i] = lookup.unreflect(accessor).asType(MethodType.methodType(Object.class, Object.class));
+                    parameterTypes[i] = components[i].getType();
+                }
+                Constructor<?> canonical = type.getDeclaredConstructor(parameterTypes);
+                canonical.setAccessible(true);
+                this.constructor = lookup.unreflectConstructor(canonical)
+                        .asType(MethodType.genericMethodType(components.length))
+                        .asSpreader(Object[].class, components.length);
+            } catch (NoSuchFieldException | NoSuchMethodException | IllegalAccessException exception) {
+                throw new IllegalStateException("Unable to resolve record components of " + type.getName(), exception);
+            }
+        } else {
+            this.componentFields = new Field[0];
+            this.accessors = new MethodHandle[0];
+            this.constructor = null;
+        }
+    }
+
+    /**
+     * 获取指定类型的脱敏计划，每个类型只解析一次
+     *
+     * @param type 实体类类型
+     * @return 脱敏计划
+     */
+    static SensitivePlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /**
+     * 预热指定类型及其字段中引用的所有脱敏实体类型的脱敏计划
+     * <p>
+     * 字段类型、泛型参数、数组元素类型中标记{@link JsonSensitive}的类型都会被预热，
+     * sealed类型会继续预热其允许的子类型
+     *
+     * @param type 实体类类型
+     */
+    static void preload(Class<?> type) {
+        Deque<Class<?>> pending = new ArrayDeque<>();
+        Set<Class<?>> visited = new HashSet<>();
+        pending.push(type);
+        while (!pending.isEmpty()) {
+            Class<?> current = pending.pop();
+            if (!visited.add(current) || current.isPrimitive() || current.getName().startsWith("java.")) {
+                continue;
+            }
+            if (current.isSealed()) {
+                Collections.addAll(pending, current.getPermittedSubclasses());
+            }
+            if (current != type && !current.isAnnotationPresent(JsonSensitive.class)) {
+                continue;
+            }
+            SensitivePlan plan = of(current);
+            for (Field field : plan.fields) {
+                collectTypes(field.getGenericType(), pending);
+            }
+            for (Field field : plan.componentFields) {
+                collectTypes(field.getGenericType(), pending);
+            }
+        }
+    }
+
+    private static void collectTypes(Type type, Deque<Class<?>> pending) {
+        if (type instanceof Class<?> clazz) {
+            pending.push(clazz.isArray() ? clazz.getComponentType() : clazz);
+        } else if (type instanceof ParameterizedType parameterizedType) {
+            collectTypes(parameterizedType.getRawType(), pending);
+            for (Type argument : parameterizedType.getActualTypeArguments()) {
+                collectTypes(argument, pending);
+            }
+        } else if (type instanceof GenericArrayType arrayType) {
+            collectTypes(arrayType.getGenericComponentType(), pending);
+        } else if (type instanceof WildcardType wildcardType) {
+            for (Type bound : wildcardType.getUpperBounds()) {
+                collectTypes(bound, pending);
+            }
+        }
+    }
+
+    /**
+     * @return 已经解析过脱敏计划的类名
+     */
+    static Set<String> getSeenClasses() {
+        return Collections.unmodifiableSet(new TreeSet<>(SEEN_CLASSES));
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    Field[] getFields() {
+        return fields;
+    }
+
+    boolean isRecord() {
+        return constructor != null;
+    }
+
+    Field[] getComponentFields() {
+        return componentFields;
+    }
+
+    Field[] getFlexFields() {
+        return flexFields;
+    }
+
+    Field[] getFlexValueFields() {
+        return flexValueFields;
+    }
+
+    /**
+     * 获取record组件名对应的下标
+     *
+     * @param name 组件名
+     * @return 组件下标，不存在返回-1
+     */
+    int indexOfComponent(String name) {
+        for (int i = 0; i < componentFields.length; i++) {
+            if (componentFields[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按组件顺序读取record对象的所有组件值
+     *
+     * @param record record对象
+     * @return 组件值数组
+     */
+    Object[] getComponentValues(Object record) {
+        Object[] values = new Object[accessors.length];
+        try {
+            for (int i = 0; i < accessors.length; i++) {
+                values[i] = (Object) accessors[i].invokeExact(record);
+            }
+        } catch (RuntimeException | Error exception) {
+            throw exception;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+        return values;
+    }
+
+    /**
+     * 通过规范构造器创建新的record对象
+     *
+     * @param values 按组件顺序排列的组件值
+     * @return 新的record对象
+     */
+    Object newRecord(Object[] values) {
+        try {
+            return (Object) constructor.invokeExact(values);
+        } catch (RuntimeException | Error exception) {
+            throw exception;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+    }
+}
@@ -2,13 +2,21 @@ package com.test.sensitive;
 
 
 import com.test.sensitive.annotation.*;
-import org.apache.commons.lang3.reflect.FieldUtils;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * 对实体类镜像脱敏，返回结构相同的非同一个对象
+ * <p>
+ * 实体类的脱敏计划按类型缓存，可在应用启动时通过{@link #preload(Class[])}、{@link #preloadPackage(String)}
+ * 或{@link #importSeenClasses(Path)}提前预热
  *
  * @author Emily
  * @since :  Created in 2022/7/19 3:13 下午
@@ -41,6 +49,129 @@ public class SensitiveUtils {
         }
     }
 
+    /**
+     * 预热指定实体类的脱敏计划，避免应用启动后首次脱敏时解析类结构导致的耗时抖动；
+     * 字段类型、泛型参数、数组元素中引用的脱敏实体类型会一并预热
+     *
+     * @param types 实体类类型
+     */
+    public static void preload(final Class<?>... types) {
+        for (Class<?> type : types) {
+            SensitivePlan.preload(type);
+        }
+    }
+
+    /**
+     * 在指定的fork/join线程池中并行预热实体类的脱敏计划，阻塞至全部预热完成
+     *
+     * @param pool  fork/join线程池
+     * @param types 实体类类型
+     */
+    public static void preload(final ForkJoinPool pool, final Class<?>... types) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(types.length);
+        for (Class<?> type : types) {
+            tasks.add(ForkJoinTask.adapt(() -> SensitivePlan.preload(type)));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(tasks);
+        }));
+    }
+
+    /**
+     * 扫描指定包（包含子包）下标记{@link JsonSensitive}注解的类并预热脱敏计划
+     *
+     * @param basePackage 包名
+     * @return 扫描到的实体类
+     * @throws IOException 读取类路径异常
+     */
+    public static List<Class<?>> preloadPackage(final String basePackage) throws IOException {
+        List<Class<?>> types = SensitiveClassScanner.scan(basePackage, getDefaultClassLoader());
+        preload(types.toArray(new Class<?>[0]));
+        return types;
+    }
+
+    /**
+     * 扫描指定包（包含子包）下标记{@link JsonSensitive}注解的类，在指定的fork/join线程池中并行预热脱敏计划
+     *
+     * @param pool        fork/join线程池
+     * @param basePackage 包名
+     * @return 扫描到的实体类
+     * @throws IOException 读取类路径异常
+     */
+    public static List<Class<?>> preloadPackage(final ForkJoinPool pool, final String basePackage) throws IOException {
+        List<Class<?>> types = SensitiveClassScanner.scan(basePackage, getDefaultClassLoader());
+        preload(pool, types.toArray(new Class<?>[0]));
+        return types;
+    }
+
+    /**
+     * 获取运行期间已经解析过脱敏计划的类名
+     *
+     * @return 按类名排序的只读集合
+     */
+    public static Set<String> getSeenClasses() {
+        return SensitivePlan.getSeenClasses();
+    }
+
+    /**
+     * 导出运行期间已经解析过脱敏计划的类名，每行一个，供下次启动时通过{@link #importSeenClasses(Path)}预热
+     *
+     * @param path 导出文件路径
+     * @throws IOException 写文件异常
+     */
+    public static void exportSeenClasses(final Path path) throws IOException {
+        Files.write(path, getSeenClasses(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 导入{@link #exportSeenClasses(Path)}导出的类名并预热脱敏计划，已不存在的类忽略
+     *
+     * @param path 导出文件路径
+     * @return 预热的类数量
+     * @throws IOException 读文件异常
+     */
+    public static int importSeenClasses(final Path path) throws IOException {
+        Class<?>[] types = loadClasses(Files.readAllLines(path, StandardCharsets.UTF_8));
+        preload(types);
+        return types.length;
+    }
+
+    /**
+     * 导入{@link #exportSeenClasses(Path)}导出的类名，在指定的fork/join线程池中并行预热脱敏计划，已不存在的类忽略
+     *
+     * @param pool fork/join线程池
+     * @param path 导出文件路径
+     * @return 预热的类数量
+     * @throws IOException 读文件异常
+     */
+    public static int importSeenClasses(final ForkJoinPool pool, final Path path) throws IOException {
+        Class<?>[] types = loadClasses(Files.readAllLines(path, StandardCharsets.UTF_8));
+        preload(pool, types);
+        return types.length;
+    }
+
+    private static Class<?>[] loadClasses(final List<String> classNames) {
+        ClassLoader classLoader = getDefaultClassLoader();
+        List<Class<?>> types = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            className = className.trim();
+            if (className.isEmpty() || className.startsWith("#")) {
+                continue;
+            }
+            try {
+                types.add(Class.forName(className, false, classLoader));
+            } catch (ClassNotFoundException | LinkageError ignored) {
+                // 类已被删除或重命名，跳过
+            }
+        }
+        return types.toArray(new Class<?>[0]);
+    }
+
+    private static ClassLoader getDefaultClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return (classLoader != null) ? classLoader : SensitiveUtils.class.getClassLoader();
+    }
+
     /**
      * 对实体类镜像脱敏，返回结构相同的非同一个对象
      *
@@ -93,35 +224,62 @@ public class SensitiveUtils {
      * @return 实体类属性脱敏后的集合对象
      */
     protected static Map<String, Object> doSetField(final Object entity) throws IllegalAccessException {
+        if (entity.getClass().isRecord()) {
+            return doSetRecord(entity);
+        }
         Map<String, Object> fieldMap = new HashMap<>();
-        Field[] fields = FieldUtils.getAllFields(entity.getClass());
+        Field[] fields = SensitivePlan.of(entity.getClass()).getFields();
         for (Field field : fields) {
-            if (JavaBeanUtils.isModifierFinal(field)) {
-                continue;
-            }
-            field.setAccessible(true);
-            String name = field.getName();
-            Object value = field.get(entity);
-            if (checkNullValue(field, value)) {
-                fieldMap.put(name, null);
-                continue;
-            }
-            if (value instanceof String) {
-                fieldMap.put(name, doGetEntityStr(field, value));
-            } else if (value instanceof Collection) {
-                fieldMap.put(name, doGetEntityColl(field, value));
-            } else if (value instanceof Map) {
-                fieldMap.put(name, doGetEntityMap(field, value));
-            } else if (value.getClass().isArray()) {
-                fieldMap.put(name, doGetEntityArray(field, value));
-            } else {
-                fieldMap.put(name, acquire(value, null));
-            }
+            fieldMap.put(field.getName(), doGetFieldValue(field, field.get(entity)));
         }
         fieldMap.putAll(doGetEntityFlex(entity));
         return fieldMap;
     }
 
+    /**
+     * 获取record对象脱敏后的对象，组件值通过缓存的访问器读取
+     *
+     * @param entity 需要脱敏的record对象
+     * @return record组件脱敏后的集合对象
+     * @throws IllegalAccessException 抛出非法访问异常
+     */
+    protected static Map<String, Object> doSetRecord(final Object entity) throws IllegalAccessException {
+        Map<String, Object> fieldMap = new HashMap<>();
+        SensitivePlan plan = SensitivePlan.of(entity.getClass());
+        Field[] fields = plan.getComponentFields();
+        Object[] values = plan.getComponentValues(entity);
+        for (int i = 0; i < fields.length; i++) {
+            fieldMap.put(fields[i].getName(), doGetFieldValue(fields[i], values[i]));
+        }
+        fieldMap.putAll(doGetEntityFlex(entity));
+        return fieldMap;
+    }
+
+    /**
+     * 获取单个属性脱敏后的值
+     *
+     * @param field 实体类属性对象
+     * @param value 属性值
+     * @return 脱敏后的数据对象
+     * @throws IllegalAccessException 抛出非法访问异常
+     */
+    protected static Object doGetFieldValue(final Field field, final Object value) throws IllegalAccessException {
+        if (checkNullValue(field, value)) {
+            return null;
+        }
+        if (value instanceof String) {
+            return doGetEntityStr(field, value);
+        } else if (value instanceof Collection) {
+            return doGetEntityColl(field, value);
+        } else if (value instanceof Map) {
+            return doGetEntityMap(field, value);
+        } else if (value.getClass().isArray()) {
+            return doGetEntityArray(field, value);
+        } else {
+            return acquire(value, null);
+        }
+    }
+
     /**
      * 判定Field字段值是否置为null
      * -------------------------------------------
@@ -251,9 +409,10 @@ public class SensitiveUtils {
      */
     protected static Map<String, Object> doGetEntityFlex(final Object entity) throws IllegalAccessException {
         Map<String, Object> flexFieldMap = null;
-        Field[] fields = FieldUtils.getFieldsWithAnnotation(entity.getClass(), JsonFlexField.class);
-        for (Field field : fields) {
-            field.setAccessible(true);
+        SensitivePlan plan = SensitivePlan.of(entity.getClass());
+        Field[] fields = plan.getFlexFields();
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
             Object value = field.get(entity);
             if (Objects.isNull(value)) {
                 continue;
@@ -262,7 +421,7 @@ public class SensitiveUtils {
             if (Objects.isNull(jsonFlexField.value())) {
                 continue;
             }
-            Field flexField = FieldUtils.getField(entity.getClass(), jsonFlexField.value(), true);
+            Field flexField = plan.getFlexValueFields()[i];
             if (Objects.isNull(flexField)) {
                 continue;
             }
@@ -1,13 +1,21 @@
 package com.test.sensitive;
 
 import com.test.sensitive.model.BaseResponse;
+import com.test.sensitive.model.FragilePeople;
 import com.test.sensitive.model.People;
 import com.test.sensitive.model.PeopleMap;
+import com.test.sensitive.model.PeopleRecord;
 import com.test.sensitive.model.PubResponse;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.*;
 
 /**
  * 实体类对象脱敏单元测试
@@ -89,4 +97,137 @@ public class DeSensitiveUtilsTest {
         BaseResponse<PubResponse> response2 = DeSensitiveUtils.acquireElseGet(r, BaseResponse.class);
         Assertions.assertEquals(response2.getData().email, "1***9@qq.com");
     }
+
+    @Test
+    public void recordTest() {
+        PeopleRecord people = new PeopleRecord("孙少平", "ssp", List.of("1563919868@qq.com"), "phone", "1563919868",
+                "测试null", 18, new PeopleRecord.Contact("18221120687"));
+        PeopleRecord p = DeSensitiveUtils.acquireElseGet(people);
+        Assertions.assertNotSame(p, people);
+        Assertions.assertEquals(p.username(), "孙**");
+        Assertions.assertEquals(p.password(), "ssp");
+        Assertions.assertEquals(p.emails(), List.of("1***8@qq.com"));
+        Assertions.assertEquals(p.value(), "15****9868");
+        Assertions.assertNull(p.str());
+        Assertions.assertEquals(p.age(), 18);
+        Assertions.assertEquals(p.contact().phone(), "182*****0687");
+        Assertions.assertEquals(people.username(), "孙少平");
+
+        PeopleRecord.Holder holder = new PeopleRecord.Holder();
+        holder.people = people;
+        holder.contacts = new ArrayList<>(List.of(new PeopleRecord.Contact("18221120687")));
+        PeopleRecord.Holder h = DeSensitiveUtils.acquireElseGet(holder);
+        Assertions.assertSame(h, holder);
+        Assertions.assertEquals(h.people.username(), "孙**");
+        Assertions.assertEquals(h.contacts.get(0).phone(), "182*****0687");
+    }
+
+    @Test
+    public void recordContainerComponentTest() {
+        Map<String, String> byName = new HashMap<>(Map.of("k", "18221120687"));
+        String[] numbers = {"18221120687"};
+        PeopleRecord.Phones phones = new PeopleRecord.Phones(byName, numbers);
+        PeopleRecord.Phones p = DeSensitiveUtils.acquireElseGet(phones);
+        Assertions.assertNotSame(p, phones);
+        Assertions.assertEquals(p.byName().get("k"), "182*****0687");
+        Assertions.assertEquals(p.numbers()[0], "182*****0687");
+        Assertions.assertEquals(phones.byName().get("k"), "18221120687");
+        Assertions.assertEquals(phones.numbers()[0], "18221120687");
+
+        PeopleRecord.Phones immutable = new PeopleRecord.Phones(Map.of("k", "18221120687"), null);
+        p = DeSensitiveUtils.acquireElseGet(immutable);
+        Assertions.assertEquals(p.byName().get("k"), "182*****0687");
+        Assertions.assertEquals(immutable.byName().get("k"), "18221120687");
+    }
+
+    @Test
+    public void recordInImmutableContainerTest() {
+        PeopleRecord.Contact contact = new PeopleRecord.Contact("18221120687");
+        PeopleRecord.Holder holder = new PeopleRecord.Holder();
+        holder.contacts = List.of(contact);
+        holder.contactSet = Set.of(contact);
+        holder.contactMap = Map.of("a", contact);
+        PeopleRecord.Holder h = DeSensitiveUtils.acquireElseGet(holder);
+        Assertions.assertEquals(h.contacts.get(0).phone(), "182*****0687");
+        Assertions.assertEquals(h.contactSet.iterator().next().phone(), "182*****0687");
+        Assertions.assertEquals(h.contactMap.get("a").phone(), "182*****0687");
+
+        Set<PeopleRecord.Contact> set = DeSensitiveUtils.acquireElseGet(Set.of(contact));
+        Assertions.assertEquals(set, Set.of(new PeopleRecord.Contact("182*****0687")));
+        List<PeopleRecord.Contact> list = DeSensitiveUtils.acquireElseGet(List.of(contact));
+        Assertions.assertEquals(list, List.of(new PeopleRecord.Contact("182*****0687")));
+        Map<String, PeopleRecord.Contact> map = DeSensitiveUtils.acquireElseGet(Map.of("a", contact));
+        Assertions.assertEquals(map, Map.of("a", new PeopleRecord.Contact("182*****0687")));
+
+        List<PeopleRecord.Contact> mutable = new ArrayList<>(List.of(contact));
+        Assertions.assertSame(DeSensitiveUtils.acquireElseGet(mutable), mutable);
+        Assertions.assertEquals(mutable.get(0).phone(), "182*****0687");
+    }
+
+    @Test
+    public void acquireOnceTest() throws Exception {
+        PubResponse response = new PubResponse();
+        response.phone = "18254452658";
+        response.email = "1393619859@qq.com";
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            List<Future<PubResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(() -> {
+                    latch.await();
+                    return DeSensitiveUtils.acquireOnceElseGet(response);
+                }));
+            }
+            latch.countDown();
+            for (Future<PubResponse> future : futures) {
+                PubResponse p = future.get(10, TimeUnit.SECONDS);
+                Assertions.assertSame(p, response);
+                Assertions.assertEquals(p.phone, "182*****2658");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertTrue(DeSensitiveUtils.isMarked(response));
+        DeSensitiveUtils.acquireOnceElseGet(response);
+        Assertions.assertEquals(response.phone, "182*****2658");
+        Assertions.assertEquals(response.email, "1***9@qq.com");
+
+        DeSensitiveUtils.reset(response);
+        Assertions.assertFalse(DeSensitiveUtils.isMarked(response));
+        response.phone = "18221120687";
+        DeSensitiveUtils.acquireOnceElseGet(response);
+        Assertions.assertEquals(response.phone, "182*****0687");
+    }
+
+    @Test
+    public void acquireOnceFailureTest() throws Exception {
+        FragilePeople people = new FragilePeople();
+        people.phone = "18221120687";
+        people.phones = new TreeSet<>(List.of("18254452658"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            List<Future<FragilePeople>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    latch.await();
+                    return DeSensitiveUtils.acquireOnce(people, null);
+                }));
+            }
+            latch.countDown();
+            for (Future<FragilePeople> future : futures) {
+                ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+                Assertions.assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // 失败时撤销已脱敏的字段，重试不会重复脱敏
+        Assertions.assertFalse(DeSensitiveUtils.isMarked(people));
+        Assertions.assertEquals(people.phone, "18221120687");
+        Assertions.assertEquals(people.phones, Set.of("18254452658"));
+        Assertions.assertSame(DeSensitiveUtils.acquireOnceElseGet(people), people);
+        Assertions.assertEquals(people.phone, "18221120687");
+    }
 }
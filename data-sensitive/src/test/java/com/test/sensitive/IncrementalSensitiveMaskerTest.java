@@ -0,0 +1,103 @@
+package com.test.sensitive;
+
+import com.test.sensitive.model.People;
+import com.test.sensitive.model.PubResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+/**
+ * 增量镜像脱敏单元测试
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 3:05 PM
+ */
+public class IncrementalSensitiveMaskerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void unchangedEntityTest() {
+        IncrementalSensitiveMasker<String> masker = new IncrementalSensitiveMasker<>();
+        PubResponse response = newResponse();
+        Map<String, Object> first = (Map<String, Object>) masker.acquireElseGet("1", response);
+        Map<String, Object> second = (Map<String, Object>) masker.acquireElseGet("1", response);
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(first, SensitiveUtils.acquireElseGet(response));
+        Assertions.assertEquals(first.get("phone"), "182*****2658");
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.put("phone", "18254452658"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> ((Map<String, Object>) first.get("job")).clear());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void changedFieldTest() {
+        IncrementalSensitiveMasker<String> masker = new IncrementalSensitiveMasker<>();
+        PubResponse response = newResponse();
+        Map<String, Object> first = (Map<String, Object>) masker.acquireElseGet("1", response);
+        response.phone = "18254450000";
+        Map<String, Object> second = (Map<String, Object>) masker.acquireElseGet("1", response);
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(first.get("phone"), "182*****2658");
+        Assertions.assertEquals(second.get("phone"), "182*****0000");
+        Assertions.assertSame(first.get("email"), second.get("email"));
+        Assertions.assertSame(first.get("job"), second.get("job"));
+        Assertions.assertEquals(second, SensitiveUtils.acquireElseGet(response));
+
+        response.job.email = "1563919868@qq.com";
+        Map<String, Object> third = (Map<String, Object>) masker.acquireElseGet("1", response);
+        Assertions.assertNotSame(second.get("job"), third.get("job"));
+        Assertions.assertEquals(((Map<String, Object>) third.get("job")).get("email"), "1***8@qq.com");
+        Assertions.assertEquals(third, SensitiveUtils.acquireElseGet(response));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void flexFieldTest() {
+        IncrementalSensitiveMasker<Integer> masker = new IncrementalSensitiveMasker<>();
+        People people = new People();
+        people.setKey("email");
+        people.setValue("1563919868@qq.com");
+        Map<String, Object> first = (Map<String, Object>) masker.acquireElseGet(1, people);
+        Assertions.assertEquals(first.get("value"), "1***8@qq.com");
+
+        people.setKey("phone");
+        people.setValue("1563919868");
+        Map<String, Object> second = (Map<String, Object>) masker.acquireElseGet(1, people);
+        Assertions.assertEquals(second.get("value"), "15****9868");
+
+        people.setKey("other");
+        Map<String, Object> third = (Map<String, Object>) masker.acquireElseGet(1, people);
+        Assertions.assertEquals(third.get("value"), "1563919868");
+        Assertions.assertEquals(third, SensitiveUtils.acquireElseGet(people));
+    }
+
+    @Test
+    public void removeTest() {
+        IncrementalSensitiveMasker<String> masker = new IncrementalSensitiveMasker<>();
+        PubResponse response = newResponse();
+        Object first = masker.acquireElseGet("1", response);
+        Assertions.assertEquals(masker.size(), 1);
+        masker.remove("1");
+        Assertions.assertEquals(masker.size(), 0);
+        Object second = masker.acquireElseGet("1", response);
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(first, second);
+    }
+
+    private static PubResponse newResponse() {
+        PubResponse response = new PubResponse();
+        response.password = "32433";
+        response.username = "条消息";
+        response.email = "1393619859@qq.com";
+        response.idCard = "321455188625645686";
+        response.bankCard = "325648956125656666";
+        response.phone = "18254452658";
+        response.mobile = "1234567";
+        PubResponse.Job job = new PubResponse.Job();
+        job.email = "1393619859@qq.com";
+        job.work = "呵呵哈哈哈";
+        response.job = job;
+        return response;
+    }
+}
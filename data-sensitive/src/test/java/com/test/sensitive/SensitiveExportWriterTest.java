@@ -0,0 +1,54 @@
+package com.test.sensitive;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 大批量导出脱敏写入器单元测试
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 5:20 PM
+ */
+public class SensitiveExportWriterTest {
+
+    private static final List<String> VALUES = List.of("1", "12", "123", "1234", "12345", "123456", "1234567",
+            "12345678", "123456789", "1234567890", "123456789012", "1234567890123456", "62270010000000000000",
+            "18221120687", "08518221120687", "008618221120687", "412822185703252531", "412822185703252",
+            "孙玉婷", "孙", "@qq.com", "1@qq.com", "12@qq.com", "1234567890@qq.com", "上海市徐汇区宛平南路186号美罗城4层",
+            "北京市海淀区人民大会堂", "😀😀😀😀😀😀");
+
+    @Test
+    public void maskTest() throws IOException {
+        for (SensitiveType type : SensitiveType.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            StringBuilder expected = new StringBuilder();
+            // 使用较小的缓冲区，覆盖跨缓冲区刷出的场景
+            try (SensitiveExportWriter writer = new SensitiveExportWriter(Channels.newChannel(out), 16)) {
+                for (String value : VALUES) {
+                    writer.write(value, type).write(',');
+                    expected.append(DataMaskUtils.doGetProperty(value, type)).append(',');
+                }
+            }
+            Assertions.assertEquals(out.toString(StandardCharsets.UTF_8),
+                    new String(expected.toString().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), type.name());
+        }
+    }
+
+    @Test
+    public void rawTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SensitiveExportWriter writer = new SensitiveExportWriter(Channels.newChannel(out))) {
+            writer.write(0).write(',').write(-15).write(',').write(Long.MAX_VALUE).write(',').write(Long.MIN_VALUE).newLine();
+            writer.write("孙少平").write(',').write((CharSequence) null).write("18221120687", SensitiveType.PHONE).newLine();
+        }
+        Assertions.assertEquals(out.toString(StandardCharsets.UTF_8),
+                "0,-15," + Long.MAX_VALUE + "," + Long.MIN_VALUE + "\n孙少平,182*****0687\n");
+    }
+}
@@ -3,14 +3,25 @@ package com.test.sensitive;
 import com.test.sensitive.model.BaseResponse;
 import com.test.sensitive.model.People;
 import com.test.sensitive.model.PeopleMap;
+import com.test.sensitive.model.PeopleRecord;
 import com.test.sensitive.model.PubResponse;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 /**
  * 单元测试
@@ -94,4 +105,59 @@ public class SensitiveUtilsTest {
         Map<String, Object> response2 = (Map<String, Object>) SensitiveUtils.acquireElseGet(r, BaseResponse.class);
         Assertions.assertEquals(((Map<String, Object>) response2.get("data")).get("email"), "1***9@qq.com");
     }
+
+    @Test
+    public void recordTest() {
+        PeopleRecord people = new PeopleRecord("孙少平", "ssp", List.of("1563919868@qq.com"), "phone", "1563919868",
+                "测试null", 18, new PeopleRecord.Contact("18221120687"));
+        Map<String, Object> map = (Map<String, Object>) SensitiveUtils.acquireElseGet(people);
+        Assertions.assertEquals(map.get("username"), "孙**");
+        Assertions.assertEquals(map.get("password"), "ssp");
+        Assertions.assertEquals(map.get("emails"), List.of("1***8@qq.com"));
+        Assertions.assertEquals(map.get("value"), "15****9868");
+        Assertions.assertNull(map.get("str"));
+        Assertions.assertEquals(map.get("age"), 18);
+        Assertions.assertEquals(((Map<String, Object>) map.get("contact")).get("phone"), "182*****0687");
+    }
+
+    @Test
+    public void preloadTest(@TempDir Path dir) throws IOException {
+        SensitiveUtils.preload(PubResponse.class);
+        Assertions.assertTrue(SensitiveUtils.getSeenClasses().contains(PubResponse.class.getName()));
+        Assertions.assertTrue(SensitiveUtils.getSeenClasses().contains(PubResponse.Job.class.getName()));
+
+        List<Class<?>> types = SensitiveUtils.preloadPackage(ForkJoinPool.commonPool(), "com.test.sensitive.model");
+        Assertions.assertTrue(types.containsAll(List.of(People.class, PeopleMap.class, PeopleRecord.class, PeopleRecord.Contact.class)));
+        Assertions.assertFalse(SensitiveUtils.getSeenClasses().contains(PeopleMap.SubMap.class.getName()));
+
+        Path path = dir.resolve("sensitive-classes.txt");
+        SensitiveUtils.exportSeenClasses(path);
+        Files.writeString(path, "com.test.sensitive.model.Removed\n", StandardOpenOption.APPEND);
+        Assertions.assertEquals(SensitiveUtils.importSeenClasses(path), SensitiveUtils.getSeenClasses().size());
+    }
+
+    /**
+     * 类路径目录名包含+时也能扫描到类
+     */
+    @Test
+    public void scanPlusDirectoryTest(@TempDir Path dir) throws Exception {
+        Path source = Path.of(People.class.getProtectionDomain().getCodeSource().getLocation().toURI()).resolve("com/test/sensitive/model");
+        Path target = Files.createDirectories(dir.resolve("a+b/com/test/sensitive/model"));
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, target.resolve(file.getFileName().toString()));
+            }
+        }
+        // 只从复制的目录查找包资源，类仍由父加载器加载
+        URL[] urls = {dir.resolve("a+b").toUri().toURL()};
+        try (URLClassLoader classLoader = new URLClassLoader(urls, getClass().getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                return findResources(name);
+            }
+        }) {
+            List<String> names = SensitiveClassScanner.scan("com.test.sensitive.model", classLoader).stream().map(Class::getName).toList();
+            Assertions.assertTrue(names.contains(People.class.getName()), names.toString());
+        }
+    }
 }
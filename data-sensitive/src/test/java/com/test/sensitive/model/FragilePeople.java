@@ -0,0 +1,21 @@
+package com.test.sensitive.model;
+
+import com.test.sensitive.SensitiveType;
+import com.test.sensitive.annotation.JsonSensitive;
+import com.test.sensitive.annotation.JsonSimField;
+
+import java.util.TreeSet;
+
+/**
+ * 脱敏到一半失败的实体类：TreeSet字段无法接收脱敏后的LinkedHashSet
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 5:20 PM
+ */
+@JsonSensitive
+public class FragilePeople {
+    @JsonSimField(SensitiveType.PHONE)
+    public String phone;
+    @JsonSimField(SensitiveType.PHONE)
+    public TreeSet<String> phones;
+}
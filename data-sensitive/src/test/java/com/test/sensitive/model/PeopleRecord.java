@@ -0,0 +1,52 @@
+package com.test.sensitive.model;
+
+
+import com.test.sensitive.SensitiveType;
+import com.test.sensitive.annotation.JsonFlexField;
+import com.test.sensitive.annotation.JsonNullField;
+import com.test.sensitive.annotation.JsonSensitive;
+import com.test.sensitive.annotation.JsonSimField;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * record类型
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 4:10 PM
+ */
+@JsonSensitive
+public record PeopleRecord(@JsonSimField(SensitiveType.USERNAME) String username,
+                           String password,
+                           @JsonSimField(SensitiveType.EMAIL) List<String> emails,
+                           @JsonFlexField(keys = {"email", "phone"}, value = "value", types = {SensitiveType.EMAIL, SensitiveType.PHONE}) String key,
+                           String value,
+                           @JsonNullField String str,
+                           @JsonNullField int age,
+                           Contact contact) {
+
+    @JsonSensitive
+    public record Contact(@JsonSimField(SensitiveType.PHONE) String phone) {
+    }
+
+    /**
+     * Map及数组类型组件
+     */
+    @JsonSensitive
+    public record Phones(@JsonSimField(SensitiveType.PHONE) Map<String, String> byName,
+                         @JsonSimField(SensitiveType.PHONE) String[] numbers) {
+    }
+
+    /**
+     * 持有record字段的普通实体类
+     */
+    @JsonSensitive
+    public static class Holder {
+        public PeopleRecord people;
+        public List<Contact> contacts;
+        public Set<Contact> contactSet;
+        public Map<String, Contact> contactMap;
+    }
+}
@@ -0,0 +1,408 @@
+package com.test.lang3.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 批量执行的工作窃取线程池，适用于大量极小（微秒级以下）的任务
+ * <p>
+ * 1.提交线程按线程id散列到多个有界环形队列之一，入队只需一次CAS，不加锁；
+ * 2.每个工作线程负责若干环形队列，一次CAS批量取出最多{@value #BATCH_SIZE}个任务，自己的队列为空时从其他队列窃取；
+ * 3.工作线程空闲时先自旋再挂起，提交线程只在有挂起的工作线程时才唤醒；
+ * 4.所有队列都满时由提交线程执行任务，以此限制提交速度；
+ * 5.传递提交线程的上下文，见{@link ContextPropagation}
+ * <p>
+ * 任务在工作线程中抛出的异常交给线程的{@link Thread.UncaughtExceptionHandler}处理，不会终止工作线程
+ *
+ * @see ExecutorServices#createBatchingExecutor(int, String)
+ */
+public class BatchingExecutor extends AbstractExecutorService {
+
+    /**
+     * 一次从自己的队列取出的最大任务数，窃取时取一半
+     */
+    static final int BATCH_SIZE = 64;
+
+    private static final int SPINS_BEFORE_PARK = 256;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Ring[] rings;
+    private final int ringMask;
+    private final Worker[] workers;
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    private final AtomicInteger liveWorkers;
+    /**
+     * 已提交未执行完的任务数，入队前加一，执行后减一，工作线程取出任务到开始执行之间也不会为0
+     */
+    private final AtomicLong inFlight = new AtomicLong();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown;
+    private volatile boolean stop;
+
+    /**
+     * @param parallelism   工作线程数
+     * @param ringCapacity  每个环形队列的容量，向上取整为2的n次方，至少为2
+     * @param threadFactory 线程工厂
+     */
+    public BatchingExecutor(int parallelism, int ringCapacity, ThreadFactory threadFactory) {
+        if (parallelism <= 0 || ringCapacity <= 0) {
+            throw new IllegalArgumentException(String.format("Illegal parallelism: %d or ringCapacity: %d", parallelism, ringCapacity));
+        }
+        Objects.requireNonNull(threadFactory, "threadFactory");
+        // 队列数不少于CPU核数，减少提交线程之间的竞争
+        int ringCount = ExecutorServices.tableSizeFor(Math.max(parallelism, Runtime.getRuntime().availableProcessors()), 1 << 16);
+        // 容量为1时槽位写满后的序号与可写序号相同，环形队列至少需要2个槽位
+        int capacity = ExecutorServices.tableSizeFor(Math.max(ringCapacity, 2), 1 << 30);
+        this.rings = new Ring[ringCount];
+        for (int i = 0; i < ringCount; i++) {
+            this.rings[i] = new Ring(capacity);
+        }
+        this.ringMask = ringCount - 1;
+        this.workers = new Worker[parallelism];
+        this.liveWorkers = new AtomicInteger(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            Worker worker = new Worker(i);
+            Thread thread = threadFactory.newThread(worker);
+            if (thread == null) {
+                throw new IllegalStateException("Thread factory did not create a thread");
+            }
+            worker.thread = thread;
+            this.workers[i] = worker;
+        }
+        for (Worker worker : this.workers) {
+            worker.thread.start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Objects.requireNonNull(command, "command");
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        command = ContextPropagation.wrap(command);
+        inFlight.incrementAndGet();
+        long id = Thread.currentThread().getId();
+        int start = ((int) (id ^ (id >>> 16)) * 0x9e3779b9) >>> 16;
+        for (int i = 0; i <= ringMask; i++) {
+            int index = (start + i) & ringMask;
+            if (rings[index].offer(command)) {
+                signalWork(index);
+                if (liveWorkers.get() == 0) {
+                    // 与shutdown并发，工作线程已全部退出，由提交线程执行残留任务
+                    runRemaining();
+                }
+                return;
+            }
+        }
+        try {
+            command.run();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void signalWork(int ringIndex) {
+        if (idleWorkers.get() == 0) {
+            return;
+        }
+        Worker owner = workers[ringIndex % workers.length];
+        if (owner.wake()) {
+            return;
+        }
+        for (Worker worker : workers) {
+            if (worker.wake()) {
+                return;
+            }
+        }
+    }
+
+    private void runRemaining() {
+        Runnable[] batch = new Runnable[BATCH_SIZE];
+        for (Ring ring : rings) {
+            int count;
+            while ((count = ring.drainTo(batch, BATCH_SIZE)) > 0) {
+                runBatch(batch, count);
+                inFlight.addAndGet(-count);
+            }
+        }
+    }
+
+    private static void runBatch(Runnable[] batch, int count) {
+        for (int i = 0; i < count; i++) {
+            Runnable task = batch[i];
+            batch[i] = null;
+            try {
+                task.run();
+            } catch (Throwable e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * @return 队列中等待执行的任务数（近似值）
+     */
+    public long getQueuedTaskCount() {
+        long count = 0;
+        for (Ring ring : rings) {
+            count += ring.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return 正在执行任务的工作线程数（近似值）
+     */
+    public int getActiveCount() {
+        int count = 0;
+        for (Worker worker : workers) {
+            if (worker.busy) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getParallelism() {
+        return workers.length;
+    }
+
+    /**
+     * @return 提交的任务都已执行完，包括队列中的、已被工作线程取出的及由提交线程执行的任务
+     */
+    public boolean isQuiescent() {
+        return inFlight.get() == 0;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers) {
+            worker.wake();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        stop = true;
+        shutdown();
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        List<Runnable> remaining = new ArrayList<>();
+        Runnable[] batch = new Runnable[BATCH_SIZE];
+        for (Ring ring : rings) {
+            int count;
+            while ((count = ring.drainTo(batch, BATCH_SIZE)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    remaining.add(ContextPropagation.unwrap(batch[i]));
+                    batch[i] = null;
+                }
+                inFlight.addAndGet(-count);
+            }
+        }
+        return remaining;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int index;
+        private final AtomicBoolean parked = new AtomicBoolean();
+        private final Runnable[] batch = new Runnable[BATCH_SIZE];
+        private volatile boolean busy;
+        private Thread thread;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int spins = 0;
+                while (!stop) {
+                    int count = poll();
+                    if (count > 0) {
+                        spins = 0;
+                        busy = true;
+                        runBatch(batch, count);
+                        busy = false;
+                        // 按批量减少，避免每个任务都竞争同一个计数器
+                        inFlight.addAndGet(-count);
+                    } else if (shutdown) {
+                        break;
+                    } else if (++spins < SPINS_BEFORE_PARK) {
+                        Thread.onSpinWait();
+                    } else {
+                        spins = 0;
+                        park();
+                    }
+                }
+            } finally {
+                if (liveWorkers.decrementAndGet() == 0) {
+                    // 最后退出的工作线程再检查一次，执行与shutdown并发提交的任务
+                    if (!stop) {
+                        runRemaining();
+                    }
+                    terminated.countDown();
+                }
+            }
+        }
+
+        /**
+         * 先取自己负责的队列，再从随机位置开始窃取其他队列的一半批量
+         */
+        private int poll() {
+            for (int i = index; i <= ringMask; i += workers.length) {
+                int count = rings[i].drainTo(batch, BATCH_SIZE);
+                if (count > 0) {
+                    return count;
+                }
+            }
+            int start = ThreadLocalRandom.current().nextInt(rings.length);
+            for (int i = 0; i <= ringMask; i++) {
+                int count = rings[(start + i) & ringMask].drainTo(batch, BATCH_SIZE >>> 1);
+                if (count > 0) {
+                    return count;
+                }
+            }
+            return 0;
+        }
+
+        private void park() {
+            parked.set(true);
+            idleWorkers.incrementAndGet();
+            // 先登记空闲再检查队列，与提交线程先入队再检查空闲数配合，不会丢失唤醒
+            if (shutdown || hasWork()) {
+                unpark();
+                return;
+            }
+            LockSupport.parkNanos(this, PARK_NANOS);
+            unpark();
+        }
+
+        private void unpark() {
+            if (parked.compareAndSet(true, false)) {
+                idleWorkers.decrementAndGet();
+            }
+        }
+
+        /**
+         * @return 唤醒挂起的工作线程返回true，工作线程未挂起返回false
+         */
+        boolean wake() {
+            if (parked.get() && parked.compareAndSet(true, false)) {
+                idleWorkers.decrementAndGet();
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+
+        private boolean hasWork() {
+            for (Ring ring : rings) {
+                if (ring.size() > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 有界多生产者多消费者环形队列（Vyukov），每个槽位的序号标记槽位可写或可读，消费者一次CAS领取连续可读的多个槽位
+     */
+    private static final class Ring {
+
+        private final Runnable[] elements;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        Ring(int capacity) {
+            this.elements = new Runnable[capacity];
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                this.sequences.set(i, i);
+            }
+            this.mask = capacity - 1;
+        }
+
+        boolean offer(Runnable task) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) position & mask;
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        elements[index] = task;
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    // 槽位尚未被消费，队列已满
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        int drainTo(Runnable[] batch, int max) {
+            while (true) {
+                long position = head.get();
+                int count = 0;
+                while (count < max && sequences.get((int) (position + count) & mask) == position + count + 1) {
+                    count++;
+                }
+                if (count == 0) {
+                    return 0;
+                }
+                if (head.compareAndSet(position, position + count)) {
+                    for (int i = 0; i < count; i++) {
+                        int index = (int) (position + i) & mask;
+                        batch[i] = elements[index];
+                        elements[index] = null;
+                        sequences.set(index, position + i + mask + 1);
+                    }
+                    return count;
+                }
+            }
+        }
+
+        long size() {
+            return Math.max(tail.get() - head.get(), 0L);
+        }
+    }
+}
@@ -18,16 +18,37 @@ package com.test.lang3.concurrent;
 
 import com.test.lang3.utils.Assert;
 import com.test.lang3.utils.ObjectUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A {@link ConcurrentHashMap} that uses {@link ReferenceType#SOFT soft} or
@@ -47,6 +68,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * <p>If not explicitly specified, this implementation will use
  * {@linkplain SoftReference soft entry references}.
  *
+ * <p>A map created through {@link #builder()} can be bounded by a maximum size or
+ * weight, in which case entries are evicted by a W-TinyLFU policy in addition to
+ * being reclaimed by the garbage collector.
+ *
  * @param <K> the key type
  * @param <V> the value type
  * @author Phillip Webb
@@ -56,18 +81,40 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
 
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentReferenceHashMap.class);
+
     private static final int DEFAULT_INITIAL_CAPACITY = 16;
 
     private static final float DEFAULT_LOAD_FACTOR = 0.75f;
 
-    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
-
     private static final ReferenceType DEFAULT_REFERENCE_TYPE = ReferenceType.SOFT;
 
     private static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
 
     private static final int MAXIMUM_SEGMENT_SIZE = 1 << 30;
 
+    /**
+     * The minimum initial size of a segment when the concurrency level is not specified,
+     * so that a segment does not resize on its first writes.
+     */
+    private static final int MIN_DEFAULT_SEGMENT_SIZE = 4;
+
+    private static final Object NULL_KEY = new Object();
+
+    /**
+     * The minimum number of bins a thread claims at once when helping a resize.
+     */
+    private static final int MIN_TRANSFER_STRIDE = 16;
+
+    /**
+     * The maximum number of bins per reference a segment grows to because of contention.
+     */
+    private static final int CONTENDED_BINS_PER_REFERENCE = 4;
+
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    private static final VarHandle REFERENCE_ARRAY = MethodHandles.arrayElementVarHandle(Reference[].class);
+
 
     /**
      * Array of segments indexed using the high order bits from the hash.
@@ -95,12 +142,42 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
 
     private volatile Set<Map.Entry<K, V>> entrySet;
 
+    /**
+     * Futures of the values loading by {@link #computeIfAbsentAsync}, keyed by key or {@link #NULL_KEY}.
+     */
+    private final ConcurrentMap<Object, CompletableFuture<V>> loadings = new ConcurrentHashMap<>();
+
+    /**
+     * The eviction policy, or {@code null} if the map is not bounded.
+     */
+    private final Eviction eviction;
+
+    /**
+     * Whether garbage collected references are purged by the {@link ReferenceCleaner}.
+     */
+    private final boolean purgeInBackground;
+
+    /**
+     * The statistics counters, or {@code null} if statistics are not recorded.
+     */
+    private final StatsCounter stats;
+
+    /**
+     * The listener notified of removed entries, or {@code null} if none.
+     */
+    private final RemovalListener<? super K, ? super V> removalListener;
+
+    /**
+     * The executor notifying the {@link #removalListener}.
+     */
+    private final Executor listenerExecutor;
+
 
     /**
      * Create a new {@code ConcurrentReferenceHashMap} instance.
      */
     public ConcurrentReferenceHashMap() {
-        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL, DEFAULT_REFERENCE_TYPE);
+        this(new Builder<K, V>());
     }
 
     /**
@@ -109,7 +186,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
      * @param initialCapacity the initial capacity of the map
      */
     public ConcurrentReferenceHashMap(int initialCapacity) {
-        this(initialCapacity, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL, DEFAULT_REFERENCE_TYPE);
+        this(new Builder<K, V>().initialCapacity(initialCapacity));
     }
 
     /**
@@ -120,7 +197,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
      *                        exceeds this value resize will be attempted
      */
     public ConcurrentReferenceHashMap(int initialCapacity, float loadFactor) {
-        this(initialCapacity, loadFactor, DEFAULT_CONCURRENCY_LEVEL, DEFAULT_REFERENCE_TYPE);
+        this(new Builder<K, V>().initialCapacity(initialCapacity).loadFactor(loadFactor));
     }
 
     /**
@@ -141,7 +218,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
      * @param referenceType   the reference type used for entries (soft or weak)
      */
     public ConcurrentReferenceHashMap(int initialCapacity, ReferenceType referenceType) {
-        this(initialCapacity, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL, referenceType);
+        this(new Builder<K, V>().initialCapacity(initialCapacity).referenceType(referenceType));
     }
 
     /**
@@ -167,18 +244,38 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
      *                         write to the map
      * @param referenceType    the reference type used for entries (soft or weak)
      */
-    @SuppressWarnings("unchecked")
     public ConcurrentReferenceHashMap(
             int initialCapacity, float loadFactor, int concurrencyLevel, ReferenceType referenceType) {
 
+        this(new Builder<K, V>().initialCapacity(initialCapacity).loadFactor(loadFactor)
+                .concurrencyLevel(concurrencyLevel).referenceType(referenceType));
+    }
+
+    /**
+     * Create a new {@code ConcurrentReferenceHashMap} instance from a {@link Builder}.
+     *
+     * @param builder the builder holding the settings of the map
+     * @see #builder()
+     */
+    @SuppressWarnings("unchecked")
+    protected ConcurrentReferenceHashMap(Builder<K, V> builder) {
+        int initialCapacity = builder.initialCapacity;
+        float loadFactor = builder.loadFactor;
+        int concurrencyLevel = builder.concurrencyLevel;
+        ReferenceType referenceType = builder.referenceType;
         Assert.isTrue(initialCapacity >= 0, "Initial capacity must not be negative");
         Assert.isTrue(loadFactor > 0f, "Load factor must be positive");
-        Assert.isTrue(concurrencyLevel > 0, "Concurrency level must be positive");
+        Assert.isTrue(concurrencyLevel > 0 || concurrencyLevel == Builder.UNSET, "Concurrency level must be positive");
         Assert.notNull(referenceType, "Reference type must not be null");
+        if (concurrencyLevel == Builder.UNSET) {
+            concurrencyLevel = defaultConcurrencyLevel(builder.availableProcessors);
+            initialCapacity = defaultInitialCapacity(initialCapacity, concurrencyLevel);
+        }
         this.loadFactor = loadFactor;
         this.shift = calculateShift(concurrencyLevel, MAXIMUM_CONCURRENCY_LEVEL);
         int size = 1 << this.shift;
         this.referenceType = referenceType;
+        this.purgeInBackground = builder.purgeInBackground;
         int roundedUpSegmentCapacity = (int) ((initialCapacity + size - 1L) / size);
         int initialSize = 1 << calculateShift(roundedUpSegmentCapacity, MAXIMUM_SEGMENT_SIZE);
         Segment[] segments = (Segment[]) Array.newInstance(Segment.class, size);
@@ -187,9 +284,63 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
             segments[i] = new Segment(initialSize, resizeThreshold);
         }
         this.segments = segments;
+        this.eviction = (builder.maximumWeight != Builder.UNSET || builder.hasExpiry() ? new Eviction(builder) : null);
+        this.stats = (builder.recordStats ? new StatsCounter() : null);
+        this.removalListener = builder.removalListener;
+        this.listenerExecutor = (builder.executor != null ? builder.executor : ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Return a new {@link Builder} to create a map with settings that are not available
+     * through the constructors, such as a maximum size.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     * @return a new builder
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
     }
 
 
+    /**
+     * Return the concurrency level used when none is specified: one segment per
+     * available processor.
+     *
+     * @return the default concurrency level
+     */
+    static int defaultConcurrencyLevel() {
+        return defaultConcurrencyLevel(NCPU);
+    }
+
+    /**
+     * Return the concurrency level used when none is specified for the given number of
+     * available processors.
+     *
+     * @param availableProcessors the number of available processors
+     * @return the default concurrency level
+     */
+    static int defaultConcurrencyLevel(int availableProcessors) {
+        return Math.min(Math.max(availableProcessors, 1), MAXIMUM_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Return the initial capacity used with the default concurrency level: the table is
+     * scaled with the number of segments, so that each segment starts with at least
+     * {@value #MIN_DEFAULT_SEGMENT_SIZE} references.
+     *
+     * @param initialCapacity  the requested initial capacity of the map
+     * @param concurrencyLevel the default concurrency level
+     * @return the initial capacity
+     */
+    static int defaultInitialCapacity(int initialCapacity, int concurrencyLevel) {
+        if (initialCapacity < 0) {
+            return initialCapacity;
+        }
+        return (int) Math.min(Math.max(initialCapacity, (long) concurrencyLevel * MIN_DEFAULT_SEGMENT_SIZE),
+                MAXIMUM_SEGMENT_SIZE);
+    }
+
     protected final float getLoadFactor() {
         return this.loadFactor;
     }
@@ -235,6 +386,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
     public V get(Object key) {
         Reference<K, V> ref = getReference(key, Restructure.WHEN_NECESSARY);
         Entry<K, V> entry = (ref != null ? ref.get() : null);
+        afterRead(entry);
         return (entry != null ? entry.getValue() : null);
     }
 
@@ -243,6 +395,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
     public V getOrDefault(Object key, V defaultValue) {
         Reference<K, V> ref = getReference(key, Restructure.WHEN_NECESSARY);
         Entry<K, V> entry = (ref != null ? ref.get() : null);
+        afterRead(entry);
         return (entry != null ? entry.getValue() : defaultValue);
     }
 
@@ -264,7 +417,14 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
 
     protected final Reference<K, V> getReference(Object key, Restructure restructure) {
         int hash = getHash(key);
-        return getSegmentForHash(hash).getReference(key, hash, restructure);
+        Reference<K, V> ref = getSegmentForHash(hash).getReference(key, hash, restructure);
+        if (ref != null && this.eviction != null) {
+            Entry<K, V> entry = ref.get();
+            if (entry != null && this.eviction.isExpired(entry)) {
+                return null;
+            }
+        }
+        return ref;
     }
 
     @Override
@@ -289,6 +449,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
                     V oldValue = entry.getValue();
                     if (overwriteExisting) {
                         entry.setValue(value);
+                        afterUpdate(entry, oldValue);
                     }
                     return oldValue;
                 }
@@ -309,6 +470,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
                 if (entry != null) {
                     if (ref != null) {
                         ref.release();
+                        afterRemove(entry, RemovalCause.EXPLICIT);
                     }
                     return entry.value;
                 }
@@ -325,6 +487,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
                 if (entry != null && ObjectUtils.nullSafeEquals(entry.getValue(), value)) {
                     if (ref != null) {
                         ref.release();
+                        afterRemove(entry, RemovalCause.EXPLICIT);
                     }
                     return true;
                 }
@@ -340,7 +503,9 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
             @Override
             protected Boolean execute(Reference<K, V> ref, Entry<K, V> entry) {
                 if (entry != null && ObjectUtils.nullSafeEquals(entry.getValue(), oldValue)) {
+                    V replaced = entry.getValue();
                     entry.setValue(newValue);
+                    afterUpdate(entry, replaced);
                     return true;
                 }
                 return false;
@@ -359,6 +524,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
                 if (entry != null) {
                     V oldValue = entry.getValue();
                     entry.setValue(value);
+                    afterUpdate(entry, oldValue);
                     return oldValue;
                 }
                 return null;
@@ -366,39 +532,269 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
         });
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>The mapping function is called at most once, while the bin of the key is locked,
+     * so it must be short and must not update this map.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Assert.notNull(mappingFunction, "Mapping function must not be null");
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        return load(key, mappingFunction);
+    }
+
+    /**
+     * Compute the value of an absent key, the part of {@link #computeIfAbsent} that
+     * runs after the key was looked up.
+     */
+    private V load(K key, Function<? super K, ? extends V> mappingFunction) {
+        return doTask(key, new Task<V>(TaskOption.RESTRUCTURE_BEFORE, TaskOption.RESIZE, TaskOption.EXACTLY_ONCE) {
+            @Override
+            protected V execute(Reference<K, V> ref, Entry<K, V> entry, Entries<V> entries) {
+                if (entry != null && entry.getValue() != null) {
+                    return entry.getValue();
+                }
+                StatsCounter stats = ConcurrentReferenceHashMap.this.stats;
+                long startTime = (stats != null ? System.nanoTime() : 0L);
+                V newValue;
+                try {
+                    newValue = mappingFunction.apply(key);
+                } catch (RuntimeException | Error ex) {
+                    if (stats != null) {
+                        stats.recordLoadFailure(System.nanoTime() - startTime);
+                    }
+                    throw ex;
+                }
+                if (stats != null) {
+                    if (newValue != null) {
+                        stats.recordLoadSuccess(System.nanoTime() - startTime);
+                    } else {
+                        stats.recordLoadFailure(System.nanoTime() - startTime);
+                    }
+                }
+                if (newValue != null) {
+                    putValue(entry, entries, newValue);
+                }
+                return newValue;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The remapping function is called at most once, while the bin of the key is
+     * locked, so it must be short and must not update this map.
+     */
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Assert.notNull(remappingFunction, "Remapping function must not be null");
+        return doTask(key, new Task<V>(TaskOption.RESTRUCTURE_AFTER, TaskOption.SKIP_IF_EMPTY) {
+            @Override
+            protected V execute(Reference<K, V> ref, Entry<K, V> entry) {
+                if (entry == null || entry.getValue() == null) {
+                    return null;
+                }
+                V newValue = remappingFunction.apply(key, entry.getValue());
+                if (newValue == null) {
+                    removeValue(ref, entry);
+                } else {
+                    putValue(entry, null, newValue);
+                }
+                return newValue;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The remapping function is called exactly once, while the bin of the key is
+     * locked, so it must be short and must not update this map.
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Assert.notNull(remappingFunction, "Remapping function must not be null");
+        return doTask(key, new Task<V>(TaskOption.RESTRUCTURE_BEFORE, TaskOption.RESTRUCTURE_AFTER, TaskOption.RESIZE,
+                TaskOption.EXACTLY_ONCE) {
+            @Override
+            protected V execute(Reference<K, V> ref, Entry<K, V> entry, Entries<V> entries) {
+                V newValue = remappingFunction.apply(key, (entry != null ? entry.getValue() : null));
+                if (newValue == null) {
+                    if (entry != null) {
+                        removeValue(ref, entry);
+                    }
+                } else {
+                    putValue(entry, entries, newValue);
+                }
+                return newValue;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The remapping function is called at most once, while the bin of the key is
+     * locked, so it must be short and must not update this map.
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Assert.notNull(value, "Value must not be null");
+        Assert.notNull(remappingFunction, "Remapping function must not be null");
+        return doTask(key, new Task<V>(TaskOption.RESTRUCTURE_BEFORE, TaskOption.RESTRUCTURE_AFTER, TaskOption.RESIZE,
+                TaskOption.EXACTLY_ONCE) {
+            @Override
+            protected V execute(Reference<K, V> ref, Entry<K, V> entry, Entries<V> entries) {
+                V oldValue = (entry != null ? entry.getValue() : null);
+                V newValue = (oldValue == null ? value : remappingFunction.apply(oldValue, value));
+                if (newValue == null) {
+                    removeValue(ref, entry);
+                } else {
+                    putValue(entry, entries, newValue);
+                }
+                return newValue;
+            }
+        });
+    }
+
+    /**
+     * Asynchronously compute the value of an absent key with the common pool.
+     *
+     * @see #computeIfAbsentAsync(Object, Function, Executor)
+     */
+    public CompletableFuture<V> computeIfAbsentAsync(K key, Function<? super K, ? extends V> mappingFunction) {
+        return computeIfAbsentAsync(key, mappingFunction, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Asynchronously compute the value of an absent key without blocking the caller.
+     * While the value is loading, a placeholder future is shared by all callers for the
+     * same key, so the mapping function runs once no matter how many callers wait for it.
+     *
+     * @param key             the key (can be {@code null})
+     * @param mappingFunction the function computing the value, a {@code null} result
+     *                        completes the future with {@code null} and adds no mapping
+     * @param executor        the executor running the mapping function
+     * @return the future of the current or computed value, completed exceptionally if
+     * the mapping function failed
+     */
+    public CompletableFuture<V> computeIfAbsentAsync(K key, Function<? super K, ? extends V> mappingFunction,
+            Executor executor) {
+        Assert.notNull(mappingFunction, "Mapping function must not be null");
+        Assert.notNull(executor, "Executor must not be null");
+        V value = get(key);
+        if (value != null) {
+            return CompletableFuture.completedFuture(value);
+        }
+        Object loadingKey = (key != null ? key : NULL_KEY);
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> loading = this.loadings.putIfAbsent(loadingKey, future);
+        if (loading != null) {
+            return loading;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    // A load that completed meanwhile is returned without calling the function again
+                    future.complete(load(key, mappingFunction));
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                } finally {
+                    this.loadings.remove(loadingKey, future);
+                }
+            });
+        } catch (RuntimeException ex) {
+            this.loadings.remove(loadingKey, future);
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Set the value of an existing entry, or add a new entry, from within a task.
+     */
+    private void putValue(Entry<K, V> entry, Entries<V> entries, V value) {
+        if (entry != null) {
+            V oldValue = entry.getValue();
+            entry.setValue(value);
+            afterUpdate(entry, oldValue);
+        } else {
+            Assert.state(entries != null, "No entries segment");
+            entries.add(value);
+        }
+    }
+
+    /**
+     * Remove an existing entry from within a task.
+     */
+    private void removeValue(Reference<K, V> ref, Entry<K, V> entry) {
+        if (ref != null && entry != null) {
+            ref.release();
+            afterRemove(entry, RemovalCause.EXPLICIT);
+        }
+    }
+
     @Override
     public void clear() {
         for (Segment segment : this.segments) {
             segment.clear();
         }
+        if (this.eviction != null) {
+            this.eviction.afterWrite();
+        }
     }
 
     /**
      * Remove any entries that have been garbage collected and are no longer referenced.
      * Under normal circumstances garbage collected entries are automatically purged as
      * items are added or removed from the Map. This method can be used to force a purge,
-     * and is useful when the Map is read frequently but updated less often.
+     * and is useful when the Map is read frequently but updated less often. A bounded or
+     * expiring map also runs its eviction maintenance, removing all entries that have
+     * expired, so that {@link #size()} agrees with {@link #get} and iteration afterwards.
      */
     public void purgeUnreferencedEntries() {
         for (Segment segment : this.segments) {
             segment.restructureIfNecessary(false);
         }
+        if (this.eviction != null) {
+            this.eviction.cleanUp();
+        }
     }
 
 
     @Override
     public int size() {
-        int size = 0;
+        long size = mappingCount();
+        return (size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size);
+    }
+
+    /**
+     * Return the number of mappings. This method should be used instead of
+     * {@link #size()} because a map may contain more mappings than can be represented
+     * as an int. The value returned is an estimate, the actual count may differ if
+     * there are concurrent insertions or removals, and it includes references that
+     * have been garbage collected but not purged yet. An expiring map also counts
+     * expired entries, which {@link #get} and iteration already treat as absent, until
+     * they are removed: by the maintenance after a later write within about a second, or
+     * at once by {@link #purgeUnreferencedEntries()}. The cost does not depend on the
+     * number of mappings.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        long count = 0;
         for (Segment segment : this.segments) {
-            size += segment.getCount();
+            count += segment.count.sum();
         }
-        return size;
+        return count;
     }
 
     @Override
     public boolean isEmpty() {
         for (Segment segment : this.segments) {
-            if (segment.getCount() > 0) {
+            if (segment.count.sum() > 0) {
                 return false;
             }
         }
@@ -415,16 +811,190 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
         return entrySet;
     }
 
+    /**
+     * Perform the given action for each mapping. The mappings are split by segment and
+     * bin range and processed on the {@link ForkJoinPool#commonPool() common pool} once
+     * the map holds at least {@code parallelismThreshold} mappings. Garbage collected
+     * and expired entries are skipped, and no locks are taken, so the traversal reflects
+     * the state of the map at some point at or since its start.
+     *
+     * @param parallelismThreshold the (estimated) number of mappings needed for this
+     *                             operation to be executed in parallel, {@link Long#MAX_VALUE}
+     *                             to always run sequentially
+     * @param action               the action
+     */
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        Assert.notNull(action, "Action must not be null");
+        entries(parallelismThreshold).forEach(entry -> action.accept(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Return a non-null result from applying the given search function on each mapping,
+     * or {@code null} if none. Upon success, further processing is suppressed. The
+     * mappings are traversed as in {@link #forEach(long, BiConsumer)}.
+     *
+     * @param parallelismThreshold the (estimated) number of mappings needed for this
+     *                             operation to be executed in parallel
+     * @param searchFunction       a function returning a non-null result on success,
+     *                             else {@code null}
+     * @param <U>                  the type of the result
+     * @return a non-null result from applying the given search function on some mapping,
+     * or {@code null} if none
+     */
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Assert.notNull(searchFunction, "Search function must not be null");
+        return entries(parallelismThreshold)
+                .<U>map(entry -> searchFunction.apply(entry.getKey(), entry.getValue()))
+                .filter(Objects::nonNull)
+                .findAny()
+                .orElse(null);
+    }
+
+    /**
+     * Return the result of accumulating the given transformation of all mappings using
+     * the given reducer to combine values, or {@code null} if none. The mappings are
+     * traversed as in {@link #forEach(long, BiConsumer)}.
+     *
+     * @param parallelismThreshold the (estimated) number of mappings needed for this
+     *                             operation to be executed in parallel
+     * @param transformer          a function returning the transformation for a mapping,
+     *                             or {@code null} if there is no transformation, in which
+     *                             case it is not combined
+     * @param reducer              a commutative associative combining function
+     * @param <U>                  the type of the result
+     * @return the result of accumulating the given transformation of all mappings
+     */
+    public <U> U reduce(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Assert.notNull(transformer, "Transformer must not be null");
+        Assert.notNull(reducer, "Reducer must not be null");
+        return entries(parallelismThreshold)
+                .<U>map(entry -> transformer.apply(entry.getKey(), entry.getValue()))
+                .filter(Objects::nonNull)
+                .reduce(reducer::apply)
+                .orElse(null);
+    }
+
+    private Stream<Map.Entry<K, V>> entries(long parallelismThreshold) {
+        long count = mappingCount();
+        return StreamSupport.stream(new EntrySpliterator(count), count >= parallelismThreshold);
+    }
+
 
     private <T> T doTask(Object key, Task<T> task) {
         int hash = getHash(key);
-        return getSegmentForHash(hash).doTask(hash, key, task);
+        try {
+            return getSegmentForHash(hash).doTask(hash, key, task);
+        } finally {
+            if (this.eviction != null) {
+                this.eviction.afterWrite();
+            }
+        }
+    }
+
+    /**
+     * Create the entry for a new mapping, bounded maps track the entry for eviction.
+     */
+    private Entry<K, V> createEntry(K key, V value, int hash) {
+        return (this.eviction != null ? this.eviction.createEntry(key, value, hash) : new Entry<>(key, value));
+    }
+
+    private boolean isExpired(Entry<K, V> entry) {
+        return (this.eviction != null && this.eviction.isExpired(entry));
+    }
+
+    private void afterAdd(Entry<K, V> entry) {
+        if (this.eviction != null) {
+            this.eviction.afterAdd(entry);
+        }
+    }
+
+    private void afterRead(Entry<K, V> entry) {
+        if (entry != null && this.eviction != null) {
+            this.eviction.afterRead(entry);
+        }
+        if (this.stats != null) {
+            this.stats.recordRead(entry != null);
+        }
+    }
+
+    private void afterUpdate(Entry<K, V> entry, V oldValue) {
+        if (this.eviction != null) {
+            this.eviction.afterUpdate(entry);
+        }
+        if (oldValue != entry.getValue()) {
+            notifyRemoval(entry.getKey(), oldValue, RemovalCause.REPLACED);
+        }
+    }
+
+    private void afterRemove(Entry<K, V> entry, RemovalCause cause) {
+        if (this.eviction != null) {
+            this.eviction.afterRemove(entry);
+        }
+        notifyRemoval(entry.getKey(), entry.getValue(), cause);
+    }
+
+    /**
+     * Record a reference dropped from its bin, it was collected unless it was released.
+     */
+    private void afterCollected(Reference<K, V> ref) {
+        if ((this.stats != null || this.removalListener != null) && !ref.isReleased() && ref.get() == null) {
+            notifyRemoval(null, null, RemovalCause.COLLECTED);
+        }
+    }
+
+    /**
+     * Record the removal and notify the {@link RemovalListener} on the executor of the map.
+     * Called while the bin of the entry is locked, so the listener is never run inline.
+     */
+    private void notifyRemoval(K key, V value, RemovalCause cause) {
+        if (this.stats != null && cause.wasEvicted()) {
+            this.stats.recordEviction(cause);
+        }
+        RemovalListener<? super K, ? super V> listener = this.removalListener;
+        if (listener != null) {
+            try {
+                this.listenerExecutor.execute(() -> {
+                    try {
+                        listener.onRemoval(key, value, cause);
+                    } catch (RuntimeException ex) {
+                        log.warn("Exception thrown by removal listener", ex);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                log.warn("Exception thrown when submitting removal listener", ex);
+            }
+        }
+    }
+
+    /**
+     * Return a snapshot of the statistics of this map. The statistics are only recorded
+     * by maps built with {@link Builder#recordStats()}, other maps return empty statistics.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        return (this.stats != null ? this.stats.snapshot(this.referenceType) : new Stats(this.referenceType));
     }
 
     private Segment getSegmentForHash(int hash) {
         return this.segments[(hash >>> (32 - this.shift)) & (this.segments.length - 1)];
     }
 
+    @SuppressWarnings("unchecked")
+    static <K, V> Reference<K, V> referenceAt(Reference<K, V>[] references, int index) {
+        return (Reference<K, V>) REFERENCE_ARRAY.getVolatile(references, index);
+    }
+
+    static <K, V> void setReferenceAt(Reference<K, V>[] references, int index, Reference<K, V> reference) {
+        REFERENCE_ARRAY.setVolatile(references, index, reference);
+    }
+
+    static <K, V> boolean casReferenceAt(Reference<K, V>[] references, int index,
+            Reference<K, V> expected, Reference<K, V> reference) {
+        return REFERENCE_ARRAY.compareAndSet(references, index, expected, reference);
+    }
+
     /**
      * Calculate a shift value that can be used to create a power-of-two value between
      * the specified maximum and minimum values.
@@ -462,404 +1032,2182 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
 
 
     /**
-     * A single segment used to divide the map to allow better concurrent performance.
+     * Calculates the weight of an entry for a map bounded by
+     * {@link Builder#maximumWeight(long, Weigher) maximum weight}.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
      */
-    @SuppressWarnings("serial")
-    protected final class Segment extends ReentrantLock {
+    @FunctionalInterface
+    public interface Weigher<K, V> {
 
-        private final ReferenceManager referenceManager;
+        /**
+         * Return the weight of the entry, must not be negative.
+         *
+         * @param key   the key (may be {@code null})
+         * @param value the value (may be {@code null})
+         * @return the weight of the entry
+         */
+        int weigh(K key, V value);
+    }
 
-        private final int initialSize;
+
+    /**
+     * Calculates when an entry of a map built with
+     * {@link Builder#expireAfter(Expiry) variable expiration} expires. All times are in
+     * nanoseconds, the returned durations are capped to a duration that never expires.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    public interface Expiry<K, V> {
 
         /**
-         * Array of references indexed using the low order bits from the hash.
-         * This property should only be set along with {@code resizeThreshold}.
+         * Return the duration until the new entry expires.
+         *
+         * @param key         the key (may be {@code null})
+         * @param value       the value (may be {@code null})
+         * @param currentTime the current time
+         * @return the duration until expiration
          */
-        private volatile Reference<K, V>[] references;
+        long expireAfterCreate(K key, V value, long currentTime);
 
         /**
-         * The total number of references contained in this segment. This includes chained
-         * references and references that have been garbage collected but not purged.
+         * Return the duration until the entry expires after its value was replaced.
+         *
+         * @param key             the key (may be {@code null})
+         * @param value           the new value (may be {@code null})
+         * @param currentTime     the current time
+         * @param currentDuration the current remaining duration, return it to leave the expiration unchanged
+         * @return the duration until expiration
          */
-        private final AtomicInteger count = new AtomicInteger();
+        long expireAfterUpdate(K key, V value, long currentTime, long currentDuration);
 
         /**
-         * The threshold when resizing of the references should occur. When {@code count}
-         * exceeds this value references will be resized.
+         * Return the duration until the entry expires after it was read.
+         *
+         * @param key             the key (may be {@code null})
+         * @param value           the value (may be {@code null})
+         * @param currentTime     the current time
+         * @param currentDuration the current remaining duration, return it to leave the expiration unchanged
+         * @return the duration until expiration
          */
-        private int resizeThreshold;
+        long expireAfterRead(K key, V value, long currentTime, long currentDuration);
+    }
 
-        public Segment(int initialSize, int resizeThreshold) {
-            this.referenceManager = createReferenceManager();
-            this.initialSize = initialSize;
-            this.references = createReferenceArray(initialSize);
-            this.resizeThreshold = resizeThreshold;
-        }
+
+    /**
+     * The reason why an entry was removed from a map.
+     */
+    public enum RemovalCause {
+
+        /**
+         * The entry was removed by the user, or by {@link ConcurrentReferenceHashMap#clear()}.
+         */
+        EXPLICIT,
+
+        /**
+         * The value of the entry was replaced by the user, the entry itself was not removed.
+         */
+        REPLACED,
+
+        /**
+         * The entry was reclaimed by the garbage collector.
+         */
+        COLLECTED,
+
+        /**
+         * The entry expired.
+         */
+        EXPIRED,
+
+        /**
+         * The entry was evicted because the map exceeded its maximum size or weight.
+         */
+        SIZE;
+
+        /**
+         * Return whether the entry was removed automatically rather than by the user.
+         */
+        public boolean wasEvicted() {
+            return (this != EXPLICIT && this != REPLACED);
+        }
+    }
+
+
+    /**
+     * Listens to the removal of entries from a map built with
+     * {@link Builder#removalListener(RemovalListener)}.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    @FunctionalInterface
+    public interface RemovalListener<K, V> {
+
+        /**
+         * Notify of a removed entry. For {@link RemovalCause#COLLECTED collected} entries
+         * the key and value are no longer available and are both {@code null}.
+         *
+         * @param key   the key (may be {@code null})
+         * @param value the removed or replaced value (may be {@code null})
+         * @param cause the reason of the removal
+         */
+        void onRemoval(K key, V value, RemovalCause cause);
+    }
+
+
+    /**
+     * An immutable snapshot of the statistics of a map built with
+     * {@link Builder#recordStats()}.
+     */
+    public static final class Stats {
+
+        private final ReferenceType referenceType;
+
+        private final long hitCount;
+
+        private final long missCount;
+
+        private final long loadSuccessCount;
+
+        private final long loadFailureCount;
+
+        private final long totalLoadTime;
+
+        private final long evictionCount;
+
+        private final long collectedCount;
+
+        private final long resizeCount;
+
+        private final long contentionCount;
+
+        Stats(ReferenceType referenceType) {
+            this(referenceType, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+
+        Stats(ReferenceType referenceType, long hitCount, long missCount, long loadSuccessCount,
+                long loadFailureCount, long totalLoadTime, long evictionCount, long collectedCount,
+                long resizeCount, long contentionCount) {
+            this.referenceType = referenceType;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadSuccessCount = loadSuccessCount;
+            this.loadFailureCount = loadFailureCount;
+            this.totalLoadTime = totalLoadTime;
+            this.evictionCount = evictionCount;
+            this.collectedCount = collectedCount;
+            this.resizeCount = resizeCount;
+            this.contentionCount = contentionCount;
+        }
+
+        /**
+         * Return the reference type of the entries, which the {@link #collectedCount()} applies to.
+         */
+        public ReferenceType referenceType() {
+            return this.referenceType;
+        }
+
+        /**
+         * Return the number of lookups that found a value.
+         */
+        public long hitCount() {
+            return this.hitCount;
+        }
+
+        /**
+         * Return the number of lookups that found no value.
+         */
+        public long missCount() {
+            return this.missCount;
+        }
+
+        /**
+         * Return the ratio of lookups that found a value, or {@code 1.0} if there were none.
+         */
+        public double hitRate() {
+            long requestCount = this.hitCount + this.missCount;
+            return (requestCount == 0 ? 1.0 : (double) this.hitCount / requestCount);
+        }
+
+        /**
+         * Return the number of values computed by {@code computeIfAbsent}.
+         */
+        public long loadSuccessCount() {
+            return this.loadSuccessCount;
+        }
+
+        /**
+         * Return the number of {@code computeIfAbsent} computations that threw an
+         * exception or returned {@code null}.
+         */
+        public long loadFailureCount() {
+            return this.loadFailureCount;
+        }
+
+        /**
+         * Return the total time spent computing values, in nanoseconds.
+         */
+        public long totalLoadTime() {
+            return this.totalLoadTime;
+        }
+
+        /**
+         * Return the average time spent computing a value, in nanoseconds.
+         */
+        public double averageLoadPenalty() {
+            long loadCount = this.loadSuccessCount + this.loadFailureCount;
+            return (loadCount == 0 ? 0.0 : (double) this.totalLoadTime / loadCount);
+        }
+
+        /**
+         * Return the number of entries removed because they expired or exceeded the
+         * maximum size or weight.
+         */
+        public long evictionCount() {
+            return this.evictionCount;
+        }
+
+        /**
+         * Return the number of entries whose reference was cleared by the garbage collector.
+         */
+        public long collectedCount() {
+            return this.collectedCount;
+        }
+
+        /**
+         * Return the number of times a segment was resized.
+         */
+        public long resizeCount() {
+            return this.resizeCount;
+        }
+
+        /**
+         * Return the number of times a writer waited for a segment lock held by another
+         * thread, or retried because another writer changed the same bin first.
+         */
+        public long contentionCount() {
+            return this.contentionCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats[referenceType=" + this.referenceType + ", hitCount=" + this.hitCount +
+                    ", missCount=" + this.missCount + ", loadSuccessCount=" + this.loadSuccessCount +
+                    ", loadFailureCount=" + this.loadFailureCount + ", totalLoadTime=" + this.totalLoadTime +
+                    ", evictionCount=" + this.evictionCount + ", collectedCount=" + this.collectedCount +
+                    ", resizeCount=" + this.resizeCount + ", contentionCount=" + this.contentionCount + "]";
+        }
+    }
+
+
+    /**
+     * The striped counters behind {@link Stats}.
+     */
+    private static final class StatsCounter {
+
+        private final LongAdder hitCount = new LongAdder();
+
+        private final LongAdder missCount = new LongAdder();
+
+        private final LongAdder loadSuccessCount = new LongAdder();
+
+        private final LongAdder loadFailureCount = new LongAdder();
+
+        private final LongAdder totalLoadTime = new LongAdder();
+
+        private final LongAdder evictionCount = new LongAdder();
+
+        private final LongAdder collectedCount = new LongAdder();
+
+        private final LongAdder resizeCount = new LongAdder();
+
+        private final LongAdder contentionCount = new LongAdder();
+
+        void recordRead(boolean hit) {
+            (hit ? this.hitCount : this.missCount).increment();
+        }
+
+        void recordLoadSuccess(long loadTime) {
+            this.loadSuccessCount.increment();
+            this.totalLoadTime.add(loadTime);
+        }
+
+        void recordLoadFailure(long loadTime) {
+            this.loadFailureCount.increment();
+            this.totalLoadTime.add(loadTime);
+        }
+
+        void recordEviction(RemovalCause cause) {
+            (cause == RemovalCause.COLLECTED ? this.collectedCount : this.evictionCount).increment();
+        }
+
+        void recordResize() {
+            this.resizeCount.increment();
+        }
+
+        void recordContention() {
+            this.contentionCount.increment();
+        }
+
+        Stats snapshot(ReferenceType referenceType) {
+            return new Stats(referenceType, this.hitCount.sum(), this.missCount.sum(), this.loadSuccessCount.sum(),
+                    this.loadFailureCount.sum(), this.totalLoadTime.sum(), this.evictionCount.sum(),
+                    this.collectedCount.sum(), this.resizeCount.sum(), this.contentionCount.sum());
+        }
+    }
+
+
+    /**
+     * Builder for {@link ConcurrentReferenceHashMap} instances.
+     *
+     * <p>A map built with a {@link #maximumSize(long) maximum size} or
+     * {@link #maximumWeight(long, Weigher) maximum weight} evicts entries with the
+     * W-TinyLFU policy: new entries are admitted to a small LRU window, and leave it only
+     * when their estimated access frequency is higher than that of the entry the main
+     * space would evict otherwise. Soft or weak references are still used for the
+     * entries, so the garbage collector can reclaim entries under memory pressure
+     * before the maximum is reached.
+     *
+     * <p>A map built with an expiration treats expired entries as absent, and removes
+     * them with the maintenance that runs after writes or on
+     * {@link #purgeUnreferencedEntries()}.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    public static final class Builder<K, V> {
+
+        static final long UNSET = -1;
+
+        private int initialCapacity = DEFAULT_INITIAL_CAPACITY;
+
+        private float loadFactor = DEFAULT_LOAD_FACTOR;
+
+        private int concurrencyLevel = (int) UNSET;
+
+        private ReferenceType referenceType = DEFAULT_REFERENCE_TYPE;
+
+        private long maximumWeight = UNSET;
+
+        private Weigher<? super K, ? super V> weigher;
+
+        private long expireAfterWriteNanos = UNSET;
+
+        private long expireAfterAccessNanos = UNSET;
+
+        private Expiry<? super K, ? super V> expiry;
+
+        private Executor executor;
+
+        private boolean purgeInBackground;
+
+        private boolean recordStats;
+
+        private RemovalListener<? super K, ? super V> removalListener;
+
+        private int availableProcessors = NCPU;
+
+        Builder() {
+        }
+
+        /**
+         * Set the initial capacity of the map.
+         */
+        public Builder<K, V> initialCapacity(int initialCapacity) {
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        /**
+         * Set the load factor. When the average number of references per table exceeds
+         * this value, resize will be attempted.
+         */
+        public Builder<K, V> loadFactor(float loadFactor) {
+            this.loadFactor = loadFactor;
+            return this;
+        }
+
+        /**
+         * Set the expected number of threads that will concurrently write to the map,
+         * defaults to the number of available processors, in which case the initial
+         * capacity is raised so that each segment starts with a few references.
+         */
+        public Builder<K, V> concurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        /**
+         * Set the reference type used for entries (soft or weak).
+         */
+        public Builder<K, V> referenceType(ReferenceType referenceType) {
+            this.referenceType = referenceType;
+            return this;
+        }
+
+        /**
+         * Set the number of available processors the default concurrency level is
+         * derived from, used to check the segments of larger hosts.
+         */
+        Builder<K, V> availableProcessors(int availableProcessors) {
+            this.availableProcessors = availableProcessors;
+            return this;
+        }
+
+        /**
+         * Bound the map to the given number of entries. The map may exceed the maximum
+         * briefly while evictions are pending.
+         *
+         * @param maximumSize the maximum number of entries
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            Assert.isTrue(maximumSize >= 0, "Maximum size must not be negative");
+            this.maximumWeight = maximumSize;
+            this.weigher = null;
+            return this;
+        }
+
+        /**
+         * Bound the map to the given total weight of its entries. The map may exceed the
+         * maximum briefly while evictions are pending.
+         *
+         * @param maximumWeight the maximum total weight
+         * @param weigher       the weigher calculating the weight of each entry
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+            Assert.isTrue(maximumWeight >= 0, "Maximum weight must not be negative");
+            Assert.notNull(weigher, "Weigher must not be null");
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Expire entries once the duration has elapsed after they were created or their
+         * value was last replaced.
+         *
+         * @param duration the duration after which entries expire
+         */
+        public Builder<K, V> expireAfterWrite(Duration duration) {
+            Assert.isTrue(duration != null && !duration.isNegative(), "Duration must not be negative");
+            this.expireAfterWriteNanos = duration.toNanos();
+            return this;
+        }
+
+        /**
+         * Expire entries once the duration has elapsed after they were last read,
+         * created or their value was last replaced.
+         *
+         * @param duration the duration after which entries expire
+         */
+        public Builder<K, V> expireAfterAccess(Duration duration) {
+            Assert.isTrue(duration != null && !duration.isNegative(), "Duration must not be negative");
+            this.expireAfterAccessNanos = duration.toNanos();
+            return this;
+        }
+
+        /**
+         * Expire each entry after the duration calculated by the {@link Expiry}, cannot be
+         * combined with {@link #expireAfterWrite} or {@link #expireAfterAccess}.
+         *
+         * @param expiry the expiry calculating the duration of each entry
+         */
+        public Builder<K, V> expireAfter(Expiry<? super K, ? super V> expiry) {
+            Assert.notNull(expiry, "Expiry must not be null");
+            this.expiry = expiry;
+            return this;
+        }
+
+        /**
+         * Purge garbage collected entries on a shared daemon thread instead of on the
+         * next write, so that maps which are mostly read do not keep collected entries.
+         * The thread drains the references of all such maps in batches and locks each
+         * segment once per batch. Entries that are removed explicitly are still purged by
+         * the removing write itself.
+         */
+        public Builder<K, V> purgeInBackground() {
+            this.purgeInBackground = true;
+            return this;
+        }
+
+        boolean hasExpiry() {
+            return (this.expiry != null || this.expireAfterWriteNanos != UNSET || this.expireAfterAccessNanos != UNSET);
+        }
+
+        /**
+         * Record {@link Stats statistics} of the map. The counters are striped, so that
+         * recording costs little more than an uncontended add on the hot paths.
+         */
+        public Builder<K, V> recordStats() {
+            this.recordStats = true;
+            return this;
+        }
+
+        /**
+         * Notify the listener of each removed entry. The listener is called
+         * asynchronously on the {@link #executor(Executor) executor} of the map, after
+         * the entry has been removed.
+         *
+         * @param removalListener the listener
+         */
+        public Builder<K, V> removalListener(RemovalListener<? super K, ? super V> removalListener) {
+            Assert.notNull(removalListener, "Removal listener must not be null");
+            this.removalListener = removalListener;
+            return this;
+        }
+
+        /**
+         * Set the executor that runs the maintenance of a bounded or expiring map and
+         * notifies the removal listener, defaults to {@link ForkJoinPool#commonPool()}.
+         * Maintenance is run on the calling thread when the executor rejects it.
+         */
+        public Builder<K, V> executor(Executor executor) {
+            Assert.notNull(executor, "Executor must not be null");
+            this.executor = executor;
+            return this;
+        }
+
+        public ConcurrentReferenceHashMap<K, V> build() {
+            Assert.state(this.expiry == null || (this.expireAfterWriteNanos == UNSET && this.expireAfterAccessNanos == UNSET),
+                    "Variable expiration cannot be combined with expiration after write or access");
+            return new ConcurrentReferenceHashMap<>(this);
+        }
+    }
+
+
+    /**
+     * A single segment used to divide the map to allow better concurrent performance.
+     *
+     * <p>Reads are lock-free. Writes insert into an empty bin with a single CAS and
+     * otherwise synchronize on the head reference of the bin only. The segment lock is
+     * reserved for restructuring, which purges and resizes bin by bin; other writers that
+     * run into a resize in progress help to transfer the remaining bins.
+     */
+    @SuppressWarnings("serial")
+    protected final class Segment extends ReentrantLock implements ReferenceCleaner.Purgeable {
+
+        private final ReferenceManager referenceManager;
+
+        private final int initialSize;
+
+        /**
+         * Array of references indexed using the low order bits from the hash.
+         * This property should only be set along with {@code resizeThreshold}.
+         * Elements are accessed with volatile semantics, see {@link #referenceAt}.
+         */
+        private volatile Reference<K, V>[] references;
+
+        /**
+         * The total number of references contained in this segment. This includes chained
+         * references and references that have been garbage collected but not purged.
+         * A striped counter, so that concurrent writers do not contend on one cache line;
+         * reads and removals never need its sum.
+         */
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * The threshold when resizing of the references should occur. When {@code count}
+         * exceeds this value references will be resized.
+         */
+        private volatile int resizeThreshold;
+
+        /**
+         * The number of times writers retried on a bin of the current references because
+         * another writer changed it first. A racy estimate that is reset by a resize.
+         */
+        private int contention;
+
+        public Segment(int initialSize, int resizeThreshold) {
+            this.referenceManager = createReferenceManager();
+            if (ConcurrentReferenceHashMap.this.purgeInBackground) {
+                this.referenceManager.owner = this;
+            }
+            this.initialSize = initialSize;
+            this.references = createReferenceArray(initialSize);
+            this.resizeThreshold = resizeThreshold;
+        }
 
 
         public Reference<K, V> getReference(Object key, int hash, Restructure restructure) {
             if (restructure == Restructure.WHEN_NECESSARY) {
                 restructureIfNecessary(false);
             }
-            if (this.count.get() == 0) {
-                return null;
+            // Use a local copy to protect against other threads writing
+            Reference<K, V>[] references = this.references;
+            Reference<K, V> head = referenceAt(references, getIndex(hash, references));
+            while (head instanceof ForwardingReference<K, V> forwarding) {
+                references = forwarding.getNextReferences();
+                head = referenceAt(references, getIndex(hash, references));
+            }
+            return findInChain(head, key, hash);
+        }
+
+        /**
+         * Apply an update operation to this segment.
+         * An empty bin is updated with a CAS, otherwise the head reference of the bin is
+         * locked during the update. A task executed against an empty bin may be executed
+         * again if another thread wins the race for that bin, so it must not have side
+         * effects before calling {@link Entries#add}, unless it has the
+         * {@link TaskOption#EXACTLY_ONCE} option.
+         *
+         * @param hash the hash of the key
+         * @param key  the key
+         * @param task the update operation
+         * @return the result of the operation
+         */
+
+        public <T> T doTask(final int hash, final Object key, final Task<T> task) {
+            boolean resize = task.hasOption(TaskOption.RESIZE);
+            if (task.hasOption(TaskOption.RESTRUCTURE_BEFORE)) {
+                restructureIfNecessary(resize);
+            }
+            try {
+                Reference<K, V>[] references = this.references;
+                while (true) {
+                    final int index = getIndex(hash, references);
+                    final Reference<K, V> head = referenceAt(references, index);
+                    if (head instanceof ForwardingReference<K, V> forwarding) {
+                        forwarding.helpTransfer();
+                        references = forwarding.getNextReferences();
+                        continue;
+                    }
+                    if (head != null && Thread.holdsLock(head)) {
+                        // A task function tried to update its own bin
+                        throw new IllegalStateException("Recursive update");
+                    }
+                    if (head == null && task.hasOption(TaskOption.EXACTLY_ONCE)) {
+                        // Reserve the bin so that the task runs once, while other writers wait
+                        ReservationReference<K, V> reservation = new ReservationReference<>();
+                        synchronized (reservation) {
+                            if (casReferenceAt(references, index, null, reservation)) {
+                                BinEntries entries = new BinEntries(references, index, hash, key, reservation);
+                                try {
+                                    return task.execute(null, null, entries);
+                                } finally {
+                                    if (!entries.isAdded()) {
+                                        setReferenceAt(references, index, null);
+                                    }
+                                }
+                            }
+                        }
+                        recordContention();
+                        continue;
+                    }
+                    if (head == null && task.hasOption(TaskOption.SKIP_IF_EMPTY)) {
+                        return task.execute(null, null, null);
+                    }
+                    if (head == null) {
+                        BinEntries entries = new BinEntries(references, index, hash, key, null);
+                        T result = task.execute(null, null, entries);
+                        if (!entries.isLost()) {
+                            return result;
+                        }
+                        recordContention();
+                        continue;
+                    }
+                    synchronized (head) {
+                        if (referenceAt(references, index) == head) {
+                            Reference<K, V> ref = findInChain(head, key, hash);
+                            Entry<K, V> entry = (ref != null ? ref.get() : null);
+                            if (entry != null && isExpired(entry)) {
+                                // An expired entry is removed first, the task sees the key as absent
+                                ref.release();
+                                afterRemove(entry, RemovalCause.EXPIRED);
+                                ref = null;
+                                entry = null;
+                            }
+                            return task.execute(ref, entry, new BinEntries(references, index, hash, key, head));
+                        }
+                    }
+                    recordContention();
+                }
+            } finally {
+                if (task.hasOption(TaskOption.RESTRUCTURE_AFTER)) {
+                    restructureIfNecessary(resize);
+                }
+            }
+        }
+
+        /**
+         * Clear all items from this segment.
+         */
+        public void clear() {
+            if (this.count.sum() == 0) {
+                return;
+            }
+            lockSegment();
+            try {
+                // Writers that are still working on the old array are forwarded to the new one
+                Reference<K, V>[] references = this.references;
+                Reference<K, V>[] cleared = createReferenceArray(this.initialSize);
+                ForwardingReference<K, V> forwarding = new ForwardingReference<>(cleared, 0, references.length, null);
+                for (int i = 0; i < references.length; i++) {
+                    int removed = replaceBin(references, i, forwarding, head -> {
+                        int chained = 0;
+                        for (Reference<K, V> ref = head; ref != null; ref = ref.getNext()) {
+                            Entry<K, V> entry = ref.get();
+                            if (entry != null) {
+                                afterRemove(entry, RemovalCause.EXPLICIT);
+                            } else {
+                                afterCollected(ref);
+                            }
+                            chained++;
+                        }
+                        return chained;
+                    });
+                    if (removed > 0) {
+                        this.count.add(-removed);
+                    }
+                }
+                this.references = cleared;
+                this.resizeThreshold = (int) (cleared.length * getLoadFactor());
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Acquire the segment lock, recording whether another thread was holding it.
+         */
+        private void lockSegment() {
+            if (!tryLock()) {
+                recordContention();
+                lock();
+            }
+        }
+
+        private void recordContention() {
+            this.contention++;
+            if (ConcurrentReferenceHashMap.this.stats != null) {
+                ConcurrentReferenceHashMap.this.stats.recordContention();
+            }
+        }
+
+        /**
+         * Restructure the underlying data structure when it becomes necessary. This
+         * method can increase the size of the references table as well as purge any
+         * references that have been garbage collected.
+         *
+         * @param allowResize if resizing is permitted
+         */
+        void restructureIfNecessary(boolean allowResize) {
+            boolean needsResize = false;
+            if (allowResize) {
+                long currCount = this.count.sum();
+                needsResize = (currCount > 0 && currCount >= this.resizeThreshold) || isContended(currCount);
+            }
+            Reference<K, V> ref = this.referenceManager.pollForPurge();
+            if (ref != null || (needsResize)) {
+                restructure(allowResize, ref);
+            }
+        }
+
+        private void restructure(boolean allowResize, Reference<K, V> ref) {
+            lockSegment();
+            try {
+                Set<Reference<K, V>> toPurge = Collections.emptySet();
+                if (ref != null) {
+                    toPurge = new HashSet<>();
+                    while (ref != null) {
+                        toPurge.add(ref);
+                        ref = this.referenceManager.pollForPurge();
+                    }
+                }
+                restructure(allowResize, toPurge);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Queue a released reference for the next restructure of this segment, which
+         * follows the write that released it.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public void released(java.lang.ref.Reference<?> reference) {
+            this.referenceManager.released.add((Reference<K, V>) reference);
+        }
+
+        /**
+         * Purge a batch of references collected by the {@link ReferenceCleaner}, the
+         * segment lock is taken once for the whole batch.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public void purge(List<java.lang.ref.Reference<?>> references) {
+            Set<Reference<K, V>> toPurge = new HashSet<>(references.size() * 2);
+            for (java.lang.ref.Reference<?> reference : references) {
+                toPurge.add((Reference<K, V>) reference);
+            }
+            lockSegment();
+            try {
+                restructure(false, toPurge);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Restructure with the segment lock held.
+         */
+        private void restructure(boolean allowResize, Set<Reference<K, V>> toPurge) {
+            long expectedCount = this.count.sum() - toPurge.size();
+
+            // Estimate new count, taking into account count inside lock and items that
+            // will be purged.
+            boolean needsResize = (expectedCount > 0 && expectedCount >= this.resizeThreshold)
+                    || isContended(expectedCount);
+            Reference<K, V>[] references = this.references;
+            if (allowResize && needsResize && references.length < MAXIMUM_SEGMENT_SIZE) {
+                // Restructure into a resized reference array, other writers help
+                Transfer transfer = new Transfer(references, toPurge);
+                transfer.run();
+                transfer.awaitCompletion();
+                if (ConcurrentReferenceHashMap.this.stats != null) {
+                    ConcurrentReferenceHashMap.this.stats.recordResize();
+                }
+                this.contention = 0;
+                // Replace volatile members
+                this.references = transfer.nextReferences;
+                this.resizeThreshold = (int) (transfer.nextReferences.length * getLoadFactor());
+            }
+            // Restructure the existing reference array "in place", only the bins
+            // holding the references to purge need to be rebuilt
+            else {
+                BitSet bins = new BitSet(references.length);
+                for (Reference<K, V> reference : toPurge) {
+                    bins.set(getIndex(reference.getHash(), references));
+                }
+                for (int i = bins.nextSetBit(0); i >= 0; i = bins.nextSetBit(i + 1)) {
+                    int removed = purgeBin(references, i, toPurge);
+                    if (removed > 0) {
+                        this.count.add(-removed);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Return whether writers retry on the bins often enough to spread the references
+         * over a larger array, the bins being the lock stripes of this segment. Contention
+         * grows a segment to at most {@link #CONTENDED_BINS_PER_REFERENCE} bins per
+         * reference, so writers contending on a single hot key do not grow it further.
+         *
+         * @param count the (expected) number of references
+         */
+        private boolean isContended(long count) {
+            int length = this.references.length;
+            return (this.contention > (length >>> 1) && count > 0 && length < count * CONTENDED_BINS_PER_REFERENCE);
+        }
+
+        /**
+         * Rebuild the chain of a single bin without the references that are purged.
+         *
+         * @return the number of references removed from the bin
+         */
+        private int purgeBin(Reference<K, V>[] references, int index, Set<Reference<K, V>> toPurge) {
+            while (true) {
+                Reference<K, V> head = referenceAt(references, index);
+                if (head == null || head instanceof ForwardingReference) {
+                    return 0;
+                }
+                synchronized (head) {
+                    if (referenceAt(references, index) != head) {
+                        continue;
+                    }
+                    boolean purgeable = false;
+                    for (Reference<K, V> ref = head; ref != null && !purgeable; ref = ref.getNext()) {
+                        purgeable = isPurgeable(ref, toPurge);
+                    }
+                    if (!purgeable) {
+                        return 0;
+                    }
+                    int removed = 0;
+                    Reference<K, V> purgedRef = null;
+                    for (Reference<K, V> ref = head; ref != null; ref = ref.getNext()) {
+                        Entry<K, V> entry = ref.get();
+                        if (entry != null && !toPurge.contains(ref)) {
+                            purgedRef = this.referenceManager.createReference(entry, ref.getHash(), purgedRef);
+                        } else {
+                            removed++;
+                            afterCollected(ref);
+                        }
+                    }
+                    setReferenceAt(references, index, purgedRef);
+                    return removed;
+                }
+            }
+        }
+
+        /**
+         * Replace a bin with the given reference, empty bins are replaced with a CAS.
+         *
+         * @param before called with the current chain while the bin is locked, returns
+         *               the number of references removed
+         * @return the number of references removed from the bin
+         */
+        private int replaceBin(Reference<K, V>[] references, int index, Reference<K, V> replacement,
+                ToIntFunction<Reference<K, V>> before) {
+            while (true) {
+                Reference<K, V> head = referenceAt(references, index);
+                if (head == null) {
+                    if (casReferenceAt(references, index, null, replacement)) {
+                        return 0;
+                    }
+                    continue;
+                }
+                synchronized (head) {
+                    if (referenceAt(references, index) != head) {
+                        continue;
+                    }
+                    int removed = before.applyAsInt(head);
+                    setReferenceAt(references, index, replacement);
+                    return removed;
+                }
+            }
+        }
+
+        private boolean isPurgeable(Reference<K, V> ref, Set<Reference<K, V>> toPurge) {
+            // Also filter out references that are now null, they should be polled
+            // from the queue in a later restructure call.
+            return (toPurge.contains(ref) || ref.get() == null);
+        }
+
+
+        private Reference<K, V> findInChain(Reference<K, V> ref, Object key, int hash) {
+            Reference<K, V> currRef = ref;
+            while (currRef != null) {
+                if (currRef.getHash() == hash) {
+                    Entry<K, V> entry = currRef.get();
+                    if (entry != null) {
+                        K entryKey = entry.getKey();
+                        if (ObjectUtils.nullSafeEquals(entryKey, key)) {
+                            return currRef;
+                        }
+                    }
+                }
+                currRef = currRef.getNext();
+            }
+            return null;
+        }
+
+        @SuppressWarnings({ "unchecked" })
+        private Reference<K, V>[] createReferenceArray(int size) {
+            return (Reference<K, V>[]) new Reference<?, ?>[size];
+        }
+
+        private int getIndex(int hash, Reference<K, V>[] references) {
+            return (hash & (references.length - 1));
+        }
+
+        /**
+         * Return the size of the current references array.
+         */
+        public int getSize() {
+            return this.references.length;
+        }
+
+        /**
+         * Return the total number of references in this segment.
+         */
+        public int getCount() {
+            return this.count.intValue();
+        }
+
+
+        /**
+         * {@link Entries} bound to a single bin. Without a head reference the new
+         * reference is installed with a CAS, which may be lost to a concurrent writer.
+         */
+        private final class BinEntries implements Entries<V> {
+
+            private final Reference<K, V>[] references;
+
+            private final int index;
+
+            private final int hash;
+
+            private final Object key;
+
+            private final Reference<K, V> head;
+
+            private boolean lost;
+
+            private boolean added;
+
+            BinEntries(Reference<K, V>[] references, int index, int hash, Object key, Reference<K, V> head) {
+                this.references = references;
+                this.index = index;
+                this.hash = hash;
+                this.key = key;
+                this.head = head;
+            }
+
+            @Override
+            public void add(V value) {
+                @SuppressWarnings("unchecked")
+                Entry<K, V> newEntry = createEntry((K) this.key, value, this.hash);
+                Reference<K, V> next = (this.head instanceof ReservationReference ? null : this.head);
+                Reference<K, V> newReference = Segment.this.referenceManager.createReference(newEntry, this.hash, next);
+                if (this.head != null) {
+                    setReferenceAt(this.references, this.index, newReference);
+                } else if (!casReferenceAt(this.references, this.index, null, newReference)) {
+                    this.lost = true;
+                    return;
+                }
+                Segment.this.count.increment();
+                this.added = true;
+                afterAdd(newEntry);
             }
-            // Use a local copy to protect against other threads writing
-            Reference<K, V>[] references = this.references;
-            int index = getIndex(hash, references);
-            Reference<K, V> head = references[index];
-            return findInChain(head, key, hash);
+
+            boolean isLost() {
+                return this.lost;
+            }
+
+            boolean isAdded() {
+                return this.added;
+            }
+        }
+
+
+        /**
+         * A resize of the references array. Bins are claimed in strides so that
+         * writers running into a {@link ForwardingReference} can help, the segment lock
+         * is held by the thread that started the resize until all bins are transferred.
+         * A helper may be blocked on the monitor of a bin held by a compute function, so
+         * the thread that started the resize parks until the last bin is transferred.
+         */
+        private final class Transfer implements Runnable {
+
+            private final Reference<K, V>[] references;
+
+            private final Reference<K, V>[] nextReferences;
+
+            private final Set<Reference<K, V>> toPurge;
+
+            private final int stride;
+
+            /**
+             * The next bin (exclusive) to be claimed, counting down to zero.
+             */
+            private final AtomicInteger transferIndex;
+
+            /**
+             * The number of bins that have not been transferred yet.
+             */
+            private final AtomicInteger pending;
+
+            /**
+             * The thread that started the resize, unparked when the last bin is transferred.
+             */
+            private final Thread owner;
+
+            Transfer(Reference<K, V>[] references, Set<Reference<K, V>> toPurge) {
+                this.references = references;
+                this.nextReferences = createReferenceArray(references.length << 1);
+                this.toPurge = toPurge;
+                this.stride = Math.max((references.length >>> 3) / NCPU, MIN_TRANSFER_STRIDE);
+                this.transferIndex = new AtomicInteger(references.length);
+                this.pending = new AtomicInteger(references.length);
+                this.owner = Thread.currentThread();
+            }
+
+            @Override
+            public void run() {
+                int next;
+                while ((next = this.transferIndex.get()) > 0) {
+                    int bound = Math.max(next - this.stride, 0);
+                    if (this.transferIndex.compareAndSet(next, bound)) {
+                        for (int i = next - 1; i >= bound; i--) {
+                            transferBin(i);
+                        }
+                    }
+                }
+            }
+
+            private void transferBin(int index) {
+                int length = this.references.length;
+                ForwardingReference<K, V> forwarding = new ForwardingReference<>(this.nextReferences, index, length, this);
+                int removed = replaceBin(this.references, index, forwarding, head -> {
+                    Reference<K, V> low = null;
+                    Reference<K, V> high = null;
+                    int dropped = 0;
+                    for (Reference<K, V> ref = head; ref != null; ref = ref.getNext()) {
+                        Entry<K, V> entry = ref.get();
+                        if (entry == null || this.toPurge.contains(ref)) {
+                            dropped++;
+                            afterCollected(ref);
+                        } else if ((ref.getHash() & length) == 0) {
+                            low = Segment.this.referenceManager.createReference(entry, ref.getHash(), low);
+                        } else {
+                            high = Segment.this.referenceManager.createReference(entry, ref.getHash(), high);
+                        }
+                    }
+                    // Publish the new bins before the forwarding reference
+                    setReferenceAt(this.nextReferences, index, low);
+                    setReferenceAt(this.nextReferences, index + length, high);
+                    return dropped;
+                });
+                if (removed > 0) {
+                    Segment.this.count.add(-removed);
+                }
+                if (this.pending.decrementAndGet() == 0) {
+                    LockSupport.unpark(this.owner);
+                }
+            }
+
+            void awaitCompletion() {
+                boolean interrupted = false;
+                while (this.pending.get() > 0) {
+                    LockSupport.park(this);
+                    interrupted |= Thread.interrupted();
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A {@link Reference} placed in an empty bin while an {@link TaskOption#EXACTLY_ONCE}
+     * task runs for it. Its monitor is held for the whole task, so that other writers of
+     * the bin wait, while readers see an empty bin.
+     */
+    private static final class ReservationReference<K, V> implements Reference<K, V> {
+
+        @Override
+        public Entry<K, V> get() {
+            return null;
+        }
+
+        @Override
+        public int getHash() {
+            return 0;
+        }
+
+        @Override
+        public Reference<K, V> getNext() {
+            return null;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+
+    /**
+     * A {@link Reference} placed at the head of a bin that has been moved to another
+     * references array, either by a resize or by {@link Segment#clear()}. It never
+     * refers to an entry and is never chained.
+     */
+    private static final class ForwardingReference<K, V> implements Reference<K, V> {
+
+        private final Reference<K, V>[] nextReferences;
+
+        private final int index;
+
+        private final int length;
+
+        private final Runnable transfer;
+
+        ForwardingReference(Reference<K, V>[] nextReferences, int index, int length, Runnable transfer) {
+            this.nextReferences = nextReferences;
+            this.index = index;
+            this.length = length;
+            this.transfer = transfer;
+        }
+
+        Reference<K, V>[] getNextReferences() {
+            return this.nextReferences;
+        }
+
+        /**
+         * Help to transfer the remaining bins when the forwarding was caused by a resize.
+         */
+        void helpTransfer() {
+            if (this.transfer != null) {
+                this.transfer.run();
+            }
+        }
+
+        /**
+         * Return whether the bin was moved by a resize, in which case its entries are
+         * split between {@code index} and {@code index + length} of the new array.
+         */
+        boolean isResize() {
+            return (this.nextReferences.length == this.length << 1);
+        }
+
+        int getIndex() {
+            return this.index;
+        }
+
+        int getLength() {
+            return this.length;
+        }
+
+        @Override
+        public Entry<K, V> get() {
+            return null;
+        }
+
+        @Override
+        public int getHash() {
+            return 0;
+        }
+
+        @Override
+        public Reference<K, V> getNext() {
+            return null;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+
+    /**
+     * A reference to an {@link Entry} contained in the map. Implementations are usually
+     * wrappers around specific Java reference implementations (e.g., {@link SoftReference}).
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    protected interface Reference<K, V> {
+
+        /**
+         * Return the referenced entry, or {@code null} if the entry is no longer available.
+         */
+
+        Entry<K, V> get();
+
+        /**
+         * Return the hash for the reference.
+         */
+        int getHash();
+
+        /**
+         * Return the next reference in the chain, or {@code null} if none.
+         */
+
+        Reference<K, V> getNext();
+
+        /**
+         * Release this entry and ensure that it will be returned from
+         * {@code ReferenceManager#pollForPurge()}.
+         */
+        void release();
+
+        /**
+         * Return whether this entry was {@link #release() released}, as opposed to
+         * garbage collected. Used for statistics and removal notifications only.
+         */
+        default boolean isReleased() {
+            return false;
+        }
+    }
+
+
+    /**
+     * A single map entry.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    protected static class Entry<K, V> implements Map.Entry<K, V> {
+
+
+        private final K key;
+
+
+        private volatile V value;
+
+        public Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+
+        public K getKey() {
+            return this.key;
+        }
+
+        @Override
+
+        public V getValue() {
+            return this.value;
+        }
+
+        @Override
+
+        public V setValue(V value) {
+            V previous = this.value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return (this == other || (other instanceof Map.Entry<?, ?> that &&
+                    ObjectUtils.nullSafeEquals(getKey(), that.getKey()) &&
+                    ObjectUtils.nullSafeEquals(getValue(), that.getValue())));
+        }
+
+        @Override
+        public int hashCode() {
+            return (ObjectUtils.nullSafeHashCode(this.key) ^ ObjectUtils.nullSafeHashCode(this.value));
+        }
+
+        @Override
+        public String toString() {
+            return (this.key + "=" + this.value);
+        }
+    }
+
+
+    /**
+     * A task that can be {@link Segment#doTask run} against a {@link Segment}.
+     */
+    private abstract class Task<T> {
+
+        private final EnumSet<TaskOption> options;
+
+        public Task(TaskOption... options) {
+            this.options = (options.length == 0 ? EnumSet.noneOf(TaskOption.class) : EnumSet.of(options[0], options));
+        }
+
+        public boolean hasOption(TaskOption option) {
+            return this.options.contains(option);
+        }
+
+        /**
+         * Execute the task.
+         *
+         * @param ref     the found reference (or {@code null})
+         * @param entry   the found entry (or {@code null})
+         * @param entries access to the underlying entries
+         * @return the result of the task
+         * @see #execute(Reference, Entry)
+         */
+
+        protected T execute(Reference<K, V> ref, Entry<K, V> entry, Entries<V> entries) {
+            return execute(ref, entry);
+        }
+
+        /**
+         * Convenience method that can be used for tasks that do not need access to {@link Entries}.
+         *
+         * @param ref   the found reference (or {@code null})
+         * @param entry the found entry (or {@code null})
+         * @return the result of the task
+         * @see #execute(Reference, Entry, Entries)
+         */
+
+        protected T execute(Reference<K, V> ref, Entry<K, V> entry) {
+            return null;
         }
+    }
+
+
+    /**
+     * Various options supported by a {@code Task}.
+     */
+    private enum TaskOption {
+
+        RESTRUCTURE_BEFORE, RESTRUCTURE_AFTER, SKIP_IF_EMPTY, RESIZE,
 
         /**
-         * Apply an update operation to this segment.
-         * The segment will be locked during the update.
+         * The task is executed exactly once: an empty bin is reserved before the task
+         * runs, instead of being updated with a CAS that may have to be retried.
+         */
+        EXACTLY_ONCE
+    }
+
+
+    /**
+     * Allows a task access to {@link ConcurrentReferenceHashMap.Segment} entries.
+     */
+    private interface Entries<V> {
+
+        /**
+         * Add a new entry with the specified value.
          *
-         * @param hash the hash of the key
-         * @param key  the key
-         * @param task the update operation
-         * @return the result of the operation
+         * @param value the value to add
          */
+        void add(V value);
+    }
 
-        public <T> T doTask(final int hash, final Object key, final Task<T> task) {
-            boolean resize = task.hasOption(TaskOption.RESIZE);
-            if (task.hasOption(TaskOption.RESTRUCTURE_BEFORE)) {
-                restructureIfNecessary(resize);
+
+    /**
+     * The eviction policy of a bounded or expiring map.
+     *
+     * <p>A bounded map evicts with the W-TinyLFU policy, an expiring map with a
+     * hierarchical {@link TimerWheel}. Reads and writes only record what happened in
+     * buffers, the policy itself is updated by a maintenance task that drains the
+     * buffers while holding the eviction lock. Maintenance runs on the configured
+     * executor after writes, or on the calling thread when too many writes are pending.
+     * Callers never block on the eviction lock, so maintenance can safely lock bins and
+     * segments to remove evicted entries.
+     *
+     * <p>Entries are referenced by their policy {@link Node} only weakly, so that the
+     * soft or weak references of the map still allow the garbage collector to reclaim
+     * them. Reclaimed entries are removed from the policy through the node queue.
+     */
+    private final class Eviction {
+
+        /**
+         * The number of pending writes after which maintenance runs on the writing thread.
+         */
+        private static final int WRITE_BUFFER_MAXIMUM = 1024;
+
+        private static final double WINDOW_PERCENT = 0.01d;
+
+        private static final double PROTECTED_PERCENT = 0.8d;
+
+        /**
+         * The maximum duration until expiration, large enough to never be reached and
+         * small enough to not overflow when added to the current time.
+         */
+        private static final long MAXIMUM_EXPIRY = (Long.MAX_VALUE >> 1);
+
+        private final boolean bounded;
+
+        private final long maximum;
+
+        private final long windowMaximum;
+
+        private final long protectedMaximum;
+
+        private final Weigher<? super K, ? super V> weigher;
+
+        private final long expireAfterWriteNanos;
+
+        private final long expireAfterAccessNanos;
+
+        private final Expiry<? super K, ? super V> expiry;
+
+        private final boolean expires;
+
+        /**
+         * The origin of the policy clock, so that times are positive and can be compared
+         * and shifted without overflow.
+         */
+        private final long origin = System.nanoTime();
+
+        private final Executor executor;
+
+        private final StripedReadBuffer<Node<K, V>> readBuffer = new StripedReadBuffer<>();
+
+        private final Queue<Node<K, V>> writeBuffer = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger pendingWrites = new AtomicInteger();
+
+        private final ReferenceQueue<Entry<K, V>> nodeQueue = new ReferenceQueue<>();
+
+        private final ReentrantLock evictionLock = new ReentrantLock();
+
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+        private final Runnable drainTask = this::drain;
+
+        // The following are guarded by the eviction lock
+
+        private final FrequencySketch sketch;
+
+        private final TimerWheel<K, V> timerWheel;
+
+        private final NodeDeque<K, V> window = new NodeDeque<>();
+
+        private final NodeDeque<K, V> probation = new NodeDeque<>();
+
+        private final NodeDeque<K, V> protect = new NodeDeque<>();
+
+        private long weightedSize;
+
+        private long windowWeightedSize;
+
+        private long protectedWeightedSize;
+
+        Eviction(Builder<K, V> builder) {
+            this.bounded = (builder.maximumWeight != Builder.UNSET);
+            this.maximum = (this.bounded ? builder.maximumWeight : Long.MAX_VALUE);
+            this.windowMaximum = Math.max(1, (long) (this.maximum * WINDOW_PERCENT));
+            this.protectedMaximum = (long) ((this.maximum - this.windowMaximum) * PROTECTED_PERCENT);
+            this.weigher = builder.weigher;
+            this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+            this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+            this.expiry = builder.expiry;
+            this.expires = builder.hasExpiry();
+            this.executor = (builder.executor != null ? builder.executor : ForkJoinPool.commonPool());
+            // Without a weigher the maximum is the expected number of entries
+            this.sketch = (!this.bounded ? null : new FrequencySketch(builder.weigher == null ? this.maximum :
+                    Math.max(builder.initialCapacity, DEFAULT_INITIAL_CAPACITY)));
+            this.timerWheel = (this.expires ? new TimerWheel<>(now()) : null);
+        }
+
+        Entry<K, V> createEntry(K key, V value, int hash) {
+            TrackedEntry<K, V> entry = new TrackedEntry<>(key, value);
+            Node<K, V> node = new Node<>(entry, hash, weigh(key, value), this.nodeQueue);
+            if (this.expires) {
+                long now = now();
+                node.writeTime = now;
+                node.expiresAt = (this.expiry != null ?
+                        now + clamp(this.expiry.expireAfterCreate(key, value, now)) : expiresAfterWrite(now));
             }
-            if (task.hasOption(TaskOption.SKIP_IF_EMPTY) && this.count.get() == 0) {
-                return task.execute(null, null, null);
+            entry.node = node;
+            return entry;
+        }
+
+        /**
+         * Return whether the entry has expired and must be treated as absent.
+         */
+        boolean isExpired(Entry<K, V> entry) {
+            return (this.expires && entry instanceof TrackedEntry<K, V> tracked && tracked.node.expiresAt - now() <= 0);
+        }
+
+        void afterRead(Entry<K, V> entry) {
+            if (entry instanceof TrackedEntry<K, V> tracked) {
+                Node<K, V> node = tracked.node;
+                if (this.expires) {
+                    long now = now();
+                    if (this.expiry != null) {
+                        node.expiresAt = now + clamp(this.expiry.expireAfterRead(
+                                entry.getKey(), entry.getValue(), now, node.expiresAt - now));
+                    } else if (this.expireAfterAccessNanos != Builder.UNSET) {
+                        node.expiresAt = Math.min(now + this.expireAfterAccessNanos, writeDeadline(node));
+                    }
+                }
+                if (!this.readBuffer.offer(node)) {
+                    scheduleDrain();
+                }
             }
-            lock();
-            try {
-                final int index = getIndex(hash, this.references);
-                final Reference<K, V> head = this.references[index];
-                Reference<K, V> ref = findInChain(head, key, hash);
-                Entry<K, V> entry = (ref != null ? ref.get() : null);
-                Entries<V> entries = value -> {
-                    @SuppressWarnings("unchecked")
-                    Entry<K, V> newEntry = new Entry<>((K) key, value);
-                    Reference<K, V> newReference = Segment.this.referenceManager.createReference(newEntry, hash, head);
-                    Segment.this.references[index] = newReference;
-                    Segment.this.count.incrementAndGet();
-                };
-                return task.execute(ref, entry, entries);
-            } finally {
-                unlock();
-                if (task.hasOption(TaskOption.RESTRUCTURE_AFTER)) {
-                    restructureIfNecessary(resize);
+        }
+
+        void afterAdd(Entry<K, V> entry) {
+            record(entry, Node.ADDED);
+        }
+
+        void afterUpdate(Entry<K, V> entry) {
+            if (entry instanceof TrackedEntry<K, V> tracked) {
+                Node<K, V> node = tracked.node;
+                node.weight = weigh(entry.getKey(), entry.getValue());
+                if (this.expires) {
+                    long now = now();
+                    node.writeTime = now;
+                    node.expiresAt = (this.expiry != null ? now + clamp(this.expiry.expireAfterUpdate(
+                            entry.getKey(), entry.getValue(), now, node.expiresAt - now)) : expiresAfterWrite(now));
+                }
+                record(entry, Node.UPDATED);
+            }
+        }
+
+        void afterRemove(Entry<K, V> entry) {
+            if (entry instanceof TrackedEntry<K, V> tracked) {
+                tracked.node.retired = true;
+                record(entry, Node.REMOVED);
+            }
+        }
+
+        private void record(Entry<K, V> entry, int event) {
+            if (entry instanceof TrackedEntry<K, V> tracked) {
+                Node<K, V> node = tracked.node;
+                synchronized (node) {
+                    node.events |= event;
                 }
+                this.writeBuffer.add(node);
+                this.pendingWrites.incrementAndGet();
             }
         }
 
         /**
-         * Clear all items from this segment.
+         * Schedule maintenance after a write, or run it on the calling thread if too many
+         * writes are pending and no other thread is running it. Expired entries are
+         * purged by this maintenance, just like garbage collected entries are purged by
+         * the restructure of a write.
          */
-        public void clear() {
-            if (this.count.get() == 0) {
+        void afterWrite() {
+            if (this.evictionLock.isHeldByCurrentThread()) {
                 return;
             }
-            lock();
-            try {
-                this.references = createReferenceArray(this.initialSize);
-                this.resizeThreshold = (int) (this.references.length * getLoadFactor());
-                this.count.set(0);
-            } finally {
-                unlock();
+            if (this.pendingWrites.get() > WRITE_BUFFER_MAXIMUM && this.evictionLock.tryLock()) {
+                try {
+                    maintenance();
+                } finally {
+                    this.evictionLock.unlock();
+                }
+            } else if (this.pendingWrites.get() > 0 || this.expires) {
+                scheduleDrain();
             }
         }
 
         /**
-         * Restructure the underlying data structure when it becomes necessary. This
-         * method can increase the size of the references table as well as purge any
-         * references that have been garbage collected.
-         *
-         * @param allowResize if resizing is permitted
+         * Run maintenance on the calling thread, waiting for the eviction lock. Unlike
+         * the maintenance after writes, this also expires the entries of the current
+         * timer wheel bucket whose time has passed, instead of waiting for the wheel to
+         * advance past that bucket.
          */
-        void restructureIfNecessary(boolean allowResize) {
-            int currCount = this.count.get();
-            boolean needsResize = allowResize && (currCount > 0 && currCount >= this.resizeThreshold);
-            Reference<K, V> ref = this.referenceManager.pollForPurge();
-            if (ref != null || (needsResize)) {
-                restructure(allowResize, ref);
+        void cleanUp() {
+            if (this.evictionLock.isHeldByCurrentThread()) {
+                return;
             }
-        }
-
-        private void restructure(boolean allowResize, Reference<K, V> ref) {
-            boolean needsResize;
-            lock();
+            this.evictionLock.lock();
             try {
-                int expectedCount = this.count.get();
-                Set<Reference<K, V>> toPurge = Collections.emptySet();
-                if (ref != null) {
-                    toPurge = new HashSet<>();
-                    while (ref != null) {
-                        toPurge.add(ref);
-                        ref = this.referenceManager.pollForPurge();
-                    }
-                }
-                expectedCount -= toPurge.size();
-
-                // Estimate new count, taking into account count inside lock and items that
-                // will be purged.
-                needsResize = (expectedCount > 0 && expectedCount >= this.resizeThreshold);
-                boolean resizing = false;
-                int restructureSize = this.references.length;
-                if (allowResize && needsResize && restructureSize < MAXIMUM_SEGMENT_SIZE) {
-                    restructureSize <<= 1;
-                    resizing = true;
+                this.drainScheduled.set(false);
+                maintenance();
+                if (this.timerWheel != null) {
+                    this.timerWheel.expireCurrent(expired -> evict(expired, true));
                 }
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
 
-                int newCount = 0;
-                // Restructure the resized reference array
-                if (resizing) {
-                    Reference<K, V>[] restructured = createReferenceArray(restructureSize);
-                    for (Reference<K, V> reference : this.references) {
-                        ref = reference;
-                        while (ref != null) {
-                            if (!toPurge.contains(ref)) {
-                                Entry<K, V> entry = ref.get();
-                                // Also filter out null references that are now null
-                                // they should be polled from the queue in a later restructure call.
-                                if (entry != null) {
-                                    int index = getIndex(ref.getHash(), restructured);
-                                    restructured[index] = this.referenceManager.createReference(
-                                            entry, ref.getHash(), restructured[index]);
-                                    newCount++;
-                                }
-                            }
-                            ref = ref.getNext();
-                        }
-                    }
-                    // Replace volatile members
-                    this.references = restructured;
-                    this.resizeThreshold = (int) (this.references.length * getLoadFactor());
-                }
-                // Restructure the existing reference array "in place"
-                else {
-                    for (int i = 0; i < this.references.length; i++) {
-                        Reference<K, V> purgedRef = null;
-                        ref = this.references[i];
-                        while (ref != null) {
-                            if (!toPurge.contains(ref)) {
-                                Entry<K, V> entry = ref.get();
-                                // Also filter out null references that are now null
-                                // they should be polled from the queue in a later restructure call.
-                                if (entry != null) {
-                                    purgedRef = this.referenceManager.createReference(
-                                            entry, ref.getHash(), purgedRef);
-                                }
-                                newCount++;
-                            }
-                            ref = ref.getNext();
+        private void scheduleDrain() {
+            if (this.drainScheduled.compareAndSet(false, true)) {
+                try {
+                    this.executor.execute(this.drainTask);
+                } catch (RejectedExecutionException ex) {
+                    this.drainScheduled.set(false);
+                    if (this.evictionLock.tryLock()) {
+                        try {
+                            maintenance();
+                        } finally {
+                            this.evictionLock.unlock();
                         }
-                        this.references[i] = purgedRef;
                     }
                 }
-                this.count.set(Math.max(newCount, 0));
+            }
+        }
+
+        private void drain() {
+            this.evictionLock.lock();
+            try {
+                this.drainScheduled.set(false);
+                maintenance();
             } finally {
-                unlock();
+                this.evictionLock.unlock();
             }
         }
 
+        /**
+         * Apply the buffered reads and writes to the policy, then expire entries and evict
+         * entries while the map exceeds its maximum. Must be called with the eviction lock held.
+         */
+        @SuppressWarnings("unchecked")
+        void maintenance() {
+            this.readBuffer.drainTo(this::onAccess);
+            Node<K, V> node;
+            while ((node = this.writeBuffer.poll()) != null) {
+                this.pendingWrites.decrementAndGet();
+                onWrite(node);
+            }
+            java.lang.ref.Reference<? extends Entry<K, V>> collected;
+            while ((collected = this.nodeQueue.poll()) != null) {
+                discard((Node<K, V>) collected);
+            }
+            if (this.timerWheel != null) {
+                this.timerWheel.advance(now(), expired -> evict(expired, true));
+            }
+            if (this.bounded) {
+                evictEntries();
+            }
+        }
 
-        private Reference<K, V> findInChain(Reference<K, V> ref, Object key, int hash) {
-            Reference<K, V> currRef = ref;
-            while (currRef != null) {
-                if (currRef.getHash() == hash) {
-                    Entry<K, V> entry = currRef.get();
-                    if (entry != null) {
-                        K entryKey = entry.getKey();
-                        if (ObjectUtils.nullSafeEquals(entryKey, key)) {
-                            return currRef;
-                        }
-                    }
+        private void onWrite(Node<K, V> node) {
+            int events;
+            synchronized (node) {
+                events = node.events;
+                node.events = 0;
+            }
+            if (events == 0) {
+                // Already handled with an earlier buffered write of the same node
+                return;
+            }
+            if (node.retired || node.get() == null) {
+                discard(node);
+                return;
+            }
+            if ((events & Node.ADDED) != 0 && node.queue == null) {
+                node.policyWeight = node.weight;
+                link(this.window, node);
+                increment(node);
+                if (this.timerWheel != null) {
+                    this.timerWheel.schedule(node);
                 }
-                currRef = currRef.getNext();
+            } else if ((events & Node.UPDATED) != 0 && node.queue != null) {
+                int delta = node.weight - node.policyWeight;
+                node.policyWeight = node.weight;
+                this.weightedSize += delta;
+                if (node.queue == this.window) {
+                    this.windowWeightedSize += delta;
+                } else if (node.queue == this.protect) {
+                    this.protectedWeightedSize += delta;
+                }
+                onAccess(node);
             }
-            return null;
         }
 
-        @SuppressWarnings({ "unchecked" })
-        private Reference<K, V>[] createReferenceArray(int size) {
-            return new Reference[size];
+        private void onAccess(Node<K, V> node) {
+            NodeDeque<K, V> queue = node.queue;
+            if (queue == null) {
+                return;
+            }
+            increment(node);
+            if (this.timerWheel != null) {
+                this.timerWheel.reschedule(node);
+            }
+            if (queue == this.probation) {
+                // A second hit promotes the entry to the protected space
+                unlink(node);
+                link(this.protect, node);
+                while (this.protectedWeightedSize > this.protectedMaximum && this.protect.head != null) {
+                    Node<K, V> demoted = this.protect.head;
+                    unlink(demoted);
+                    link(this.probation, demoted);
+                }
+            } else {
+                queue.moveToTail(node);
+            }
         }
 
-        private int getIndex(int hash, Reference<K, V>[] references) {
-            return (hash & (references.length - 1));
+        private void increment(Node<K, V> node) {
+            if (this.sketch != null) {
+                this.sketch.increment(node.hash);
+            }
+        }
+
+        private void evictEntries() {
+            // Entries that overflow the window become candidates at the tail of probation
+            int candidates = 0;
+            while (this.windowWeightedSize > this.windowMaximum && this.window.head != null) {
+                Node<K, V> node = this.window.head;
+                unlink(node);
+                link(this.probation, node);
+                candidates++;
+            }
+            while (this.weightedSize > this.maximum) {
+                Node<K, V> victim = this.probation.head;
+                Node<K, V> candidate = (candidates > 0 ? this.probation.tail : null);
+                if (victim == null) {
+                    victim = (this.protect.head != null ? this.protect.head : this.window.head);
+                    if (victim == null) {
+                        break;
+                    }
+                }
+                if (candidate != null && candidate != victim) {
+                    if (candidate.policyWeight > this.maximum
+                            || this.sketch.frequency(candidate.hash) <= this.sketch.frequency(victim.hash)) {
+                        // The candidate is not admitted
+                        victim = candidate;
+                        candidates--;
+                    }
+                } else if (candidate == victim) {
+                    candidates--;
+                }
+                evict(victim, false);
+            }
         }
 
         /**
-         * Return the size of the current references array.
+         * Remove the node from the policy and its entry from the map.
+         *
+         * @param expired whether the entry is removed because it expired, in which case it
+         *                is only removed if it has not been accessed or updated meanwhile
          */
-        public int getSize() {
-            return this.references.length;
+        private void evict(Node<K, V> node, boolean expired) {
+            Entry<K, V> victim = node.get();
+            if (victim == null) {
+                discard(node);
+                return;
+            }
+            boolean removed = getSegmentForHash(node.hash).doTask(node.hash, victim.getKey(),
+                    new Task<Boolean>(TaskOption.RESTRUCTURE_AFTER, TaskOption.SKIP_IF_EMPTY) {
+                        @Override
+                        protected Boolean execute(Reference<K, V> ref, Entry<K, V> entry) {
+                            if (ref != null && entry == victim && (!expired || isExpired(entry))) {
+                                ref.release();
+                                notifyRemoval(entry.getKey(), entry.getValue(),
+                                        (expired ? RemovalCause.EXPIRED : RemovalCause.SIZE));
+                                return true;
+                            }
+                            return false;
+                        }
+                    });
+            if (removed || !expired || node.retired) {
+                discard(node);
+            } else if (this.timerWheel != null && node.queue != null) {
+                // Read or updated after the wheel fired
+                this.timerWheel.schedule(node);
+            }
         }
 
         /**
-         * Return the total number of references in this segment.
+         * Remove the node from the policy, the entry is no longer in the map.
          */
-        public int getCount() {
-            return this.count.get();
+        private void discard(Node<K, V> node) {
+            unlink(node);
+            if (this.timerWheel != null) {
+                this.timerWheel.deschedule(node);
+            }
+        }
+
+        private void link(NodeDeque<K, V> queue, Node<K, V> node) {
+            queue.addTail(node);
+            node.queue = queue;
+            this.weightedSize += node.policyWeight;
+            if (queue == this.window) {
+                this.windowWeightedSize += node.policyWeight;
+            } else if (queue == this.protect) {
+                this.protectedWeightedSize += node.policyWeight;
+            }
+        }
+
+        private void unlink(Node<K, V> node) {
+            NodeDeque<K, V> queue = node.queue;
+            if (queue == null) {
+                return;
+            }
+            queue.remove(node);
+            node.queue = null;
+            this.weightedSize -= node.policyWeight;
+            if (queue == this.window) {
+                this.windowWeightedSize -= node.policyWeight;
+            } else if (queue == this.protect) {
+                this.protectedWeightedSize -= node.policyWeight;
+            }
+        }
+
+        private int weigh(K key, V value) {
+            if (this.weigher == null) {
+                return 1;
+            }
+            int weight = this.weigher.weigh(key, value);
+            Assert.state(weight >= 0, "Weight must not be negative");
+            return weight;
+        }
+
+        private long expiresAfterWrite(long now) {
+            long expiresAt = now + MAXIMUM_EXPIRY;
+            if (this.expireAfterWriteNanos != Builder.UNSET) {
+                expiresAt = now + this.expireAfterWriteNanos;
+            }
+            if (this.expireAfterAccessNanos != Builder.UNSET) {
+                expiresAt = Math.min(expiresAt, now + this.expireAfterAccessNanos);
+            }
+            return expiresAt;
+        }
+
+        private long writeDeadline(Node<K, V> node) {
+            long writeTime = node.writeTime;
+            return (this.expireAfterWriteNanos != Builder.UNSET ?
+                    writeTime + this.expireAfterWriteNanos : writeTime + MAXIMUM_EXPIRY);
+        }
+
+        private long clamp(long duration) {
+            return Math.min(Math.max(duration, 0L), MAXIMUM_EXPIRY);
+        }
+
+        private long now() {
+            return System.nanoTime() - this.origin;
         }
     }
 
 
     /**
-     * A reference to an {@link Entry} contained in the map. Implementations are usually
-     * wrappers around specific Java reference implementations (e.g., {@link SoftReference}).
+     * A hierarchical timer wheel of the nodes of an expiring map, so that adding,
+     * removing and expiring a node is O(1) amortized. Each level has buckets covering a
+     * coarser span of time; when the wheel advances, the buckets that have passed are
+     * emptied and their nodes either expire or move to a finer bucket.
      *
-     * @param <K> the key type
-     * @param <V> the value type
+     * <p>This class is not thread safe, it is guarded by the eviction lock.
+     *
+     * @see <a href="http://www.cs.columbia.edu/~nahum/w6998/papers/ton97-timing-wheels.pdf">Hashed and Hierarchical Timing Wheels</a>
      */
-    protected interface Reference<K, V> {
+    private static final class TimerWheel<K, V> {
+
+        private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+        private static final long[] SPANS = {
+                ceilingPowerOfTwo(TimeUnit.SECONDS.toNanos(1)), // 1.07s
+                ceilingPowerOfTwo(TimeUnit.MINUTES.toNanos(1)), // 1.14m
+                ceilingPowerOfTwo(TimeUnit.HOURS.toNanos(1)),   // 1.22h
+                ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),    // 1.63d
+                BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)), // 6.5d
+                BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)), // 6.5d
+        };
+
+        private static final long[] SHIFT = {
+                Long.numberOfTrailingZeros(SPANS[0]),
+                Long.numberOfTrailingZeros(SPANS[1]),
+                Long.numberOfTrailingZeros(SPANS[2]),
+                Long.numberOfTrailingZeros(SPANS[3]),
+                Long.numberOfTrailingZeros(SPANS[4]),
+        };
+
+        /**
+         * Sentinels of the circular bucket lists, indexed by level and bucket.
+         */
+        private final Node<K, V>[][] wheel;
+
+        /**
+         * The policy time the wheel was last advanced to.
+         */
+        private long nanos;
+
+        @SuppressWarnings("unchecked")
+        TimerWheel(long nanos) {
+            this.nanos = nanos;
+            this.wheel = (Node<K, V>[][]) new Node<?, ?>[BUCKETS.length][];
+            for (int i = 0; i < this.wheel.length; i++) {
+                this.wheel[i] = (Node<K, V>[]) new Node<?, ?>[BUCKETS[i]];
+                for (int j = 0; j < this.wheel[i].length; j++) {
+                    Node<K, V> sentinel = new Node<>(null, 0, 0, null);
+                    sentinel.previousInTimer = sentinel;
+                    sentinel.nextInTimer = sentinel;
+                    this.wheel[i][j] = sentinel;
+                }
+            }
+        }
+
+        /**
+         * Advance the wheel to the current time, expiring the nodes whose time has passed.
+         *
+         * @param now      the current policy time
+         * @param expirer  called for each node that has expired, the node is no longer scheduled
+         */
+        void advance(long now, Consumer<Node<K, V>> expirer) {
+            long previous = this.nanos;
+            this.nanos = now;
+            for (int i = 0; i < SHIFT.length; i++) {
+                long previousTicks = (previous >>> SHIFT[i]);
+                long currentTicks = (now >>> SHIFT[i]);
+                if (currentTicks - previousTicks <= 0L) {
+                    break;
+                }
+                expire(i, previousTicks, currentTicks - previousTicks, expirer);
+            }
+        }
+
+        private void expire(int level, long previousTicks, long delta, Consumer<Node<K, V>> expirer) {
+            Node<K, V>[] timerWheel = this.wheel[level];
+            int mask = timerWheel.length - 1;
+            int steps = (int) Math.min(delta + 1, timerWheel.length);
+            int start = (int) (previousTicks & mask);
+            int end = start + steps;
+            for (int i = start; i < end; i++) {
+                Node<K, V> sentinel = timerWheel[i & mask];
+                Node<K, V> node = sentinel.nextInTimer;
+                sentinel.previousInTimer = sentinel;
+                sentinel.nextInTimer = sentinel;
+                while (node != sentinel) {
+                    Node<K, V> next = node.nextInTimer;
+                    node.previousInTimer = null;
+                    node.nextInTimer = null;
+                    if (node.expiresAt - this.nanos <= 0L) {
+                        expirer.accept(node);
+                    } else {
+                        schedule(node);
+                    }
+                    node = next;
+                }
+            }
+        }
+
+        /**
+         * Expire the nodes of the current bucket whose time has passed. The wheel
+         * otherwise only expires them once it advances past the bucket, up to a span of
+         * the first level later. Nodes expiring later are scheduled in other buckets,
+         * or in a coarser level until they are within one span.
+         *
+         * @param expirer called for each node that has expired, the node is no longer scheduled
+         */
+        void expireCurrent(Consumer<Node<K, V>> expirer) {
+            Node<K, V>[] timerWheel = this.wheel[0];
+            Node<K, V> sentinel = timerWheel[(int) ((this.nanos >>> SHIFT[0]) & (timerWheel.length - 1))];
+            Node<K, V> node = sentinel.nextInTimer;
+            while (node != sentinel) {
+                Node<K, V> next = node.nextInTimer;
+                if (node.expiresAt - this.nanos <= 0L) {
+                    deschedule(node);
+                    expirer.accept(node);
+                }
+                node = next;
+            }
+        }
 
         /**
-         * Return the referenced entry, or {@code null} if the entry is no longer available.
+         * Add the node to the bucket of its expiration time.
          */
-
-        Entry<K, V> get();
+        void schedule(Node<K, V> node) {
+            Node<K, V> sentinel = findBucket(node.expiresAt);
+            node.nextInTimer = sentinel;
+            node.previousInTimer = sentinel.previousInTimer;
+            sentinel.previousInTimer.nextInTimer = node;
+            sentinel.previousInTimer = node;
+        }
 
         /**
-         * Return the hash for the reference.
+         * Move the node to the bucket of its current expiration time.
          */
-        int getHash();
+        void reschedule(Node<K, V> node) {
+            deschedule(node);
+            schedule(node);
+        }
 
         /**
-         * Return the next reference in the chain, or {@code null} if none.
+         * Remove the node from its bucket, if scheduled.
          */
+        void deschedule(Node<K, V> node) {
+            if (node.nextInTimer != null) {
+                node.nextInTimer.previousInTimer = node.previousInTimer;
+                node.previousInTimer.nextInTimer = node.nextInTimer;
+                node.nextInTimer = null;
+                node.previousInTimer = null;
+            }
+        }
 
-        Reference<K, V> getNext();
+        private Node<K, V> findBucket(long time) {
+            long duration = time - this.nanos;
+            int length = this.wheel.length - 1;
+            for (int i = 0; i < length; i++) {
+                if (duration < SPANS[i + 1]) {
+                    long ticks = (time >>> SHIFT[i]);
+                    int index = (int) (ticks & (this.wheel[i].length - 1));
+                    return this.wheel[i][index];
+                }
+            }
+            return this.wheel[length][0];
+        }
 
-        /**
-         * Release this entry and ensure that it will be returned from
-         * {@code ReferenceManager#pollForPurge()}.
-         */
-        void release();
+        private static long ceilingPowerOfTwo(long value) {
+            return 1L << -Long.numberOfLeadingZeros(value - 1);
+        }
     }
 
 
     /**
-     * A single map entry.
-     *
-     * @param <K> the key type
-     * @param <V> the value type
+     * An {@link Entry} of a bounded or expiring map, linked to its node in the eviction policy.
      */
-    protected static final class Entry<K, V> implements Map.Entry<K, V> {
-
-
-        private final K key;
-
+    private static final class TrackedEntry<K, V> extends Entry<K, V> {
 
-        private volatile V value;
+        private Node<K, V> node;
 
-        public Entry(K key, V value) {
-            this.key = key;
-            this.value = value;
+        TrackedEntry(K key, V value) {
+            super(key, value);
         }
+    }
 
-        @Override
 
-        public K getKey() {
-            return this.key;
-        }
+    /**
+     * The eviction policy node of a {@link TrackedEntry}. The node only weakly refers to
+     * its entry and is enqueued once the entry has been reclaimed.
+     */
+    private static final class Node<K, V> extends WeakReference<Entry<K, V>> {
 
-        @Override
+        static final int ADDED = 1;
 
-        public V getValue() {
-            return this.value;
-        }
+        static final int UPDATED = 1 << 1;
 
-        @Override
+        static final int REMOVED = 1 << 2;
 
-        public V setValue(V value) {
-            V previous = this.value;
-            this.value = value;
-            return previous;
-        }
+        final int hash;
 
-        @Override
-        public boolean equals(Object other) {
-            return (this == other || (other instanceof Map.Entry<?, ?> that &&
-                    ObjectUtils.nullSafeEquals(getKey(), that.getKey()) &&
-                    ObjectUtils.nullSafeEquals(getValue(), that.getValue())));
-        }
+        /**
+         * The latest weight calculated by a writer.
+         */
+        volatile int weight;
 
-        @Override
-        public int hashCode() {
-            return (ObjectUtils.nullSafeHashCode(this.key) ^ ObjectUtils.nullSafeHashCode(this.value));
-        }
+        /**
+         * Whether the entry has been removed from the map.
+         */
+        volatile boolean retired;
 
-        @Override
-        public String toString() {
-            return (this.key + "=" + this.value);
-        }
-    }
+        /**
+         * Buffered write events, guarded by the node monitor.
+         */
+        int events;
 
+        /**
+         * The policy time of the last write, used for expiration after write.
+         */
+        volatile long writeTime;
 
-    /**
-     * A task that can be {@link Segment#doTask run} against a {@link Segment}.
-     */
-    private abstract class Task<T> {
+        /**
+         * The policy time at which the entry expires.
+         */
+        volatile long expiresAt;
 
-        private final EnumSet<TaskOption> options;
+        // The following are guarded by the eviction lock
 
-        public Task(TaskOption... options) {
-            this.options = (options.length == 0 ? EnumSet.noneOf(TaskOption.class) : EnumSet.of(options[0], options));
-        }
+        int policyWeight;
 
-        public boolean hasOption(TaskOption option) {
-            return this.options.contains(option);
-        }
+        NodeDeque<K, V> queue;
 
-        /**
-         * Execute the task.
-         *
-         * @param ref     the found reference (or {@code null})
-         * @param entry   the found entry (or {@code null})
-         * @param entries access to the underlying entries
-         * @return the result of the task
-         * @see #execute(Reference, Entry)
-         */
+        Node<K, V> previous;
 
-        protected T execute(Reference<K, V> ref, Entry<K, V> entry, Entries<V> entries) {
-            return execute(ref, entry);
-        }
+        Node<K, V> next;
 
-        /**
-         * Convenience method that can be used for tasks that do not need access to {@link Entries}.
-         *
-         * @param ref   the found reference (or {@code null})
-         * @param entry the found entry (or {@code null})
-         * @return the result of the task
-         * @see #execute(Reference, Entry, Entries)
-         */
+        Node<K, V> previousInTimer;
 
-        protected T execute(Reference<K, V> ref, Entry<K, V> entry) {
-            return null;
+        Node<K, V> nextInTimer;
+
+        Node(Entry<K, V> entry, int hash, int weight, ReferenceQueue<Entry<K, V>> queue) {
+            super(entry, queue);
+            this.hash = hash;
+            this.weight = weight;
         }
     }
 
 
     /**
-     * Various options supported by a {@code Task}.
+     * A doubly-linked access-order deque of policy nodes, the head is the least recently used.
      */
-    private enum TaskOption {
+    private static final class NodeDeque<K, V> {
 
-        RESTRUCTURE_BEFORE, RESTRUCTURE_AFTER, SKIP_IF_EMPTY, RESIZE
-    }
+        Node<K, V> head;
 
+        Node<K, V> tail;
 
-    /**
-     * Allows a task access to {@link ConcurrentReferenceHashMap.Segment} entries.
-     */
-    private interface Entries<V> {
+        void addTail(Node<K, V> node) {
+            node.previous = this.tail;
+            node.next = null;
+            if (this.tail == null) {
+                this.head = node;
+            } else {
+                this.tail.next = node;
+            }
+            this.tail = node;
+        }
 
-        /**
-         * Add a new entry with the specified value.
-         *
-         * @param value the value to add
-         */
-        void add(V value);
+        void remove(Node<K, V> node) {
+            if (node.previous == null) {
+                this.head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                this.tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+        }
+
+        void moveToTail(Node<K, V> node) {
+            if (node != this.tail) {
+                remove(node);
+                addTail(node);
+            }
+        }
     }
 
 
@@ -873,6 +3221,11 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
             return new EntryIterator();
         }
 
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new EntrySpliterator(mappingCount());
+        }
+
         @Override
         public boolean contains(Object o) {
             if (o instanceof Map.Entry<?, ?> entry) {
@@ -906,20 +3259,117 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
 
 
     /**
-     * Internal entry iterator implementation.
+     * Walks the references of a range of segments, or of a range of bins of one
+     * segment, without locking. Bins moved by a resize are followed into the new table,
+     * garbage collected and expired entries are skipped.
      */
-    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+    private class Traverser {
+
+        /**
+         * The next segment to walk once the current references are exhausted.
+         */
+        int segmentIndex;
 
-        private int segmentIndex;
+        int segmentFence;
 
-        private int referenceIndex;
 
+        Reference<K, V>[] references;
 
-        private Reference<K, V>[] references;
+        int referenceIndex;
+
+        int referenceFence;
 
 
         private Reference<K, V> reference;
 
+        /**
+         * Chains of bins that were moved by a resize while traversing.
+         */
+        final Deque<Reference<K, V>> moved = new ArrayDeque<>();
+
+        Traverser(int segmentIndex, int segmentFence) {
+            this.segmentIndex = segmentIndex;
+            this.segmentFence = segmentFence;
+        }
+
+        Traverser(Reference<K, V>[] references, int referenceIndex, int referenceFence) {
+            this.references = references;
+            this.referenceIndex = referenceIndex;
+            this.referenceFence = referenceFence;
+        }
+
+        /**
+         * Return the next live entry, or {@code null} if the traversal is complete.
+         */
+        final Entry<K, V> advance() {
+            while (true) {
+                moveToNextReference();
+                if (this.reference == null) {
+                    return null;
+                }
+                Entry<K, V> entry = this.reference.get();
+                if (entry != null && !isExpired(entry)) {
+                    return entry;
+                }
+            }
+        }
+
+        /**
+         * Return whether a chain is being walked, so the current bin is taken.
+         */
+        final boolean isWalking() {
+            return (this.reference != null || !this.moved.isEmpty());
+        }
+
+        private void moveToNextReference() {
+            if (this.reference != null) {
+                this.reference = this.reference.getNext();
+            }
+            while (this.reference == null) {
+                if (!this.moved.isEmpty()) {
+                    this.reference = this.moved.pop();
+                } else if (this.references != null && this.referenceIndex < this.referenceFence) {
+                    this.reference = referenceAt(this.references, this.referenceIndex);
+                    this.referenceIndex++;
+                } else if (this.segmentIndex < this.segmentFence) {
+                    loadNextSegment();
+                    continue;
+                } else {
+                    this.references = null;
+                    return;
+                }
+                if (this.reference instanceof ForwardingReference<K, V> forwarding) {
+                    // Follow the bins the entries were split into, a cleared bin has no entries left
+                    if (forwarding.isResize()) {
+                        Reference<K, V>[] nextReferences = forwarding.getNextReferences();
+                        pushMoved(referenceAt(nextReferences, forwarding.getIndex() + forwarding.getLength()));
+                        pushMoved(referenceAt(nextReferences, forwarding.getIndex()));
+                    }
+                    this.reference = null;
+                }
+            }
+        }
+
+        final void loadNextSegment() {
+            this.references = ConcurrentReferenceHashMap.this.segments[this.segmentIndex].references;
+            this.referenceIndex = 0;
+            this.referenceFence = this.references.length;
+            this.segmentIndex++;
+        }
+
+        private void pushMoved(Reference<K, V> reference) {
+            if (reference != null) {
+                this.moved.push(reference);
+            }
+        }
+    }
+
+
+    /**
+     * Internal entry iterator implementation.
+     */
+    private class EntryIterator extends Traverser implements Iterator<Map.Entry<K, V>> {
+
 
         private Entry<K, V> next;
 
@@ -927,7 +3377,7 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
         private Entry<K, V> last;
 
         public EntryIterator() {
-            moveToNextSegment();
+            super(0, ConcurrentReferenceHashMap.this.segments.length);
         }
 
         @Override
@@ -948,44 +3398,96 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
         }
 
         private void getNextIfNecessary() {
-            while (this.next == null) {
-                moveToNextReference();
-                if (this.reference == null) {
-                    return;
-                }
-                this.next = this.reference.get();
+            if (this.next == null) {
+                this.next = advance();
             }
         }
 
-        private void moveToNextReference() {
-            if (this.reference != null) {
-                this.reference = this.reference.getNext();
+        @Override
+        public void remove() {
+            Assert.state(this.last != null, "No element to remove");
+            ConcurrentReferenceHashMap.this.remove(this.last.getKey());
+            this.last = null;
+        }
+    }
+
+
+    /**
+     * Internal entry spliterator implementation. Splits by segment first, and by bin
+     * range once a single segment is left, each split walks its part without locking.
+     */
+    private class EntrySpliterator extends Traverser implements Spliterator<Map.Entry<K, V>> {
+
+        private long estimatedSize;
+
+        EntrySpliterator(long estimatedSize) {
+            super(0, ConcurrentReferenceHashMap.this.segments.length);
+            this.estimatedSize = estimatedSize;
+        }
+
+        private EntrySpliterator(int segmentIndex, int segmentFence, long estimatedSize) {
+            super(segmentIndex, segmentFence);
+            this.estimatedSize = estimatedSize;
+        }
+
+        private EntrySpliterator(Reference<K, V>[] references, int referenceIndex, int referenceFence,
+                                 long estimatedSize) {
+            super(references, referenceIndex, referenceFence);
+            this.estimatedSize = estimatedSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            Assert.notNull(action, "Action must not be null");
+            Entry<K, V> entry = advance();
+            if (entry == null) {
+                return false;
             }
-            while (this.reference == null && this.references != null) {
-                if (this.referenceIndex >= this.references.length) {
-                    moveToNextSegment();
-                    this.referenceIndex = 0;
-                } else {
-                    this.reference = this.references[this.referenceIndex];
-                    this.referenceIndex++;
-                }
+            action.accept(entry);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+            Assert.notNull(action, "Action must not be null");
+            for (Entry<K, V> entry = advance(); entry != null; entry = advance()) {
+                action.accept(entry);
             }
         }
 
-        private void moveToNextSegment() {
-            this.reference = null;
-            this.references = null;
-            if (this.segmentIndex < ConcurrentReferenceHashMap.this.segments.length) {
-                this.references = ConcurrentReferenceHashMap.this.segments[this.segmentIndex].references;
-                this.segmentIndex++;
+        @Override
+        public Spliterator<Map.Entry<K, V>> trySplit() {
+            boolean started = (isWalking() || (this.references != null && this.referenceIndex < this.referenceFence));
+            int remaining = this.segmentFence - this.segmentIndex;
+            if (remaining > 1 || (remaining == 1 && started)) {
+                // Hand off the upper half of the segments not yet started
+                int middle = this.segmentFence - ((remaining + (started ? 1 : 0)) >>> 1);
+                EntrySpliterator split = new EntrySpliterator(middle, this.segmentFence, this.estimatedSize >>>= 1);
+                this.segmentFence = middle;
+                return split;
+            }
+            if (remaining == 1) {
+                loadNextSegment();
             }
+            if (this.references != null && this.referenceFence - this.referenceIndex > 1) {
+                // Hand off the upper half of the bins not yet walked
+                int middle = (this.referenceIndex + this.referenceFence) >>> 1;
+                EntrySpliterator split = new EntrySpliterator(this.references, middle, this.referenceFence,
+                        this.estimatedSize >>>= 1);
+                this.referenceFence = middle;
+                return split;
+            }
+            return null;
         }
 
         @Override
-        public void remove() {
-            Assert.state(this.last != null, "No element to remove");
-            ConcurrentReferenceHashMap.this.remove(this.last.getKey());
-            this.last = null;
+        public long estimateSize() {
+            return this.estimatedSize;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.CONCURRENT | Spliterator.DISTINCT | Spliterator.NONNULL;
         }
     }
 
@@ -1005,7 +3507,21 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
      */
     protected class ReferenceManager {
 
-        private final ReferenceQueue<Entry<K, V>> queue = new ReferenceQueue<>();
+        private final ReferenceQueue<? super Entry<K, V>> queue = (ConcurrentReferenceHashMap.this.purgeInBackground ?
+                ReferenceCleaner.queue() : new ReferenceQueue<>());
+
+        /**
+         * The segment purging the references in the background, or {@code null} if they
+         * are purged by {@link #pollForPurge()}.
+         */
+        private ReferenceCleaner.Purgeable owner;
+
+        /**
+         * The references released while an {@link #owner} purges garbage collected
+         * references in the background. They are not enqueued on the shared queue, so
+         * that the write releasing them also purges them.
+         */
+        private final Queue<Reference<K, V>> released = new ConcurrentLinkedQueue<>();
 
         /**
          * Factory method used to create a new {@link Reference}.
@@ -1017,22 +3533,27 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
          */
         public Reference<K, V> createReference(Entry<K, V> entry, int hash, Reference<K, V> next) {
             if (ConcurrentReferenceHashMap.this.referenceType == ReferenceType.WEAK) {
-                return new WeakEntryReference<>(entry, hash, next, this.queue);
+                return new WeakEntryReference<>(entry, hash, next, this.queue, this.owner);
             }
-            return new SoftEntryReference<>(entry, hash, next, this.queue);
+            return new SoftEntryReference<>(entry, hash, next, this.queue, this.owner);
         }
 
         /**
          * Return any reference that has been garbage collected and can be purged from the
          * underlying structure or {@code null} if no references need purging. This
          * method must be thread safe and ideally should not block when returning
-         * {@code null}. References should be returned once and only once.
+         * {@code null}. References should be returned once and only once. When garbage
+         * collected references are purged in the background, only references that have
+         * been {@link Reference#release() released} are returned.
          *
          * @return a reference to purge or {@code null}
          */
         @SuppressWarnings("unchecked")
 
         public Reference<K, V> pollForPurge() {
+            if (this.owner != null) {
+                return this.released.poll();
+            }
             return (Reference<K, V>) this.queue.poll();
         }
     }
@@ -1041,19 +3562,30 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
     /**
      * Internal {@link Reference} implementation for {@link SoftReference SoftReferences}.
      */
-    private static final class SoftEntryReference<K, V> extends SoftReference<Entry<K, V>> implements Reference<K, V> {
+    private static final class SoftEntryReference<K, V> extends SoftReference<Entry<K, V>>
+            implements Reference<K, V>, ReferenceCleaner.Owned {
 
         private final int hash;
 
 
         private final Reference<K, V> nextReference;
 
+        private final ReferenceCleaner.Purgeable owner;
+
+        private volatile boolean released;
+
         public SoftEntryReference(Entry<K, V> entry, int hash, Reference<K, V> next,
-                ReferenceQueue<Entry<K, V>> queue) {
+                ReferenceQueue<? super Entry<K, V>> queue, ReferenceCleaner.Purgeable owner) {
 
             super(entry, queue);
             this.hash = hash;
             this.nextReference = next;
+            this.owner = owner;
+        }
+
+        @Override
+        public ReferenceCleaner.Purgeable getOwner() {
+            return this.owner;
         }
 
         @Override
@@ -1069,7 +3601,17 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
 
         @Override
         public void release() {
-            enqueue();
+            this.released = true;
+            if (this.owner != null) {
+                this.owner.released(this);
+            } else {
+                enqueue();
+            }
+        }
+
+        @Override
+        public boolean isReleased() {
+            return this.released;
         }
     }
 
@@ -1077,19 +3619,30 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
     /**
      * Internal {@link Reference} implementation for {@link WeakReference WeakReferences}.
      */
-    private static final class WeakEntryReference<K, V> extends WeakReference<Entry<K, V>> implements Reference<K, V> {
+    private static final class WeakEntryReference<K, V> extends WeakReference<Entry<K, V>>
+            implements Reference<K, V>, ReferenceCleaner.Owned {
 
         private final int hash;
 
 
         private final Reference<K, V> nextReference;
 
+        private final ReferenceCleaner.Purgeable owner;
+
+        private volatile boolean released;
+
         public WeakEntryReference(Entry<K, V> entry, int hash, Reference<K, V> next,
-                ReferenceQueue<Entry<K, V>> queue) {
+                ReferenceQueue<? super Entry<K, V>> queue, ReferenceCleaner.Purgeable owner) {
 
             super(entry, queue);
             this.hash = hash;
             this.nextReference = next;
+            this.owner = owner;
+        }
+
+        @Override
+        public ReferenceCleaner.Purgeable getOwner() {
+            return this.owner;
         }
 
         @Override
@@ -1105,7 +3658,17 @@ public class ConcurrentReferenceHashMap<K, V> extends AbstractMap<K, V> implemen
 
         @Override
         public void release() {
-            enqueue();
+            this.released = true;
+            if (this.owner != null) {
+                this.owner.released(this);
+            } else {
+                enqueue();
+            }
+        }
+
+        @Override
+        public boolean isReleased() {
+            return this.released;
         }
     }
 
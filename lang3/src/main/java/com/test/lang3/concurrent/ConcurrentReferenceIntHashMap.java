@@ -0,0 +1,281 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.test.lang3.concurrent;
+
+
+import com.test.lang3.concurrent.ConcurrentReferenceHashMap.ReferenceType;
+import com.test.lang3.concurrent.ConcurrentReferenceHashMap.Restructure;
+import com.test.lang3.utils.Assert;
+
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * A {@link ConcurrentReferenceHashMap} specialized for {@code int} keys. Keys are
+ * stored inline in the {@link ReferenceType#SOFT soft} or {@linkplain ReferenceType#WEAK weak}
+ * references, so the primitive methods such as {@link #get(int)} and {@link #put(int, Object)}
+ * neither box the key nor allocate an entry per mapping.
+ *
+ * <p>The map follows the segment design of {@link ConcurrentReferenceHashMap}: reads are
+ * not locked, writes lock one segment, and garbage collected references are purged when
+ * a segment is {@linkplain Restructure restructured}. Unlike {@link ConcurrentReferenceHashMap}
+ * the value itself is softly or weakly referenced, so a mapping stays in the map as long
+ * as its value is reachable, and {@code null} values are not supported.
+ *
+ * <p>The {@link Map} methods taking a {@link Integer} are supported and delegate to the
+ * primitive methods, the entry set creates its entries while iterating.
+ *
+ * @param <V> the value type
+ * @see ConcurrentReferenceLongHashMap
+ * @since 3.2
+ */
+public class ConcurrentReferenceIntHashMap<V> extends ConcurrentReferencePrimitiveHashMap<Integer, V> {
+
+    /**
+     * Create a new {@code ConcurrentReferenceIntHashMap} instance.
+     */
+    public ConcurrentReferenceIntHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_REFERENCE_TYPE);
+    }
+
+    /**
+     * Create a new {@code ConcurrentReferenceIntHashMap} instance.
+     *
+     * @param initialCapacity the initial capacity of the map
+     */
+    public ConcurrentReferenceIntHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_REFERENCE_TYPE);
+    }
+
+    /**
+     * Create a new {@code ConcurrentReferenceIntHashMap} instance.
+     *
+     * @param initialCapacity the initial capacity of the map
+     * @param referenceType   the reference type used for values (soft or weak)
+     */
+    public ConcurrentReferenceIntHashMap(int initialCapacity, ReferenceType referenceType) {
+        this(ConcurrentReferenceHashMap.defaultInitialCapacity(initialCapacity,
+                        ConcurrentReferenceHashMap.defaultConcurrencyLevel()), DEFAULT_LOAD_FACTOR,
+                ConcurrentReferenceHashMap.defaultConcurrencyLevel(), referenceType);
+    }
+
+    /**
+     * Create a new {@code ConcurrentReferenceIntHashMap} instance.
+     *
+     * @param initialCapacity  the initial capacity of the map
+     * @param loadFactor       the load factor. When the average number of references per
+     *                         table exceeds this value, resize will be attempted.
+     * @param concurrencyLevel the expected number of threads that will concurrently
+     *                         write to the map
+     * @param referenceType    the reference type used for values (soft or weak)
+     */
+    public ConcurrentReferenceIntHashMap(
+            int initialCapacity, float loadFactor, int concurrencyLevel, ReferenceType referenceType) {
+
+        super(initialCapacity, loadFactor, concurrencyLevel, referenceType);
+    }
+
+
+    /**
+     * Get the hash for a given key. This implementation applies the same Wang/Jenkins algorithm
+     * as {@link ConcurrentReferenceHashMap#getHash(Object)}.
+     *
+     * @param key the key to hash
+     * @return the resulting hash code
+     */
+    protected int getHash(int key) {
+        return spread(key);
+    }
+
+    /**
+     * Return the value to which the key is mapped, or {@code null}.
+     *
+     * @param key the key
+     * @return the value, or {@code null} if not mapped or garbage collected
+     */
+    public V get(int key) {
+        return getValue(key, getHash(key));
+    }
+
+    /**
+     * Return the value to which the key is mapped, or the default value.
+     *
+     * @param key          the key
+     * @param defaultValue the value returned if the key is not mapped
+     * @return the value, or the default value if not mapped or garbage collected
+     */
+    public V getOrDefault(int key, V defaultValue) {
+        V value = get(key);
+        return (value != null ? value : defaultValue);
+    }
+
+    /**
+     * Return whether the key is mapped to a value that has not been garbage collected.
+     *
+     * @param key the key
+     * @return {@code true} if the key is mapped
+     */
+    public boolean containsKey(int key) {
+        return (get(key) != null);
+    }
+
+    /**
+     * Return the {@link Reference} for the specified {@code key}, or {@code null} if not found.
+     *
+     * @param key         the key
+     * @param restructure types of restructure allowed during this call
+     * @return the reference, or {@code null} if not found
+     */
+    protected final Reference<V> getReference(int key, Restructure restructure) {
+        return getReference(key, getHash(key), restructure);
+    }
+
+    /**
+     * Map the key to the value, replacing any existing mapping.
+     *
+     * @param key   the key
+     * @param value the value, not {@code null}
+     * @return the previous value, or {@code null}
+     */
+    public V put(int key, V value) {
+        return putValue(key, getHash(key), value, true);
+    }
+
+    /**
+     * Map the key to the value unless it is mapped already.
+     *
+     * @param key   the key
+     * @param value the value, not {@code null}
+     * @return the existing value, or {@code null} if the value was added
+     */
+    public V putIfAbsent(int key, V value) {
+        return putValue(key, getHash(key), value, false);
+    }
+
+    /**
+     * Return the value mapped to the key, computing and adding it if absent. The mapping
+     * function is called with the segment locked, it must not update this map.
+     *
+     * @param key             the key
+     * @param mappingFunction the function computing the value, may return {@code null}
+     *                        in which case nothing is added
+     * @return the current (existing or computed) value, or {@code null}
+     */
+    public V computeIfAbsent(int key, IntFunction<? extends V> mappingFunction) {
+        Assert.notNull(mappingFunction, "Mapping function must not be null");
+        int hash = getHash(key);
+        V value = getValue(key, hash);
+        return (value != null ? value : computeValueIfAbsent(key, hash, k -> mappingFunction.apply(key)));
+    }
+
+    /**
+     * Remove the mapping of the key.
+     *
+     * @param key the key
+     * @return the removed value, or {@code null}
+     */
+    public V remove(int key) {
+        return removeValue(key, getHash(key));
+    }
+
+    /**
+     * Remove the mapping of the key if it is mapped to the value.
+     *
+     * @param key   the key
+     * @param value the expected value
+     * @return {@code true} if the mapping was removed
+     */
+    public boolean remove(int key, Object value) {
+        return removeValue(key, getHash(key), value);
+    }
+
+    /**
+     * Replace the value of the key if it is mapped to the old value.
+     *
+     * @param key      the key
+     * @param oldValue the expected value
+     * @param newValue the new value, not {@code null}
+     * @return {@code true} if the value was replaced
+     */
+    public boolean replace(int key, V oldValue, V newValue) {
+        return replaceValue(key, getHash(key), oldValue, newValue);
+    }
+
+    /**
+     * Replace the value of the key if it is mapped.
+     *
+     * @param key   the key
+     * @param value the new value, not {@code null}
+     * @return the previous value, or {@code null} if the key was not mapped
+     */
+    public V replace(int key, V value) {
+        return replaceValue(key, getHash(key), value);
+    }
+
+    @Override
+    Integer toKey(long key) {
+        return (int) key;
+    }
+
+    @Override
+    public V get(Object key) {
+        return (key instanceof Integer intKey ? get(intKey.intValue()) : null);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return (key instanceof Integer intKey ? getOrDefault(intKey.intValue(), defaultValue) : defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof Integer intKey && containsKey(intKey.intValue()));
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        Assert.notNull(key, "Key must not be null");
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V putIfAbsent(Integer key, V value) {
+        Assert.notNull(key, "Key must not be null");
+        return putIfAbsent(key.intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return (key instanceof Integer intKey ? remove(intKey.intValue()) : null);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return (key instanceof Integer intKey && remove(intKey.intValue(), value));
+    }
+
+    @Override
+    public boolean replace(Integer key, V oldValue, V newValue) {
+        Assert.notNull(key, "Key must not be null");
+        return replace(key.intValue(), oldValue, newValue);
+    }
+
+    @Override
+    public V replace(Integer key, V value) {
+        Assert.notNull(key, "Key must not be null");
+        return replace(key.intValue(), value);
+    }
+}
@@ -0,0 +1,862 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.test.lang3.concurrent;
+
+
+import com.test.lang3.concurrent.ConcurrentReferenceHashMap.ReferenceType;
+import com.test.lang3.concurrent.ConcurrentReferenceHashMap.Restructure;
+import com.test.lang3.utils.Assert;
+import com.test.lang3.utils.ObjectUtils;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * Base class of {@link ConcurrentReferenceIntHashMap} and {@link ConcurrentReferenceLongHashMap},
+ * holding the segments, references and entry set shared by both. Keys are held as a
+ * {@code long} in the references, an {@code int} key is widened, so the subclasses only
+ * add the primitive and boxed methods of their key type on top of the {@code long}
+ * based operations of this class.
+ *
+ * <p>The map follows the segment design of {@link ConcurrentReferenceHashMap}: reads are
+ * not locked, writes lock one segment, and garbage collected references are purged when
+ * a segment is {@linkplain Restructure restructured}.
+ *
+ * @param <K> the boxed key type
+ * @param <V> the value type
+ * @since 3.2
+ */
+abstract class ConcurrentReferencePrimitiveHashMap<K extends Number, V> extends AbstractMap<K, V>
+        implements ConcurrentMap<K, V> {
+
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    static final ReferenceType DEFAULT_REFERENCE_TYPE = ReferenceType.SOFT;
+
+    private static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
+
+    private static final int MAXIMUM_SEGMENT_SIZE = 1 << 30;
+
+
+    /**
+     * Array of segments indexed using the high order bits from the hash.
+     */
+    private final Segment[] segments;
+
+    /**
+     * When the average number of references per table exceeds this value resize will be attempted.
+     */
+    private final float loadFactor;
+
+    /**
+     * The reference type: SOFT or WEAK.
+     */
+    private final ReferenceType referenceType;
+
+    /**
+     * The shift value used to calculate the size of the segments array and an index from the hash.
+     */
+    private final int shift;
+
+    /**
+     * Late binding entry set.
+     */
+    private volatile Set<Map.Entry<K, V>> entrySet;
+
+
+    /**
+     * Create a new {@code ConcurrentReferencePrimitiveHashMap} instance.
+     *
+     * @param initialCapacity  the initial capacity of the map
+     * @param loadFactor       the load factor. When the average number of references per
+     *                         table exceeds this value, resize will be attempted.
+     * @param concurrencyLevel the expected number of threads that will concurrently
+     *                         write to the map
+     * @param referenceType    the reference type used for values (soft or weak)
+     */
+    @SuppressWarnings("unchecked")
+    ConcurrentReferencePrimitiveHashMap(
+            int initialCapacity, float loadFactor, int concurrencyLevel, ReferenceType referenceType) {
+
+        Assert.isTrue(initialCapacity >= 0, "Initial capacity must not be negative");
+        Assert.isTrue(loadFactor > 0f, "Load factor must be positive");
+        Assert.isTrue(concurrencyLevel > 0, "Concurrency level must be positive");
+        Assert.notNull(referenceType, "Reference type must not be null");
+        this.loadFactor = loadFactor;
+        this.shift = ConcurrentReferenceHashMap.calculateShift(concurrencyLevel, MAXIMUM_CONCURRENCY_LEVEL);
+        int size = 1 << this.shift;
+        this.referenceType = referenceType;
+        int roundedUpSegmentCapacity = (int) ((initialCapacity + size - 1L) / size);
+        int initialSize = 1 << ConcurrentReferenceHashMap.calculateShift(roundedUpSegmentCapacity, MAXIMUM_SEGMENT_SIZE);
+        Segment[] segments = (Segment[]) Array.newInstance(Segment.class, size);
+        int resizeThreshold = (int) (initialSize * this.loadFactor);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(initialSize, resizeThreshold);
+        }
+        this.segments = segments;
+    }
+
+
+    /**
+     * Apply the Wang/Jenkins algorithm of {@link ConcurrentReferenceHashMap#getHash(Object)}
+     * to the hash code of a key.
+     *
+     * @param hash the hash code of the key
+     * @return the spread hash
+     */
+    static int spread(int hash) {
+        hash += (hash << 15) ^ 0xffffcd7d;
+        hash ^= (hash >>> 10);
+        hash += (hash << 3);
+        hash ^= (hash >>> 6);
+        hash += (hash << 2) + (hash << 14);
+        hash ^= (hash >>> 16);
+        return hash;
+    }
+
+    /**
+     * Box a key held in a reference, used for the entries of the entry set.
+     *
+     * @param key the key as held in the reference
+     * @return the boxed key
+     */
+    abstract K toKey(long key);
+
+    /**
+     * Return the {@link Reference} for the key, or {@code null} if not found.
+     */
+    final Reference<V> getReference(long key, int hash, Restructure restructure) {
+        return getSegmentForHash(hash).getReference(key, hash, restructure);
+    }
+
+    /**
+     * Return the value to which the key is mapped, or {@code null}.
+     */
+    final V getValue(long key, int hash) {
+        Reference<V> ref = getReference(key, hash, Restructure.WHEN_NECESSARY);
+        return (ref != null ? ref.get() : null);
+    }
+
+    /**
+     * Map the key to the value, replacing an existing mapping only if {@code overwriteExisting}.
+     *
+     * @return the previous value, or {@code null}
+     */
+    final V putValue(long key, int hash, V value, boolean overwriteExisting) {
+        Assert.notNull(value, "Value must not be null");
+        return getSegmentForHash(hash).doTask(key, hash, true, (ref, oldValue, segment) -> {
+            if (oldValue != null) {
+                if (overwriteExisting) {
+                    ref.release();
+                    segment.add(key, hash, value);
+                }
+                return oldValue;
+            }
+            segment.add(key, hash, value);
+            return null;
+        });
+    }
+
+    /**
+     * Compute and add the value of a key that was found absent without locking, the key
+     * is checked again with the segment locked before the mapping function is called.
+     *
+     * @return the current (existing or computed) value, or {@code null}
+     */
+    final V computeValueIfAbsent(long key, int hash, LongFunction<? extends V> mappingFunction) {
+        return getSegmentForHash(hash).doTask(key, hash, true, (ref, oldValue, segment) -> {
+            if (oldValue != null) {
+                return oldValue;
+            }
+            V newValue = mappingFunction.apply(key);
+            if (newValue != null) {
+                segment.add(key, hash, newValue);
+            }
+            return newValue;
+        });
+    }
+
+    /**
+     * Remove the mapping of the key.
+     *
+     * @return the removed value, or {@code null}
+     */
+    final V removeValue(long key, int hash) {
+        return getSegmentForHash(hash).doTask(key, hash, false, (ref, oldValue, segment) -> {
+            if (oldValue != null) {
+                ref.release();
+            }
+            return oldValue;
+        });
+    }
+
+    /**
+     * Remove the mapping of the key if it is mapped to the value.
+     *
+     * @return {@code true} if the mapping was removed
+     */
+    final boolean removeValue(long key, int hash, Object value) {
+        Boolean result = getSegmentForHash(hash).doTask(key, hash, false, (ref, oldValue, segment) -> {
+            if (oldValue != null && ObjectUtils.nullSafeEquals(oldValue, value)) {
+                ref.release();
+                return true;
+            }
+            return false;
+        });
+        return (Boolean.TRUE.equals(result));
+    }
+
+    /**
+     * Replace the value of the key if it is mapped to the old value.
+     *
+     * @return {@code true} if the value was replaced
+     */
+    final boolean replaceValue(long key, int hash, V oldValue, V newValue) {
+        Assert.notNull(newValue, "Value must not be null");
+        Boolean result = getSegmentForHash(hash).doTask(key, hash, false, (ref, value, segment) -> {
+            if (value != null && ObjectUtils.nullSafeEquals(value, oldValue)) {
+                ref.release();
+                segment.add(key, hash, newValue);
+                return true;
+            }
+            return false;
+        });
+        return (Boolean.TRUE.equals(result));
+    }
+
+    /**
+     * Replace the value of the key if it is mapped.
+     *
+     * @return the previous value, or {@code null} if the key was not mapped
+     */
+    final V replaceValue(long key, int hash, V value) {
+        Assert.notNull(value, "Value must not be null");
+        return getSegmentForHash(hash).doTask(key, hash, false, (ref, oldValue, segment) -> {
+            if (oldValue != null) {
+                ref.release();
+                segment.add(key, hash, value);
+            }
+            return oldValue;
+        });
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Remove any entries that have been garbage collected and are no longer referenced.
+     * Under normal circumstances garbage collected entries are automatically purged as
+     * items are added or removed from the Map. This method can be used to force a purge,
+     * and is useful when the Map is read frequently but updated less often.
+     */
+    public void purgeUnreferencedEntries() {
+        for (Segment segment : this.segments) {
+            segment.restructureIfNecessary(false);
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = mappingCount();
+        return (size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size);
+    }
+
+    /**
+     * Return the number of mappings, including references that have been garbage
+     * collected but not purged yet.
+     *
+     * @return the number of mappings
+     * @see ConcurrentReferenceHashMap#mappingCount()
+     */
+    public long mappingCount() {
+        long count = 0;
+        for (Segment segment : this.segments) {
+            count += segment.count.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment segment : this.segments) {
+            if (segment.count.sum() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+            this.entrySet = entrySet;
+        }
+        return entrySet;
+    }
+
+    private Segment getSegmentForHash(int hash) {
+        return this.segments[(hash >>> (32 - this.shift)) & (this.segments.length - 1)];
+    }
+
+
+    /**
+     * A single segment used to divide the map to allow better concurrent performance.
+     */
+    @SuppressWarnings("serial")
+    protected final class Segment extends ReentrantLock {
+
+        private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+        private final int initialSize;
+
+        /**
+         * Array of references indexed using the low order bits from the hash.
+         * This property should only be set along with {@code resizeThreshold}.
+         */
+        private volatile Reference<V>[] references;
+
+        /**
+         * The total number of references contained in this segment. This includes chained
+         * references and references that have been garbage collected but not purged.
+         */
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * The threshold when resizing of the references should occur. When {@code count}
+         * exceeds this value references will be resized.
+         */
+        private int resizeThreshold;
+
+        public Segment(int initialSize, int resizeThreshold) {
+            this.initialSize = initialSize;
+            this.references = createReferenceArray(initialSize);
+            this.resizeThreshold = resizeThreshold;
+        }
+
+        public Reference<V> getReference(long key, int hash, Restructure restructure) {
+            if (restructure == Restructure.WHEN_NECESSARY) {
+                restructureIfNecessary(false);
+            }
+            // Use a local copy to protect against other threads writing
+            Reference<V>[] references = this.references;
+            int index = getIndex(hash, references);
+            return findInChain(references[index], key, hash);
+        }
+
+        /**
+         * Apply an update operation to this segment.
+         * The segment will be locked during the update.
+         *
+         * @param key    the key
+         * @param hash   the hash of the key
+         * @param resize if the segment may be resized before the update
+         * @param task   the update operation
+         * @return the result of the operation
+         */
+        <T> T doTask(long key, int hash, boolean resize, Task<V, T> task) {
+            if (resize) {
+                restructureIfNecessary(true);
+            }
+            lock();
+            try {
+                Reference<V> ref = findInChain(this.references[getIndex(hash, this.references)], key, hash);
+                V value = (ref != null ? ref.get() : null);
+                return task.execute(ref, value, this);
+            } finally {
+                unlock();
+                if (!resize) {
+                    restructureIfNecessary(false);
+                }
+            }
+        }
+
+        /**
+         * Add a reference to the head of the bin of the key, the segment must be locked.
+         */
+        void add(long key, int hash, V value) {
+            Reference<V>[] references = this.references;
+            int index = getIndex(hash, references);
+            references[index] = createReference(key, hash, value, references[index]);
+            this.count.increment();
+        }
+
+        /**
+         * Clear all items from this segment.
+         */
+        public void clear() {
+            if (this.count.sum() == 0) {
+                return;
+            }
+            lock();
+            try {
+                this.references = createReferenceArray(this.initialSize);
+                this.resizeThreshold = (int) (this.references.length * ConcurrentReferencePrimitiveHashMap.this.loadFactor);
+                this.count.reset();
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Restructure the underlying data structure when it becomes necessary. This
+         * method can increase the size of the references table as well as purge any
+         * references that have been garbage collected or released.
+         *
+         * @param allowResize if resizing is permitted
+         */
+        void restructureIfNecessary(boolean allowResize) {
+            boolean needsResize = false;
+            if (allowResize) {
+                long currCount = this.count.sum();
+                needsResize = (currCount > 0 && currCount >= this.resizeThreshold);
+            }
+            @SuppressWarnings("unchecked")
+            Reference<V> ref = (Reference<V>) this.queue.poll();
+            if (ref != null || needsResize) {
+                restructure(allowResize, ref);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void restructure(boolean allowResize, Reference<V> ref) {
+            lock();
+            try {
+                Set<Reference<V>> toPurge = Collections.emptySet();
+                if (ref != null) {
+                    toPurge = Collections.newSetFromMap(new IdentityHashMap<>());
+                    while (ref != null) {
+                        toPurge.add(ref);
+                        ref = (Reference<V>) this.queue.poll();
+                    }
+                }
+                long expectedCount = this.count.sum() - toPurge.size();
+
+                // Estimate new count, taking into account count inside lock and items that
+                // will be purged.
+                boolean needsResize = (expectedCount > 0 && expectedCount >= this.resizeThreshold);
+                int restructureSize = this.references.length;
+                if (allowResize && needsResize && restructureSize < MAXIMUM_SEGMENT_SIZE) {
+                    restructureSize <<= 1;
+                }
+                if (restructureSize == this.references.length) {
+                    // Purge the bins of the purged references "in place"
+                    Reference<V>[] references = this.references;
+                    int removed = 0;
+                    for (Reference<V> purged : toPurge) {
+                        removed += purgeBin(references, getIndex(purged.getHash(), references), toPurge);
+                    }
+                    this.count.add(-removed);
+                    return;
+                }
+
+                // Restructure into a resized reference array, references are immutable
+                // so readers of the old array are not affected
+                Reference<V>[] restructured = createReferenceArray(restructureSize);
+                int newCount = 0;
+                for (Reference<V> reference : this.references) {
+                    for (ref = reference; ref != null; ref = ref.getNext()) {
+                        if (!toPurge.contains(ref)) {
+                            V value = ref.get();
+                            // Also filter out references that are now null,
+                            // they are polled from the queue in a later restructure call
+                            if (value != null) {
+                                int index = getIndex(ref.getHash(), restructured);
+                                restructured[index] = createReference(
+                                        ref.getKey(), ref.getHash(), value, restructured[index]);
+                                newCount++;
+                            }
+                        }
+                    }
+                }
+                // Replace volatile members
+                this.references = restructured;
+                this.resizeThreshold = (int) (restructured.length * ConcurrentReferencePrimitiveHashMap.this.loadFactor);
+                this.count.reset();
+                this.count.add(newCount);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Remove the purged and garbage collected references from a bin. The chain after
+         * the last removed reference is kept, the references before it are recreated.
+         *
+         * @return the number of references removed
+         */
+        private int purgeBin(Reference<V>[] references, int index, Set<Reference<V>> toPurge) {
+            Reference<V> head = references[index];
+            Reference<V> last = null;
+            for (Reference<V> ref = head; ref != null; ref = ref.getNext()) {
+                if (toPurge.contains(ref) || ref.get() == null) {
+                    last = ref;
+                }
+            }
+            if (last == null) {
+                return 0;
+            }
+            Reference<V> rebuilt = last.getNext();
+            int removed = 0;
+            for (Reference<V> ref = head; ref != last.getNext(); ref = ref.getNext()) {
+                V value = ref.get();
+                if (toPurge.contains(ref) || value == null) {
+                    removed++;
+                } else {
+                    rebuilt = createReference(ref.getKey(), ref.getHash(), value, rebuilt);
+                }
+            }
+            references[index] = rebuilt;
+            return removed;
+        }
+
+        private Reference<V> findInChain(Reference<V> ref, long key, int hash) {
+            for (Reference<V> currRef = ref; currRef != null; currRef = currRef.getNext()) {
+                if (currRef.getHash() == hash && currRef.getKey() == key && currRef.get() != null) {
+                    return currRef;
+                }
+            }
+            return null;
+        }
+
+        private Reference<V> createReference(long key, int hash, V value, Reference<V> next) {
+            if (ConcurrentReferencePrimitiveHashMap.this.referenceType == ReferenceType.WEAK) {
+                return new WeakValueReference<>(key, hash, value, next, this.queue);
+            }
+            return new SoftValueReference<>(key, hash, value, next, this.queue);
+        }
+
+        @SuppressWarnings({"unchecked"})
+        private Reference<V>[] createReferenceArray(int size) {
+            return (Reference<V>[]) new Reference<?>[size];
+        }
+
+        private int getIndex(int hash, Reference<V>[] references) {
+            return (hash & (references.length - 1));
+        }
+
+        /**
+         * Return the size of the current references array.
+         */
+        public int getSize() {
+            return this.references.length;
+        }
+
+        /**
+         * Return the total number of references in this segment.
+         */
+        public int getCount() {
+            return this.count.intValue();
+        }
+    }
+
+
+    /**
+     * An update of the value of one key, applied with the segment locked.
+     */
+    @FunctionalInterface
+    private interface Task<V, T> {
+
+        /**
+         * Execute the task.
+         *
+         * @param ref     the found reference, or {@code null}
+         * @param value   the current value, or {@code null} if not mapped
+         * @param segment the locked segment, used to add a new reference
+         * @return the result of the task
+         */
+        T execute(Reference<V> ref, V value, ConcurrentReferencePrimitiveHashMap<?, V>.Segment segment);
+    }
+
+
+    /**
+     * A reference to a value contained in the map, holding its key inline. An {@code int}
+     * key is held widened to a {@code long}. References are immutable once published,
+     * an update adds a new reference.
+     *
+     * @param <V> the value type
+     */
+    protected interface Reference<V> {
+
+        /**
+         * Return the referenced value, or {@code null} if the value is no longer available.
+         */
+        V get();
+
+        /**
+         * Return the key of the mapping.
+         */
+        long getKey();
+
+        /**
+         * Return the hash for the reference.
+         */
+        int getHash();
+
+        /**
+         * Return the next reference in the chain, or {@code null} if none.
+         */
+        Reference<V> getNext();
+
+        /**
+         * Release this entry and ensure that it will be returned from
+         * the queue of its segment.
+         */
+        void release();
+    }
+
+
+    /**
+     * Internal {@link Reference} implementation for {@link SoftReference SoftReferences}.
+     */
+    private static final class SoftValueReference<V> extends SoftReference<V> implements Reference<V> {
+
+        private final long key;
+
+        private final int hash;
+
+        private final Reference<V> next;
+
+        public SoftValueReference(long key, int hash, V value, Reference<V> next, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            this.key = key;
+            this.hash = hash;
+            this.next = next;
+        }
+
+        @Override
+        public long getKey() {
+            return this.key;
+        }
+
+        @Override
+        public int getHash() {
+            return this.hash;
+        }
+
+        @Override
+        public Reference<V> getNext() {
+            return this.next;
+        }
+
+        @Override
+        public void release() {
+            enqueue();
+        }
+    }
+
+
+    /**
+     * Internal {@link Reference} implementation for {@link WeakReference WeakReferences}.
+     */
+    private static final class WeakValueReference<V> extends WeakReference<V> implements Reference<V> {
+
+        private final long key;
+
+        private final int hash;
+
+        private final Reference<V> next;
+
+        public WeakValueReference(long key, int hash, V value, Reference<V> next, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            this.key = key;
+            this.hash = hash;
+            this.next = next;
+        }
+
+        @Override
+        public long getKey() {
+            return this.key;
+        }
+
+        @Override
+        public int getHash() {
+            return this.hash;
+        }
+
+        @Override
+        public Reference<V> getNext() {
+            return this.next;
+        }
+
+        @Override
+        public void release() {
+            enqueue();
+        }
+    }
+
+
+    /**
+     * Internal entry-set implementation.
+     */
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (o instanceof Map.Entry<?, ?> entry) {
+                V value = get(entry.getKey());
+                return (value != null && ObjectUtils.nullSafeEquals(entry.getValue(), value));
+            }
+            return false;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (o instanceof Map.Entry<?, ?> entry) {
+                return ConcurrentReferencePrimitiveHashMap.this.remove(entry.getKey(), entry.getValue());
+            }
+            return false;
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentReferencePrimitiveHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentReferencePrimitiveHashMap.this.clear();
+        }
+    }
+
+
+    /**
+     * Internal entry iterator implementation, creating an entry for each live reference.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        private int segmentIndex;
+
+        private int referenceIndex;
+
+        private Reference<V>[] references;
+
+        private Reference<V> reference;
+
+        private WriteThroughEntry next;
+
+        private WriteThroughEntry last;
+
+        public EntryIterator() {
+            moveToNextSegment();
+        }
+
+        @Override
+        public boolean hasNext() {
+            getNextIfNecessary();
+            return (this.next != null);
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            getNextIfNecessary();
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next;
+            this.next = null;
+            return this.last;
+        }
+
+        private void getNextIfNecessary() {
+            while (this.next == null) {
+                moveToNextReference();
+                if (this.reference == null) {
+                    return;
+                }
+                V value = this.reference.get();
+                if (value != null) {
+                    this.next = new WriteThroughEntry(this.reference.getKey(), this.reference.getHash(), value);
+                }
+            }
+        }
+
+        private void moveToNextReference() {
+            if (this.reference != null) {
+                this.reference = this.reference.getNext();
+            }
+            while (this.reference == null && this.references != null) {
+                if (this.referenceIndex >= this.references.length) {
+                    moveToNextSegment();
+                    this.referenceIndex = 0;
+                } else {
+                    this.reference = this.references[this.referenceIndex];
+                    this.referenceIndex++;
+                }
+            }
+        }
+
+        private void moveToNextSegment() {
+            this.reference = null;
+            this.references = null;
+            if (this.segmentIndex < ConcurrentReferencePrimitiveHashMap.this.segments.length) {
+                this.references = ConcurrentReferencePrimitiveHashMap.this.segments[this.segmentIndex].references;
+                this.segmentIndex++;
+            }
+        }
+
+        @Override
+        public void remove() {
+            Assert.state(this.last != null, "No element to remove");
+            removeValue(this.last.primitiveKey, this.last.hash);
+            this.last = null;
+        }
+    }
+
+
+    /**
+     * An entry of the entry set, {@link #setValue(Object)} writes through to the map.
+     */
+    @SuppressWarnings("serial")
+    private final class WriteThroughEntry extends AbstractMap.SimpleEntry<K, V> {
+
+        private final long primitiveKey;
+
+        private final int hash;
+
+        WriteThroughEntry(long key, int hash, V value) {
+            super(toKey(key), value);
+            this.primitiveKey = key;
+            this.hash = hash;
+        }
+
+        @Override
+        public V setValue(V value) {
+            Assert.notNull(value, "Value must not be null");
+            putValue(this.primitiveKey, this.hash, value, true);
+            return super.setValue(value);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.test.lang3.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 线程上下文传递：提交任务时捕获提交线程的上下文快照，执行任务前在执行线程中恢复，执行后还原执行线程原来的上下文
+ * <p>
+ * 1.上下文的捕获和恢复由注册的{@link ContextPropagator}实现，如{@link MdcContextPropagator}；
+ * 2.快照不可变，被多个任务共享：提交线程的上下文未变化时复用上一次的快照，捕获只有每个扩展点一次引用比较，没有分配；
+ * 3.没有注册扩展点或没有上下文时不包装任务；
+ * 4.{@link ExecutorServices}创建的线程池默认传递上下文，其他线程池可以用{@link #wrap(ExecutorService)}包装
+ *
+ * @see ExecutorServices.ThreadPoolBuilder#propagateContext(boolean)
+ */
+public final class ContextPropagation {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextPropagation.class);
+
+    private static volatile ContextPropagator<?>[] propagators = new ContextPropagator<?>[0];
+
+    /**
+     * 线程最近一次捕获的快照，上下文未变化时复用
+     */
+    private static final ThreadLocal<Snapshot> LAST_SNAPSHOT = new ThreadLocal<>();
+
+    private ContextPropagation() {
+    }
+
+    /**
+     * 注册上下文传递扩展点，按注册顺序恢复，按相反顺序还原
+     *
+     * @param propagator 上下文传递扩展点
+     */
+    public static synchronized void register(ContextPropagator<?> propagator) {
+        Objects.requireNonNull(propagator, "propagator");
+        ContextPropagator<?>[] current = propagators;
+        for (ContextPropagator<?> registered : current) {
+            if (registered == propagator) {
+                return;
+            }
+        }
+        ContextPropagator<?>[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = propagator;
+        propagators = updated;
+    }
+
+    /**
+     * @param propagator 上下文传递扩展点
+     * @return 已注册并被移除返回true
+     */
+    public static synchronized boolean unregister(ContextPropagator<?> propagator) {
+        ContextPropagator<?>[] current = propagators;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == propagator) {
+                ContextPropagator<?>[] updated = new ContextPropagator<?>[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                propagators = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 捕获当前线程的上下文
+     *
+     * @return 上下文快照，没有注册扩展点时为{@link Snapshot#EMPTY}
+     */
+    public static Snapshot capture() {
+        ContextPropagator<?>[] current = propagators;
+        if (current.length == 0) {
+            return Snapshot.EMPTY;
+        }
+        Snapshot last = LAST_SNAPSHOT.get();
+        boolean reusable = last != null && last.propagators == current;
+        Object[] values = null;
+        for (int i = 0; i < current.length; i++) {
+            Object value = current[i].capture();
+            if (values == null) {
+                if (reusable && last.values[i] == value) {
+                    continue;
+                }
+                values = new Object[current.length];
+                if (i > 0) {
+                    System.arraycopy(last.values, 0, values, 0, i);
+                }
+            }
+            values[i] = value;
+        }
+        if (values == null) {
+            return last;
+        }
+        Snapshot snapshot = new Snapshot(current, values);
+        LAST_SNAPSHOT.set(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * @return 在当前线程上下文中执行的任务，没有上下文时返回原任务
+     */
+    public static Runnable wrap(Runnable task) {
+        return capture().wrap(task);
+    }
+
+    /**
+     * @return 在当前线程上下文中执行的任务，没有上下文时返回原任务
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        return capture().wrap(task);
+    }
+
+    /**
+     * @return 提交任务时传递上下文的{@link Executor}
+     */
+    public static Executor wrap(Executor executor) {
+        Objects.requireNonNull(executor, "executor");
+        return command -> executor.execute(wrap(command));
+    }
+
+    /**
+     * @return 提交任务时传递上下文的{@link ExecutorService}，关闭等操作直接交给原线程池
+     */
+    public static ExecutorService wrap(ExecutorService executor) {
+        return new PropagatingExecutorService(Objects.requireNonNull(executor, "executor"));
+    }
+
+    /**
+     * @return 被{@link #wrap(Runnable)}包装的原任务，未包装时返回任务本身
+     */
+    static Runnable unwrap(Runnable task) {
+        return (task instanceof ContextRunnable contextRunnable) ? contextRunnable.task : task;
+    }
+
+    static <T> List<Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+        Snapshot snapshot = capture();
+        List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(snapshot.wrap(task));
+        }
+        return wrapped;
+    }
+
+    /**
+     * 不可变的上下文快照
+     */
+    public static final class Snapshot {
+
+        /**
+         * 没有上下文的快照
+         */
+        public static final Snapshot EMPTY = new Snapshot(new ContextPropagator<?>[0], new Object[0]);
+
+        private final ContextPropagator<?>[] propagators;
+        private final Object[] values;
+        private final boolean empty;
+
+        private Snapshot(ContextPropagator<?>[] propagators, Object[] values) {
+            this.propagators = propagators;
+            this.values = values;
+            boolean empty = true;
+            for (Object value : values) {
+                if (value != null) {
+                    empty = false;
+                    break;
+                }
+            }
+            this.empty = empty;
+        }
+
+        public boolean isEmpty() {
+            return empty;
+        }
+
+        /**
+         * @return 在该上下文中执行的任务，没有上下文时返回原任务
+         */
+        public Runnable wrap(Runnable task) {
+            Objects.requireNonNull(task, "task");
+            return empty ? task : new ContextRunnable(this, task);
+        }
+
+        /**
+         * @return 在该上下文中执行的任务，没有上下文时返回原任务
+         */
+        public <T> Callable<T> wrap(Callable<T> task) {
+            Objects.requireNonNull(task, "task");
+            if (empty) {
+                return task;
+            }
+            return () -> {
+                Object[] previous = attach();
+                try {
+                    return task.call();
+                } finally {
+                    detach(previous);
+                }
+            };
+        }
+
+        /**
+         * 在当前线程中以该上下文执行任务，执行后还原当前线程原来的上下文
+         */
+        public void run(Runnable task) {
+            if (empty) {
+                task.run();
+                return;
+            }
+            Object[] previous = attach();
+            try {
+                task.run();
+            } finally {
+                detach(previous);
+            }
+        }
+
+        /**
+         * 恢复该上下文，部分扩展点恢复失败时还原已恢复的扩展点
+         *
+         * @return 当前线程原来的上下文，用于{@link #detach(Object[])}
+         */
+        Object[] attach() {
+            Object[] previous = new Object[propagators.length];
+            for (int i = 0; i < propagators.length; i++) {
+                try {
+                    previous[i] = restore(propagators[i], values[i]);
+                } catch (RuntimeException | Error e) {
+                    detach(previous, i);
+                    throw e;
+                }
+            }
+            return previous;
+        }
+
+        void detach(Object[] previous) {
+            detach(previous, propagators.length);
+        }
+
+        private void detach(Object[] previous, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                try {
+                    restore(propagators[i], previous[i]);
+                } catch (RuntimeException e) {
+                    log.error("还原线程上下文【{}】失败", propagators[i], e);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <S> Object restore(ContextPropagator<S> propagator, Object snapshot) {
+            return propagator.restore((S) snapshot);
+        }
+    }
+
+    private static final class ContextRunnable implements Runnable {
+
+        private final Snapshot snapshot;
+        private final Runnable task;
+
+        private ContextRunnable(Snapshot snapshot, Runnable task) {
+            this.snapshot = snapshot;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            snapshot.run(task);
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    /**
+     * 提交任务时传递上下文的线程池包装，生命周期操作交给原线程池
+     */
+    private static final class PropagatingExecutorService implements ExecutorService {
+
+        private final ExecutorService delegate;
+
+        private PropagatingExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(wrap(command));
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return delegate.submit(wrap(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return delegate.submit(wrap(task), result);
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return delegate.submit(wrap(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return delegate.invokeAll(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return delegate.invokeAll(wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+            return delegate.invokeAny(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.invokeAny(wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> tasks = new ArrayList<>(delegate.shutdownNow());
+            tasks.replaceAll(ContextPropagation::unwrap);
+            return tasks;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
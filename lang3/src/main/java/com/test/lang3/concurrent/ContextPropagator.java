@@ -0,0 +1,58 @@
+package com.test.lang3.concurrent;
+
+import java.util.Objects;
+
+/**
+ * 线程上下文传递扩展点，如MDC、链路追踪，由{@link ContextPropagation}在提交任务时捕获，在执行任务的线程中恢复
+ * <p>
+ * 快照必须不可变，可以被多个任务共享；上下文未变化时{@link #capture()}应返回同一个实例，
+ * 此时捕获只是一次引用复制，{@link ContextPropagation}也会复用上一次的快照而不重新分配
+ *
+ * @param <S> 上下文快照类型
+ * @see ContextPropagation#register(ContextPropagator)
+ * @see MdcContextPropagator
+ */
+public interface ContextPropagator<S> {
+
+    /**
+     * 捕获当前线程的上下文
+     *
+     * @return 不可变的上下文快照，没有上下文时返回null
+     */
+    S capture();
+
+    /**
+     * 把快照设置为当前线程的上下文
+     *
+     * @param snapshot 上下文快照，为null时清空当前线程的上下文
+     * @return 设置前的上下文快照，用于任务执行后恢复
+     */
+    S restore(S snapshot);
+
+    /**
+     * 传递{@link ThreadLocal}中的值，值必须不可变（或在线程间共享是安全的），捕获和恢复都只复制引用
+     *
+     * @param threadLocal 保存上下文的{@link ThreadLocal}
+     * @return 上下文传递扩展点
+     */
+    static <T> ContextPropagator<T> ofThreadLocal(ThreadLocal<T> threadLocal) {
+        Objects.requireNonNull(threadLocal, "threadLocal");
+        return new ContextPropagator<T>() {
+            @Override
+            public T capture() {
+                return threadLocal.get();
+            }
+
+            @Override
+            public T restore(T snapshot) {
+                T previous = threadLocal.get();
+                if (snapshot == null) {
+                    threadLocal.remove();
+                } else {
+                    threadLocal.set(snapshot);
+                }
+                return previous;
+            }
+        };
+    }
+}
@@ -0,0 +1,260 @@
+package com.test.lang3.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程池指标：任务排队时间、执行时间直方图，以及线程池的活跃、排队、完成、拒绝任务数和饱和度快照
+ *
+ * @see ExecutorServices#metricsSnapshot()
+ * @see ExecutorServices.ThreadPoolBuilder#recordMetrics()
+ */
+public final class ExecutorMetrics {
+
+    private ExecutorMetrics() {
+    }
+
+    /**
+     * 无锁直方图，记录纳秒耗时
+     * <p>
+     * 按2的幂分段，每段再均分为{@value #SUB_BUCKETS}个桶，统计值的相对误差不超过1/{@value #SUB_BUCKETS}；
+     * 记录时只对桶计数做一次原子自增，适合在任务执行线程上调用
+     */
+    public static final class Histogram {
+
+        static final int SUB_BUCKETS = 8;
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        /**
+         * @param nanos 耗时（纳秒），负数按0记录
+         */
+        public void record(long nanos) {
+            long value = Math.max(nanos, 0L);
+            counts.getAndIncrement(indexOf(value));
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public HistogramSnapshot snapshot() {
+            long[] buckets = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = counts.get(i);
+            }
+            return new HistogramSnapshot(buckets, sum.sum(), max.get());
+        }
+
+        static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+            return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        /**
+         * @return 桶的下界（包含）
+         */
+        static long lowerBoundOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = (index >>> SUB_BUCKET_BITS) - 1;
+            return ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1)))) << shift;
+        }
+    }
+
+    /**
+     * 直方图某一时刻的快照，单位纳秒
+     */
+    public static final class HistogramSnapshot {
+
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        HistogramSnapshot(long[] buckets, long sum, long max) {
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return (count == 0) ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile 百分位，取值[0, 1]，如0.99
+         * @return 百分位估计值，取所在桶的上界且不超过最大值
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0.0 || percentile > 1.0) {
+                throw new IllegalArgumentException("percentile must be in [0, 1]: " + percentile);
+            }
+            if (count == 0) {
+                return 0L;
+            }
+            long rank = Math.max((long) Math.ceil(percentile * count), 1L);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    long upperBound = (i + 1 < buckets.length) ? Histogram.lowerBoundOf(i + 1) - 1 : Long.MAX_VALUE;
+                    return Math.min(upperBound, max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms", count,
+                    getMean() / 1_000_000, toMillis(getPercentile(0.5)), toMillis(getPercentile(0.99)), toMillis(max));
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * 线程池指标快照，不支持的指标为-1，未开启任务耗时统计时直方图为null
+     */
+    public static final class Snapshot {
+
+        private final String name;
+        private final String type;
+        private final int poolSize;
+        private final int activeCount;
+        private final long queuedCount;
+        private final long completedCount;
+        private final long rejectedCount;
+        private final long shedCount;
+        private final double saturation;
+        private final HistogramSnapshot waitTime;
+        private final HistogramSnapshot runTime;
+
+        Snapshot(String name, String type, int poolSize, int activeCount, long queuedCount, long completedCount,
+                 long rejectedCount, long shedCount, double saturation, HistogramSnapshot waitTime, HistogramSnapshot runTime) {
+            this.name = name;
+            this.type = type;
+            this.poolSize = poolSize;
+            this.activeCount = activeCount;
+            this.queuedCount = queuedCount;
+            this.completedCount = completedCount;
+            this.rejectedCount = rejectedCount;
+            this.shedCount = shedCount;
+            this.saturation = saturation;
+            this.waitTime = waitTime;
+            this.runTime = runTime;
+        }
+
+        /**
+         * @return 线程名前缀，无法获取时为线程池的类名
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 线程池类名
+         */
+        public String getType() {
+            return type;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        public long getQueuedCount() {
+            return queuedCount;
+        }
+
+        public long getCompletedCount() {
+            return completedCount;
+        }
+
+        /**
+         * @return 触发拒绝策略的次数
+         */
+        public long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * @return 因排队超时而丢弃的任务数
+         */
+        public long getShedCount() {
+            return shedCount;
+        }
+
+        /**
+         * @return 饱和度，取值[0, 1]：（执行中任务数+排队任务数）/（最大线程数+队列容量）
+         */
+        public double getSaturation() {
+            return saturation;
+        }
+
+        /**
+         * @return 任务排队时间直方图
+         */
+        public HistogramSnapshot getWaitTime() {
+            return waitTime;
+        }
+
+        /**
+         * @return 任务执行时间直方图
+         */
+        public HistogramSnapshot getRunTime() {
+            return runTime;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(name).append('[').append(type)
+                    .append("] poolSize=").append(poolSize)
+                    .append(", active=").append(activeCount)
+                    .append(", queued=").append(queuedCount)
+                    .append(", completed=").append(completedCount)
+                    .append(", rejected=").append(rejectedCount)
+                    .append(", shed=").append(shedCount)
+                    .append(String.format(", saturation=%.2f", saturation));
+            if (waitTime != null) {
+                builder.append(", waitTime{").append(waitTime).append('}');
+            }
+            if (runTime != null) {
+                builder.append(", runTime{").append(runTime).append('}');
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -3,17 +3,32 @@ package com.test.lang3.concurrent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
 /**
  * 线程池工具类
  * <p>
- * 提供功能：1.线程池；2.fork/join线程池；3.线程池关闭
+ * 提供功能：1.线程池；2.fork/join线程池；3.虚拟线程池；4.批量执行的工作窃取线程池；5.线程池关闭
+ * <p>
+ * 创建的线程池在提交任务时传递线程上下文（如MDC），见{@link ContextPropagation}
  *
  * @author DearYang
  * @date 2022-04-27
@@ -26,13 +41,92 @@ public class ExecutorServices {
 
     private static final int MAXIMUM_FORK_JOIN_CAPACITY = 1024;
     private static final int DEFAULT_SHUTDOWN_TIMEOUT = 10;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long POLL_INTERVAL_MILLIS = 10;
     private static final List<WeakReference<ExecutorService>> ALL_THREAD_EXECUTORS = new CopyOnWriteArrayList<>();
 
     public static ExecutorService createNormalThreadPool(int size, String threadNamePrefix) {
+        return threadPoolBuilder(threadNamePrefix)
+                .poolSize(size, size)
+                .keepAlive(0L, TimeUnit.MILLISECONDS)
+                .queue(QueueType.LINKED, 50240)
+                .build();
+    }
+
+    /**
+     * 创建线程池构建器，可配置线程数、队列类型及容量、拒绝策略、任务排队时间上限
+     * <p>
+     * 默认：核心及最大线程数为CPU核数，有界数组队列（容量1024），拒绝时抛出{@link RejectedExecutionException}
+     *
+     * @param threadNamePrefix 线程名前缀
+     * @return 线程池构建器
+     */
+    public static ThreadPoolBuilder threadPoolBuilder(String threadNamePrefix) {
+        return new ThreadPoolBuilder(threadNamePrefix);
+    }
+
+    /**
+     * 创建虚拟线程池，每个任务运行在一个新的命名虚拟线程中，适用于IO密集型任务
+     *
+     * @param threadNamePrefix 线程名前缀
+     * @return 虚拟线程池
+     * @see #createVirtualThreadExecutor(String, int)
+     */
+    public static ExecutorService createVirtualThreadExecutor(String threadNamePrefix) {
+        return createVirtualThreadExecutor(threadNamePrefix, 0);
+    }
+
+    /**
+     * 创建虚拟线程池，每个任务运行在一个新的命名虚拟线程中，适用于IO密集型任务
+     * <p>
+     * 1.设置最大并发数时，由信号量限制同时执行的任务数，超出的任务在各自的虚拟线程中等待，不阻塞提交线程
+     * 2.运行时不支持虚拟线程（JDK 21以下）时，退化为平台线程池：不限制并发数时按需创建线程，否则为固定大小的线程池
+     *
+     * @param threadNamePrefix 线程名前缀
+     * @param maxConcurrency   同时执行的最大任务数，小于等于0时不限制
+     * @return 虚拟线程池
+     */
+    public static ExecutorService createVirtualThreadExecutor(String threadNamePrefix, int maxConcurrency) {
+        ThreadUnCaughtExceptionHandler exceptionHandler = new ThreadUnCaughtExceptionHandler();
+        if (NamedThreadFactory.isVirtualThreadSupported()) {
+            ThreadFactory threadFactory = NamedThreadFactory.ofVirtual(threadNamePrefix, exceptionHandler);
+            return buildExecutorService(new ThreadPerTaskExecutor(threadFactory, maxConcurrency));
+        }
+        log.warn("当前运行时不支持虚拟线程，线程池【{}】使用平台线程", threadNamePrefix);
+        ThreadPoolBuilder builder = threadPoolBuilder(threadNamePrefix).keepAlive(60L, TimeUnit.SECONDS);
+        if (maxConcurrency > 0) {
+            builder.poolSize(maxConcurrency, maxConcurrency)
+                    .queue(QueueType.LINKED, Integer.MAX_VALUE)
+                    .allowCoreThreadTimeOut(true);
+        } else {
+            builder.poolSize(0, Integer.MAX_VALUE)
+                    .queue(QueueType.SYNCHRONOUS, 0);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 创建批量执行的工作窃取线程池，适用于大量极小的任务，见{@link BatchingExecutor}
+     *
+     * @param parallelism      工作线程数
+     * @param threadNamePrefix 线程名前缀
+     * @return 批量执行线程池
+     */
+    public static BatchingExecutor createBatchingExecutor(int parallelism, String threadNamePrefix) {
+        return createBatchingExecutor(parallelism, DEFAULT_QUEUE_CAPACITY, threadNamePrefix);
+    }
+
+    /**
+     * 创建批量执行的工作窃取线程池，适用于大量极小的任务，见{@link BatchingExecutor}
+     *
+     * @param parallelism      工作线程数
+     * @param ringCapacity     每个环形队列的容量，所有队列都满时由提交线程执行任务
+     * @param threadNamePrefix 线程名前缀
+     * @return 批量执行线程池
+     */
+    public static BatchingExecutor createBatchingExecutor(int parallelism, int ringCapacity, String threadNamePrefix) {
         ThreadFactory threadFactory = new NamedThreadFactory(threadNamePrefix, new ThreadUnCaughtExceptionHandler());
-        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<>(50240), threadFactory, new ThreadPoolExecutor.AbortPolicy());
-        return buildExecutorService(threadPoolExecutor);
+        return buildExecutorService(new BatchingExecutor(parallelism, ringCapacity, threadFactory));
     }
 
     /**
@@ -45,7 +139,7 @@ public class ExecutorServices {
     public static ForkJoinPool createForkJoinTaskThreadPool(int size, String threadNamePrefix) {
         size = tableSizeFor(size, MAXIMUM_FORK_JOIN_CAPACITY);
         NamedForkJoinWorkerThreadFactory factory = new NamedForkJoinWorkerThreadFactory(threadNamePrefix);
-        ForkJoinPool forkJoinPool = new ForkJoinPool(size, factory, new ThreadUnCaughtExceptionHandler(), false);
+        ForkJoinPool forkJoinPool = new PropagatingForkJoinPool(size, factory, new ThreadUnCaughtExceptionHandler(), false);
 
         return buildExecutorService(forkJoinPool);
     }
@@ -147,47 +241,91 @@ public class ExecutorServices {
      * <p>
      * 1.{@link ThreadPoolExecutor} 只需要判断活跃线程数
      * 2.{@link ForkJoinPool} 需要判断：活跃线程数、running的线程数、任务队列、提交任务队列
+     * 3.{@link ThreadPerTaskExecutor} 只需要判断存活的任务线程数
      *
      * @param executorService 线程池
      * @return true-没有任务执行，false-有任务在执行
      */
     public static boolean isCompleted(ExecutorService executorService) {
-        if (executorService instanceof ThreadPoolExecutor threadPoolExecutor) {
+        if (executorService instanceof ManagedThreadPoolExecutor managedThreadPoolExecutor) {
+            return managedThreadPoolExecutor.getPendingTaskCount() == 0;
+        } else if (executorService instanceof ThreadPoolExecutor threadPoolExecutor) {
             return threadPoolExecutor.getActiveCount() == 0;
         } else if (executorService instanceof ForkJoinPool forkJoinPool) {
             return forkJoinPool.getActiveThreadCount() == 0 && forkJoinPool.getRunningThreadCount() == 0 && forkJoinPool.getQueuedTaskCount() == 0 && forkJoinPool.getQueuedSubmissionCount() == 0;
+        } else if (executorService instanceof ThreadPerTaskExecutor threadPerTaskExecutor) {
+            return threadPerTaskExecutor.getPendingTaskCount() == 0;
+        } else if (executorService instanceof BatchingExecutor batchingExecutor) {
+            return batchingExecutor.isQuiescent();
         }
 
         return true;
     }
 
+    /**
+     * {@link ManagedThreadPoolExecutor}的任务计数无法归零时与{@link ManagedThreadPoolExecutor#awaitQuiescence(long, TimeUnit)}一样按线程池状态判断，
+     * 避免{@link #await(long, List)}反复等待
+     */
+    private static boolean isIdle(ExecutorService executorService) {
+        return isCompleted(executorService) || (executorService instanceof ManagedThreadPoolExecutor managed && managed.isIdle());
+    }
+
+    /**
+     * 等待线程池的任务执行完成
+     * <p>
+     * {@link ManagedThreadPoolExecutor}、{@link ThreadPerTaskExecutor}由任务计数归零时唤醒，{@link ForkJoinPool}使用
+     * {@link ForkJoinPool#awaitQuiescence(long, TimeUnit)}，其他线程池每10ms检查一次
+     *
+     * @param executorService 线程池
+     * @param timeout         等待超时时间
+     * @param timeUnit        时间单位
+     * @return 任务全部完成返回true，超时返回false
+     * @throws InterruptedException 等待时被中断
+     */
+    public static boolean awaitQuiescence(ExecutorService executorService, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (executorService instanceof ManagedThreadPoolExecutor managedThreadPoolExecutor) {
+            return managedThreadPoolExecutor.awaitQuiescence(timeout, timeUnit);
+        } else if (executorService instanceof ThreadPerTaskExecutor threadPerTaskExecutor) {
+            return threadPerTaskExecutor.awaitQuiescence(timeout, timeUnit);
+        } else if (executorService instanceof ForkJoinPool forkJoinPool) {
+            return forkJoinPool.awaitQuiescence(timeout, timeUnit);
+        }
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (!isCompleted(executorService)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MILLIS)));
+        }
+        return true;
+    }
+
     /**
      * 等待所有的线程池任务执行完成
      * <p>
-     * 采用随机打乱线程池的方式，去判断线程池是否执行完成，如果三次都成功则认为是线程池没有任务执行
+     * 依次等待每个线程池的任务完成（见{@link #awaitQuiescence(ExecutorService, long, TimeUnit)}），
+     * 由于任务可能向已经等待过的线程池提交新任务，全部等待完成后再检查一次，仍有任务时重新等待
      *
      * @param timeout          等待超时时间，时间单位秒，如果是<0则无超时时间
      * @param executorServices 线程池集合
      */
     public static void await(long timeout, List<ExecutorService> executorServices) {
-        for (int i = 0, j = 0; i < 3; j++) {
-            if (j == timeout) {
-                break;
-            }
-
-            Collections.shuffle(executorServices);
-            if (executorServices.stream().allMatch(ExecutorServices::isCompleted)) {
-                i++;
-                log.info("all threads pools are completed, i: {}", i);
-                continue;
-            }
-
-            i = 0;
-            log.info("not all threads pools are completed, wait for 1s");
-            try {
-                TimeUnit.SECONDS.sleep(1);
-            } catch (InterruptedException ignored) {
-            }
+        long deadline = (timeout < 0) ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        try {
+            do {
+                for (ExecutorService executorService : executorServices) {
+                    long remaining = (timeout < 0) ? Long.MAX_VALUE : deadline - System.nanoTime();
+                    if (!awaitQuiescence(executorService, Math.max(remaining, 0L), TimeUnit.NANOSECONDS)) {
+                        log.warn("not all threads pools are completed within {}s", timeout);
+                        return;
+                    }
+                }
+            } while (!executorServices.stream().allMatch(ExecutorServices::isIdle));
+            log.info("all threads pools are completed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("interrupted while waiting for threads pools to complete");
         }
     }
 
@@ -208,6 +346,66 @@ public class ExecutorServices {
         executorServices.forEach(ExecutorService::shutdown);
     }
 
+    /**
+     * 导出{@link ExecutorServices}创建的所有存活线程池的指标
+     *
+     * @return 各线程池的指标快照
+     */
+    public static List<ExecutorMetrics.Snapshot> metricsSnapshot() {
+        List<ExecutorMetrics.Snapshot> snapshots = new ArrayList<>(ALL_THREAD_EXECUTORS.size());
+        for (WeakReference<ExecutorService> reference : ALL_THREAD_EXECUTORS) {
+            ExecutorService executor = reference.get();
+            if (executor != null) {
+                snapshots.add(metricsOf(executor));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * 获取线程池的指标快照，只有{@link ManagedThreadPoolExecutor}开启统计后才有排队及执行时间直方图
+     *
+     * @param executorService 线程池
+     * @return 指标快照，不支持的指标为-1
+     */
+    public static ExecutorMetrics.Snapshot metricsOf(ExecutorService executorService) {
+        if (executorService instanceof ManagedThreadPoolExecutor managed) {
+            return managed.metrics();
+        }
+        if (executorService instanceof ThreadPerTaskExecutor threadPerTask) {
+            return threadPerTask.metrics();
+        }
+        String type = executorService.getClass().getSimpleName();
+        if (executorService instanceof ThreadPoolExecutor pool) {
+            BlockingQueue<Runnable> queue = pool.getQueue();
+            int active = pool.getActiveCount();
+            int queued = queue.size();
+            double capacity = (double) pool.getMaximumPoolSize() + queued + queue.remainingCapacity();
+            return new ExecutorMetrics.Snapshot(nameOf(pool.getThreadFactory(), pool), type, pool.getPoolSize(), active, queued,
+                    pool.getCompletedTaskCount(), -1, -1, Math.min((active + queued) / capacity, 1.0), null, null);
+        }
+        if (executorService instanceof BatchingExecutor pool) {
+            int active = pool.getActiveCount();
+            return new ExecutorMetrics.Snapshot(type, type, pool.getParallelism(), active, pool.getQueuedTaskCount(),
+                    -1, -1, -1, active / (double) pool.getParallelism(), null, null);
+        }
+        if (executorService instanceof ForkJoinPool pool) {
+            String name = (pool.getFactory() instanceof NamedForkJoinWorkerThreadFactory factory) ? factory.getThreadPrefixName() : type;
+            int active = pool.getActiveThreadCount();
+            return new ExecutorMetrics.Snapshot(name, type, pool.getPoolSize(), active,
+                    pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount(), -1, -1, -1,
+                    Math.min(active / (double) pool.getParallelism(), 1.0), null, null);
+        }
+        return new ExecutorMetrics.Snapshot(type, type, -1, -1, -1, -1, -1, -1, -1, null, null);
+    }
+
+    private static String nameOf(ThreadFactory threadFactory, ExecutorService executorService) {
+        if (threadFactory instanceof NamedThreadFactory namedThreadFactory) {
+            return namedThreadFactory.getThreadNamePrefix();
+        }
+        return executorService.getClass().getSimpleName();
+    }
+
     public static void shutdownAllExecutors() {
         if (ALL_THREAD_EXECUTORS.isEmpty()) {
             return;
@@ -238,12 +436,791 @@ public class ExecutorServices {
             this.threadPrefixName = threadPrefixName;
         }
 
+        public String getThreadPrefixName() {
+            return threadPrefixName;
+        }
+
         @Override
         public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
             return new NamedForkJoinWorkerThread(threadPrefixName + "-" + index.getAndIncrement(), pool);
         }
     }
 
+    /**
+     * 每个任务一个线程的线程池，配合虚拟线程使用，线程不复用
+     * <p>
+     * 设置最大并发数时，任务线程先获取信号量再执行任务；等待信号量时被中断（如{@link #shutdownNow()}）的任务不再执行，
+     * 若任务是{@link Future}则被取消
+     */
+    public static final class ThreadPerTaskExecutor extends AbstractExecutorService {
+
+        private final ThreadFactory threadFactory;
+        private final int maxConcurrency;
+        private final Semaphore permits;
+        private final LongAdder completedCount = new LongAdder();
+        private final QuiescenceTracker tracker = new QuiescenceTracker();
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        private volatile boolean shutdown;
+        private volatile boolean stopped;
+
+        /**
+         * @param threadFactory  线程工厂
+         * @param maxConcurrency 同时执行的最大任务数，小于等于0时不限制
+         */
+        public ThreadPerTaskExecutor(ThreadFactory threadFactory, int maxConcurrency) {
+            this.threadFactory = Objects.requireNonNull(threadFactory, "threadFactory");
+            this.maxConcurrency = Math.max(maxConcurrency, 0);
+            this.permits = (maxConcurrency > 0) ? new Semaphore(maxConcurrency) : null;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            Objects.requireNonNull(command, "command");
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            ContextPropagation.Snapshot context = ContextPropagation.capture();
+            Thread thread = threadFactory.newThread(() -> run(command, context));
+            if (thread == null) {
+                throw new RejectedExecutionException("Thread factory did not create a thread");
+            }
+            tracker.increment();
+            threads.add(thread);
+            if (shutdown) {
+                // 与shutdown并发，未启动的线程不计入
+                threads.remove(thread);
+                tracker.decrement();
+                tryTerminate();
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            thread.start();
+        }
+
+        private void run(Runnable command, ContextPropagation.Snapshot context) {
+            try {
+                if (permits != null) {
+                    permits.acquire();
+                    if (stopped) {
+                        // shutdownNow时在等待的任务，即使获得了其他任务释放的信号量也不再执行
+                        permits.release();
+                        throw new InterruptedException();
+                    }
+                }
+                try {
+                    context.run(command);
+                } finally {
+                    if (permits != null) {
+                        permits.release();
+                    }
+                    completedCount.increment();
+                }
+            } catch (InterruptedException e) {
+                if (command instanceof Future<?> future) {
+                    future.cancel(false);
+                }
+                Thread.currentThread().interrupt();
+            } finally {
+                threads.remove(Thread.currentThread());
+                tracker.decrement();
+                tryTerminate();
+            }
+        }
+
+        private void tryTerminate() {
+            if (shutdown && threads.isEmpty()) {
+                terminated.countDown();
+            }
+        }
+
+        /**
+         * @return 存活的任务线程数，包括等待信号量的线程
+         */
+        public int getActiveCount() {
+            return threads.size();
+        }
+
+        /**
+         * @return 执行完成的任务数（含异常结束）
+         */
+        public long getCompletedTaskCount() {
+            return completedCount.sum();
+        }
+
+        /**
+         * @return 已提交但尚未结束的任务数
+         */
+        public long getPendingTaskCount() {
+            return tracker.pending();
+        }
+
+        /**
+         * 等待已提交的任务全部结束，最后一个任务结束时被唤醒
+         *
+         * @param timeout  等待超时时间
+         * @param timeUnit 时间单位
+         * @return 任务全部结束返回true，超时返回false
+         * @throws InterruptedException 等待时被中断
+         */
+        public boolean awaitQuiescence(long timeout, TimeUnit timeUnit) throws InterruptedException {
+            return tracker.await(timeUnit.toNanos(timeout), () -> threads.isEmpty());
+        }
+
+        /**
+         * @return 线程池指标快照，等待信号量的任务计为排队任务
+         */
+        public ExecutorMetrics.Snapshot metrics() {
+            int active = threads.size();
+            int running = (permits != null) ? Math.min(maxConcurrency - permits.availablePermits(), active) : active;
+            double saturation = (permits != null) ? Math.min(running / (double) maxConcurrency, 1.0) : 0.0;
+            return new ExecutorMetrics.Snapshot(nameOf(threadFactory, this), getClass().getSimpleName(), active,
+                    running, active - running, getCompletedTaskCount(), -1, -1, saturation, null, null);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            tryTerminate();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            stopped = true;
+            shutdown();
+            threads.forEach(Thread::interrupt);
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return terminated.getCount() == 0;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return terminated.await(timeout, unit);
+        }
+    }
+
+    /**
+     * 线程池任务队列类型
+     */
+    public enum QueueType {
+        /**
+         * 有界数组队列{@link ArrayBlockingQueue}，预分配容量，入队出队共用一把锁
+         */
+        ARRAY,
+        /**
+         * 链表队列{@link LinkedBlockingQueue}，入队出队分离锁，按需分配节点
+         */
+        LINKED,
+        /**
+         * 直接交付队列{@link SynchronousQueue}，不缓存任务，没有空闲线程时创建线程直到最大线程数
+         */
+        SYNCHRONOUS
+    }
+
+    /**
+     * 线程池构建器
+     *
+     * @see #threadPoolBuilder(String)
+     */
+    public static final class ThreadPoolBuilder {
+
+        private final String threadNamePrefix;
+        private int corePoolSize = Runtime.getRuntime().availableProcessors();
+        private int maximumPoolSize = corePoolSize;
+        private long keepAliveNanos = TimeUnit.SECONDS.toNanos(60);
+        private boolean allowCoreThreadTimeOut;
+        private QueueType queueType = QueueType.ARRAY;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private RejectedExecutionHandler rejectedExecutionHandler = new ThreadPoolExecutor.AbortPolicy();
+        private long maxQueueTimeNanos;
+        private boolean recordMetrics;
+        private boolean recordCpuTime;
+        private boolean propagateContext = true;
+
+        private ThreadPoolBuilder(String threadNamePrefix) {
+            this.threadNamePrefix = Objects.requireNonNull(threadNamePrefix, "threadNamePrefix");
+        }
+
+        /**
+         * @param corePoolSize    核心线程数
+         * @param maximumPoolSize 最大线程数，队列已满（或直接交付队列没有空闲线程）时才会创建核心线程以外的线程
+         */
+        public ThreadPoolBuilder poolSize(int corePoolSize, int maximumPoolSize) {
+            this.corePoolSize = corePoolSize;
+            this.maximumPoolSize = maximumPoolSize;
+            return this;
+        }
+
+        /**
+         * @param keepAlive 核心线程以外的空闲线程存活时间
+         * @param timeUnit  时间单位
+         */
+        public ThreadPoolBuilder keepAlive(long keepAlive, TimeUnit timeUnit) {
+            this.keepAliveNanos = timeUnit.toNanos(keepAlive);
+            return this;
+        }
+
+        /**
+         * @param allowCoreThreadTimeOut 核心线程空闲超过存活时间后是否回收
+         */
+        public ThreadPoolBuilder allowCoreThreadTimeOut(boolean allowCoreThreadTimeOut) {
+            this.allowCoreThreadTimeOut = allowCoreThreadTimeOut;
+            return this;
+        }
+
+        /**
+         * @param queueType     队列类型
+         * @param queueCapacity 队列容量，{@link QueueType#SYNCHRONOUS}时忽略
+         */
+        public ThreadPoolBuilder queue(QueueType queueType, int queueCapacity) {
+            this.queueType = Objects.requireNonNull(queueType, "queueType");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * 线程池饱和时抛出{@link RejectedExecutionException}，默认策略
+         */
+        public ThreadPoolBuilder abortPolicy() {
+            return rejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        /**
+         * 线程池饱和时由提交任务的线程执行任务，降低提交速度
+         */
+        public ThreadPoolBuilder callerRunsPolicy() {
+            return rejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        /**
+         * 线程池饱和时阻塞提交任务的线程，直到队列有空位或超时
+         *
+         * @param timeout 最长阻塞时间，超时后抛出{@link RejectedExecutionException}
+         */
+        public ThreadPoolBuilder blockingPolicy(Duration timeout) {
+            return rejectedExecutionHandler(new BlockingPolicy(timeout));
+        }
+
+        /**
+         * 线程池饱和时丢弃队列中最早的任务（{@link Future}任务会被取消），再提交当前任务
+         */
+        public ThreadPoolBuilder discardOldestPolicy() {
+            return rejectedExecutionHandler(new DiscardOldestPolicy());
+        }
+
+        /**
+         * @param rejectedExecutionHandler 自定义拒绝策略
+         */
+        public ThreadPoolBuilder rejectedExecutionHandler(RejectedExecutionHandler rejectedExecutionHandler) {
+            this.rejectedExecutionHandler = Objects.requireNonNull(rejectedExecutionHandler, "rejectedExecutionHandler");
+            return this;
+        }
+
+        /**
+         * 任务排队时间上限，出队时排队超过该时间的任务不再执行（{@link Future}任务会被取消），避免积压任务的延迟无限增长
+         *
+         * @param maxQueueTime 排队时间上限
+         * @see ManagedThreadPoolExecutor#getShedCount()
+         */
+        public ThreadPoolBuilder maxQueueTime(Duration maxQueueTime) {
+            if (maxQueueTime == null || maxQueueTime.isNegative() || maxQueueTime.isZero()) {
+                throw new IllegalArgumentException("maxQueueTime must be positive");
+            }
+            this.maxQueueTimeNanos = maxQueueTime.toNanos();
+            return this;
+        }
+
+        /**
+         * 记录任务的排队时间和执行时间直方图，每个任务多两次{@link System#nanoTime()}调用
+         *
+         * @see ManagedThreadPoolExecutor#metrics()
+         */
+        public ThreadPoolBuilder recordMetrics() {
+            this.recordMetrics = true;
+            return this;
+        }
+
+        /**
+         * 在指标统计的基础上累计任务的CPU时间，与执行时间之差即任务阻塞（IO、锁、休眠）的时间，
+         * 每个任务多两次读取线程CPU时间的调用，运行时不支持线程CPU时间时不统计
+         *
+         * @see ManagedThreadPoolExecutor#getCpuTimeNanos()
+         * @see PoolSizeController
+         */
+        public ThreadPoolBuilder recordCpuTime() {
+            this.recordMetrics = true;
+            this.recordCpuTime = true;
+            return this;
+        }
+
+        /**
+         * 提交任务时是否传递提交线程的上下文，默认传递，没有注册{@link ContextPropagator}时没有开销
+         *
+         * @see ContextPropagation
+         */
+        public ThreadPoolBuilder propagateContext(boolean propagateContext) {
+            this.propagateContext = propagateContext;
+            return this;
+        }
+
+        public ManagedThreadPoolExecutor build() {
+            if (corePoolSize < 0 || maximumPoolSize <= 0 || maximumPoolSize < corePoolSize) {
+                throw new IllegalArgumentException(String.format("Illegal pool size, core: %d, maximum: %d", corePoolSize, maximumPoolSize));
+            }
+            if (queueType != QueueType.SYNCHRONOUS && queueCapacity <= 0) {
+                throw new IllegalArgumentException("queueCapacity must be positive");
+            }
+            BlockingQueue<Runnable> queue = switch (queueType) {
+                case ARRAY -> new ArrayBlockingQueue<>(queueCapacity);
+                case LINKED -> new LinkedBlockingQueue<>(queueCapacity);
+                case SYNCHRONOUS -> new SynchronousQueue<>();
+            };
+            ThreadFactory threadFactory = new NamedThreadFactory(threadNamePrefix, new ThreadUnCaughtExceptionHandler());
+            ManagedThreadPoolExecutor executor = new ManagedThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveNanos,
+                    queue, threadFactory, rejectedExecutionHandler, maxQueueTimeNanos, recordMetrics, recordCpuTime, propagateContext);
+            if (allowCoreThreadTimeOut) {
+                executor.allowCoreThreadTimeOut(true);
+            }
+            return buildExecutorService(executor);
+        }
+    }
+
+    /**
+     * {@link ThreadPoolBuilder}创建的线程池，任务提交时被包装以便：
+     * 1.统计已提交但尚未结束的任务数，归零时唤醒{@link #awaitQuiescence(long, TimeUnit)}；
+     * 2.设置排队时间上限或开启指标统计时记录任务的入队时间，出队时丢弃排队超时的任务，统计任务的排队时间和执行时间；
+     * 3.统计触发拒绝策略的次数；
+     * 4.捕获提交线程的上下文，执行任务时恢复
+     */
+    public static class ManagedThreadPoolExecutor extends ThreadPoolExecutor {
+
+        private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+        private final long maxQueueTimeNanos;
+        private final LongAdder shedCount = new LongAdder();
+        private final LongAdder rejectedCount = new LongAdder();
+        private final ExecutorMetrics.Histogram waitTime;
+        private final ExecutorMetrics.Histogram runTime;
+        private final LongAdder cpuTime;
+        private final boolean propagateContext;
+        private final QuiescenceTracker tracker = new QuiescenceTracker();
+
+        public ManagedThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveNanos, BlockingQueue<Runnable> workQueue,
+                                         ThreadFactory threadFactory, RejectedExecutionHandler handler, long maxQueueTimeNanos,
+                                         boolean recordMetrics, boolean recordCpuTime, boolean propagateContext) {
+            super(corePoolSize, maximumPoolSize, keepAliveNanos, TimeUnit.NANOSECONDS, workQueue, threadFactory,
+                    new CountingRejectedExecutionHandler(handler));
+            this.maxQueueTimeNanos = maxQueueTimeNanos;
+            this.waitTime = recordMetrics ? new ExecutorMetrics.Histogram() : null;
+            this.runTime = recordMetrics ? new ExecutorMetrics.Histogram() : null;
+            this.cpuTime = (recordMetrics && recordCpuTime && THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()
+                    && THREAD_MX_BEAN.isThreadCpuTimeEnabled()) ? new LongAdder() : null;
+            this.propagateContext = propagateContext;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            Objects.requireNonNull(command, "command");
+            if (command instanceof QueuedTask) {
+                // 拒绝策略重新提交的任务已经包装并计数
+                super.execute(command);
+                return;
+            }
+            boolean timed = maxQueueTimeNanos > 0 || waitTime != null;
+            ContextPropagation.Snapshot context = propagateContext ? ContextPropagation.capture() : ContextPropagation.Snapshot.EMPTY;
+            QueuedTask task = new QueuedTask(command, context, timed ? System.nanoTime() : 0L);
+            tracker.increment();
+            try {
+                super.execute(task);
+            } catch (RuntimeException | Error e) {
+                task.finish();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean remove(Runnable task) {
+            for (Runnable queued : getQueue()) {
+                if (queued instanceof QueuedTask queuedTask && queuedTask.command == task) {
+                    if (super.remove(queued)) {
+                        queuedTask.finish();
+                        return true;
+                    }
+                    return false;
+                }
+            }
+            return super.remove(task);
+        }
+
+        /**
+         * 移除队列中已取消的{@link Future}任务，{@link ThreadPoolExecutor#purge()}无法识别包装后的任务
+         */
+        @Override
+        public void purge() {
+            for (Runnable queued : getQueue().toArray(new Runnable[0])) {
+                if (queued instanceof QueuedTask queuedTask && queuedTask.command instanceof Future<?> future
+                        && future.isCancelled() && super.remove(queued)) {
+                    queuedTask.finish();
+                }
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> tasks = super.shutdownNow();
+            tasks.forEach(ManagedThreadPoolExecutor::finish);
+            tasks.replaceAll(ManagedThreadPoolExecutor::unwrap);
+            return tasks;
+        }
+
+        /**
+         * @return 已提交但尚未结束的任务数，包括排队和执行中的任务
+         */
+        public long getPendingTaskCount() {
+            return tracker.pending();
+        }
+
+        /**
+         * 等待已提交的任务全部结束（包括排队中的任务），最后一个任务结束时被唤醒
+         * <p>
+         * 被第三方拒绝策略丢弃或移出队列的任务无法计数时，每100ms按线程池状态（无执行中任务且队列为空）兜底检查
+         *
+         * @param timeout  等待超时时间
+         * @param timeUnit 时间单位
+         * @return 任务全部结束返回true，超时返回false
+         * @throws InterruptedException 等待时被中断
+         */
+        public boolean awaitQuiescence(long timeout, TimeUnit timeUnit) throws InterruptedException {
+            return tracker.await(timeUnit.toNanos(timeout), this::isIdle);
+        }
+
+        /**
+         * @return 没有执行中的任务且队列为空，任务计数因任务被绕过线程池移出队列（如{@link BlockingQueue#drainTo}）无法归零时兜底使用
+         */
+        boolean isIdle() {
+            return getActiveCount() == 0 && getQueue().isEmpty();
+        }
+
+        @Override
+        public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+            super.setRejectedExecutionHandler(new CountingRejectedExecutionHandler(handler));
+        }
+
+        @Override
+        public RejectedExecutionHandler getRejectedExecutionHandler() {
+            return ((CountingRejectedExecutionHandler) super.getRejectedExecutionHandler()).delegate;
+        }
+
+        /**
+         * @return 因排队超时而丢弃的任务数
+         */
+        public long getShedCount() {
+            return shedCount.sum();
+        }
+
+        /**
+         * @return 触发拒绝策略的次数
+         */
+        public long getRejectedCount() {
+            return rejectedCount.sum();
+        }
+
+        /**
+         * @return 已执行任务的CPU时间总和（纳秒），未统计时为-1
+         */
+        public long getCpuTimeNanos() {
+            return (cpuTime != null) ? cpuTime.sum() : -1L;
+        }
+
+        /**
+         * @return 线程池指标快照，未开启指标统计时直方图为null
+         */
+        public ExecutorMetrics.Snapshot metrics() {
+            BlockingQueue<Runnable> queue = getQueue();
+            int active = getActiveCount();
+            int queued = queue.size();
+            double capacity = (double) getMaximumPoolSize() + queued + queue.remainingCapacity();
+            return new ExecutorMetrics.Snapshot(nameOf(getThreadFactory(), this), getClass().getSimpleName(), getPoolSize(),
+                    active, queued, getCompletedTaskCount(), getRejectedCount(), getShedCount(),
+                    Math.min((active + queued) / capacity, 1.0),
+                    (waitTime != null) ? waitTime.snapshot() : null, (runTime != null) ? runTime.snapshot() : null);
+        }
+
+        private void shed(Runnable command, long queueTimeNanos) {
+            shedCount.increment();
+            cancel(command);
+            log.debug("任务【{}】排队{}ms超时，不再执行", command, TimeUnit.NANOSECONDS.toMillis(queueTimeNanos));
+        }
+
+        static Runnable unwrap(Runnable task) {
+            return (task instanceof QueuedTask queuedTask) ? queuedTask.command : task;
+        }
+
+        /**
+         * 标记不会再执行的任务已结束
+         */
+        static void finish(Runnable task) {
+            if (task instanceof QueuedTask queuedTask) {
+                queuedTask.finish();
+            }
+        }
+
+        /**
+         * 丢弃任务：取消{@link Future}任务，使等待结果的线程不会一直阻塞，并标记任务已结束
+         */
+        static void discard(Runnable task) {
+            cancel(task);
+            finish(task);
+        }
+
+        /**
+         * 取消被丢弃的任务，使等待{@link Future}结果的线程不会一直阻塞
+         */
+        static void cancel(Runnable task) {
+            if (unwrap(task) instanceof Future<?> future) {
+                future.cancel(false);
+            }
+        }
+
+        private final class QueuedTask implements Runnable {
+
+            private static final AtomicIntegerFieldUpdater<QueuedTask> FINISHED =
+                    AtomicIntegerFieldUpdater.newUpdater(QueuedTask.class, "finished");
+
+            private final Runnable command;
+            private final ContextPropagation.Snapshot context;
+            private final long enqueueTime;
+            private volatile int finished;
+
+            private QueuedTask(Runnable command, ContextPropagation.Snapshot context, long enqueueTime) {
+                this.command = command;
+                this.context = context;
+                this.enqueueTime = enqueueTime;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    if (enqueueTime == 0L) {
+                        context.run(command);
+                        return;
+                    }
+                    long startTime = System.nanoTime();
+                    long queueTimeNanos = startTime - enqueueTime;
+                    if (waitTime != null) {
+                        waitTime.record(queueTimeNanos);
+                    }
+                    if (maxQueueTimeNanos > 0 && queueTimeNanos > maxQueueTimeNanos) {
+                        shed(command, queueTimeNanos);
+                        return;
+                    }
+                    long startCpuTime = (cpuTime != null) ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+                    try {
+                        context.run(command);
+                    } finally {
+                        if (runTime != null) {
+                            runTime.record(System.nanoTime() - startTime);
+                        }
+                        if (cpuTime != null) {
+                            cpuTime.add(THREAD_MX_BEAN.getCurrentThreadCpuTime() - startCpuTime);
+                        }
+                    }
+                } finally {
+                    finish();
+                }
+            }
+
+            /**
+             * 任务结束（执行完成、被丢弃或被移出队列），只计数一次
+             */
+            void finish() {
+                if (FINISHED.compareAndSet(this, 0, 1)) {
+                    tracker.decrement();
+                }
+            }
+
+            @Override
+            public String toString() {
+                return command.toString();
+            }
+        }
+    }
+
+    /**
+     * 统计{@link ManagedThreadPoolExecutor}触发拒绝策略的次数
+     */
+    private static final class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler delegate;
+
+        private CountingRejectedExecutionHandler(RejectedExecutionHandler delegate) {
+            this.delegate = Objects.requireNonNull(delegate, "handler");
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor instanceof ManagedThreadPoolExecutor managed) {
+                managed.rejectedCount.increment();
+            }
+            if (delegate instanceof ThreadPoolExecutor.DiscardOldestPolicy && !executor.isShutdown()) {
+                // JDK的策略直接从队列取出最早的任务，被丢弃的任务需要标记已结束，否则任务计数无法归零
+                ManagedThreadPoolExecutor.finish(executor.getQueue().poll());
+                executor.execute(r);
+                return;
+            }
+            delegate.rejectedExecution(r, executor);
+            // 正常返回时任务已由提交线程执行或被丢弃，只有阻塞、丢弃最早任务的策略会把任务重新放入线程池
+            if (executor.isShutdown() || !(delegate instanceof BlockingPolicy || delegate instanceof DiscardOldestPolicy)) {
+                ManagedThreadPoolExecutor.finish(r);
+            }
+        }
+    }
+
+    /**
+     * 阻塞提交线程直到队列有空位的拒绝策略，超时或线程池已关闭时抛出{@link RejectedExecutionException}
+     */
+    public static final class BlockingPolicy implements RejectedExecutionHandler {
+
+        private final long timeoutNanos;
+
+        public BlockingPolicy(Duration timeout) {
+            if (timeout == null || timeout.isNegative()) {
+                throw new IllegalArgumentException("timeout must not be negative");
+            }
+            this.timeoutNanos = timeout.toNanos();
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Task " + r + " rejected from " + executor + ", executor has been shut down");
+            }
+            try {
+                if (!executor.getQueue().offer(r, timeoutNanos, TimeUnit.NANOSECONDS)) {
+                    throw new RejectedExecutionException("Task " + r + " rejected from " + executor + " after waiting "
+                            + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Task " + r + " rejected from " + executor + ", interrupted while waiting", e);
+            }
+        }
+    }
+
+    /**
+     * 丢弃队列中最早任务的拒绝策略，与{@link ThreadPoolExecutor.DiscardOldestPolicy}不同的是：
+     * 1.被丢弃的{@link Future}任务会被取消；2.队列为空（如直接交付队列）时抛出{@link RejectedExecutionException}，而不是无限重试
+     */
+    public static final class DiscardOldestPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                ManagedThreadPoolExecutor.discard(r);
+                return;
+            }
+            Runnable oldest = executor.getQueue().poll();
+            if (oldest == null) {
+                throw new RejectedExecutionException("Task " + r + " rejected from " + executor + ", no queued task to discard");
+            }
+            ManagedThreadPoolExecutor.discard(oldest);
+            executor.execute(r);
+        }
+    }
+
+    /**
+     * 已提交但尚未结束的任务计数，归零时唤醒等待线程
+     */
+    private static final class QuiescenceTracker {
+
+        /**
+         * 等待时兜底检查线程池状态的间隔
+         */
+        static final long RECHECK_MILLIS = 100;
+
+        private final AtomicLong pending = new AtomicLong();
+        private final AtomicInteger waiters = new AtomicInteger();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition quiescent = lock.newCondition();
+
+        void increment() {
+            pending.incrementAndGet();
+        }
+
+        void decrement() {
+            // 先更新计数再读取等待数，与await先登记再检查计数配合，不会丢失唤醒
+            if (pending.decrementAndGet() == 0 && waiters.get() > 0) {
+                lock.lock();
+                try {
+                    quiescent.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        long pending() {
+            return pending.get();
+        }
+
+        /**
+         * @param nanos 等待超时时间
+         * @param idle  兜底检查，计数因任务丢失无法归零时按线程池状态判断是否空闲
+         */
+        boolean await(long nanos, BooleanSupplier idle) throws InterruptedException {
+            if (pending.get() == 0) {
+                return true;
+            }
+            lock.lockInterruptibly();
+            waiters.incrementAndGet();
+            try {
+                long recheckNanos = TimeUnit.MILLISECONDS.toNanos(RECHECK_MILLIS);
+                while (pending.get() != 0) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    long slice = Math.min(nanos, recheckNanos);
+                    long left = quiescent.awaitNanos(slice);
+                    nanos -= slice - Math.max(left, 0L);
+                    if (left <= 0 && pending.get() != 0 && idle.getAsBoolean()) {
+                        return true;
+                    }
+                }
+                return true;
+            } finally {
+                waiters.decrementAndGet();
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return 共享的单线程定时线程池（守护线程），首次使用时创建，用于执行{@link ThrottledExecutor}、{@link PoolSizeController}的短小定时任务
+     */
+    static ScheduledExecutorService sharedScheduler() {
+        return SharedScheduler.INSTANCE;
+    }
+
+    private static final class SharedScheduler {
+
+        static final ScheduledExecutorService INSTANCE = create();
+
+        private static ScheduledExecutorService create() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                    new NamedThreadFactory("shared-scheduler", true, new ThreadUnCaughtExceptionHandler()));
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+
     public static final class ThreadUnCaughtExceptionHandler implements Thread.UncaughtExceptionHandler {
 
         @Override
@@ -253,6 +1230,110 @@ public class ExecutorServices {
 
     }
 
+    /**
+     * 提交任务时传递上下文的fork/join线程池，从外部提交的{@link ForkJoinTask}在提交线程的上下文中执行，
+     * 任务内{@link ForkJoinTask#fork()}的子任务在同一工作线程或被窃取后执行，不单独传递上下文
+     *
+     * @see ContextPropagation
+     */
+    public static class PropagatingForkJoinPool extends ForkJoinPool {
+
+        public PropagatingForkJoinPool(int parallelism, ForkJoinWorkerThreadFactory factory, Thread.UncaughtExceptionHandler handler,
+                                       boolean asyncMode) {
+            super(parallelism, factory, handler, asyncMode);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            super.execute(ContextPropagation.wrap(task));
+        }
+
+        @Override
+        public void execute(ForkJoinTask<?> task) {
+            ContextPropagation.Snapshot context = ContextPropagation.capture();
+            super.execute(context.isEmpty() ? task : new ContextForkJoinTask(task, context));
+        }
+
+        @Override
+        public <T> ForkJoinTask<T> submit(ForkJoinTask<T> task) {
+            execute(task);
+            return task;
+        }
+
+        @Override
+        public <T> T invoke(ForkJoinTask<T> task) {
+            execute(task);
+            return task.join();
+        }
+
+        @Override
+        public ForkJoinTask<?> submit(Runnable task) {
+            return super.submit(ContextPropagation.wrap(task));
+        }
+
+        @Override
+        public <T> ForkJoinTask<T> submit(Runnable task, T result) {
+            return super.submit(ContextPropagation.wrap(task), result);
+        }
+
+        @Override
+        public <T> ForkJoinTask<T> submit(Callable<T> task) {
+            return super.submit(ContextPropagation.wrap(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) {
+            return super.invokeAll(ContextPropagation.wrapAll(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return super.invokeAll(ContextPropagation.wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+            return super.invokeAny(ContextPropagation.wrapAll(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return super.invokeAny(ContextPropagation.wrapAll(tasks), timeout, unit);
+        }
+
+        /**
+         * 在提交线程的上下文中执行原任务，原任务的结果和异常由原任务自己记录，调用方仍然等待原任务
+         */
+        @SuppressWarnings("serial")
+        private static final class ContextForkJoinTask extends ForkJoinTask<Void> {
+
+            private final ForkJoinTask<?> task;
+            private final ContextPropagation.Snapshot context;
+
+            private ContextForkJoinTask(ForkJoinTask<?> task, ContextPropagation.Snapshot context) {
+                this.task = task;
+                this.context = context;
+            }
+
+            @Override
+            public Void getRawResult() {
+                return null;
+            }
+
+            @Override
+            protected void setRawResult(Void value) {
+            }
+
+            @Override
+            protected boolean exec() {
+                context.run(task::quietlyInvoke);
+                return true;
+            }
+        }
+    }
+
     /**
      * fork-join线程中如果任务阻塞， 会自动添加线程
      */
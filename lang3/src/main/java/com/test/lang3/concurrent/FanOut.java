@@ -0,0 +1,231 @@
+package com.test.lang3.concurrent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 结构化的并发调用：把一个请求拆分为多个子任务提交到线程池，在截止时间内汇总结果
+ * <p>
+ * 1.{@link #invokeAll}：全部成功，任一失败立即结束；{@link #invokeAny}：第一个成功；{@link #quorum}：前k个成功；
+ * 2.结果确定（达到所需成功数，或失败数使其不可能达到，或超过截止时间）时调用线程被唤醒一次，不逐个轮询{@link Future}；
+ * 3.结束后取消（中断）仍在执行的子任务，截止时间后才开始执行的子任务直接跳过；
+ * 4.调用线程等待时被中断，取消所有子任务并抛出{@link InterruptedException}
+ * <p>
+ * 适用于平台线程池和虚拟线程池，子任务需要响应中断才能被及时取消
+ *
+ * @see ExecutorServices
+ */
+public final class FanOut {
+
+    private FanOut() {
+    }
+
+    /**
+     * 并发执行所有任务，全部成功时按任务顺序返回结果
+     *
+     * @param executor 线程池
+     * @param tasks    子任务
+     * @param timeout  截止时间
+     * @return 按任务顺序排列的结果
+     * @throws ExecutionException   任一子任务失败，其余失败作为suppressed异常
+     * @throws TimeoutException     截止时间内未全部完成
+     * @throws InterruptedException 等待时被中断
+     */
+    public static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<? extends T>> tasks, Duration timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (tasks.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return fork(executor, tasks, tasks.size(), timeout).inTaskOrder();
+    }
+
+    /**
+     * 并发执行所有任务，返回第一个成功的结果，取消其余任务
+     *
+     * @param executor 线程池
+     * @param tasks    子任务
+     * @param timeout  截止时间
+     * @return 第一个成功的结果
+     * @throws ExecutionException   全部子任务失败，其余失败作为suppressed异常
+     * @throws TimeoutException     截止时间内没有子任务成功
+     * @throws InterruptedException 等待时被中断
+     */
+    public static <T> T invokeAny(ExecutorService executor, List<? extends Callable<? extends T>> tasks, Duration timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return quorum(executor, tasks, 1, timeout).get(0);
+    }
+
+    /**
+     * 并发执行所有任务，返回最先成功的{@code quorum}个结果，取消其余任务
+     *
+     * @param executor 线程池
+     * @param tasks    子任务
+     * @param quorum   所需成功数，取值[1, 任务数]
+     * @param timeout  截止时间
+     * @return 按完成顺序排列的{@code quorum}个结果
+     * @throws ExecutionException   失败的子任务过多，不可能达到所需成功数，其余失败作为suppressed异常
+     * @throws TimeoutException     截止时间内未达到所需成功数
+     * @throws InterruptedException 等待时被中断
+     */
+    public static <T> List<T> quorum(ExecutorService executor, List<? extends Callable<? extends T>> tasks, int quorum, Duration timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (quorum <= 0 || quorum > tasks.size()) {
+            throw new IllegalArgumentException(String.format("Illegal quorum: %d of %d tasks", quorum, tasks.size()));
+        }
+        return fork(executor, tasks, quorum, timeout).inCompletionOrder();
+    }
+
+    private static <T> Scope<T> fork(ExecutorService executor, List<? extends Callable<? extends T>> tasks, int required, Duration timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        Objects.requireNonNull(executor, "executor");
+        Objects.requireNonNull(timeout, "timeout");
+        Scope<T> scope = new Scope<>(tasks.size(), required, System.nanoTime() + timeout.toNanos());
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                Callable<? extends T> task = Objects.requireNonNull(tasks.get(i), "task");
+                int index = i;
+                scope.futures[i] = executor.submit(() -> scope.run(index, task));
+            }
+            scope.await();
+        } finally {
+            scope.cancelAll();
+        }
+        return scope;
+    }
+
+    /**
+     * 一次并发调用的状态，子任务完成时在锁内计数，结果确定时唤醒调用线程
+     */
+    private static final class Scope<T> {
+
+        private final int required;
+        private final int total;
+        private final long deadline;
+        private final Object[] results;
+        private final List<T> completed;
+        private final Future<?>[] futures;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition finished = lock.newCondition();
+        private int successes;
+        private int failures;
+        private Throwable failure;
+        private volatile boolean done;
+
+        Scope(int total, int required, long deadline) {
+            this.total = total;
+            this.required = required;
+            this.deadline = deadline;
+            this.results = new Object[total];
+            this.completed = new ArrayList<>(required);
+            this.futures = new Future<?>[total];
+        }
+
+        void run(int index, Callable<? extends T> task) {
+            if (done) {
+                return;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                fail(new TimeoutException("Deadline passed before task " + index + " started"));
+                return;
+            }
+            T result;
+            try {
+                result = task.call();
+            } catch (Throwable e) {
+                fail(e);
+                return;
+            }
+            succeed(index, result);
+        }
+
+        private void succeed(int index, T result) {
+            lock.lock();
+            try {
+                if (!done) {
+                    results[index] = result;
+                    completed.add(result);
+                    if (++successes == required) {
+                        finish();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void fail(Throwable e) {
+            lock.lock();
+            try {
+                if (!done) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                    // 剩余的任务全部成功也达不到所需成功数
+                    if (++failures > total - required) {
+                        finish();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void finish() {
+            done = true;
+            finished.signal();
+        }
+
+        void await() throws InterruptedException, ExecutionException, TimeoutException {
+            lock.lockInterruptibly();
+            try {
+                while (!done) {
+                    long nanos = deadline - System.nanoTime();
+                    if (nanos <= 0) {
+                        done = true;
+                        throw new TimeoutException(String.format("%d of %d required tasks succeeded before the deadline",
+                                successes, required));
+                    }
+                    finished.awaitNanos(nanos);
+                }
+                if (successes < required) {
+                    throw new ExecutionException(failure);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 中断仍在执行的子任务，未开始的子任务不再执行
+         */
+        void cancelAll() {
+            done = true;
+            for (Future<?> future : futures) {
+                if (future != null && !future.isDone()) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> inTaskOrder() {
+            return (List<T>) new ArrayList<>(Arrays.asList(results));
+        }
+
+        List<T> inCompletionOrder() {
+            return new ArrayList<>(completed);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.test.lang3.concurrent;
+
+
+/**
+ * A probabilistic set for estimating the popularity of a hash within a time window,
+ * used by the admission policy of a bounded {@link ConcurrentReferenceHashMap}.
+ *
+ * <p>This is a Count-Min sketch of 4-bit counters, 16 counters are packed into each
+ * {@code long}. The maximum frequency of an element is 15, and all counters are halved
+ * once the number of increments reaches the sample size, so that the history ages.
+ *
+ * <p>This class is not thread safe, callers must guard access with a lock.
+ *
+ * @see <a href="https://arxiv.org/pdf/1512.00727.pdf">TinyLFU: A Highly Efficient Cache Admission Policy</a>
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int size;
+
+    /**
+     * Create a sketch sized for the given number of elements.
+     *
+     * @param maximumSize the expected maximum number of elements
+     */
+    FrequencySketch(long maximumSize) {
+        int capacity = (int) Math.max(Math.min(maximumSize, MAXIMUM_CAPACITY), 8);
+        this.table = new long[Integer.highestOneBit(capacity - 1) << 1];
+        this.tableMask = this.table.length - 1;
+        this.sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Return the estimated number of occurrences of the hash, up to 15.
+     *
+     * @param hash the spread hash of the element
+     * @return the estimated frequency
+     */
+    int frequency(int hash) {
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increment the popularity of the hash if it does not exceed the maximum (15). All
+     * counters are periodically halved so that the popularity of older elements decays.
+     *
+     * @param hash the spread hash of the element
+     */
+    void increment(int hash) {
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && (++this.size == this.sampleSize)) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = (0xfL << offset);
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            count += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.size = (this.size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+        long value = (hash + SEEDS[i]) * SEEDS[i];
+        value += (value >>> 32);
+        return ((int) value) & this.tableMask;
+    }
+}
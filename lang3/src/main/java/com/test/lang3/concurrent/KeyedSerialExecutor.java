@@ -0,0 +1,171 @@
+package com.test.lang3.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 按key串行执行的线程池包装：同一个key的任务按提交顺序逐个执行，不同key的任务在底层线程池中并行执行
+ * <p>
+ * 1.每个有待执行任务的key对应一条任务链，首个任务提交时创建并提交到底层线程池，任务全部执行完后从map中移除，
+ * 内存占用与活跃key数成正比；
+ * 2.任务链每执行{@code maxBatch}个任务后重新提交到底层线程池，让出线程，热点key不会阻塞其他key；
+ * 3.代替把key散列到多个单线程线程池的做法，避免不同key之间的队头阻塞；
+ * 4.底层线程池拒绝执行任务链（已关闭或饱和）时，由提交或正在执行任务链的线程继续执行，保持顺序且不丢失任务
+ * <p>
+ * {@link #execute(Object, Runnable)}提交的任务抛出的异常交给线程的{@link Thread.UncaughtExceptionHandler}处理，不影响后续任务
+ *
+ * @param <K> key类型
+ */
+public class KeyedSerialExecutor<K> {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    private static final int DEFAULT_MAX_BATCH = 32;
+
+    private final Executor executor;
+    private final int maxBatch;
+    private final ConcurrentHashMap<K, SerialQueue> queues = new ConcurrentHashMap<>();
+
+    public KeyedSerialExecutor(Executor executor) {
+        this(executor, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * @param executor 底层线程池
+     * @param maxBatch 任务链一次最多连续执行的任务数，之后重新提交到底层线程池
+     */
+    public KeyedSerialExecutor(Executor executor, int maxBatch) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive");
+        }
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * 提交任务，在同一个key之前提交的任务全部执行完后执行
+     *
+     * @param key  任务的key，如用户id
+     * @param task 任务
+     */
+    public void execute(K key, Runnable task) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(task, "task");
+        // 任务链由首个任务的提交线程创建，每个任务单独传递自己提交线程的上下文
+        Runnable contextTask = ContextPropagation.wrap(task);
+        boolean[] created = new boolean[1];
+        SerialQueue queue = queues.compute(key, (k, current) -> {
+            if (current == null) {
+                current = new SerialQueue(k);
+                created[0] = true;
+            }
+            current.tasks.add(contextTask);
+            return current;
+        });
+        if (created[0]) {
+            try {
+                executor.execute(queue);
+            } catch (RejectedExecutionException e) {
+                // 拒绝前其他线程可能已经把任务加入该任务链并返回，由当前线程执行整条任务链
+                log.debug("任务链【{}】提交被拒绝，在当前线程执行", key);
+                queue.run();
+            }
+        }
+    }
+
+    public <T> Future<T> submit(K key, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        execute(key, future);
+        return future;
+    }
+
+    public Future<?> submit(K key, Runnable task) {
+        FutureTask<Void> future = new FutureTask<>(task, null);
+        execute(key, future);
+        return future;
+    }
+
+    /**
+     * @param key 任务的key
+     * @return 把任务按该key串行执行的{@link Executor}
+     */
+    public Executor executorFor(K key) {
+        Objects.requireNonNull(key, "key");
+        return task -> execute(key, task);
+    }
+
+    /**
+     * @return 有待执行任务的key数
+     */
+    public int getActiveKeyCount() {
+        return queues.size();
+    }
+
+    /**
+     * 一个key的任务链，存在于map中时已经提交到底层线程池或正在执行，任务的添加和任务链的移除都在map的compute中完成
+     */
+    private final class SerialQueue implements Runnable {
+
+        private final K key;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private boolean retired;
+
+        private SerialQueue(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                for (int i = 0; i < maxBatch; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        if (tryRetire()) {
+                            return;
+                        }
+                        // 移除前有新任务加入
+                        continue;
+                    }
+                    runSafely(task);
+                }
+                try {
+                    executor.execute(this);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // 底层线程池已关闭或饱和，在当前线程继续执行，保持顺序且不丢失任务
+                    log.debug("任务链【{}】重新提交被拒绝，在当前线程继续执行", key);
+                }
+            }
+        }
+
+        private boolean tryRetire() {
+            queues.computeIfPresent(key, (k, current) -> {
+                if (current == this && tasks.isEmpty()) {
+                    retired = true;
+                    return null;
+                }
+                return current;
+            });
+            return retired;
+        }
+
+        private void runSafely(Runnable task) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.test.lang3.concurrent;
+
+import org.slf4j.MDC;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 传递SLF4J {@link MDC}的上下文，写时复制：
+ * <p>
+ * 1.通过{@link #put(String, String)}、{@link #remove(String)}、{@link #clear()}修改MDC时，同时在线程中保存一份不可变的副本，
+ * 捕获时只复制该副本的引用，不复制整个MDC；
+ * 2.线程没有副本时（从未通过本类修改过MDC），捕获时复制一次MDC，与直接调用{@link MDC#getCopyOfContextMap()}的开销相同；
+ * 3.恢复的快照与线程当前的副本相同时（如在同一上下文中嵌套执行任务）不重新设置MDC；
+ * 4.任务执行后线程还原为执行前的状态，执行前没有副本的线程（如线程池的工作线程）还原后也没有副本
+ * <p>
+ * 线程有副本期间（通过本类修改过MDC，或正在执行传递了上下文的任务），对MDC的修改都应通过本类，
+ * 直接调用{@link MDC#put(String, String)}的修改在当前线程可见，但不会被传递
+ *
+ * @see ContextPropagation#register(ContextPropagator)
+ */
+public final class MdcContextPropagator implements ContextPropagator<Map<String, String>> {
+
+    public static final MdcContextPropagator INSTANCE = new MdcContextPropagator();
+
+    private static final Map<String, String> EMPTY = Collections.emptyMap();
+
+    private static final Map<String, String> UNTRACKED_EMPTY = new Untracked(EMPTY);
+
+    /**
+     * 线程中MDC的不可变副本，为null时线程没有副本
+     */
+    private static final ThreadLocal<Map<String, String>> CONTEXT = new ThreadLocal<>();
+
+    private MdcContextPropagator() {
+    }
+
+    /**
+     * 设置MDC的值，复制一份新的不可变副本
+     */
+    public static void put(String key, String value) {
+        Objects.requireNonNull(key, "key");
+        Map<String, String> updated = new HashMap<>(current());
+        updated.put(key, value);
+        CONTEXT.set(Collections.unmodifiableMap(updated));
+        MDC.put(key, value);
+    }
+
+    /**
+     * 移除MDC的值，复制一份新的不可变副本
+     */
+    public static void remove(String key) {
+        Objects.requireNonNull(key, "key");
+        Map<String, String> current = current();
+        if (current.containsKey(key)) {
+            Map<String, String> updated = new HashMap<>(current);
+            updated.remove(key);
+            CONTEXT.set(updated.isEmpty() ? EMPTY : Collections.unmodifiableMap(updated));
+        } else {
+            CONTEXT.set(current);
+        }
+        MDC.remove(key);
+    }
+
+    public static void clear() {
+        CONTEXT.set(EMPTY);
+        MDC.clear();
+    }
+
+    @Override
+    public Map<String, String> capture() {
+        Map<String, String> current = current();
+        return current.isEmpty() ? null : current;
+    }
+
+    @Override
+    public Map<String, String> restore(Map<String, String> snapshot) {
+        Map<String, String> previous = CONTEXT.get();
+        Map<String, String> saved;
+        if (previous == null) {
+            Map<String, String> copy = copyOfMdc();
+            saved = copy.isEmpty() ? UNTRACKED_EMPTY : new Untracked(copy);
+        } else {
+            saved = previous.isEmpty() ? null : previous;
+        }
+        if (snapshot instanceof Untracked untracked) {
+            // 还原为没有副本的线程，之后直接修改MDC也能被捕获
+            setMdc(untracked.context);
+            CONTEXT.remove();
+            return saved;
+        }
+        Map<String, String> target = (snapshot != null) ? snapshot : EMPTY;
+        if (previous != target) {
+            setMdc(target);
+            CONTEXT.set(target);
+        }
+        return saved;
+    }
+
+    private static void setMdc(Map<String, String> context) {
+        if (context.isEmpty()) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+
+    private static Map<String, String> current() {
+        Map<String, String> current = CONTEXT.get();
+        return (current != null) ? current : copyOfMdc();
+    }
+
+    private static Map<String, String> copyOfMdc() {
+        Map<String, String> copy = MDC.getCopyOfContextMap();
+        return (copy == null || copy.isEmpty()) ? EMPTY : Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * {@link #restore(Map)}返回的线程没有副本时的MDC，用该值还原时只设置MDC，不保存副本
+     */
+    private static final class Untracked extends AbstractMap<String, String> {
+
+        private final Map<String, String> context;
+
+        private Untracked(Map<String, String> context) {
+            this.context = context;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return context.entrySet();
+        }
+    }
+}
@@ -13,12 +13,19 @@ import java.util.concurrent.atomic.AtomicLong;
 public class NamedThreadFactory implements ThreadFactory {
 
     private static final String LINE = "-";
+
+    /**
+     * 虚拟线程工厂（JDK 21+ {@code Thread.ofVirtual().factory()}），通过反射获取以兼容低版本JDK，不支持时为null
+     */
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
     private final AtomicLong sequence = new AtomicLong(0);
     private final String threadNamePrefix;
     private boolean daemon;
 
     private Thread.UncaughtExceptionHandler exceptionHandler;
 
+    private boolean virtual;
+
     public NamedThreadFactory(String prefix, boolean daemon, Thread.UncaughtExceptionHandler exceptionHandler) {
         this(prefix);
         this.daemon = daemon;
@@ -38,13 +45,57 @@ public class NamedThreadFactory implements ThreadFactory {
         this.threadNamePrefix = prefix;
     }
 
+    /**
+     * @return 线程名前缀，以"-"结尾
+     */
+    public String getThreadNamePrefix() {
+        return threadNamePrefix;
+    }
+
+    /**
+     * 创建命名的虚拟线程工厂，运行时不支持虚拟线程时创建平台线程
+     *
+     * @param prefix           线程名前缀
+     * @param exceptionHandler 未捕获异常处理器
+     * @return 线程工厂
+     * @see #isVirtualThreadSupported()
+     */
+    public static NamedThreadFactory ofVirtual(String prefix, Thread.UncaughtExceptionHandler exceptionHandler) {
+        NamedThreadFactory threadFactory = new NamedThreadFactory(prefix, exceptionHandler);
+        threadFactory.virtual = true;
+        return threadFactory;
+    }
+
+    /**
+     * @return 当前运行时是否支持虚拟线程
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
     @Override
     public Thread newThread(Runnable runnable) {
-        Thread thread = new Thread(runnable);
+        Thread thread;
+        if (virtual && VIRTUAL_THREAD_FACTORY != null) {
+            // 虚拟线程总是守护线程
+            thread = VIRTUAL_THREAD_FACTORY.newThread(runnable);
+        } else {
+            thread = new Thread(runnable);
+            thread.setDaemon(daemon);
+        }
         thread.setName(threadNamePrefix + sequence.getAndIncrement());
-        thread.setDaemon(daemon);
         thread.setUncaughtExceptionHandler(exceptionHandler);
         return thread;
     }
 
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // JDK 21以下不支持，或JDK 19/20未开启预览特性
+            return null;
+        }
+    }
+
 }
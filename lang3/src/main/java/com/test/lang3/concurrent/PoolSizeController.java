@@ -0,0 +1,472 @@
+package com.test.lang3.concurrent;
+
+import com.test.lang3.concurrent.ExecutorServices.ManagedThreadPoolExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 线程池大小自适应控制器，代替按经验手工设置线程数
+ * <p>
+ * 每个采样周期根据{@link ManagedThreadPoolExecutor}的指标计算吞吐量、平均排队时间、线程利用率和任务阻塞比例，
+ * 按爬山法在[最小线程数, 最大线程数]内调整线程数：
+ * 1.排队时间超过目标时扩容，步长按阻塞比例估算（{@code CPU核数 / (1 - 阻塞比例)}），上次扩容后吞吐量没有提升则撤销并冷却；
+ * 2.任务几乎不阻塞且线程数已达CPU核数时不再扩容，更多线程只会增加切换；
+ * 3.阻塞比例按{@code 1 - CPU时间 / 执行时间}计算，线程被抢占等待CPU的时间也计入阻塞，
+ * 因此系统CPU使用率达到{@value #CPU_SATURATED_LOAD}时不再扩容，此时阻塞可能来自CPU争用；
+ * 4.没有积压且利用率低于下限时缩容；
+ * 5.每次决策记录日志，调整时为info级别，不调整时为debug级别
+ * <p>
+ * 线程池需开启指标统计（{@link ExecutorServices.ThreadPoolBuilder#recordMetrics()}），
+ * 开启CPU时间统计（{@link ExecutorServices.ThreadPoolBuilder#recordCpuTime()}）后才能计算阻塞比例；
+ * 控制器调整时核心线程数与最大线程数设置为相同的值
+ *
+ * @see #builder(ManagedThreadPoolExecutor)
+ */
+public class PoolSizeController {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolSizeController.class);
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 阻塞比例低于该值时视为CPU密集型任务
+     */
+    private static final double CPU_BOUND_BLOCKED_RATIO = 0.1;
+
+    /**
+     * 系统CPU使用率达到该值时视为CPU饱和
+     */
+    private static final double CPU_SATURATED_LOAD = 0.9;
+
+    private static final OperatingSystemMXBean OS_MX_BEAN = ManagementFactory.getOperatingSystemMXBean();
+
+    /**
+     * 扩容后吞吐量的最小提升比例，低于该比例视为扩容无效
+     */
+    private static final double MIN_THROUGHPUT_GAIN = 0.05;
+
+    /**
+     * 撤销调整后保持不变的采样周期数
+     */
+    private static final int COOLDOWN_SAMPLES = 2;
+
+    private final ManagedThreadPoolExecutor executor;
+    private final String name;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long intervalNanos;
+    private final long targetQueueWaitNanos;
+    private final double lowUtilization;
+    private final double highUtilization;
+    private final ScheduledExecutorService scheduler;
+    private final int cpus;
+    private final Supplier<Sample> metricsSource;
+
+    private Sample lastSample;
+    private int lastMove;
+    private double lastThroughput;
+    private int cooldown;
+    private ScheduledFuture<?> future;
+    private volatile Decision lastDecision;
+
+    private PoolSizeController(Builder builder) {
+        this.executor = builder.executor;
+        this.name = builder.executor.metrics().getName();
+        this.minPoolSize = builder.minPoolSize;
+        this.maxPoolSize = builder.maxPoolSize;
+        this.intervalNanos = builder.intervalNanos;
+        this.targetQueueWaitNanos = builder.targetQueueWaitNanos;
+        this.lowUtilization = builder.lowUtilization;
+        this.highUtilization = builder.highUtilization;
+        this.scheduler = (builder.scheduler != null) ? builder.scheduler : ExecutorServices.sharedScheduler();
+        this.cpus = builder.availableProcessors;
+        this.metricsSource = (builder.metricsSource != null) ? builder.metricsSource : this::sample;
+    }
+
+    /**
+     * @param executor 开启指标统计的线程池
+     * @return 控制器构建器
+     */
+    public static Builder builder(ManagedThreadPoolExecutor executor) {
+        return new Builder(executor);
+    }
+
+    /**
+     * 按采样周期定时调整，线程池关闭后自动停止
+     */
+    public synchronized void start() {
+        if (future == null) {
+            lastSample = metricsSource.get();
+            future = scheduler.scheduleWithFixedDelay(this::scheduledStep, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    /**
+     * 采样并按与上次采样之间的指标调整一次线程数，定时调整之外也可由调用方驱动（如模拟负载测试）
+     *
+     * @return 本次决策，首次调用只记录基准采样，不调整
+     */
+    public synchronized Decision step() {
+        Sample sample = metricsSource.get();
+        Sample previous = lastSample;
+        lastSample = sample;
+        if (previous == null || sample.nanos <= previous.nanos) {
+            return null;
+        }
+        Decision decision = decide(previous, sample);
+        lastDecision = decision;
+        if (decision.newPoolSize != decision.poolSize) {
+            resize(decision.newPoolSize);
+            log.info("线程池【{}】线程数调整：{}", name, decision);
+        } else if (log.isDebugEnabled()) {
+            log.debug("线程池【{}】线程数不变：{}", name, decision);
+        }
+        return decision;
+    }
+
+    /**
+     * @return 最近一次决策，尚未决策时为null
+     */
+    public Decision getLastDecision() {
+        return lastDecision;
+    }
+
+    private void scheduledStep() {
+        if (executor.isShutdown()) {
+            stop();
+            return;
+        }
+        try {
+            step();
+        } catch (RuntimeException e) {
+            log.error("线程池【{}】线程数调整失败", name, e);
+        }
+    }
+
+    private Sample sample() {
+        ExecutorMetrics.Snapshot metrics = executor.metrics();
+        ExecutorMetrics.HistogramSnapshot waitTime = metrics.getWaitTime();
+        ExecutorMetrics.HistogramSnapshot runTime = metrics.getRunTime();
+        return new Sample(System.nanoTime(), metrics.getCompletedCount(), waitTime.getCount(), waitTime.getSum(),
+                runTime.getSum(), executor.getCpuTimeNanos(), metrics.getQueuedCount(), cpuLoad());
+    }
+
+    /**
+     * @return 最近的系统CPU使用率，取值[0, 1]，无法获取时为负数
+     */
+    private static double cpuLoad() {
+        if (OS_MX_BEAN instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getCpuLoad();
+        }
+        return -1.0;
+    }
+
+    private Decision decide(Sample previous, Sample current) {
+        int size = executor.getCorePoolSize();
+        double seconds = (current.nanos - previous.nanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        double throughput = (current.completed - previous.completed) / seconds;
+        long started = current.waitCount - previous.waitCount;
+        long meanQueueWait = (started > 0) ? (current.waitSum - previous.waitSum) / started : 0L;
+        long runNanos = current.runSum - previous.runSum;
+        double utilization = clamp(runNanos / (seconds * TimeUnit.SECONDS.toNanos(1) * Math.max(size, 1)));
+        double blocked = (current.cpuSum >= 0 && runNanos > 0)
+                ? clamp(1.0 - (current.cpuSum - previous.cpuSum) / (double) runNanos) : Double.NaN;
+        boolean saturated = meanQueueWait > targetQueueWaitNanos || (current.queued > size && utilization >= highUtilization);
+        boolean idle = current.queued == 0 && meanQueueWait <= targetQueueWaitNanos && utilization < lowUtilization;
+        boolean cpuSaturated = current.cpuLoad >= CPU_SATURATED_LOAD;
+
+        int target = size;
+        String reason;
+        if (cooldown > 0) {
+            cooldown--;
+            reason = "cooldown";
+        } else if (saturated) {
+            if (lastMove > 0 && throughput < lastThroughput * (1 + MIN_THROUGHPUT_GAIN)) {
+                target = size - lastMove;
+                cooldown = COOLDOWN_SAMPLES;
+                reason = "last growth did not raise throughput, reverting";
+            } else if (!Double.isNaN(blocked) && blocked < CPU_BOUND_BLOCKED_RATIO && size >= cpus) {
+                reason = "cpu bound at " + cpus + " cpus";
+            } else if (cpuSaturated) {
+                // 线程等待CPU的时间无法与阻塞区分，CPU饱和时扩容只会增加争用
+                reason = "cpu saturated";
+            } else if (size >= maxPoolSize) {
+                reason = "saturated at maximum";
+            } else {
+                target = size + growthStep(size, blocked);
+                reason = "queue wait above target";
+            }
+        } else if (idle && size > minPoolSize) {
+            target = size - Math.max(size / 4, 1);
+            reason = "utilization below " + lowUtilization;
+        } else {
+            reason = "within target";
+        }
+        int newSize = Math.max(minPoolSize, Math.min(target, maxPoolSize));
+        lastMove = newSize - size;
+        lastThroughput = throughput;
+        return new Decision(size, newSize, throughput, meanQueueWait, utilization, blocked, current.cpuLoad,
+                current.queued, reason);
+    }
+
+    /**
+     * 按阻塞比例估算需要的线程数（{@code CPU核数 / (1 - 阻塞比例)}），每次最多扩容一半，无法估算时扩容1/4
+     */
+    private int growthStep(int size, double blocked) {
+        if (Double.isNaN(blocked)) {
+            return Math.max(size / 4, 1);
+        }
+        int estimate = (int) Math.ceil(cpus / Math.max(1.0 - blocked, 0.01));
+        return Math.max(Math.min(estimate - size, Math.max(size / 2, 1)), 1);
+    }
+
+    private void resize(int newSize) {
+        if (newSize > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(newSize);
+            executor.setCorePoolSize(newSize);
+        } else {
+            executor.setCorePoolSize(newSize);
+            executor.setMaximumPoolSize(newSize);
+        }
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0.0, Math.min(value, 1.0));
+    }
+
+    /**
+     * 一次调整决策及其依据的指标
+     */
+    public static final class Decision {
+
+        private final int poolSize;
+        private final int newPoolSize;
+        private final double throughput;
+        private final long meanQueueWaitNanos;
+        private final double utilization;
+        private final double blockedRatio;
+        private final double cpuLoad;
+        private final long queued;
+        private final String reason;
+
+        Decision(int poolSize, int newPoolSize, double throughput, long meanQueueWaitNanos, double utilization,
+                 double blockedRatio, double cpuLoad, long queued, String reason) {
+            this.poolSize = poolSize;
+            this.newPoolSize = newPoolSize;
+            this.throughput = throughput;
+            this.meanQueueWaitNanos = meanQueueWaitNanos;
+            this.utilization = utilization;
+            this.blockedRatio = blockedRatio;
+            this.cpuLoad = cpuLoad;
+            this.queued = queued;
+            this.reason = reason;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public int getNewPoolSize() {
+            return newPoolSize;
+        }
+
+        /**
+         * @return 采样周期内每秒完成的任务数
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public long getMeanQueueWaitNanos() {
+            return meanQueueWaitNanos;
+        }
+
+        /**
+         * @return 线程执行任务的时间占比，取值[0, 1]
+         */
+        public double getUtilization() {
+            return utilization;
+        }
+
+        /**
+         * @return 任务执行时间中阻塞的占比，取值[0, 1]，包含被抢占等待CPU的时间，未统计CPU时间时为NaN
+         */
+        public double getBlockedRatio() {
+            return blockedRatio;
+        }
+
+        /**
+         * @return 采样时的系统CPU使用率，取值[0, 1]，无法获取时为负数
+         */
+        public double getCpuLoad() {
+            return cpuLoad;
+        }
+
+        public long getQueued() {
+            return queued;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d -> %d (%s), throughput=%.1f/s, queueWait=%.3fms, utilization=%.2f, blocked=%.2f, cpuLoad=%.2f, queued=%d",
+                    poolSize, newPoolSize, reason, throughput, meanQueueWaitNanos / 1_000_000.0, utilization, blockedRatio, cpuLoad, queued);
+        }
+    }
+
+    /**
+     * 控制器构建器
+     */
+    public static final class Builder {
+
+        private final ManagedThreadPoolExecutor executor;
+        private int minPoolSize = 1;
+        private int maxPoolSize;
+        private long intervalNanos = TimeUnit.SECONDS.toNanos(1);
+        private long targetQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(20);
+        private double lowUtilization = 0.5;
+        private double highUtilization = 0.85;
+        private ScheduledExecutorService scheduler;
+        private int availableProcessors = CPUS;
+        private Supplier<Sample> metricsSource;
+
+        private Builder(ManagedThreadPoolExecutor executor) {
+            this.executor = Objects.requireNonNull(executor, "executor");
+            if (executor.metrics().getWaitTime() == null) {
+                throw new IllegalArgumentException("executor must record metrics");
+            }
+            this.maxPoolSize = Math.max(executor.getCorePoolSize(), CPUS * 4);
+        }
+
+        /**
+         * @param minPoolSize 最小线程数，默认1
+         * @param maxPoolSize 最大线程数，默认CPU核数的4倍与当前核心线程数的较大值
+         */
+        public Builder bounds(int minPoolSize, int maxPoolSize) {
+            if (minPoolSize <= 0 || maxPoolSize < minPoolSize) {
+                throw new IllegalArgumentException(String.format("Illegal bounds, min: %d, max: %d", minPoolSize, maxPoolSize));
+            }
+            this.minPoolSize = minPoolSize;
+            this.maxPoolSize = maxPoolSize;
+            return this;
+        }
+
+        /**
+         * @param interval 采样周期，默认1秒
+         */
+        public Builder interval(Duration interval) {
+            if (interval == null || interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("interval must be positive");
+            }
+            this.intervalNanos = interval.toNanos();
+            return this;
+        }
+
+        /**
+         * @param targetQueueWait 目标平均排队时间，超过时扩容，默认20ms
+         */
+        public Builder targetQueueWait(Duration targetQueueWait) {
+            if (targetQueueWait == null || targetQueueWait.isNegative()) {
+                throw new IllegalArgumentException("targetQueueWait must not be negative");
+            }
+            this.targetQueueWaitNanos = targetQueueWait.toNanos();
+            return this;
+        }
+
+        /**
+         * @param lowUtilization  利用率下限，没有积压且低于下限时缩容，默认0.5
+         * @param highUtilization 利用率上限，有积压且高于上限时扩容，默认0.85
+         */
+        public Builder utilization(double lowUtilization, double highUtilization) {
+            if (!(lowUtilization >= 0.0 && lowUtilization < highUtilization && highUtilization <= 1.0)) {
+                throw new IllegalArgumentException(String.format("Illegal utilization, low: %s, high: %s", lowUtilization, highUtilization));
+            }
+            this.lowUtilization = lowUtilization;
+            this.highUtilization = highUtilization;
+            return this;
+        }
+
+        /**
+         * @param scheduler 执行定时调整的线程池，默认使用共享的单线程定时线程池
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
+            return this;
+        }
+
+        /**
+         * @param availableProcessors 估算线程数使用的CPU核数，默认为可用处理器数，用于模拟其它主机
+         */
+        Builder availableProcessors(int availableProcessors) {
+            this.availableProcessors = availableProcessors;
+            return this;
+        }
+
+        /**
+         * @param metricsSource 采样来源，默认读取线程池的指标，用于以合成的负载驱动控制器
+         */
+        Builder metricsSource(Supplier<Sample> metricsSource) {
+            this.metricsSource = Objects.requireNonNull(metricsSource, "metricsSource");
+            return this;
+        }
+
+        public PoolSizeController build() {
+            return new PoolSizeController(this);
+        }
+    }
+
+    /**
+     * 一次采样的累计指标
+     */
+    static final class Sample {
+
+        final long nanos;
+        final long completed;
+        final long waitCount;
+        final long waitSum;
+        final long runSum;
+        final long cpuSum;
+        final long queued;
+        final double cpuLoad;
+
+        /**
+         * @param nanos     采样时间
+         * @param completed 累计完成的任务数
+         * @param waitCount 累计开始执行的任务数
+         * @param waitSum   累计排队时间（纳秒）
+         * @param runSum    累计执行时间（纳秒）
+         * @param cpuSum    累计CPU时间（纳秒），未统计时为负数
+         * @param queued    当前排队的任务数
+         * @param cpuLoad   系统CPU使用率，无法获取时为负数
+         */
+        Sample(long nanos, long completed, long waitCount, long waitSum, long runSum, long cpuSum, long queued, double cpuLoad) {
+            this.nanos = nanos;
+            this.completed = completed;
+            this.waitCount = waitCount;
+            this.waitSum = waitSum;
+            this.runSum = runSum;
+            this.cpuSum = cpuSum;
+            this.queued = queued;
+            this.cpuLoad = cpuLoad;
+        }
+    }
+}
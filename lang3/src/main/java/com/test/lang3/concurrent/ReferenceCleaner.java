@@ -0,0 +1,121 @@
+package com.test.lang3.concurrent;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A shared daemon thread that purges garbage collected references in the background,
+ * used by {@link ConcurrentReferenceHashMap} instances built with
+ * {@link ConcurrentReferenceHashMap.Builder#purgeInBackground()}.
+ *
+ * <p>All such maps register their references with one shared queue. The cleaner waits
+ * on that queue, collects up to {@link #BATCH_SIZE} references at a time and groups
+ * them by their {@link Purgeable owner}, so that each owner purges a batch at once
+ * instead of one reference at a time.
+ */
+final class ReferenceCleaner {
+
+    private static final Logger log = LoggerFactory.getLogger(ReferenceCleaner.class);
+
+    /**
+     * The maximum number of references purged in one batch.
+     */
+    static final int BATCH_SIZE = 256;
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+    private static volatile Thread thread;
+
+    private ReferenceCleaner() {
+    }
+
+    /**
+     * Return the shared queue, starting the cleaner thread on first use.
+     *
+     * @return the queue to register references with
+     */
+    static ReferenceQueue<Object> queue() {
+        if (thread == null) {
+            start();
+        }
+        return QUEUE;
+    }
+
+    private static synchronized void start() {
+        if (thread == null) {
+            Thread cleaner = new NamedThreadFactory("reference-cleaner", true,
+                    new ExecutorServices.ThreadUnCaughtExceptionHandler()).newThread(ReferenceCleaner::run);
+            cleaner.start();
+            thread = cleaner;
+        }
+    }
+
+    private static void run() {
+        Map<Purgeable, List<Reference<?>>> batches = new IdentityHashMap<>();
+        while (true) {
+            try {
+                Reference<?> reference = QUEUE.remove();
+                int size = 0;
+                do {
+                    if (reference instanceof Owned owned && owned.getOwner() != null) {
+                        batches.computeIfAbsent(owned.getOwner(), owner -> new ArrayList<>()).add(reference);
+                    }
+                    size++;
+                } while (size < BATCH_SIZE && (reference = QUEUE.poll()) != null);
+                for (Map.Entry<Purgeable, List<Reference<?>>> batch : batches.entrySet()) {
+                    try {
+                        batch.getKey().purge(batch.getValue());
+                    } catch (RuntimeException ex) {
+                        log.error("Failed to purge {} references", batch.getValue().size(), ex);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                // The cleaner lives as long as the JVM, keep draining
+            } finally {
+                batches.clear();
+            }
+        }
+    }
+
+
+    /**
+     * Purges a batch of its references that have been garbage collected.
+     */
+    interface Purgeable {
+
+        /**
+         * Called instead of enqueuing a reference that is released explicitly, the
+         * purgeable purges it itself rather than waiting for the cleaner.
+         *
+         * @param reference the released reference, owned by this purgeable
+         */
+        void released(Reference<?> reference);
+
+        /**
+         * Purge the references.
+         *
+         * @param references the references to purge, all owned by this purgeable
+         */
+        void purge(List<Reference<?>> references);
+    }
+
+
+    /**
+     * A reference registered with the shared queue that knows which {@link Purgeable} owns it.
+     */
+    interface Owned {
+
+        /**
+         * Return the owner purging this reference, or {@code null} if purged elsewhere.
+         */
+        Purgeable getOwner();
+    }
+}
@@ -0,0 +1,102 @@
+package com.test.lang3.concurrent;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lossy buffer of recent reads, striped by thread so that recording a read does not
+ * contend with other threads. Elements are dropped when a ring is full or when a
+ * concurrent offer to the same ring wins, which is acceptable for access-order hints.
+ *
+ * <p>Offers are lock-free, draining must be done by a single thread at a time.
+ *
+ * @param <E> the element type
+ */
+final class StripedReadBuffer<E> {
+
+    /**
+     * The number of elements each ring can hold.
+     */
+    static final int RING_SIZE = 16;
+
+    private static final int RING_MASK = RING_SIZE - 1;
+
+    private static final int MAXIMUM_STRIPES = 64;
+
+    private final Ring<E>[] rings;
+
+    private final int stripeMask;
+
+    @SuppressWarnings("unchecked")
+    StripedReadBuffer() {
+        int stripes = Math.min(Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1, MAXIMUM_STRIPES);
+        this.rings = (Ring<E>[]) new Ring<?>[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.rings[i] = new Ring<>();
+        }
+        this.stripeMask = stripes - 1;
+    }
+
+    /**
+     * Insert the element into the ring of the current thread.
+     *
+     * @param element the element to add
+     * @return {@code false} if the ring was full and should be drained
+     */
+    boolean offer(E element) {
+        long id = Thread.currentThread().getId();
+        int stripe = (int) (id ^ (id >>> 16)) * 0x9e3779b9;
+        return this.rings[(stripe >>> 16) & this.stripeMask].offer(element);
+    }
+
+    /**
+     * Drain all buffered elements to the consumer.
+     *
+     * @param consumer the action to apply to each element
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Ring<E> ring : this.rings) {
+            ring.drainTo(consumer);
+        }
+    }
+
+
+    private static final class Ring<E> {
+
+        private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(RING_SIZE);
+
+        private final AtomicLong writeCounter = new AtomicLong();
+
+        private volatile long readCounter;
+
+        boolean offer(E element) {
+            long head = this.readCounter;
+            long tail = this.writeCounter.get();
+            if (tail - head >= RING_SIZE) {
+                return false;
+            }
+            if (this.writeCounter.compareAndSet(tail, tail + 1)) {
+                this.buffer.lazySet((int) tail & RING_MASK, element);
+            }
+            return true;
+        }
+
+        void drainTo(Consumer<E> consumer) {
+            long head = this.readCounter;
+            long tail = this.writeCounter.get();
+            for (; head != tail; head++) {
+                int index = (int) head & RING_MASK;
+                E element = this.buffer.get(index);
+                if (element == null) {
+                    // The slot was claimed but not yet published, drain it next time
+                    break;
+                }
+                this.buffer.lazySet(index, null);
+                consumer.accept(element);
+            }
+            this.readCounter = head;
+        }
+    }
+}
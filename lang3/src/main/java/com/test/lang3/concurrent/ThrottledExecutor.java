@@ -0,0 +1,387 @@
+package com.test.lang3.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 限流的线程池包装，按固定速率把任务交给底层线程池，积压任务集中释放时不会压垮下游服务
+ * <p>
+ * 1.令牌桶模式（{@link Mode#TOKEN_BUCKET}）：空闲后允许最多{@code burst}个任务立即执行，之后按速率执行；
+ * 2.漏桶模式（{@link Mode#LEAKY_BUCKET}）：任务严格按速率间隔执行，最多积压{@code burst}个任务；
+ * 3.限流状态只有一个理论到达时间（GCRA算法），获取许可时按{@link System#nanoTime()}惰性计算并CAS更新，无锁；
+ * 4.需要等待的任务由共享的定时线程在许可时间到达时交给底层线程池，不阻塞提交线程；
+ * 5.等待时间超过{@code maxWait}的任务被拒绝，抛出{@link RejectedExecutionException}
+ * <p>
+ * {@link Builder#buildKeyed()}创建按key限流的包装，每个key一个限流桶，强引用存放在{@link ConcurrentHashMap}中，
+ * 内存紧张时也不会被回收而重新允许突发；令牌恢复满额的桶与新建的桶等价，由定时线程每个恢复周期清理一次，不占用提交线程
+ *
+ * @see #builder(Executor)
+ */
+public class ThrottledExecutor implements Executor {
+
+    private static final Logger log = LoggerFactory.getLogger(ThrottledExecutor.class);
+
+    private static final long MIN_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final Bucket bucket;
+    private final long maxWaitNanos;
+
+    private ThrottledExecutor(Builder builder) {
+        this.executor = builder.executor;
+        this.scheduler = builder.scheduler();
+        this.bucket = builder.newBucket();
+        this.maxWaitNanos = builder.maxWaitNanos();
+    }
+
+    /**
+     * @param executor 底层线程池
+     * @return 限流包装构建器，需设置速率
+     */
+    public static Builder builder(Executor executor) {
+        return new Builder(executor);
+    }
+
+    /**
+     * 按速率执行任务，等待时间超过{@code maxWait}时拒绝
+     *
+     * @throws RejectedExecutionException 等待时间超过{@code maxWait}，或底层线程池拒绝执行
+     */
+    @Override
+    public void execute(Runnable command) {
+        dispatch(executor, scheduler, bucket, maxWaitNanos, command);
+    }
+
+    /**
+     * 不等待，立即获取许可
+     *
+     * @return 获取到许可返回true
+     */
+    public boolean tryAcquire() {
+        return bucket.reserve(0L) == 0L;
+    }
+
+    static void dispatch(Executor executor, ScheduledExecutorService scheduler, Bucket bucket, long maxWaitNanos, Runnable command) {
+        Objects.requireNonNull(command, "command");
+        long delay = bucket.reserve(maxWaitNanos);
+        if (delay < 0) {
+            throw new RejectedExecutionException("Task " + command + " rejected, throttled for more than "
+                    + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "ms");
+        }
+        if (delay == 0) {
+            executor.execute(command);
+            return;
+        }
+        // 在定时线程中以提交线程的上下文提交，底层线程池据此传递上下文
+        ContextPropagation.Snapshot context = ContextPropagation.capture();
+        scheduler.schedule(() -> {
+            try {
+                context.run(() -> executor.execute(command));
+            } catch (RejectedExecutionException e) {
+                // 定时线程上的拒绝无法抛给提交线程，取消任务使等待结果的线程不会一直阻塞
+                if (command instanceof Future<?> future) {
+                    future.cancel(false);
+                }
+                log.warn("限流后提交任务【{}】被拒绝", command, e);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 限流模式
+     */
+    public enum Mode {
+        /**
+         * 令牌桶：令牌以固定速率恢复，最多积累{@code burst}个，允许突发
+         */
+        TOKEN_BUCKET,
+        /**
+         * 漏桶：任务以固定速率流出，不允许突发，最多积压{@code burst}个任务
+         */
+        LEAKY_BUCKET
+    }
+
+    /**
+     * 限流桶（GCRA）：记录下一个许可的理论到达时间，每个许可推后一个发放间隔，
+     * 理论到达时间领先当前时间不超过容忍度（{@code (burst - 1) * 间隔}）时立即发放
+     */
+    public static final class Bucket {
+
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong theoreticalArrival;
+
+        Bucket(long intervalNanos, long toleranceNanos) {
+            this.intervalNanos = intervalNanos;
+            this.toleranceNanos = toleranceNanos;
+            // 新建的桶令牌满额
+            this.theoreticalArrival = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * 预留一个许可
+         *
+         * @param maxWaitNanos 最长等待时间
+         * @return 许可生效前需要等待的纳秒数，超过最长等待时间时返回-1且不预留
+         */
+        long reserve(long maxWaitNanos) {
+            while (true) {
+                long now = System.nanoTime();
+                long arrival = theoreticalArrival.get();
+                long start = (arrival - now > 0) ? arrival : now;
+                long delay = Math.max(arrival - toleranceNanos - now, 0L);
+                if (delay > maxWaitNanos) {
+                    return -1L;
+                }
+                if (theoreticalArrival.compareAndSet(arrival, start + intervalNanos)) {
+                    return delay;
+                }
+            }
+        }
+
+        /**
+         * @return 令牌已恢复满额，与新建的桶等价
+         */
+        boolean isFull(long now) {
+            return theoreticalArrival.get() - now <= 0;
+        }
+    }
+
+    /**
+     * 按key限流的线程池包装，每个key独立限流
+     *
+     * @param <K> key类型
+     */
+    public static final class Keyed<K> {
+
+        private final Executor executor;
+        private final ScheduledExecutorService scheduler;
+        private final long maxWaitNanos;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final ConcurrentHashMap<K, Bucket> buckets = new ConcurrentHashMap<>();
+
+        private Keyed(Builder builder) {
+            this.intervalNanos = builder.intervalNanos;
+            this.toleranceNanos = builder.toleranceNanos();
+            this.executor = builder.executor;
+            this.scheduler = builder.scheduler();
+            this.maxWaitNanos = builder.maxWaitNanos();
+            // 空闲的桶最晚在一个恢复周期后满额，清理间隔不小于1秒，避免高速率时频繁遍历
+            long sweepIntervalNanos = Math.max(intervalNanos + toleranceNanos, MIN_SWEEP_INTERVAL_NANOS);
+            Sweeper<K> sweeper = new Sweeper<>(this);
+            sweeper.future = scheduler.scheduleWithFixedDelay(sweeper, sweepIntervalNanos, sweepIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * 按key的速率执行任务
+         *
+         * @throws RejectedExecutionException 等待时间超过{@code maxWait}，或底层线程池拒绝执行
+         */
+        public void execute(K key, Runnable command) {
+            dispatch(executor, scheduler, bucket(key), maxWaitNanos, command);
+        }
+
+        /**
+         * @param key 限流的key
+         * @return 按该key限流的{@link Executor}
+         */
+        public Executor executorFor(K key) {
+            Objects.requireNonNull(key, "key");
+            return command -> execute(key, command);
+        }
+
+        /**
+         * 不等待，立即获取key的许可
+         *
+         * @return 获取到许可返回true
+         */
+        public boolean tryAcquire(K key) {
+            return bucket(key).reserve(0L) == 0L;
+        }
+
+        /**
+         * @return 未回收的限流桶数
+         */
+        public int getBucketCount() {
+            return buckets.size();
+        }
+
+        private Bucket bucket(K key) {
+            Objects.requireNonNull(key, "key");
+            return buckets.computeIfAbsent(key, k -> new Bucket(intervalNanos, toleranceNanos));
+        }
+
+        /**
+         * 移除令牌已恢复满额的桶，此时的桶与新建的桶等价，移除不影响限流
+         */
+        void sweep(long now) {
+            buckets.forEach((key, bucket) -> {
+                if (bucket.isFull(now)) {
+                    buckets.computeIfPresent(key, (k, current) -> current.isFull(now) ? null : current);
+                }
+            });
+        }
+    }
+
+    /**
+     * 定时清理任务，弱引用限流包装，包装不再使用被回收后取消定时任务
+     */
+    private static final class Sweeper<K> implements Runnable {
+
+        private final WeakReference<Keyed<K>> keyed;
+        private volatile ScheduledFuture<?> future;
+
+        private Sweeper(Keyed<K> keyed) {
+            this.keyed = new WeakReference<>(keyed);
+        }
+
+        @Override
+        public void run() {
+            Keyed<K> current = keyed.get();
+            if (current == null) {
+                ScheduledFuture<?> scheduled = future;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                }
+                return;
+            }
+            current.sweep(System.nanoTime());
+        }
+    }
+
+    /**
+     * 限流包装构建器
+     */
+    public static final class Builder {
+
+        private final Executor executor;
+        private long intervalNanos;
+        private int burst = 1;
+        private Mode mode = Mode.TOKEN_BUCKET;
+        private long maxWaitNanos = Long.MAX_VALUE;
+        private ScheduledExecutorService scheduler;
+
+        private Builder(Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "executor");
+        }
+
+        /**
+         * @param permits 每个周期的许可数
+         * @param period  周期
+         */
+        public Builder rate(long permits, Duration period) {
+            if (permits <= 0 || period == null || period.isNegative() || period.isZero()) {
+                throw new IllegalArgumentException("permits and period must be positive");
+            }
+            this.intervalNanos = Math.max(period.toNanos() / permits, 1L);
+            return this;
+        }
+
+        /**
+         * @param permitsPerSecond 每秒许可数
+         */
+        public Builder permitsPerSecond(double permitsPerSecond) {
+            if (!(permitsPerSecond > 0.0)) {
+                throw new IllegalArgumentException("permitsPerSecond must be positive");
+            }
+            this.intervalNanos = Math.max((long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond), 1L);
+            return this;
+        }
+
+        /**
+         * @param burst 令牌桶模式下可立即执行的最大任务数，漏桶模式下最多积压的任务数，默认1
+         */
+        public Builder burst(int burst) {
+            if (burst <= 0) {
+                throw new IllegalArgumentException("burst must be positive");
+            }
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * @param mode 限流模式，默认令牌桶
+         */
+        public Builder mode(Mode mode) {
+            this.mode = Objects.requireNonNull(mode, "mode");
+            return this;
+        }
+
+        /**
+         * 令牌桶模式下任务最长等待时间，超过时拒绝，默认不限制；漏桶模式下由{@code burst}决定
+         *
+         * @param maxWait 最长等待时间
+         */
+        public Builder maxWait(Duration maxWait) {
+            if (maxWait == null || maxWait.isNegative()) {
+                throw new IllegalArgumentException("maxWait must not be negative");
+            }
+            this.maxWaitNanos = maxWait.toNanos();
+            return this;
+        }
+
+        /**
+         * @param scheduler 定时释放等待任务的线程池，默认使用共享的单线程定时线程池
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
+            return this;
+        }
+
+        public ThrottledExecutor build() {
+            checkRate();
+            return new ThrottledExecutor(this);
+        }
+
+        /**
+         * @param <K> key类型
+         * @return 按key限流的包装，各key使用相同的速率设置
+         */
+        public <K> Keyed<K> buildKeyed() {
+            checkRate();
+            return new Keyed<>(this);
+        }
+
+        private void checkRate() {
+            if (intervalNanos == 0) {
+                throw new IllegalStateException("rate must be set");
+            }
+        }
+
+        Bucket newBucket() {
+            return new Bucket(intervalNanos, toleranceNanos());
+        }
+
+        long toleranceNanos() {
+            return (mode == Mode.TOKEN_BUCKET) ? saturatedMultiply(intervalNanos, burst - 1) : 0L;
+        }
+
+        long maxWaitNanos() {
+            return (mode == Mode.TOKEN_BUCKET) ? maxWaitNanos : saturatedMultiply(intervalNanos, burst - 1);
+        }
+
+        ScheduledExecutorService scheduler() {
+            return (scheduler != null) ? scheduler : ExecutorServices.sharedScheduler();
+        }
+
+        private static long saturatedMultiply(long a, long b) {
+            long high = Math.multiplyHigh(a, b);
+            long low = a * b;
+            return (high == 0 && low >= 0) ? low : Long.MAX_VALUE;
+        }
+    }
+}
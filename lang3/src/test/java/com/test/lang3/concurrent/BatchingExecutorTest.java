@@ -0,0 +1,136 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量执行的工作窃取线程池单元测试
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 9:30 PM
+ */
+public class BatchingExecutorTest {
+
+    @Test
+    public void executeTest() throws Exception {
+        AtomicInteger failures = new AtomicInteger();
+        BatchingExecutor executor = new BatchingExecutor(2, 1024,
+                new NamedThreadFactory("batching-", (thread, e) -> failures.incrementAndGet()));
+        LongAdder executed = new LongAdder();
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    executor.execute(executed::increment);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        Assertions.assertTrue(ExecutorServices.awaitQuiescence(executor, 5, TimeUnit.SECONDS));
+        Assertions.assertEquals(40_000, executed.sum());
+
+        // 任务抛出的异常交给线程的异常处理器，不会终止工作线程
+        executor.execute(() -> {
+            throw new IllegalStateException("task failed");
+        });
+        executor.execute(executed::increment);
+        Assertions.assertTrue(ExecutorServices.awaitQuiescence(executor, 5, TimeUnit.SECONDS));
+        Assertions.assertEquals(40_001, executed.sum());
+        Assertions.assertEquals(1, failures.get());
+        Assertions.assertEquals(0, executor.getQueuedTaskCount());
+        Assertions.assertTrue(executor.isQuiescent());
+
+        executor.shutdown();
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(executed::increment));
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 工作线程取出任务后、执行完之前，线程池都不是静止状态
+     */
+    @Test
+    public void quiescentTest() throws Exception {
+        BatchingExecutor executor = new BatchingExecutor(1, 16, new NamedThreadFactory("batching-quiescent-"));
+        AtomicInteger executed = new AtomicInteger();
+        for (int i = 1; i <= 20_000; i++) {
+            executor.execute(executed::incrementAndGet);
+            while (!executor.isQuiescent()) {
+                Thread.onSpinWait();
+            }
+            Assertions.assertEquals(i, executed.get());
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 所有队列都满时由提交线程执行任务
+     */
+    @Test
+    public void callerRunsWhenFullTest() throws Exception {
+        BatchingExecutor executor = new BatchingExecutor(1, 1, new NamedThreadFactory("batching-full-"));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread caller = Thread.currentThread();
+        AtomicInteger callerRuns = new AtomicInteger();
+        for (int i = 0; i < 1_000 && callerRuns.get() == 0; i++) {
+            executor.execute(() -> {
+                if (Thread.currentThread() == caller) {
+                    callerRuns.incrementAndGet();
+                }
+            });
+        }
+        Assertions.assertEquals(1, callerRuns.get());
+        Assertions.assertTrue(executor.getQueuedTaskCount() > 0);
+        release.countDown();
+        Assertions.assertTrue(ExecutorServices.awaitQuiescence(executor, 5, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shutdownNowTest() throws Exception {
+        BatchingExecutor executor = new BatchingExecutor(1, 16, new NamedThreadFactory("batching-stop-"));
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        AtomicInteger executed = new AtomicInteger();
+        Runnable queued = executed::incrementAndGet;
+        executor.execute(queued);
+        Assertions.assertEquals(1, executor.getActiveCount());
+        Assertions.assertFalse(executor.isQuiescent());
+
+        List<Runnable> remaining = executor.shutdownNow();
+        Assertions.assertEquals(List.of(queued), remaining);
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, executed.get());
+    }
+}
@@ -0,0 +1,89 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * ConcurrentReferenceHashMap并行批量操作、分割迭代器单元测试
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 7:30 PM
+ */
+public class ConcurrentReferenceHashMapBulkTest {
+
+    private static ConcurrentReferenceHashMap<Integer, Integer> newMap(int concurrencyLevel, int size) {
+        ConcurrentReferenceHashMap<Integer, Integer> map = new ConcurrentReferenceHashMap<>(16, concurrencyLevel);
+        for (int i = 0; i < size; i++) {
+            map.put(i, i);
+        }
+        return map;
+    }
+
+    @Test
+    public void forEachTest() {
+        for (long threshold : new long[]{1, Long.MAX_VALUE}) {
+            ConcurrentReferenceHashMap<Integer, Integer> map = newMap(8, 10_000);
+            LongAdder sum = new LongAdder();
+            LongAdder count = new LongAdder();
+            map.forEach(threshold, (key, value) -> {
+                sum.add(value);
+                count.increment();
+            });
+            Assertions.assertEquals(10_000, count.sum());
+            Assertions.assertEquals(10_000L * 9_999 / 2, sum.sum());
+        }
+    }
+
+    @Test
+    public void searchAndReduceTest() {
+        ConcurrentReferenceHashMap<Integer, Integer> map = newMap(8, 10_000);
+        Assertions.assertEquals(4_321, map.<Integer>search(1, (key, value) -> value == 4_321 ? key : null));
+        Assertions.assertNull(map.<Integer>search(1, (key, value) -> value < 0 ? key : null));
+        Assertions.assertEquals(10_000L * 9_999 / 2,
+                map.<Long>reduce(1, (key, value) -> (long) value, Long::sum));
+        Assertions.assertEquals(9_999, map.<Integer>reduce(1, (key, value) -> value, Math::max));
+        // 转换为null的映射不参与合并
+        Assertions.assertEquals(5_000,
+                map.<Integer>reduce(1, (key, value) -> (value % 2 == 0 ? 1 : null), Integer::sum));
+        Assertions.assertNull(new ConcurrentReferenceHashMap<Integer, Integer>().reduce(1, (k, v) -> v, Integer::sum));
+    }
+
+    /**
+     * 先按段分割，只剩一个段时按桶区间分割，各部分互不重叠且覆盖全部映射
+     */
+    @Test
+    public void spliteratorTest() {
+        for (int concurrencyLevel : new int[]{1, 16}) {
+            ConcurrentReferenceHashMap<Integer, Integer> map = newMap(concurrencyLevel, 5_000);
+            Spliterator<Map.Entry<Integer, Integer>> spliterator = map.entrySet().spliterator();
+            Assertions.assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT));
+            Assertions.assertTrue(spliterator.hasCharacteristics(Spliterator.NONNULL));
+            List<Spliterator<Map.Entry<Integer, Integer>>> parts = new ArrayList<>(List.of(spliterator));
+            for (int round = 0; round < 6; round++) {
+                for (int i = parts.size() - 1; i >= 0; i--) {
+                    Spliterator<Map.Entry<Integer, Integer>> split = parts.get(i).trySplit();
+                    if (split != null) {
+                        parts.add(split);
+                    }
+                }
+            }
+            Assertions.assertTrue(parts.size() > 8, "parts " + parts.size());
+            Set<Integer> keys = new HashSet<>();
+            for (Spliterator<Map.Entry<Integer, Integer>> part : parts) {
+                part.forEachRemaining(entry -> Assertions.assertTrue(keys.add(entry.getKey()), "duplicate " + entry));
+            }
+            Assertions.assertEquals(5_000, keys.size());
+            Assertions.assertEquals(5_000, map.entrySet().parallelStream()
+                    .map(Map.Entry::getKey).collect(Collectors.toSet()).size());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+
+/**
+ * ConcurrentReferenceHashMap容量淘汰、过期单元测试，维护任务在调用线程中执行
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 6:40 PM
+ */
+public class ConcurrentReferenceHashMapEvictionTest {
+
+    @Test
+    public void maximumSizeTest() {
+        ConcurrentReferenceHashMap<Integer, Integer> map = ConcurrentReferenceHashMap.<Integer, Integer>builder()
+                .maximumSize(100).executor(Runnable::run).build();
+        for (int i = 0; i < 1_000; i++) {
+            map.put(i, i);
+        }
+        map.purgeUnreferencedEntries();
+        Assertions.assertEquals(100, map.size());
+        Assertions.assertEquals(100, map.entrySet().size());
+        Assertions.assertEquals(100, map.keySet().stream().filter(key -> map.get(key) != null).count());
+    }
+
+    /**
+     * W-TinyLFU：频繁访问的键不会被一次性扫描的新键淘汰
+     */
+    @Test
+    public void frequencyAdmissionTest() {
+        ConcurrentReferenceHashMap<Integer, Integer> map = ConcurrentReferenceHashMap.<Integer, Integer>builder()
+                .maximumSize(100).executor(Runnable::run).build();
+        for (int i = 0; i < 50; i++) {
+            map.put(i, i);
+        }
+        for (int round = 0; round < 10; round++) {
+            // 读缓冲是有损的，缓冲满时丢弃的读取每轮落在不同的键上
+            for (int i = 0; i < 50; i++) {
+                int key = (i + round * 7) % 50;
+                Assertions.assertEquals(key, map.get(key));
+            }
+            map.purgeUnreferencedEntries();
+        }
+        for (int i = 1_000; i < 1_500; i++) {
+            map.put(i, i);
+        }
+        map.purgeUnreferencedEntries();
+        Assertions.assertEquals(100, map.size());
+        for (int i = 0; i < 50; i++) {
+            Assertions.assertEquals(i, map.get(i), "hot key " + i + " was evicted");
+        }
+    }
+
+    @Test
+    public void maximumWeightTest() {
+        ConcurrentReferenceHashMap<String, String> map = ConcurrentReferenceHashMap.<String, String>builder()
+                .maximumWeight(100, (key, value) -> value.length()).executor(Runnable::run).build();
+        for (int i = 0; i < 100; i++) {
+            map.put("k" + i, "0123456789");
+        }
+        map.purgeUnreferencedEntries();
+        Assertions.assertEquals(10, map.size());
+
+        // 超过最大权重的值不会被保留
+        map.put("huge", "x".repeat(101));
+        map.purgeUnreferencedEntries();
+        Assertions.assertNull(map.get("huge"));
+        Assertions.assertTrue(map.size() <= 10);
+    }
+
+    /**
+     * 过期的条目在get和遍历中立即不可见，purgeUnreferencedEntries之后size也一致，不等待时间轮的桶到期
+     */
+    @Test
+    public void expireAfterWriteTest() throws InterruptedException {
+        ConcurrentReferenceHashMap<Integer, Integer> map = ConcurrentReferenceHashMap.<Integer, Integer>builder()
+                .expireAfterWrite(Duration.ofMillis(50)).executor(Runnable::run).build();
+        for (int i = 0; i < 10; i++) {
+            map.put(i, i);
+        }
+        Assertions.assertEquals(0, map.get(0));
+        Thread.sleep(100);
+        Assertions.assertNull(map.get(0));
+        Assertions.assertFalse(map.containsKey(1));
+        Assertions.assertFalse(map.entrySet().iterator().hasNext());
+
+        map.purgeUnreferencedEntries();
+        Assertions.assertEquals(0, map.size());
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertEquals(new HashMap<>(), map);
+
+        // 过期的键视为不存在，可以重新写入
+        Assertions.assertNull(map.putIfAbsent(0, 1));
+        Assertions.assertEquals(1, map.get(0));
+        Assertions.assertEquals(1, map.size());
+    }
+
+    @Test
+    public void expireAfterAccessTest() throws InterruptedException {
+        ConcurrentReferenceHashMap<Integer, Integer> map = ConcurrentReferenceHashMap.<Integer, Integer>builder()
+                .expireAfterAccess(Duration.ofMillis(200)).executor(Runnable::run).build();
+        map.put(1, 1);
+        map.put(2, 2);
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(80);
+            Assertions.assertEquals(1, map.get(1));
+        }
+        map.purgeUnreferencedEntries();
+        Assertions.assertEquals(1, map.size());
+        Assertions.assertNull(map.get(2));
+    }
+}
@@ -0,0 +1,75 @@
+package com.test.lang3.concurrent;
+
+import com.test.lang3.concurrent.ConcurrentReferenceHashMap.RemovalCause;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ConcurrentReferenceHashMap统计、删除监听单元测试，监听在调用线程中执行
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 8:05 PM
+ */
+public class ConcurrentReferenceHashMapStatsTest {
+
+    @Test
+    public void statsTest() {
+        ConcurrentReferenceHashMap<String, String> map = ConcurrentReferenceHashMap.<String, String>builder()
+                .recordStats().build();
+        map.put("a", "1");
+        map.get("a");
+        map.get("a");
+        map.get("b");
+        map.computeIfAbsent("c", key -> "3");
+        map.computeIfAbsent("d", key -> null);
+        Assertions.assertThrows(IllegalStateException.class, () -> map.computeIfAbsent("e", key -> {
+            throw new IllegalStateException("load failed");
+        }));
+
+        ConcurrentReferenceHashMap.Stats stats = map.stats();
+        Assertions.assertEquals(2, stats.hitCount());
+        Assertions.assertEquals(4, stats.missCount());
+        Assertions.assertEquals(2.0 / 6, stats.hitRate(), 1e-9);
+        Assertions.assertEquals(1, stats.loadSuccessCount());
+        Assertions.assertEquals(2, stats.loadFailureCount());
+        Assertions.assertTrue(stats.totalLoadTime() > 0);
+        Assertions.assertEquals(0, stats.evictionCount());
+
+        // 没有开启统计的映射返回空的统计
+        Assertions.assertEquals(1.0, new ConcurrentReferenceHashMap<>().stats().hitRate());
+    }
+
+    @Test
+    public void removalListenerTest() {
+        List<String> removals = Collections.synchronizedList(new ArrayList<>());
+        ConcurrentReferenceHashMap<String, String> map = ConcurrentReferenceHashMap.<String, String>builder()
+                .maximumSize(2).recordStats().executor(Runnable::run)
+                .removalListener((key, value, cause) -> removals.add(key + "=" + value + ":" + cause))
+                .build();
+        map.put("a", "1");
+        map.put("a", "2");
+        map.remove("a");
+        Assertions.assertEquals(List.of("a=1:" + RemovalCause.REPLACED, "a=2:" + RemovalCause.EXPLICIT), removals);
+
+        removals.clear();
+        for (int i = 0; i < 5; i++) {
+            map.put("k" + i, "v" + i);
+        }
+        map.purgeUnreferencedEntries();
+        Assertions.assertEquals(2, map.size());
+        Assertions.assertEquals(3, removals.size());
+        Assertions.assertTrue(removals.stream().allMatch(removal -> removal.endsWith(":" + RemovalCause.SIZE)));
+        Assertions.assertEquals(3, map.stats().evictionCount());
+        Assertions.assertTrue(RemovalCause.SIZE.wasEvicted());
+        Assertions.assertFalse(RemovalCause.REPLACED.wasEvicted());
+
+        removals.clear();
+        map.clear();
+        Assertions.assertEquals(2, removals.size());
+        Assertions.assertTrue(removals.stream().allMatch(removal -> removal.endsWith(":" + RemovalCause.EXPLICIT)));
+    }
+}
@@ -0,0 +1,364 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ConcurrentReferenceHashMap单元测试
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 6:10 PM
+ */
+public class ConcurrentReferenceHashMapTest {
+
+    @Test
+    public void putGetRemoveTest() {
+        ConcurrentReferenceHashMap<String, String> map = new ConcurrentReferenceHashMap<>();
+        Assertions.assertNull(map.put("a", "1"));
+        Assertions.assertEquals("1", map.put("a", "2"));
+        Assertions.assertEquals("2", map.putIfAbsent("a", "3"));
+        Assertions.assertNull(map.put(null, "null-key"));
+        Assertions.assertNull(map.put("b", null));
+        Assertions.assertEquals("2", map.get("a"));
+        Assertions.assertEquals("null-key", map.get(null));
+        Assertions.assertTrue(map.containsKey("b"));
+        Assertions.assertEquals(3, map.size());
+
+        Assertions.assertFalse(map.remove("a", "1"));
+        Assertions.assertTrue(map.replace("a", "2", "4"));
+        Assertions.assertEquals("4", map.remove("a"));
+        Assertions.assertNull(map.get("a"));
+        Assertions.assertEquals(2, map.size());
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertNull(map.get(null));
+    }
+
+    @Test
+    public void resizeTest() {
+        ConcurrentReferenceHashMap<Integer, Integer> map = new ConcurrentReferenceHashMap<>(1, 1);
+        int initialSize = map.getSegment(0).getSize();
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i, i * 2);
+        }
+        Assertions.assertTrue(map.getSegment(0).getSize() > initialSize);
+        Assertions.assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertEquals(i * 2, map.get(i));
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            map.remove(i);
+        }
+        Assertions.assertEquals(5_000, map.size());
+        Assertions.assertEquals(5_000, map.entrySet().stream().count());
+    }
+
+    /**
+     * 多个线程同时写入同一个段：空桶CAS插入和非空桶锁头节点都不丢失写入，写入过程中的扩容由写入线程协助迁移
+     */
+    @Test
+    public void concurrentPutTest() throws Exception {
+        ConcurrentReferenceHashMap<Integer, Integer> map = new ConcurrentReferenceHashMap<>(1, 1);
+        int threads = 4;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t * perThread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = offset; i < offset + perThread; i++) {
+                        map.put(i, i);
+                        // 相同的键由所有线程竞争
+                        map.merge(-1, 1, Integer::sum);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(threads * perThread + 1, map.size());
+        Assertions.assertEquals(threads * perThread, map.get(-1));
+        for (int i = 0; i < threads * perThread; i++) {
+            Assertions.assertEquals(i, map.get(i));
+        }
+    }
+
+    /**
+     * 协助扩容的线程阻塞在compute持有的桶上时，发起扩容的线程挂起等待，不自旋占用CPU
+     */
+    @Test
+    public void resizeAwaitTest() throws Exception {
+        ConcurrentReferenceHashMap<Integer, Integer> map = ConcurrentReferenceHashMap.<Integer, Integer>builder()
+                .initialCapacity(32).concurrencyLevel(1).build();
+        Assertions.assertEquals(32, map.getSegment(0).getSize());
+        // 按桶下标取键：0号桶由协助线程迁移，20号桶由发起扩容的线程迁移，25号桶在协助前已迁移
+        int[] keys = new int[32];
+        Arrays.fill(keys, -1);
+        List<Integer> fillers = new ArrayList<>();
+        for (int i = 0; fillers.size() < 24 || keys[0] < 0 || keys[20] < 0 || keys[25] < 0; i++) {
+            int bin = map.getHash(i) & 31;
+            if (keys[bin] < 0) {
+                keys[bin] = i;
+            } else if (bin != 0 && bin != 20) {
+                fillers.add(i);
+            }
+        }
+        for (int bin : new int[]{0, 20, 25}) {
+            map.put(keys[bin], keys[bin]);
+        }
+        for (int i = 0; i < 20; i++) {
+            map.put(fillers.get(i), fillers.get(i));
+        }
+        CountDownLatch computing = new CountDownLatch(2);
+        CountDownLatch releaseLow = new CountDownLatch(1);
+        CountDownLatch releaseHigh = new CountDownLatch(1);
+        Thread low = new Thread(() -> map.compute(keys[0], (k, v) -> {
+            computing.countDown();
+            awaitQuietly(releaseLow);
+            return -v;
+        }));
+        Thread high = new Thread(() -> map.compute(keys[20], (k, v) -> {
+            computing.countDown();
+            awaitQuietly(releaseHigh);
+            return -v;
+        }));
+        low.start();
+        high.start();
+        Assertions.assertTrue(computing.await(5, TimeUnit.SECONDS));
+        map.put(fillers.get(20), fillers.get(20));
+
+        // 发起扩容的线程从高位迁移，阻塞在20号桶上
+        Thread resizing = new Thread(() -> map.put(fillers.get(21), fillers.get(21)));
+        resizing.start();
+        awaitState(resizing, Thread.State.BLOCKED);
+        // 删除已迁移的25号桶中的键时协助迁移低位，阻塞在0号桶上
+        Thread helping = new Thread(() -> map.remove(keys[25]));
+        helping.start();
+        awaitState(helping, Thread.State.BLOCKED);
+        releaseHigh.countDown();
+        awaitState(resizing, Thread.State.WAITING);
+
+        releaseLow.countDown();
+        for (Thread thread : List.of(low, high, resizing, helping)) {
+            thread.join(5_000);
+            Assertions.assertFalse(thread.isAlive());
+        }
+        Assertions.assertEquals(64, map.getSegment(0).getSize());
+        Assertions.assertEquals(24, map.size());
+        Assertions.assertEquals(-keys[0], map.get(keys[0]));
+        Assertions.assertEquals(-keys[20], map.get(keys[20]));
+        Assertions.assertNull(map.get(keys[25]));
+        for (int i = 0; i < 22; i++) {
+            Assertions.assertEquals(fillers.get(i), map.get(fillers.get(i)));
+        }
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != state && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(state, thread.getState(), thread.getName());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 后台清理：显式删除的条目由删除操作自己清除，只有被GC回收的引用交给后台线程
+     */
+    @Test
+    public void purgeInBackgroundTest() throws InterruptedException {
+        ConcurrentReferenceHashMap<Integer, String> soft = ConcurrentReferenceHashMap.<Integer, String>builder()
+                .purgeInBackground().build();
+        for (int i = 0; i < 1_000; i++) {
+            soft.put(i, "v" + i);
+        }
+        for (int i = 0; i < 1_000; i++) {
+            Assertions.assertEquals("v" + i, soft.remove(i));
+            Assertions.assertEquals(999 - i, soft.size());
+            Assertions.assertNull(soft.get(i));
+        }
+        Assertions.assertTrue(soft.isEmpty());
+
+        ConcurrentReferenceHashMap<Integer, Object> map = ConcurrentReferenceHashMap.<Integer, Object>builder()
+                .referenceType(ConcurrentReferenceHashMap.ReferenceType.WEAK).purgeInBackground().build();
+        for (int i = 0; i < 1_000; i++) {
+            map.put(i, new Object());
+        }
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!map.isEmpty() && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, map.size());
+    }
+
+    @Test
+    public void computeTest() {
+        ConcurrentReferenceHashMap<String, Integer> map = new ConcurrentReferenceHashMap<>();
+        Assertions.assertEquals(1, map.computeIfAbsent("a", key -> 1));
+        Assertions.assertEquals(1, map.computeIfAbsent("a", key -> 2));
+        Assertions.assertNull(map.computeIfAbsent("b", key -> null));
+        Assertions.assertFalse(map.containsKey("b"));
+        Assertions.assertNull(map.computeIfPresent("b", (key, value) -> value + 1));
+        Assertions.assertEquals(2, map.computeIfPresent("a", (key, value) -> value + 1));
+        Assertions.assertEquals(3, map.compute("a", (key, value) -> value + 1));
+        Assertions.assertEquals(5, map.merge("a", 2, Integer::sum));
+        Assertions.assertEquals(7, map.merge("c", 7, Integer::sum));
+
+        // 返回null时删除
+        Assertions.assertNull(map.compute("a", (key, value) -> null));
+        Assertions.assertNull(map.merge("c", 1, (oldValue, value) -> null));
+        Assertions.assertTrue(map.isEmpty());
+
+        // 函数中修改同一个桶会死锁，直接拒绝
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> map.compute("d", (key, value) -> map.compute("d", (k, v) -> 1)));
+        Assertions.assertFalse(map.containsKey("d"));
+    }
+
+    /**
+     * 多个线程同时computeIfAbsent同一个不存在的键，映射函数只执行一次
+     */
+    @Test
+    public void computeIfAbsentOnceTest() throws Exception {
+        ConcurrentReferenceHashMap<String, Integer> map = new ConcurrentReferenceHashMap<>();
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return map.computeIfAbsent("key", key -> {
+                        calls.incrementAndGet();
+                        return 42;
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                Assertions.assertEquals(42, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(1, calls.get());
+
+        CompletableFuture<Integer> first = map.computeIfAbsentAsync("async", key -> {
+            calls.incrementAndGet();
+            return 7;
+        });
+        Assertions.assertEquals(7, first.get());
+        Assertions.assertEquals(7, map.computeIfAbsentAsync("async", key -> 8).get());
+        Assertions.assertEquals(2, calls.get());
+        CompletableFuture<Integer> failed = map.computeIfAbsentAsync("failed", key -> {
+            throw new IllegalArgumentException("failed");
+        });
+        Assertions.assertThrows(ExecutionException.class, failed::get);
+        Assertions.assertFalse(map.containsKey("failed"));
+    }
+
+    /**
+     * 分段计数：size、mappingCount、isEmpty与实际的映射数一致
+     */
+    @Test
+    public void sizeTest() {
+        ConcurrentReferenceHashMap<Integer, Integer> map = new ConcurrentReferenceHashMap<>(64, 16);
+        Assertions.assertEquals(16, map.getSegmentsSize());
+        Assertions.assertTrue(map.isEmpty());
+        for (int i = 0; i < 1_000; i++) {
+            map.put(i, i);
+            map.put(i, -i);
+        }
+        Assertions.assertEquals(1_000, map.size());
+        Assertions.assertEquals(1_000L, map.mappingCount());
+        int counted = 0;
+        for (int i = 0; i < map.getSegmentsSize(); i++) {
+            counted += map.getSegment(i).getCount();
+        }
+        Assertions.assertEquals(1_000, counted);
+        for (int i = 0; i < 1_000; i++) {
+            map.remove(i);
+        }
+        Assertions.assertEquals(0L, map.mappingCount());
+        Assertions.assertTrue(map.isEmpty());
+        map.put(1, 1);
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+    }
+
+    /**
+     * 默认段数：每个处理器一个段，与初始容量无关，初始容量随段数放大；单个热点键的竞争不会使段无限扩容
+     */
+    @Test
+    public void segmentsTest() throws Exception {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        Assertions.assertEquals(1, ConcurrentReferenceHashMap.defaultConcurrencyLevel(0));
+        Assertions.assertEquals(64, ConcurrentReferenceHashMap.defaultConcurrencyLevel(64));
+        Assertions.assertEquals(1 << 16, ConcurrentReferenceHashMap.defaultConcurrencyLevel(1 << 20));
+        int segments = Integer.highestOneBit(cpus * 2 - 1);
+        Assertions.assertEquals(segments, new ConcurrentReferenceHashMap<>().getSegmentsSize());
+        Assertions.assertEquals(segments, new ConcurrentReferenceHashMap<>(1).getSegmentsSize());
+
+        // 64核的主机默认64个段，默认初始容量16放大为每段4个引用
+        ConcurrentReferenceHashMap<String, Integer> large = ConcurrentReferenceHashMap.<String, Integer>builder()
+                .availableProcessors(64).build();
+        Assertions.assertEquals(64, large.getSegmentsSize());
+        Assertions.assertEquals(4, large.getSegment(0).getSize());
+        large = ConcurrentReferenceHashMap.<String, Integer>builder().availableProcessors(64).initialCapacity(1024).build();
+        Assertions.assertEquals(64, large.getSegmentsSize());
+        Assertions.assertEquals(16, large.getSegment(0).getSize());
+        Assertions.assertEquals(1, ConcurrentReferenceHashMap.<String, Integer>builder()
+                .availableProcessors(64).concurrencyLevel(1).build().getSegmentsSize());
+
+        ConcurrentReferenceHashMap<String, Integer> map = ConcurrentReferenceHashMap.<String, Integer>builder()
+                .initialCapacity(16).concurrencyLevel(1).build();
+        int initialSize = map.getSegment(0).getSize();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        map.merge("hot", 1, Integer::sum);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(80_000, map.get("hot"));
+        Assertions.assertEquals(initialSize, map.getSegment(0).getSize());
+    }
+}
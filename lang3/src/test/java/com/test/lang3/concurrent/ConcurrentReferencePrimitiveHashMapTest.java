@@ -0,0 +1,87 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+/**
+ * ConcurrentReferenceLongHashMap、ConcurrentReferenceIntHashMap单元测试
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 7:50 PM
+ */
+public class ConcurrentReferencePrimitiveHashMapTest {
+
+    @Test
+    public void longKeyTest() {
+        ConcurrentReferenceLongHashMap<String> map = new ConcurrentReferenceLongHashMap<>();
+        Assertions.assertNull(map.put(1L, "a"));
+        Assertions.assertEquals("a", map.put(1L, "b"));
+        Assertions.assertEquals("b", map.putIfAbsent(1L, "c"));
+        Assertions.assertNull(map.put(Long.MIN_VALUE, "min"));
+        Assertions.assertNull(map.put(-1L, "minus"));
+        // 高32位不同的键不会互相覆盖
+        Assertions.assertNull(map.put(1L << 32 | 1L, "high"));
+        Assertions.assertEquals("b", map.get(1L));
+        Assertions.assertEquals("min", map.get(Long.MIN_VALUE));
+        Assertions.assertEquals("high", map.get(1L << 32 | 1L));
+        Assertions.assertEquals(4, map.size());
+
+        Assertions.assertFalse(map.replace(1L, "a", "x"));
+        Assertions.assertTrue(map.replace(1L, "b", "x"));
+        Assertions.assertFalse(map.remove(1L, "b"));
+        Assertions.assertTrue(map.remove(1L, "x"));
+        Assertions.assertEquals("minus", map.remove(-1L));
+        Assertions.assertEquals("computed", map.computeIfAbsent(2L, key -> "computed"));
+        Assertions.assertEquals("computed", map.computeIfAbsent(2L, key -> "again"));
+        Assertions.assertNull(map.computeIfAbsent(3L, key -> null));
+        Assertions.assertEquals(3, map.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(4L, null));
+    }
+
+    /**
+     * 装箱的Map方法委托给原始类型方法，其他类型的键视为不存在
+     */
+    @Test
+    public void boxedMapTest() {
+        ConcurrentReferenceLongHashMap<String> map = new ConcurrentReferenceLongHashMap<>();
+        Map<Long, String> boxed = map;
+        boxed.put(7L, "seven");
+        Assertions.assertEquals("seven", map.get(7L));
+        Assertions.assertNull(boxed.get(7));
+        Assertions.assertFalse(boxed.containsKey("7"));
+        Assertions.assertEquals(Map.of(7L, "seven"), boxed);
+
+        // 遍历得到的条目写入会同步到映射中
+        for (Map.Entry<Long, String> entry : boxed.entrySet()) {
+            entry.setValue("SEVEN");
+        }
+        Assertions.assertEquals("SEVEN", map.get(7L));
+        boxed.entrySet().removeIf(entry -> entry.getKey() == 7L);
+        Assertions.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void intKeyTest() {
+        ConcurrentReferenceIntHashMap<String> map = new ConcurrentReferenceIntHashMap<>(1);
+        for (int i = -5_000; i < 5_000; i++) {
+            map.put(i, "v" + i);
+        }
+        Assertions.assertEquals(10_000, map.size());
+        Assertions.assertEquals(10_000L, map.mappingCount());
+        for (int i = -5_000; i < 5_000; i++) {
+            Assertions.assertEquals("v" + i, map.get(i));
+        }
+        Assertions.assertEquals("v-5000", map.get(Integer.valueOf(-5_000)));
+        Assertions.assertNull(map.get(-5_000L));
+        for (int i = -5_000; i < 5_000; i += 2) {
+            map.remove(i);
+        }
+        Assertions.assertEquals(5_000, map.size());
+        Assertions.assertEquals(5_000, map.entrySet().stream().filter(entry -> entry.getKey() % 2 != 0).count());
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertNull(map.get(1));
+    }
+}
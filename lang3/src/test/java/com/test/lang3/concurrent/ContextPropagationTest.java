@@ -0,0 +1,114 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 线程上下文传递单元测试，MDC由测试用的{@link ThreadLocalMdcServiceProvider}实现
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 11:10 PM
+ */
+public class ContextPropagationTest {
+
+    /**
+     * 工作线程、拒绝策略中的提交线程、限流的定时线程都以提交线程的上下文执行任务，执行后还原
+     */
+    @Test
+    public void threadLocalTest() throws Exception {
+        ThreadLocal<String> request = new ThreadLocal<>();
+        ContextPropagator<String> propagator = ContextPropagator.ofThreadLocal(request);
+        ContextPropagation.register(propagator);
+        ExecutorServices.ManagedThreadPoolExecutor executor = ExecutorServices.threadPoolBuilder("context-")
+                .poolSize(1, 1).queue(ExecutorServices.QueueType.ARRAY, 1).callerRunsPolicy().build();
+        try {
+            request.set("req-1");
+            Assertions.assertSame(ContextPropagation.capture(), ContextPropagation.capture());
+            Assertions.assertEquals("req-1", executor.submit(request::get).get(5, TimeUnit.SECONDS));
+            request.remove();
+            Assertions.assertNull(executor.submit(request::get).get(5, TimeUnit.SECONDS));
+
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            executor.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+            executor.execute(() -> {
+            });
+            request.set("req-2");
+            AtomicReference<String> callerRuns = new AtomicReference<>();
+            executor.execute(() -> callerRuns.set(Thread.currentThread().getName() + ":" + request.get()));
+            Assertions.assertEquals(Thread.currentThread().getName() + ":req-2", callerRuns.get());
+            Assertions.assertEquals("req-2", request.get());
+            release.countDown();
+
+            ThrottledExecutor throttled = ThrottledExecutor.builder(executor).permitsPerSecond(20).build();
+            throttled.execute(() -> {
+            });
+            CompletableFuture<String> delayed = new CompletableFuture<>();
+            throttled.execute(() -> delayed.complete(request.get()));
+            request.remove();
+            Assertions.assertEquals("req-2", delayed.get(5, TimeUnit.SECONDS));
+        } finally {
+            ContextPropagation.unregister(propagator);
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 执行前没有副本的线程执行任务后也没有副本，之后直接修改的MDC能被捕获
+     */
+    @Test
+    public void mdcRestoreTest() throws Exception {
+        CompletableFuture<Map<String, String>> captured = CompletableFuture.supplyAsync(() -> {
+            MdcContextPropagator propagator = MdcContextPropagator.INSTANCE;
+            Map<String, String> previous = propagator.restore(Map.of("trace", "t1"));
+            Assertions.assertEquals("t1", MDC.get("trace"));
+            propagator.restore(previous);
+            Assertions.assertNull(MDC.get("trace"));
+            MDC.put("user", "u1");
+            return propagator.capture();
+        }, task -> new Thread(task).start());
+        Assertions.assertEquals(Map.of("user", "u1"), captured.get());
+        MDC.clear();
+
+        ContextPropagation.register(MdcContextPropagator.INSTANCE);
+        ExecutorServices.ManagedThreadPoolExecutor executor = ExecutorServices.threadPoolBuilder("mdc-").poolSize(1, 1).build();
+        try {
+            MdcContextPropagator.put("trace", "t2");
+            Map<String, String> snapshot = MdcContextPropagator.INSTANCE.capture();
+            Assertions.assertSame(snapshot, MdcContextPropagator.INSTANCE.capture());
+            Future<String> trace = executor.submit(() -> MDC.get("trace"));
+            Assertions.assertEquals("t2", trace.get(5, TimeUnit.SECONDS));
+            MdcContextPropagator.remove("trace");
+            Assertions.assertNull(MdcContextPropagator.INSTANCE.capture());
+            // 工作线程还原为没有副本的状态
+            Assertions.assertEquals(Map.of("direct", "d"), executor.submit(() -> {
+                MDC.put("direct", "d");
+                return MdcContextPropagator.INSTANCE.capture();
+            }).get(5, TimeUnit.SECONDS));
+        } finally {
+            MdcContextPropagator.clear();
+            ContextPropagation.unregister(MdcContextPropagator.INSTANCE);
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
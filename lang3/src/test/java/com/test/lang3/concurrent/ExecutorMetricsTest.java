@@ -0,0 +1,102 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程池指标、耗时直方图单元测试
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 9:10 PM
+ */
+public class ExecutorMetricsTest {
+
+    @Test
+    public void histogramTest() {
+        int last = ExecutorMetrics.Histogram.indexOf(Long.MAX_VALUE);
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 1_000, 123_456_789, Long.MAX_VALUE - 1}) {
+            int index = ExecutorMetrics.Histogram.indexOf(value);
+            Assertions.assertTrue(ExecutorMetrics.Histogram.lowerBoundOf(index) <= value, "value " + value);
+            Assertions.assertTrue(value < ExecutorMetrics.Histogram.lowerBoundOf(index + 1) || index == last, "value " + value);
+        }
+
+        ExecutorMetrics.Histogram histogram = new ExecutorMetrics.Histogram();
+        Assertions.assertEquals(0, histogram.snapshot().getPercentile(0.99));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000L);
+        }
+        histogram.record(-1);
+        ExecutorMetrics.HistogramSnapshot snapshot = histogram.snapshot();
+        Assertions.assertEquals(101, snapshot.getCount());
+        Assertions.assertEquals(5_050_000, snapshot.getSum());
+        Assertions.assertEquals(100_000, snapshot.getMax());
+        Assertions.assertEquals(5_050_000 / 101.0, snapshot.getMean(), 1e-9);
+        // 百分位取桶的上界，相对误差不超过1/8
+        long p50 = snapshot.getPercentile(0.5);
+        Assertions.assertTrue(p50 >= 50_000 && p50 <= 50_000 * 9 / 8, "p50 " + p50);
+        Assertions.assertEquals(0, snapshot.getPercentile(0));
+        Assertions.assertEquals(100_000, snapshot.getPercentile(1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> snapshot.getPercentile(1.5));
+    }
+
+    @Test
+    public void managedMetricsTest() throws Exception {
+        ExecutorServices.ManagedThreadPoolExecutor executor = ExecutorServices.threadPoolBuilder("metrics-")
+                .poolSize(2, 2).queue(ExecutorServices.QueueType.LINKED, 100).recordMetrics().recordCpuTime().build();
+        for (int i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2);
+                while (System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+            });
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        ExecutorMetrics.Snapshot metrics = ExecutorServices.metricsOf(executor);
+        Assertions.assertEquals("metrics-", metrics.getName());
+        Assertions.assertEquals(10, metrics.getCompletedCount());
+        Assertions.assertEquals(0, metrics.getQueuedCount());
+        Assertions.assertEquals(0, metrics.getRejectedCount());
+        Assertions.assertEquals(0.0, metrics.getSaturation());
+        Assertions.assertEquals(10, metrics.getWaitTime().getCount());
+        Assertions.assertEquals(10, metrics.getRunTime().getCount());
+        Assertions.assertTrue(metrics.getRunTime().getPercentile(0.5) >= TimeUnit.MILLISECONDS.toNanos(2));
+        Assertions.assertTrue(executor.getCpuTimeNanos() > 0);
+        Assertions.assertTrue(metrics.toString().contains("runTime{count=10"), metrics.toString());
+
+        // 未开启统计时没有直方图和CPU时间
+        ExecutorServices.ManagedThreadPoolExecutor plain = ExecutorServices.threadPoolBuilder("plain-").build();
+        Assertions.assertNull(plain.metrics().getWaitTime());
+        Assertions.assertEquals(-1, plain.getCpuTimeNanos());
+        plain.shutdown();
+    }
+
+    /**
+     * 其他类型的线程池只导出能获取的指标，其余为-1
+     */
+    @Test
+    public void metricsOfTest() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 4, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(4),
+                new NamedThreadFactory("jdk-"));
+        ExecutorMetrics.Snapshot metrics = ExecutorServices.metricsOf(pool);
+        Assertions.assertEquals("jdk-", metrics.getName());
+        Assertions.assertEquals("ThreadPoolExecutor", metrics.getType());
+        Assertions.assertEquals(-1, metrics.getRejectedCount());
+        Assertions.assertEquals(0.0, metrics.getSaturation());
+        Assertions.assertNull(metrics.getRunTime());
+        pool.shutdown();
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+        metrics = ExecutorServices.metricsOf(forkJoinPool);
+        Assertions.assertEquals("ForkJoinPool", metrics.getName());
+        Assertions.assertEquals(-1, metrics.getCompletedCount());
+        forkJoinPool.shutdown();
+    }
+}
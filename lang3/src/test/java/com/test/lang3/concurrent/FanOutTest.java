@@ -0,0 +1,106 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 结构化并发调用单元测试，结果确定后仍在执行的子任务被中断
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 9:50 PM
+ */
+public class FanOutTest {
+
+    private final ExecutorService executor = ExecutorServices.threadPoolBuilder("fan-out-").poolSize(4, 4).build();
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static Callable<String> delayed(String value, long millis) {
+        return () -> {
+            Thread.sleep(millis);
+            return value;
+        };
+    }
+
+    private static Callable<String> failing(String message) {
+        return () -> {
+            throw new IllegalStateException(message);
+        };
+    }
+
+    @Test
+    public void invokeAllTest() throws Exception {
+        List<String> results = FanOut.invokeAll(executor,
+                List.of(delayed("a", 30), delayed("b", 0), delayed("c", 10)), Duration.ofSeconds(5));
+        Assertions.assertEquals(List.of("a", "b", "c"), results);
+        Assertions.assertEquals(List.of(), FanOut.invokeAll(executor, List.<Callable<String>>of(), Duration.ofSeconds(5)));
+
+        // 任一失败立即结束，不等待慢任务，慢任务被中断
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Callable<String> slow = () -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "slow";
+        };
+        Callable<String> boom = () -> {
+            started.await();
+            throw new IllegalStateException("boom");
+        };
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> FanOut.invokeAll(executor, List.of(slow, boom), Duration.ofSeconds(5)));
+        Assertions.assertEquals("boom", e.getCause().getMessage());
+        Assertions.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void invokeAnyTest() throws Exception {
+        Assertions.assertEquals("fast", FanOut.invokeAny(executor,
+                List.of(delayed("slow", 10_000), failing("first"), delayed("fast", 20)), Duration.ofSeconds(5)));
+
+        // 全部失败时其余失败作为suppressed异常
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> FanOut.invokeAny(executor, List.of(failing("a"), failing("b")), Duration.ofSeconds(5)));
+        Assertions.assertEquals(1, e.getCause().getSuppressed().length);
+    }
+
+    @Test
+    public void quorumTest() throws Exception {
+        List<String> results = FanOut.quorum(executor,
+                List.of(delayed("a", 40), failing("b"), delayed("c", 0), delayed("d", 10_000)), 2, Duration.ofSeconds(5));
+        Assertions.assertEquals(List.of("c", "a"), results);
+        // 失败数使所需成功数不可能达到时立即结束
+        Assertions.assertThrows(ExecutionException.class, () -> FanOut.quorum(executor,
+                List.of(failing("a"), failing("b"), delayed("c", 10_000)), 2, Duration.ofSeconds(5)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> FanOut.quorum(executor, List.of(delayed("a", 0)), 2, Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+        long start = System.nanoTime();
+        Assertions.assertThrows(TimeoutException.class, () -> FanOut.invokeAll(executor,
+                List.of(delayed("a", 0), delayed("b", 10_000)), Duration.ofMillis(50)));
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        // 慢任务被中断后线程池很快恢复空闲
+        Assertions.assertTrue(ExecutorServices.awaitQuiescence(executor, 5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,89 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按key串行执行的线程池包装单元测试
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 10:10 PM
+ */
+public class KeyedSerialExecutorTest {
+
+    @Test
+    public void serialPerKeyTest() throws Exception {
+        ExecutorService executor = ExecutorServices.threadPoolBuilder("keyed-").poolSize(4, 4).build();
+        KeyedSerialExecutor<Integer> keyed = new KeyedSerialExecutor<>(executor, 4);
+        Map<Integer, List<Integer>> orders = new ConcurrentHashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            int key = i % 8;
+            int sequence = i;
+            keyed.execute(key, () -> orders.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(sequence));
+        }
+        Future<String> last = keyed.submit(3, () -> "done");
+        Assertions.assertEquals("done", last.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(ExecutorServices.awaitQuiescence(executor, 5, TimeUnit.SECONDS));
+        for (int key = 0; key < 8; key++) {
+            List<Integer> order = orders.get(key);
+            Assertions.assertEquals(125, order.size());
+            for (int i = 1; i < order.size(); i++) {
+                Assertions.assertTrue(order.get(i - 1) < order.get(i), "key " + key + " out of order " + order);
+            }
+        }
+        Assertions.assertEquals(0, keyed.getActiveKeyCount());
+        executor.shutdown();
+    }
+
+    /**
+     * 任务链每执行maxBatch个任务后让出线程，单线程的底层线程池中其他key的任务也能执行
+     */
+    @Test
+    public void maxBatchTest() throws Exception {
+        ExecutorService executor = ExecutorServices.threadPoolBuilder("keyed-batch-").poolSize(1, 1).build();
+        KeyedSerialExecutor<String> keyed = new KeyedSerialExecutor<>(executor, 2);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        executor.execute(() -> {
+            for (int i = 0; i < 6; i++) {
+                int sequence = i;
+                keyed.execute("hot", () -> order.add("hot" + sequence));
+            }
+            keyed.execute("cold", () -> order.add("cold"));
+        });
+        Assertions.assertTrue(ExecutorServices.awaitQuiescence(executor, 5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of("hot0", "hot1", "cold", "hot2", "hot3", "hot4", "hot5"), order);
+        executor.shutdown();
+    }
+
+    /**
+     * 底层线程池拒绝时由提交线程执行整条任务链，包括拒绝前其他提交加入的任务
+     */
+    @Test
+    public void rejectedTest() throws Exception {
+        List<String> order = new ArrayList<>();
+        AtomicReference<KeyedSerialExecutor<String>> holder = new AtomicReference<>();
+        KeyedSerialExecutor<String> keyed = new KeyedSerialExecutor<>(queue -> {
+            // 任务链已创建但尚未提交成功时，同一个key的任务加入任务链
+            holder.get().execute("key", () -> order.add("second"));
+            throw new RejectedExecutionException("saturated");
+        });
+        holder.set(keyed);
+        Future<?> first = keyed.submit("key", () -> order.add("first"));
+        Assertions.assertTrue(first.isDone());
+        Assertions.assertFalse(first.isCancelled());
+        Assertions.assertEquals(List.of("first", "second"), order);
+        Assertions.assertEquals(0, keyed.getActiveKeyCount());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new KeyedSerialExecutor<String>(Runnable::run, 0));
+    }
+}
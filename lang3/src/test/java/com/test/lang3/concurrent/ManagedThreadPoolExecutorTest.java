@@ -0,0 +1,159 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 有界线程池、拒绝策略单元测试，单线程、队列容量为1的线程池被一个阻塞任务占满
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 8:50 PM
+ */
+public class ManagedThreadPoolExecutorTest {
+
+    private static ExecutorServices.ManagedThreadPoolExecutor saturate(ExecutorServices.ThreadPoolBuilder builder,
+                                                                       CountDownLatch release) throws InterruptedException {
+        ExecutorServices.ManagedThreadPoolExecutor executor = builder.poolSize(1, 1)
+                .queue(ExecutorServices.QueueType.ARRAY, 1).build();
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> {
+        });
+        return executor;
+    }
+
+    @Test
+    public void builderTest() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ExecutorServices.threadPoolBuilder("pool-").poolSize(2, 1).build());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ExecutorServices.threadPoolBuilder("pool-").queue(ExecutorServices.QueueType.LINKED, 0).build());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ExecutorServices.threadPoolBuilder("pool-").maxQueueTime(Duration.ZERO));
+        ExecutorServices.ManagedThreadPoolExecutor executor = ExecutorServices.threadPoolBuilder("pool-")
+                .poolSize(0, 2).queue(ExecutorServices.QueueType.SYNCHRONOUS, 0).build();
+        Assertions.assertEquals(2, executor.getMaximumPoolSize());
+        executor.shutdown();
+    }
+
+    @Test
+    public void abortAndCallerRunsPolicyTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorServices.ManagedThreadPoolExecutor executor = saturate(ExecutorServices.threadPoolBuilder("abort-"), release);
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+        Assertions.assertEquals(1, executor.getRejectedCount());
+        Assertions.assertEquals(2, executor.getPendingTaskCount());
+
+        AtomicReference<String> runner = new AtomicReference<>();
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.execute(() -> runner.set(Thread.currentThread().getName()));
+        Assertions.assertEquals(Thread.currentThread().getName(), runner.get());
+        Assertions.assertEquals(2, executor.getRejectedCount());
+        release.countDown();
+        Assertions.assertTrue(executor.awaitQuiescence(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void blockingPolicyTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorServices.ManagedThreadPoolExecutor executor = saturate(ExecutorServices.threadPoolBuilder("blocking-")
+                .blockingPolicy(Duration.ofMillis(50)), release);
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+
+        // 队列有空位后被阻塞的提交线程继续提交
+        AtomicInteger executed = new AtomicInteger();
+        new Thread(() -> {
+            sleep(50);
+            release.countDown();
+        }).start();
+        executor.setRejectedExecutionHandler(new ExecutorServices.BlockingPolicy(Duration.ofSeconds(5)));
+        executor.execute(executed::incrementAndGet);
+        Assertions.assertTrue(executor.awaitQuiescence(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, executed.get());
+        Assertions.assertEquals(0, executor.getPendingTaskCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void discardOldestAndMaxQueueTimeTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorServices.ManagedThreadPoolExecutor executor = ExecutorServices.threadPoolBuilder("discard-")
+                .poolSize(1, 1).queue(ExecutorServices.QueueType.LINKED, 1).discardOldestPolicy()
+                .maxQueueTime(Duration.ofMillis(50)).build();
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Future<?> oldest = executor.submit(() -> {
+        });
+        Future<?> newest = executor.submit(() -> {
+        });
+        Assertions.assertTrue(oldest.isCancelled());
+        Assertions.assertEquals(2, executor.getPendingTaskCount());
+
+        // 最新的任务排队超过50ms，出队时不再执行
+        sleep(100);
+        release.countDown();
+        Assertions.assertTrue(executor.awaitQuiescence(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(newest.isCancelled());
+        Assertions.assertEquals(1, executor.getShedCount());
+        executor.shutdown();
+    }
+
+    /**
+     * JDK丢弃最早任务的策略、drainTo移出的任务不会执行，等待任务结束时不能一直等到超时
+     */
+    @Test
+    public void discardedTaskAwaitTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorServices.ManagedThreadPoolExecutor executor = saturate(ExecutorServices.threadPoolBuilder("jdk-discard-")
+                .rejectedExecutionHandler(new ThreadPoolExecutor.DiscardOldestPolicy()), release);
+        executor.execute(() -> {
+        });
+        Assertions.assertEquals(2, executor.getPendingTaskCount());
+        Assertions.assertEquals(1, executor.getRejectedCount());
+
+        List<Runnable> drained = new ArrayList<>();
+        executor.getQueue().drainTo(drained);
+        Assertions.assertEquals(1, drained.size());
+        release.countDown();
+        long start = System.nanoTime();
+        ExecutorServices.await(5, List.of(executor));
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        Assertions.assertTrue(executor.awaitQuiescence(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 线程池大小自适应控制器单元测试，由合成负载模型按采样周期生成指标，不依赖真实的执行时间
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 10:50 PM
+ */
+public class PoolSizeControllerTest {
+
+    private static final int CPUS = 4;
+
+    /**
+     * 阻塞型任务积压时扩容直到积压消化，负载下降后缩容
+     */
+    @Test
+    public void growTest() {
+        SyntheticLoad load = new SyntheticLoad(1000, 10, 0.9);
+        ExecutorServices.ManagedThreadPoolExecutor executor = newPool(1);
+        PoolSizeController controller = newController(executor, load, 32);
+        Assertions.assertNull(controller.step());
+        PoolSizeController.Decision first = controller.step();
+        Assertions.assertEquals(2, first.getNewPoolSize(), first.toString());
+        Assertions.assertEquals(0.9, first.getBlockedRatio(), 1e-9, first.toString());
+        // 积压期间持续扩容，扩容步长随阻塞比例估算的线程数增大
+        int size = 2;
+        for (int i = 0; i < 8; i++) {
+            PoolSizeController.Decision decision = controller.step();
+            Assertions.assertTrue(decision.getQueued() > 0, decision.toString());
+            Assertions.assertEquals("queue wait above target", decision.getReason(), decision.toString());
+            Assertions.assertTrue(decision.getNewPoolSize() > size, decision.toString());
+            size = decision.getNewPoolSize();
+        }
+        Assertions.assertEquals(32, size);
+        // 积压消化后吞吐量下降，撤销最后一次扩容，冷却后按利用率缩容并稳定在需要的线程数（10个）之上
+        PoolSizeController.Decision decision = null;
+        for (int i = 0; i < 10; i++) {
+            decision = controller.step();
+        }
+        Assertions.assertEquals("within target", decision.getReason(), decision.toString());
+        size = decision.getNewPoolSize();
+        Assertions.assertTrue(size >= 10 && size < 32, decision.toString());
+        Assertions.assertEquals(0, load.queued);
+        Assertions.assertEquals(size, executor.getCorePoolSize());
+        Assertions.assertEquals(size, executor.getMaximumPoolSize());
+
+        load.arrivalRate = 100;
+        PoolSizeController.Decision shrink = controller.step();
+        Assertions.assertTrue(shrink.getNewPoolSize() < size, shrink.toString());
+        Assertions.assertSame(shrink, controller.getLastDecision());
+        executor.shutdownNow();
+    }
+
+    /**
+     * 任务在同一把锁上串行，扩容后吞吐量没有提升，撤销扩容并冷却
+     */
+    @Test
+    public void revertTest() {
+        SyntheticLoad load = new SyntheticLoad(1000, 5, 0.0);
+        load.serial = true;
+        ExecutorServices.ManagedThreadPoolExecutor executor = newPool(1);
+        PoolSizeController controller = newController(executor, load, 8);
+        controller.step();
+        Assertions.assertEquals(2, controller.step().getNewPoolSize());
+        PoolSizeController.Decision revert = controller.step();
+        Assertions.assertEquals(1, revert.getNewPoolSize(), revert.toString());
+        Assertions.assertTrue(revert.getReason().startsWith("last growth"), revert.toString());
+        Assertions.assertEquals("cooldown", controller.step().getReason());
+        Assertions.assertEquals(1, executor.getMaximumPoolSize());
+        executor.shutdownNow();
+    }
+
+    /**
+     * CPU密集型任务在线程数达到CPU核数后不再扩容
+     */
+    @Test
+    public void cpuBoundHoldTest() {
+        SyntheticLoad load = new SyntheticLoad(5000, 2, 0.0);
+        ExecutorServices.ManagedThreadPoolExecutor executor = newPool(CPUS);
+        PoolSizeController controller = newController(executor, load, CPUS * 4);
+        controller.step();
+        PoolSizeController.Decision hold = controller.step();
+        Assertions.assertEquals(CPUS, hold.getNewPoolSize(), hold.toString());
+        Assertions.assertTrue(hold.getReason().startsWith("cpu bound"), hold.toString());
+        executor.shutdownNow();
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PoolSizeController.builder(ExecutorServices.threadPoolBuilder("plain-").build()));
+    }
+
+    /**
+     * 其它进程占用CPU时，CPU密集型任务被抢占的时间计入阻塞比例，CPU饱和时不扩容
+     */
+    @Test
+    public void preemptedHoldTest() {
+        SyntheticLoad load = new SyntheticLoad(5000, 2, 0.0);
+        load.externalCpus = 0.4 * CPUS;
+        ExecutorServices.ManagedThreadPoolExecutor executor = newPool(CPUS);
+        PoolSizeController controller = newController(executor, load, CPUS * 4);
+        controller.step();
+        PoolSizeController.Decision hold = controller.step();
+        Assertions.assertEquals(0.4, hold.getBlockedRatio(), 1e-9, hold.toString());
+        Assertions.assertEquals(1.0, hold.getCpuLoad(), 1e-9, hold.toString());
+        Assertions.assertEquals(CPUS, hold.getNewPoolSize(), hold.toString());
+        Assertions.assertEquals("cpu saturated", hold.getReason());
+
+        // 同样的阻塞比例在CPU空闲时来自阻塞调用，继续扩容
+        load.externalCpus = 0;
+        load.blocked = 0.4;
+        PoolSizeController.Decision grow = controller.step();
+        Assertions.assertTrue(grow.getNewPoolSize() > CPUS, grow.toString());
+        executor.shutdownNow();
+    }
+
+    private static ExecutorServices.ManagedThreadPoolExecutor newPool(int size) {
+        return ExecutorServices.threadPoolBuilder("controlled-").poolSize(size, size).recordMetrics().recordCpuTime().build();
+    }
+
+    private static PoolSizeController newController(ExecutorServices.ManagedThreadPoolExecutor executor, SyntheticLoad load,
+                                                    int maxPoolSize) {
+        load.executor = executor;
+        return PoolSizeController.builder(executor).bounds(1, maxPoolSize).targetQueueWait(Duration.ofMillis(5))
+                .availableProcessors(CPUS).metricsSource(load).build();
+    }
+
+    /**
+     * 合成负载：任务按固定速率到达，每个任务执行{@code serviceMillis}毫秒，其中{@code blocked}比例的时间阻塞，
+     * 每次采样推进一秒，按线程池当前的线程数计算完成数、排队时间、执行时间和CPU时间
+     */
+    private static final class SyntheticLoad implements Supplier<PoolSizeController.Sample> {
+
+        private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+        private final double serviceNanos;
+        private double arrivalRate;
+        private double blocked;
+        private boolean serial;
+        private double externalCpus;
+        private ExecutorServices.ManagedThreadPoolExecutor executor;
+
+        private long nanos;
+        private long completed;
+        private long waitSum;
+        private long runSum;
+        private long cpuSum;
+        private long queued;
+
+        SyntheticLoad(double arrivalRate, long serviceMillis, double blocked) {
+            this.arrivalRate = arrivalRate;
+            this.serviceNanos = TimeUnit.MILLISECONDS.toNanos(serviceMillis);
+            this.blocked = blocked;
+        }
+
+        @Override
+        public PoolSizeController.Sample get() {
+            if (nanos == 0) {
+                nanos = SECOND;
+                return sample(0.0);
+            }
+            int threads = executor.getCorePoolSize();
+            double cpuPerTask = serviceNanos * (1.0 - blocked);
+            // 线程数、锁、可用CPU三者限制的每秒完成数
+            double capacity = serial ? SECOND / serviceNanos : threads * SECOND / serviceNanos;
+            double availableCpus = CPUS - externalCpus;
+            if (cpuPerTask > 0) {
+                capacity = Math.min(capacity, availableCpus * SECOND / cpuPerTask);
+            }
+            long demand = queued + (long) arrivalRate;
+            long done = Math.min(demand, (long) capacity);
+            // 满负荷时所有线程都在执行（包括等待锁和CPU），否则按完成数计算执行时间
+            long run = (done == (long) capacity) ? threads * SECOND : (long) (done * serviceNanos);
+            long cpu = (long) (done * cpuPerTask);
+            long backlog = demand - done;
+            // 按Little定律估算排队时间，积压平均为期初与期末的平均值
+            long meanWait = (done > 0) ? (long) ((queued + backlog) / 2.0 / done * SECOND) : 0L;
+            nanos += SECOND;
+            completed += done;
+            waitSum += meanWait * done;
+            runSum += run;
+            cpuSum += cpu;
+            queued = backlog;
+            return sample(Math.min((cpu / (double) SECOND + externalCpus) / CPUS, 1.0));
+        }
+
+        private PoolSizeController.Sample sample(double cpuLoad) {
+            return new PoolSizeController.Sample(nanos, completed, completed, waitSum, runSum, cpuSum, queued, cpuLoad);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.test.lang3.concurrent;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.IMarkerFactory;
+import org.slf4j.helpers.BasicMarkerFactory;
+import org.slf4j.helpers.NOPLoggerFactory;
+import org.slf4j.spi.MDCAdapter;
+import org.slf4j.spi.SLF4JServiceProvider;
+
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 测试用的SLF4J实现：不输出日志，MDC保存在普通的{@link ThreadLocal}中（子线程不继承），用于验证MDC的传递
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 11:10 PM
+ */
+public class ThreadLocalMdcServiceProvider implements SLF4JServiceProvider {
+
+    private final ILoggerFactory loggerFactory = new NOPLoggerFactory();
+    private final IMarkerFactory markerFactory = new BasicMarkerFactory();
+    private final MDCAdapter mdcAdapter = new ThreadLocalMdcAdapter();
+
+    @Override
+    public ILoggerFactory getLoggerFactory() {
+        return loggerFactory;
+    }
+
+    @Override
+    public IMarkerFactory getMarkerFactory() {
+        return markerFactory;
+    }
+
+    @Override
+    public MDCAdapter getMDCAdapter() {
+        return mdcAdapter;
+    }
+
+    @Override
+    public String getRequestedApiVersion() {
+        return "2.0.99";
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    private static final class ThreadLocalMdcAdapter implements MDCAdapter {
+
+        private final ThreadLocal<Map<String, String>> context = ThreadLocal.withInitial(HashMap::new);
+
+        @Override
+        public void put(String key, String val) {
+            context.get().put(key, val);
+        }
+
+        @Override
+        public String get(String key) {
+            return context.get().get(key);
+        }
+
+        @Override
+        public void remove(String key) {
+            context.get().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            context.get().clear();
+        }
+
+        @Override
+        public Map<String, String> getCopyOfContextMap() {
+            return new HashMap<>(context.get());
+        }
+
+        @Override
+        public void setContextMap(Map<String, String> contextMap) {
+            context.set(new HashMap<>(contextMap));
+        }
+
+        @Override
+        public void pushByKey(String key, String value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String popByKey(String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Deque<String> getCopyOfDequeByKey(String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clearDequeByKey(String key) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
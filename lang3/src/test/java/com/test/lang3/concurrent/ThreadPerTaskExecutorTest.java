@@ -0,0 +1,98 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 虚拟线程池、每个任务一个线程的线程池单元测试，不支持虚拟线程的运行时使用平台线程
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 8:30 PM
+ */
+public class ThreadPerTaskExecutorTest {
+
+    @Test
+    public void virtualThreadExecutorTest() throws Exception {
+        ExecutorService executor = ExecutorServices.createVirtualThreadExecutor("virtual-test-");
+        try {
+            Future<String> name = executor.submit(() -> Thread.currentThread().getName());
+            Assertions.assertTrue(name.get().startsWith("virtual-test-"), name.get());
+            Assertions.assertEquals(NamedThreadFactory.isVirtualThreadSupported(),
+                    executor instanceof ExecutorServices.ThreadPerTaskExecutor);
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 最大并发数：超出的任务在各自的线程中等待，不阻塞提交线程
+     */
+    @Test
+    public void maxConcurrencyTest() throws Exception {
+        ExecutorServices.ThreadPerTaskExecutor executor =
+                new ExecutorServices.ThreadPerTaskExecutor(new NamedThreadFactory("per-task-"), 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return null;
+            }));
+        }
+        Assertions.assertTrue(executor.awaitQuiescence(5, TimeUnit.SECONDS));
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        Assertions.assertEquals(2, maxRunning.get());
+        Assertions.assertEquals(10, executor.getCompletedTaskCount());
+        Assertions.assertEquals(0, executor.getPendingTaskCount());
+        Assertions.assertTrue(ExecutorServices.isCompleted(executor));
+        executor.shutdown();
+        Assertions.assertTrue(executor.isTerminated());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+    }
+
+    /**
+     * shutdownNow中断等待信号量的任务，任务被取消而不执行
+     */
+    @Test
+    public void shutdownNowTest() throws Exception {
+        ExecutorServices.ThreadPerTaskExecutor executor =
+                new ExecutorServices.ThreadPerTaskExecutor(new NamedThreadFactory("per-task-"), 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        AtomicInteger executed = new AtomicInteger();
+        Future<?> waiting = executor.submit(executed::incrementAndGet);
+        Assertions.assertFalse(executor.awaitQuiescence(50, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(2, executor.getActiveCount());
+
+        executor.shutdownNow();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(waiting.isCancelled());
+        Assertions.assertEquals(0, executed.get());
+        Assertions.assertEquals(0, executor.getPendingTaskCount());
+    }
+}
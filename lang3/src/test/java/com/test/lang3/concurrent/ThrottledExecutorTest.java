@@ -0,0 +1,92 @@
+package com.test.lang3.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流的线程池包装单元测试，底层线程池为提交线程
+ *
+ * @author Emily
+ * @since :  Created in 2026/10/19 10:30 PM
+ */
+public class ThrottledExecutorTest {
+
+    @Test
+    public void tokenBucketTest() throws Exception {
+        ThrottledExecutor throttled = ThrottledExecutor.builder(Runnable::run)
+                .rate(10, Duration.ofSeconds(1)).burst(3).maxWait(Duration.ofMillis(150)).build();
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(throttled.tryAcquire());
+        }
+        Assertions.assertFalse(throttled.tryAcquire());
+
+        // 超出突发的任务由定时线程按速率释放，等待超过maxWait的任务被拒绝
+        CountDownLatch executed = new CountDownLatch(1);
+        long start = System.nanoTime();
+        throttled.execute(executed::countDown);
+        Assertions.assertThrows(RejectedExecutionException.class, () -> {
+            for (int i = 0; i < 3; i++) {
+                throttled.execute(() -> {
+                });
+            }
+        });
+        Assertions.assertTrue(executed.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    /**
+     * 漏桶不允许突发，最多积压burst个任务
+     */
+    @Test
+    public void leakyBucketTest() {
+        ThrottledExecutor throttled = ThrottledExecutor.builder(Runnable::run)
+                .permitsPerSecond(10).burst(3).mode(ThrottledExecutor.Mode.LEAKY_BUCKET).build();
+        Assertions.assertTrue(throttled.tryAcquire());
+        Assertions.assertFalse(throttled.tryAcquire());
+        throttled.execute(() -> {
+        });
+        throttled.execute(() -> {
+        });
+        Assertions.assertThrows(RejectedExecutionException.class, () -> throttled.execute(() -> {
+        }));
+        Assertions.assertThrows(IllegalStateException.class, () -> ThrottledExecutor.builder(Runnable::run).build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ThrottledExecutor.builder(Runnable::run).burst(0));
+    }
+
+    /**
+     * 每个key独立限流，令牌恢复满额的桶被清理，未满额的桶保留，定时线程按恢复周期清理
+     */
+    @Test
+    public void keyedTest() throws Exception {
+        ThrottledExecutor.Keyed<String> keyed = ThrottledExecutor.builder(Runnable::run)
+                .permitsPerSecond(100).burst(2).buildKeyed();
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(keyed.tryAcquire("key" + i));
+            Assertions.assertTrue(keyed.tryAcquire("key" + i));
+            Assertions.assertFalse(keyed.tryAcquire("key" + i));
+        }
+        Assertions.assertEquals(10, keyed.getBucketCount());
+
+        Thread.sleep(100);
+        // 预留约1秒的许可，清理时该桶未满额
+        for (int i = 0; i < 100; i++) {
+            keyed.execute("drained", () -> {
+            });
+        }
+        keyed.sweep(System.nanoTime());
+        Assertions.assertEquals(1, keyed.getBucketCount());
+        Assertions.assertFalse(keyed.tryAcquire("drained"));
+        Assertions.assertTrue(keyed.tryAcquire("key0"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (keyed.getBucketCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        Assertions.assertEquals(0, keyed.getBucketCount());
+    }
+}